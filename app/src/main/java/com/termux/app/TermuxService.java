@@ -36,6 +36,7 @@ import com.termux.shared.termux.TermuxConstants.TERMUX_APP.TERMUX_ACTIVITY;
 import com.termux.shared.termux.TermuxConstants.TERMUX_APP.TERMUX_SERVICE;
 import com.termux.shared.termux.settings.preferences.TermuxAppSharedPreferences;
 import com.termux.shared.termux.shell.TermuxShellManager;
+import com.termux.shared.termux.shell.TermuxTaskScheduler;
 import com.termux.shared.termux.shell.command.runner.terminal.TermuxSession;
 import com.termux.shared.termux.terminal.TermuxTerminalSessionClientBase;
 import com.termux.shared.logger.Logger;
@@ -51,6 +52,9 @@ import com.termux.terminal.TerminalSessionClient;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A service holding a list of {@link TermuxSession} in {@link TermuxShellManager#mTermuxSessions} and background {@link AppShell}
@@ -76,6 +80,13 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
 
     private final Handler mHandler = new Handler();
 
+    /**
+     * The executor that processes the results of TermuxTasks once they exit, in order. Its thread
+     * exits when idle.
+     */
+    private final ThreadPoolExecutor mTaskResultExecutor = new ThreadPoolExecutor(0, 1,
+        60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
 
     /** The full implementation of the {@link TerminalSessionClient} interface to be used by {@link TerminalSession}
      * that holds activity references for activity related functions.
@@ -98,6 +109,11 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
      */
     private TermuxShellManager mShellManager;
 
+    /**
+     * Termux app scheduler limiting the background TermuxTasks started by plugins that run at once
+     */
+    private TermuxTaskScheduler mTaskScheduler;
+
     /** The wake lock and wifi lock are always acquired and released together. */
     private PowerManager.WakeLock mWakeLock;
     private WifiManager.WifiLock mWifiLock;
@@ -117,6 +133,9 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
 
         mShellManager = TermuxShellManager.getShellManager();
 
+        mTaskScheduler = new TermuxTaskScheduler(this::startScheduledTermuxTask,
+            mProperties.getBackgroundTasksMaxRunning(), mProperties.getBackgroundTasksMaxQueued());
+
         runStartForeground();
 
         SystemEventReceiver.registerPackageUpdateEvents(this);
@@ -271,6 +290,10 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
         List<AppShell> termuxTasks = new ArrayList<>(mShellManager.mTermuxTasks);
         List<ExecutionCommand> pendingPluginExecutionCommands = new ArrayList<>(mShellManager.mPendingPluginExecutionCommands);
 
+        // Queued TermuxTasks must not be started as the killed tasks exit. They are still in the
+        // pendingPluginExecutionCommands copy and are cancelled below.
+        mShellManager.mPendingPluginExecutionCommands.removeAll(mTaskScheduler.clearQueuedTasks());
+
         for (int i = 0; i < termuxSessions.size(); i++) {
             ExecutionCommand executionCommand = termuxSessions.get(i).getExecutionCommand();
             processResult = mWantsToStop || executionCommand.isPluginExecutionCommandWithPendingResult();
@@ -405,6 +428,7 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
             executionCommand.resultConfig.resultFileOutputFormat = IntentUtils.getStringExtraIfSet(intent, TERMUX_SERVICE.EXTRA_RESULT_FILE_OUTPUT_FORMAT, null);
             executionCommand.resultConfig.resultFileErrorFormat = IntentUtils.getStringExtraIfSet(intent, TERMUX_SERVICE.EXTRA_RESULT_FILE_ERROR_FORMAT, null);
             executionCommand.resultConfig.resultFilesSuffix = IntentUtils.getStringExtraIfSet(intent, TERMUX_SERVICE.EXTRA_RESULT_FILES_SUFFIX, null);
+            executionCommand.resultConfig.resultFilesStreamed = intent.getBooleanExtra(TERMUX_SERVICE.EXTRA_RESULT_FILES_STREAMED, false);
         }
 
         if (executionCommand.shellCreateMode == null)
@@ -438,19 +462,45 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
         if (executionCommand.shellName == null && executionCommand.executable != null)
             executionCommand.shellName = ShellUtils.getExecutableBasename(executionCommand.executable);
 
-        AppShell newTermuxTask = null;
         ShellCreateMode shellCreateMode = processShellCreateMode(executionCommand);
         if (shellCreateMode == null) return;
-        if (ShellCreateMode.NO_SHELL_WITH_NAME.equals(shellCreateMode)) {
-            newTermuxTask = getTermuxTaskForShellName(executionCommand.shellName);
-            if (newTermuxTask != null)
-                Logger.logVerbose(LOG_TAG, "Existing TermuxTask with \"" + executionCommand.shellName + "\" shell name found for shell create mode \"" + shellCreateMode.getMode() + "\"");
-            else
-                Logger.logVerbose(LOG_TAG, "No existing TermuxTask with \"" + executionCommand.shellName + "\" shell name found for shell create mode \"" + shellCreateMode.getMode() + "\"");
+        if (hasTermuxTaskForShellCreateMode(executionCommand, shellCreateMode)) return;
+
+        // Start the task once less than the max running tasks are running, or reject it if too
+        // many tasks are already waiting, so that the caller gets an error result instead
+        mTaskScheduler.setLimits(mProperties.getBackgroundTasksMaxRunning(), mProperties.getBackgroundTasksMaxQueued());
+        if (!mTaskScheduler.submit(executionCommand)) {
+            mShellManager.mPendingPluginExecutionCommands.remove(executionCommand);
+            executionCommand.setStateFailed(Errno.ERRNO_FAILED.getCode(), getString(R.string.error_termux_service_background_task_queue_full,
+                mTaskScheduler.getQueuedTaskCount(), mTaskScheduler.getRunningTaskCount()));
+            TermuxPluginUtils.processPluginExecutionCommandError(this, LOG_TAG, executionCommand, false);
         }
+    }
 
-        if (newTermuxTask == null)
-            newTermuxTask = createTermuxTask(executionCommand);
+    /**
+     * Start a TermuxTask admitted by {@link #mTaskScheduler}. A queued task may be started long
+     * after it was submitted, so a TermuxTask with the same shell name may have been started
+     * since for the {@link ShellCreateMode#NO_SHELL_WITH_NAME} mode, like from the same queue.
+     */
+    private boolean startScheduledTermuxTask(@NonNull ExecutionCommand executionCommand) {
+        if (hasTermuxTaskForShellCreateMode(executionCommand, ShellCreateMode.modeOf(executionCommand.shellCreateMode)))
+            return false;
+        return createTermuxTask(executionCommand) != null;
+    }
+
+    /**
+     * Check if a TermuxTask must not be created for the execution command since one with the same
+     * shell name already exists for the {@link ShellCreateMode#NO_SHELL_WITH_NAME} mode.
+     */
+    private boolean hasTermuxTaskForShellCreateMode(@NonNull ExecutionCommand executionCommand, ShellCreateMode shellCreateMode) {
+        if (!ShellCreateMode.NO_SHELL_WITH_NAME.equals(shellCreateMode)) return false;
+
+        AppShell termuxTask = getTermuxTaskForShellName(executionCommand.shellName);
+        if (termuxTask != null)
+            Logger.logVerbose(LOG_TAG, "Existing TermuxTask with \"" + executionCommand.shellName + "\" shell name found for shell create mode \"" + shellCreateMode.getMode() + "\"");
+        else
+            Logger.logVerbose(LOG_TAG, "No existing TermuxTask with \"" + executionCommand.shellName + "\" shell name found for shell create mode \"" + shellCreateMode.getMode() + "\"");
+        return termuxTask != null;
     }
 
     /** Create a TermuxTask. */
@@ -473,6 +523,13 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
         }
 
         executionCommand.setShellCommandShellEnvironment = true;
+        executionCommand.backgroundOutputMemoryLimit = mProperties.getBackgroundOutputMemoryLimit();
+        executionCommand.backgroundOutputSpillDirectoryPath = TermuxConstants.TERMUX_TMP_PREFIX_DIR_PATH;
+
+        // The result directory must be resolved before the task starts to stream result files to it
+        if (executionCommand.isPluginExecutionCommand && executionCommand.resultConfig.resultFilesStreamed &&
+            executionCommand.resultConfig.resultDirectoryPath != null)
+            TermuxPluginUtils.setPluginResultDirectoryVariables(executionCommand);
 
         if (Logger.getLogLevel() >= Logger.LOG_LEVEL_VERBOSE)
             Logger.logVerboseExtended(LOG_TAG, executionCommand.toString());
@@ -506,20 +563,30 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
     /** Callback received when a TermuxTask finishes. */
     @Override
     public void onAppShellExited(final AppShell termuxTask) {
-        mHandler.post(() -> {
-            if (termuxTask != null) {
-                ExecutionCommand executionCommand = termuxTask.getExecutionCommand();
-
+        // Process the result off the main thread, since the output of the task may have to be
+        // copied from its spill file to the result files
+        mTaskResultExecutor.execute(() -> {
+            ExecutionCommand executionCommand = termuxTask != null ? termuxTask.getExecutionCommand() : null;
+            if (executionCommand != null) {
                 Logger.logVerbose(LOG_TAG, "The onTermuxTaskExited() callback called for \"" + executionCommand.getCommandIdAndLabelLogString() + "\" TermuxTask command");
 
                 // If the execution command was started for a plugin, then process the results
-                if (executionCommand != null && executionCommand.isPluginExecutionCommand)
+                if (executionCommand.isPluginExecutionCommand)
                     TermuxPluginUtils.processPluginExecutionCommandResult(this, LOG_TAG, executionCommand);
-
-                mShellManager.mTermuxTasks.remove(termuxTask);
+                executionCommand.resultData.deleteOutputStores();
             }
 
-            updateNotification();
+            mHandler.post(() -> {
+                if (termuxTask != null) {
+                    mShellManager.mTermuxTasks.remove(termuxTask);
+
+                    // Start the next queued task, if any
+                    if (executionCommand != null)
+                        mTaskScheduler.onTaskExited(executionCommand);
+                }
+
+                updateNotification();
+            });
         });
     }
 
@@ -584,6 +651,10 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
 
         executionCommand.setShellCommandShellEnvironment = true;
         executionCommand.terminalTranscriptRows = mProperties.getTerminalTranscriptRows();
+        executionCommand.terminalTranscriptArchiveRows = mProperties.getTerminalTranscriptArchiveRows();
+        executionCommand.terminalIOBufferSize = mProperties.getTerminalIOBufferSize();
+        executionCommand.isTerminalIOBufferAdaptive = mProperties.isTerminalIOBufferAdaptive();
+        executionCommand.isTerminalEmulationThreadEnabled = mProperties.isTerminalEmulationThreadEnabled();
 
         if (Logger.getLogLevel() >= Logger.LOG_LEVEL_VERBOSE)
             Logger.logVerboseExtended(LOG_TAG, executionCommand.toString());
@@ -6,6 +6,7 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.media.AudioManager;
+import android.net.Uri;
 import android.os.Environment;
 import android.text.TextUtils;
 import android.view.Gravity;
@@ -19,6 +20,7 @@ import android.widget.Toast;
 
 import com.termux.R;
 import com.termux.app.TermuxActivity;
+import com.termux.shared.errors.Error;
 import com.termux.shared.file.FileUtils;
 import com.termux.shared.interact.MessageDialogUtils;
 import com.termux.shared.interact.ShareUtils;
@@ -43,7 +45,10 @@ import com.termux.shared.view.ViewUtils;
 import com.termux.terminal.KeyHandler;
 import com.termux.terminal.TerminalEmulator;
 import com.termux.terminal.TerminalSession;
+import com.termux.terminal.TranscriptSearch;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -51,6 +56,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
+import androidx.core.content.FileProvider;
 import androidx.drawerlayout.widget.DrawerLayout;
 
 public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
@@ -71,6 +77,15 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
 
     private List<KeyboardShortcut> mSessionShortcuts;
 
+    /** The url index for the emulator of the current session, see {@link #getUrlIndex(TerminalEmulator)}. */
+    private TranscriptSearch mUrlIndex;
+    private TerminalEmulator mUrlIndexEmulator;
+
+    /** The directory in the cache directory that shared session transcripts are written to, see transcript_share_paths.xml. */
+    private static final String TRANSCRIPTS_DIRECTORY_NAME = "transcripts";
+    /** The age after which the transcript file of an earlier share is deleted. */
+    private static final long TRANSCRIPT_FILE_MAX_AGE_MILLIS = 60 * 60 * 1000;
+
     private static final String LOG_TAG = "TermuxTerminalViewClient";
 
     public TermuxTerminalViewClient(TermuxActivity activity, TermuxTerminalSessionActivityClient termuxTerminalSessionActivityClient) {
@@ -188,11 +203,13 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
 
         if (mActivity.getProperties().shouldOpenTerminalTranscriptURLOnClick()) {
             int[] columnAndRow = mActivity.getTerminalView().getColumnAndRow(e, true);
-            String wordAtTap = term.getScreen().getWordAtLocation(columnAndRow[0], columnAndRow[1]);
-            LinkedHashSet<CharSequence> urlSet = TermuxUrlUtils.extractUrls(wordAtTap);
+            String url = null;
+            synchronized (term) {
+                TranscriptSearch.Match match = getUrlIndex(term).findAt(columnAndRow[1], columnAndRow[0]);
+                if (match != null) url = match.getText();
+            }
 
-            if (!urlSet.isEmpty()) {
-                String url = (String) urlSet.iterator().next();
+            if (url != null) {
                 ShareUtils.openUrl(mActivity, url);
                 return;
             }
@@ -675,13 +692,67 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
         TerminalSession session = mActivity.getCurrentSession();
         if (session == null) return;
 
-        String transcriptText = ShellUtils.getTerminalSessionTranscriptText(session, false, true);
-        if (transcriptText == null) return;
+        // Stream the transcript to a cache file shared through a content uri, instead of putting it in an intent
+        // extra which would have to be truncated, see https://github.com/termux/termux-app/issues/1166.
+        // Each share gets its own file, since the app it was shared with may still be reading an earlier one.
+        final File transcriptsDirectory = new File(mActivity.getCacheDir(), TRANSCRIPTS_DIRECTORY_NAME);
+        new Thread() {
+            @Override
+            public void run() {
+                deleteOldTranscriptFiles(transcriptsDirectory);
+
+                File transcriptFile;
+                try {
+                    if (!transcriptsDirectory.isDirectory() && !transcriptsDirectory.mkdirs())
+                        throw new IOException("Failed to create directory \"" + transcriptsDirectory.getAbsolutePath() + "\"");
+                    transcriptFile = File.createTempFile("transcript-", ".txt", transcriptsDirectory);
+                } catch (IOException e) {
+                    Logger.logStackTraceWithMessage(LOG_TAG, "Failed to create session transcript file", e);
+                    Logger.showToast(mActivity, e.getMessage(), true);
+                    return;
+                }
+
+                Error error = ShellUtils.writeTerminalSessionTranscriptToFile(session, transcriptFile.getAbsolutePath(), false);
+                if (error != null) {
+                    Logger.logErrorExtended(LOG_TAG, "Failed to write session transcript\n" + error);
+                    Logger.showToast(mActivity, error.getMinimalErrorString(), true);
+                    //noinspection ResultOfMethodCallIgnored
+                    transcriptFile.delete();
+                    return;
+                }
+
+                mActivity.runOnUiThread(() -> {
+                    if (mActivity.isFinishing()) return;
+
+                    Uri transcriptUri;
+                    try {
+                        transcriptUri = FileProvider.getUriForFile(mActivity, TermuxConstants.TERMUX_TRANSCRIPT_SHARE_URI_AUTHORITY, transcriptFile);
+                    } catch (IllegalArgumentException e) {
+                        Logger.logStackTraceWithMessage(LOG_TAG, "Failed to get uri for session transcript file", e);
+                        return;
+                    }
 
-        // See https://github.com/termux/termux-app/issues/1166.
-        transcriptText = DataUtils.getTruncatedCommandOutput(transcriptText, DataUtils.TRANSACTION_SIZE_LIMIT_IN_BYTES, false, true, false).trim();
-        ShareUtils.shareText(mActivity, mActivity.getString(R.string.title_share_transcript),
-            transcriptText, mActivity.getString(R.string.title_share_transcript_with));
+                    ShareUtils.shareStream(mActivity, mActivity.getString(R.string.title_share_transcript),
+                        transcriptUri, "text/plain", mActivity.getString(R.string.title_share_transcript_with));
+                });
+            }
+        }.start();
+    }
+
+    /**
+     * Delete the transcript files of earlier shares that were last modified more than
+     * {@link #TRANSCRIPT_FILE_MAX_AGE_MILLIS} ago, by which time the apps they were shared with
+     * should have read them.
+     */
+    private static void deleteOldTranscriptFiles(File transcriptsDirectory) {
+        File[] transcriptFiles = transcriptsDirectory.listFiles();
+        if (transcriptFiles == null) return;
+
+        long minLastModified = System.currentTimeMillis() - TRANSCRIPT_FILE_MAX_AGE_MILLIS;
+        for (File transcriptFile : transcriptFiles) {
+            if (transcriptFile.isFile() && transcriptFile.lastModified() < minLastModified && !transcriptFile.delete())
+                Logger.logWarn(LOG_TAG, "Failed to delete old session transcript file \"" + transcriptFile.getAbsolutePath() + "\"");
+        }
     }
 
     public void shareSelectedText() {
@@ -695,9 +766,14 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
         TerminalSession session = mActivity.getCurrentSession();
         if (session == null) return;
 
-        String text = ShellUtils.getTerminalSessionTranscriptText(session, true, true);
+        TerminalEmulator terminalEmulator = session.getEmulator();
+        if (terminalEmulator == null) return;
 
-        LinkedHashSet<CharSequence> urlSet = TermuxUrlUtils.extractUrls(text);
+        LinkedHashSet<CharSequence> urlSet;
+        // The emulator may be appending output on its own thread.
+        synchronized (terminalEmulator) {
+            urlSet = TermuxUrlUtils.extractUrls(getUrlIndex(terminalEmulator));
+        }
         if (urlSet.isEmpty()) {
             new AlertDialog.Builder(mActivity).setMessage(R.string.title_select_url_none_found).show();
             return;
@@ -726,6 +802,18 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
         dialog.show();
     }
 
+    /**
+     * Get the url index for a {@link TerminalEmulator}, which is kept for the emulator of the current session so
+     * that only output added since the last lookup has to be scanned for urls.
+     */
+    private TranscriptSearch getUrlIndex(TerminalEmulator terminalEmulator) {
+        if (mUrlIndex == null || mUrlIndexEmulator != terminalEmulator) {
+            mUrlIndex = TermuxUrlUtils.getUrlIndex(terminalEmulator);
+            mUrlIndexEmulator = terminalEmulator;
+        }
+        return mUrlIndex;
+    }
+
     public void reportIssueFromTranscript() {
         TerminalSession session = mActivity.getCurrentSession();
         if (session == null) return;
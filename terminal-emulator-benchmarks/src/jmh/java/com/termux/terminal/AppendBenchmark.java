@@ -0,0 +1,61 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a corpus to {@link TerminalEmulator#append(byte[], int)} in the chunk size {@link TerminalSession} reads from
+ * the pty, and to {@link TerminalEmulator#processCodePoint(int)} one code point at a time as a baseline for the fast
+ * paths of append. One operation is one pass over a corpus of about a MiB, so the score is roughly in MiB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AppendBenchmark {
+
+    private static final int COLUMNS = 80;
+    private static final int ROWS = 24;
+    private static final int CHUNK_SIZE = 4096;
+
+    @Param({Corpora.ASCII, Corpora.CJK, Corpora.SGR, Corpora.HTOP})
+    public String corpus;
+
+    private byte[] mCorpus;
+    private int[] mCodePoints;
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private TerminalEmulator mEmulator;
+
+    @Setup
+    public void setUp() {
+        mCorpus = Corpora.create(corpus, COLUMNS, ROWS);
+        mCodePoints = new String(mCorpus, StandardCharsets.UTF_8).codePoints().toArray();
+        mEmulator = new TerminalEmulator(new NullTerminalOutput(), COLUMNS, ROWS, 10, 20, TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS, null);
+    }
+
+    @Benchmark
+    public TerminalEmulator append() {
+        for (int offset = 0; offset < mCorpus.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, mCorpus.length - offset);
+            System.arraycopy(mCorpus, offset, mChunk, 0, length);
+            mEmulator.append(mChunk, length);
+        }
+        return mEmulator;
+    }
+
+    @Benchmark
+    public TerminalEmulator processCodePoints() {
+        for (int codePoint : mCodePoints)
+            mEmulator.processCodePoint(codePoint);
+        return mEmulator;
+    }
+
+}
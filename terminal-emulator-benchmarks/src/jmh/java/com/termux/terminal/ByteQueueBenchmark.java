@@ -0,0 +1,203 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams data through {@link ByteQueue} from a producer thread the way {@link TerminalSession} does on the pty path,
+ * against the previous monitor based implementation kept below as {@link SynchronizedByteQueue}. One operation reads
+ * {@link #BYTES_PER_OPERATION} bytes, so the score is in MiB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ByteQueueBenchmark {
+
+    private static final int QUEUE_SIZE = 4096;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int BYTES_PER_OPERATION = 1024 * 1024;
+
+    interface Queue {
+        int read(byte[] buffer, boolean block);
+
+        boolean write(byte[] buffer, int offset, int length);
+
+        void close();
+    }
+
+    @Param({"lockFree", "synchronized"})
+    public String queue;
+
+    private Queue mQueue;
+    private Thread mProducer;
+    private final byte[] mBuffer = new byte[CHUNK_SIZE];
+
+    @Setup
+    public void setUp() {
+        if (queue.equals("lockFree")) {
+            final ByteQueue q = new ByteQueue(QUEUE_SIZE);
+            mQueue = new Queue() {
+                @Override
+                public int read(byte[] buffer, boolean block) {
+                    return q.read(buffer, block);
+                }
+
+                @Override
+                public boolean write(byte[] buffer, int offset, int length) {
+                    return q.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() {
+                    q.close();
+                }
+            };
+        } else {
+            final SynchronizedByteQueue s = new SynchronizedByteQueue(QUEUE_SIZE);
+            mQueue = new Queue() {
+                @Override
+                public int read(byte[] buffer, boolean block) {
+                    return s.read(buffer, block);
+                }
+
+                @Override
+                public boolean write(byte[] buffer, int offset, int length) {
+                    return s.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() {
+                    s.close();
+                }
+            };
+        }
+
+        // The producer keeps the queue full until it is closed, like the thread reading the pty.
+        final Queue q = mQueue;
+        mProducer = new Thread(() -> {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            for (int i = 0; i < chunk.length; i++) chunk[i] = (byte) i;
+            while (q.write(chunk, 0, CHUNK_SIZE)) {
+                // Keep writing.
+            }
+        });
+        mProducer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        mQueue.close();
+        mProducer.join();
+    }
+
+    @Benchmark
+    public int transfer() {
+        int checksum = 0;
+        for (int read = 0; read < BYTES_PER_OPERATION; ) {
+            int bytesRead = mQueue.read(mBuffer, true);
+            checksum += mBuffer[bytesRead - 1];
+            read += bytesRead;
+        }
+        return checksum;
+    }
+
+    /** The previous {@link ByteQueue} implementation, guarding everything with the queue monitor. */
+    static final class SynchronizedByteQueue {
+
+        private final byte[] mBuffer;
+        private int mHead;
+        private int mStoredBytes;
+        private boolean mOpen = true;
+
+        SynchronizedByteQueue(int size) {
+            mBuffer = new byte[size];
+        }
+
+        public synchronized void close() {
+            mOpen = false;
+            notify();
+        }
+
+        public synchronized int read(byte[] buffer, boolean block) {
+            while (mStoredBytes == 0 && mOpen) {
+                if (block) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Ignore.
+                    }
+                } else {
+                    return 0;
+                }
+            }
+            if (!mOpen) return -1;
+
+            int totalRead = 0;
+            int bufferLength = mBuffer.length;
+            boolean wasFull = bufferLength == mStoredBytes;
+            int length = buffer.length;
+            int offset = 0;
+            while (length > 0 && mStoredBytes > 0) {
+                int oneRun = Math.min(bufferLength - mHead, mStoredBytes);
+                int bytesToCopy = Math.min(length, oneRun);
+                System.arraycopy(mBuffer, mHead, buffer, offset, bytesToCopy);
+                mHead += bytesToCopy;
+                if (mHead >= bufferLength) mHead = 0;
+                mStoredBytes -= bytesToCopy;
+                length -= bytesToCopy;
+                offset += bytesToCopy;
+                totalRead += bytesToCopy;
+            }
+            if (wasFull) notify();
+            return totalRead;
+        }
+
+        public boolean write(byte[] buffer, int offset, int lengthToWrite) {
+            final int bufferLength = mBuffer.length;
+
+            synchronized (this) {
+                while (lengthToWrite > 0) {
+                    while (bufferLength == mStoredBytes && mOpen) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            // Ignore.
+                        }
+                    }
+                    if (!mOpen) return false;
+                    final boolean wasEmpty = mStoredBytes == 0;
+                    int bytesToWriteBeforeWaiting = Math.min(lengthToWrite, bufferLength - mStoredBytes);
+                    lengthToWrite -= bytesToWriteBeforeWaiting;
+
+                    while (bytesToWriteBeforeWaiting > 0) {
+                        int tail = mHead + mStoredBytes;
+                        int oneRun;
+                        if (tail >= bufferLength) {
+                            tail = tail - bufferLength;
+                            oneRun = mHead - tail;
+                        } else {
+                            oneRun = bufferLength - tail;
+                        }
+                        int bytesToCopy = Math.min(oneRun, bytesToWriteBeforeWaiting);
+                        System.arraycopy(buffer, offset, mBuffer, tail, bytesToCopy);
+                        offset += bytesToCopy;
+                        bytesToWriteBeforeWaiting -= bytesToCopy;
+                        mStoredBytes += bytesToCopy;
+                    }
+                    if (wasEmpty) notify();
+                }
+            }
+            return true;
+        }
+    }
+
+}
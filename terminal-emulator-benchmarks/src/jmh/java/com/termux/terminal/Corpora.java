@@ -0,0 +1,99 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic terminal output corpora of about {@link #SIZE} bytes each, so that benchmark scores stay comparable
+ * between runs and changes.
+ */
+final class Corpora {
+
+    static final int SIZE = 1024 * 1024;
+
+    /** Plain 7-bit text, like compiler or log output. */
+    static final String ASCII = "ascii";
+    /** UTF-8 encoded CJK text, where every character is wide and takes three bytes. */
+    static final String CJK = "cjk";
+    /** Colored file listings like {@code ls --color} output, with SGR sequences around most words. */
+    static final String SGR = "sgr";
+    /** Full-screen redraws like {@code htop} output, with cursor positioning, erases and colored meters. */
+    static final String HTOP = "htop";
+
+    private static final String[] LS_COLORS = {"0", "01;34", "01;32", "01;36", "40;33;01", "01;31", "01;35"};
+
+    private Corpora() {
+    }
+
+    static byte[] create(String name, int columns, int rows) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(SIZE);
+        switch (name) {
+            case ASCII:
+                while (builder.length() < SIZE) {
+                    int lineLength = random.nextInt(columns + columns / 2);
+                    for (int i = 0; i < lineLength; i++)
+                        builder.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+                    builder.append("\r\n");
+                }
+                break;
+            case CJK:
+                // Each character is three bytes, so stop at a third of the size.
+                while (builder.length() < SIZE / 3) {
+                    int lineLength = random.nextInt(columns / 2 + columns / 4);
+                    for (int i = 0; i < lineLength; i++)
+                        builder.append(random.nextInt(8) == 0 ? ' ' : (char) (0x4E00 + random.nextInt(0x5000)));
+                    builder.append("\r\n");
+                }
+                break;
+            case SGR:
+                while (builder.length() < SIZE) {
+                    int lineLength = 0;
+                    while (lineLength < columns - 16) {
+                        String color = LS_COLORS[random.nextInt(LS_COLORS.length)];
+                        int nameLength = 3 + random.nextInt(12);
+                        builder.append("\033[").append(color).append('m');
+                        for (int i = 0; i < nameLength; i++) builder.append((char) ('a' + random.nextInt(26)));
+                        builder.append("\033[0m  ");
+                        lineLength += nameLength + 2;
+                    }
+                    builder.append("\r\n");
+                }
+                break;
+            case HTOP:
+                while (builder.length() < SIZE) appendHtopFrame(builder, random, columns, rows);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + name);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendHtopFrame(StringBuilder builder, Random random, int columns, int rows) {
+        builder.append("\033[?25l\033[H");
+        int meterWidth = columns / 2 - 8;
+        for (int cpu = 0; cpu < 4; cpu++) {
+            int used = random.nextInt(meterWidth + 1);
+            builder.append("\033[").append(cpu + 1).append(";1H\033[36m").append(cpu + 1).append("\033[39m\033[1m[");
+            builder.append("\033[32m");
+            for (int i = 0; i < used; i++) builder.append('|');
+            builder.append("\033[0m");
+            for (int i = used; i < meterWidth; i++) builder.append(' ');
+            builder.append(String.format(Locale.ROOT, "\033[1m%4.1f%%]\033[0m\033[K", 100. * used / meterWidth));
+        }
+        builder.append("\033[6;1H\033[30;42m  PID USER      PRI  NI  VIRT   RES S CPU% MEM%   TIME+  Command");
+        builder.append("\033[K\033[0m");
+        for (int row = 7; row < rows; row++) {
+            builder.append("\033[").append(row).append(";1H");
+            if (row == 7) builder.append("\033[30;46m");
+            builder.append(String.format(Locale.ROOT, "%5d u0_a123    20   0 %5dM %5dM S %4.1f %4.1f %2d:%02d.%02d ",
+                1000 + random.nextInt(30000), random.nextInt(9000), random.nextInt(900), random.nextDouble() * 100,
+                random.nextDouble() * 10, random.nextInt(60), random.nextInt(60), random.nextInt(100)));
+            builder.append("\033[1m/data/data/com.termux/files/usr/bin/").append(row % 2 == 0 ? "bash" : "python");
+            builder.append("\033[0m\033[K");
+        }
+        builder.append("\033[").append(rows).append(";1HF1\033[30;46mHelp  \033[0mF10\033[30;46mQuit\033[0m\033[K");
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.termux.terminal;
+
+/** A {@link TerminalOutput} discarding everything, as the benchmarks only measure the emulator itself. */
+final class NullTerminalOutput extends TerminalOutput {
+
+    @Override
+    public void write(byte[] data, int offset, int count) {
+    }
+
+    @Override
+    public void titleChanged(String oldTitle, String newTitle) {
+    }
+
+    @Override
+    public void onCopyTextToClipboard(String text) {
+    }
+
+    @Override
+    public void onPasteTextFromClipboard() {
+    }
+
+    @Override
+    public void onBell() {
+    }
+
+    @Override
+    public void onColorsChanged() {
+    }
+
+}
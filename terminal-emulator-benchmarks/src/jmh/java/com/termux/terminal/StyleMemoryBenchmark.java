@@ -0,0 +1,96 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a {@link TerminalEmulator#TERMINAL_TRANSCRIPT_ROWS_MAX} transcript with lines of a kind, and reports the style
+ * memory of its rows with the style spans of {@link TerminalRow} and with the previous layout of one long per column
+ * as the {@link StyleBytes} secondary results, in MiB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StyleMemoryBenchmark {
+
+    private static final int COLUMNS = 120;
+    private static final int ROWS = 40;
+
+    /** Plain text, colored file listings like {@code ls --color} output, or a different color for every character. */
+    @Param({"plain", "listing", "colorPerChar"})
+    public String lines;
+
+    private byte[] mOutput;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class StyleBytes {
+        public double spanMiB;
+        public double denseMiB;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int line = 0; line < TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MAX; line++) {
+            switch (lines) {
+                case "plain":
+                    int length = random.nextInt(COLUMNS);
+                    for (int i = 0; i < length; i++) builder.append((char) ('a' + random.nextInt(26)));
+                    break;
+                case "listing":
+                    for (int i = 0; i < 6; i++)
+                        builder.append("\033[01;3").append(1 + random.nextInt(6)).append("mfile").append(i).append("\033[0m   ");
+                    break;
+                default:
+                    for (int i = 0; i < COLUMNS - 1; i++) builder.append("\033[3").append(i % 8).append("mx");
+                    builder.append("\033[0m");
+            }
+            builder.append("\r\n");
+        }
+        mOutput = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStyleBytes(StyleBytes styleBytes) {
+        styleBytes.spanMiB = 0;
+        styleBytes.denseMiB = 0;
+    }
+
+    @Benchmark
+    public TerminalEmulator fillTranscript(StyleBytes styleBytes) {
+        TerminalEmulator emulator = new TerminalEmulator(new NullTerminalOutput(), COLUMNS, ROWS, 10, 20,
+            TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MAX, null);
+        emulator.append(mOutput, mOutput.length);
+
+        long denseBytes = 0, spanBytes = 0;
+        for (TerminalRow row : emulator.getScreen().mLines) {
+            if (row == null) continue;
+            denseBytes += arrayBytes(8, COLUMNS);
+            spanBytes += row.mStyle != null ? arrayBytes(8, COLUMNS)
+                : arrayBytes(2, row.mSpanStarts.length) + arrayBytes(8, row.mSpanStyles.length);
+        }
+        styleBytes.spanMiB = spanBytes / (1024. * 1024.);
+        styleBytes.denseMiB = denseBytes / (1024. * 1024.);
+        return emulator;
+    }
+
+    /** The heap size of an array, assuming a 16 byte header and 8 byte alignment. */
+    private static long arrayBytes(int elementSize, int length) {
+        return (16 + (long) elementSize * length + 7) & ~7L;
+    }
+
+}
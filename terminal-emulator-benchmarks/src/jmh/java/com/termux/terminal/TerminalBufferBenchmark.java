@@ -0,0 +1,66 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link TerminalBuffer} operations whose cost grows with the screen or transcript size, on a buffer
+ * whose transcript has been filled with {@link Corpora#ASCII} output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TerminalBufferBenchmark {
+
+    private static final int COLUMNS = 80;
+    private static final int NARROW_COLUMNS = 57;
+    private static final int ROWS = 24;
+
+    @Param({"2000", "50000"})
+    public int transcriptRows;
+
+    private TerminalEmulator mEmulator;
+    private TerminalBuffer mBuffer;
+    private boolean mNarrow;
+
+    @Setup
+    public void setUp() {
+        mEmulator = new TerminalEmulator(new NullTerminalOutput(), COLUMNS, ROWS, 10, 20, transcriptRows, null);
+        byte[] corpus = Corpora.create(Corpora.ASCII, COLUMNS, ROWS);
+        // Append until the transcript is full, which takes several passes for the larger transcript sizes.
+        while (mEmulator.getScreen().getActiveTranscriptRows() < transcriptRows - ROWS)
+            mEmulator.append(corpus, corpus.length);
+        mBuffer = mEmulator.getScreen();
+        mNarrow = false;
+    }
+
+    /** Scroll the whole screen by one line, as done for every line feed on the last row. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public TerminalBuffer scrollDownOneLine() {
+        mBuffer.scrollDownOneLine(0, ROWS, TextStyle.NORMAL);
+        return mBuffer;
+    }
+
+    /** Alternate between two column counts, so that every operation reflows the whole transcript. */
+    @Benchmark
+    public TerminalBuffer resizeWithReflow() {
+        mNarrow = !mNarrow;
+        mEmulator.resize(mNarrow ? NARROW_COLUMNS : COLUMNS, ROWS, 10, 20);
+        return mEmulator.getScreen();
+    }
+
+    @Benchmark
+    public String getTranscriptText() {
+        return mBuffer.getTranscriptText();
+    }
+
+}
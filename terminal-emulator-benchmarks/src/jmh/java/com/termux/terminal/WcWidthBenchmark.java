@@ -0,0 +1,97 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link WcWidth#width(int)} per code point, against the binary search over the range tables it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WcWidthBenchmark {
+
+    private static final int CODE_POINTS = 4096;
+
+    /** Which code points to look up: printable ASCII, CJK ideographs, or a mix of all scripts and emojis. */
+    @Param({"ascii", "cjk", "mixed"})
+    public String codePoints;
+
+    private final int[] mCodePoints = new int[CODE_POINTS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < CODE_POINTS; i++) {
+            switch (codePoints) {
+                case "ascii":
+                    mCodePoints[i] = 32 + random.nextInt(95);
+                    break;
+                case "cjk":
+                    mCodePoints[i] = 0x4E00 + random.nextInt(0x5000);
+                    break;
+                default:
+                    mCodePoints[i] = random.nextBoolean() ? random.nextInt(0x3000) : 0x1F000 + random.nextInt(0x1000);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODE_POINTS)
+    public int lookupTable() {
+        int sum = 0;
+        for (int codePoint : mCodePoints) sum += WcWidth.width(codePoint);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODE_POINTS)
+    public int binarySearch() {
+        int sum = 0;
+        for (int codePoint : mCodePoints) sum += binarySearchWidth(codePoint);
+        return sum;
+    }
+
+    private static int binarySearchWidth(int ucs) {
+        if (ucs == 0 ||
+            ucs == 0x034F ||
+            (0x200B <= ucs && ucs <= 0x200F) ||
+            ucs == 0x2028 ||
+            ucs == 0x2029 ||
+            (0x202A <= ucs && ucs <= 0x202E) ||
+            (0x2060 <= ucs && ucs <= 0x2063)) {
+            return 0;
+        }
+        if (ucs < 32 || (0x07F <= ucs && ucs < 0x0A0)) return 0;
+        if (intable(WcWidth.ZERO_WIDTH, ucs)) return 0;
+        return intable(WcWidth.WIDE_EASTASIAN, ucs) ? 2 : 1;
+    }
+
+    private static boolean intable(int[][] table, int c) {
+        if (c < table[0][0]) return false;
+        int bot = 0;
+        int top = table.length - 1;
+        while (top >= bot) {
+            int mid = (bot + top) / 2;
+            if (table[mid][1] < c) {
+                bot = mid + 1;
+            } else if (table[mid][0] > c) {
+                top = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,54 +1,133 @@
 package com.termux.terminal;
 
-/** A circular byte buffer allowing one producer and one consumer thread. */
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A circular byte buffer allowing one producer and one consumer thread.
+ * <p/>
+ * The queue is lock-free: the producer only ever advances {@link #mWritePosition} and the consumer only ever advances
+ * {@link #mReadPosition}, both being volatile so that the bytes copied before advancing a position are visible to the
+ * other side after it has read that position. A thread only parks when it finds the queue empty (consumer) or full
+ * (producer), and the other side only pays for an unpark when it sees a parked thread after moving its position.
+ * <p/>
+ * The queue may be adaptive, in which case its capacity doubles up to a maximum size after the producer had to wait for
+ * the queue to have room, and goes back to the minimum size once the producer has not had to wait for a while. The
+ * buffer is only ever replaced by the producer while the queue is empty, so the consumer never reads from a stale one.
+ */
 final class ByteQueue {
 
-    private final byte[] mBuffer;
-    private int mHead;
-    private int mStoredBytes;
-    private boolean mOpen = true;
+    /**
+     * How many times to re-check an empty or full queue before parking. The other side usually moves within a few
+     * microseconds while streaming, and a park/unpark round trip costs more than that.
+     */
+    private static final int SPIN_TRIES = 128;
+
+    /** How long the producer must not have waited on a full queue before an adaptive queue shrinks back. */
+    static final long DEFAULT_SHRINK_AFTER_IDLE_NANOS = 10_000_000_000L;
+
+    /** The capacity the queue starts with and shrinks back to. */
+    private final int mMinSize;
+    /** The capacity an adaptive queue may grow up to, equal to {@link #mMinSize} if not adaptive. */
+    private final int mMaxSize;
+    private final long mShrinkAfterIdleNanos;
+
+    /** The ring buffer, only replaced by the producer while the queue is empty. */
+    private volatile byte[] mBuffer;
+
+    /** Total number of bytes ever read. Only written by the consumer thread. */
+    private volatile long mReadPosition;
+    /** Total number of bytes ever written. Only written by the producer thread. */
+    private volatile long mWritePosition;
+
+    private volatile boolean mOpen = true;
+    /** Whether no more bytes are expected, after which reads return -1 once the queue is empty. */
+    private volatile boolean mWritingFinished;
+
+    /** The consumer thread if parked waiting for the queue to become non-empty, otherwise null. */
+    private volatile Thread mParkedReader;
+    /** The producer thread if parked waiting for the queue to become non-full, otherwise null. */
+    private volatile Thread mParkedWriter;
+
+    /** Whether the producer has waited on a full queue since the capacity was last adapted. Producer only. */
+    private boolean mSaturated;
+    /** The {@link System#nanoTime()} the producer last waited on a full queue. Producer only. */
+    private long mLastSaturatedTime;
 
     public ByteQueue(int size) {
-        mBuffer = new byte[size];
+        this(size, size, DEFAULT_SHRINK_AFTER_IDLE_NANOS);
+    }
+
+    public ByteQueue(int minSize, int maxSize) {
+        this(minSize, maxSize, DEFAULT_SHRINK_AFTER_IDLE_NANOS);
+    }
+
+    ByteQueue(int minSize, int maxSize, long shrinkAfterIdleNanos) {
+        if (minSize <= 0 || maxSize < minSize)
+            throw new IllegalArgumentException("Invalid sizes: minSize=" + minSize + ", maxSize=" + maxSize);
+        mMinSize = minSize;
+        mMaxSize = maxSize;
+        mShrinkAfterIdleNanos = shrinkAfterIdleNanos;
+        mBuffer = new byte[minSize];
     }
 
-    public synchronized void close() {
+    /** The current capacity of the queue, which may change over time if it is adaptive. */
+    public int getCapacity() {
+        return mBuffer.length;
+    }
+
+    public void close() {
         mOpen = false;
-        notify();
+        unpark(mParkedReader);
+        unpark(mParkedWriter);
     }
 
-    public synchronized int read(byte[] buffer, boolean block) {
-        while (mStoredBytes == 0 && mOpen) {
-            if (block) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    // Ignore.
-                }
-            } else {
-                return 0;
+    /**
+     * Mark that no more bytes are expected, so that reads return what is left in the queue and then -1 like for a
+     * closed queue. May be called from any thread.
+     */
+    public void finishWriting() {
+        mWritingFinished = true;
+        unpark(mParkedReader);
+    }
+
+    public int read(byte[] buffer, boolean block) {
+        final long readPosition = mReadPosition;
+        long writePosition = mWritePosition;
+        for (int spins = 0; writePosition == readPosition && mOpen && !mWritingFinished; spins++) {
+            if (!block) return 0;
+            if (spins < SPIN_TRIES) {
+                Thread.yield();
+                writePosition = mWritePosition;
+                continue;
             }
+
+            // Publish ourselves before re-checking the write position, so that a producer advancing it concurrently
+            // either is seen by the re-check or sees us parked and unparks us.
+            mParkedReader = Thread.currentThread();
+            writePosition = mWritePosition;
+            if (writePosition == readPosition && mOpen && !mWritingFinished) park();
+            mParkedReader = null;
+            writePosition = mWritePosition;
         }
-        if (!mOpen) return -1;
+        if (!mOpen || writePosition == readPosition) return -1;
 
-        int totalRead = 0;
-        int bufferLength = mBuffer.length;
-        boolean wasFull = bufferLength == mStoredBytes;
-        int length = buffer.length;
+        // Read the buffer only after the write position, as the producer may have replaced it before writing.
+        final byte[] queueBuffer = mBuffer;
+        final int bufferLength = queueBuffer.length;
+        final int storedBytes = (int) (writePosition - readPosition);
+        int length = Math.min(buffer.length, storedBytes);
+        int head = (int) (readPosition % bufferLength);
         int offset = 0;
-        while (length > 0 && mStoredBytes > 0) {
-            int oneRun = Math.min(bufferLength - mHead, mStoredBytes);
-            int bytesToCopy = Math.min(length, oneRun);
-            System.arraycopy(mBuffer, mHead, buffer, offset, bytesToCopy);
-            mHead += bytesToCopy;
-            if (mHead >= bufferLength) mHead = 0;
-            mStoredBytes -= bytesToCopy;
-            length -= bytesToCopy;
+        while (offset < length) {
+            int bytesToCopy = Math.min(length - offset, bufferLength - head);
+            System.arraycopy(queueBuffer, head, buffer, offset, bytesToCopy);
             offset += bytesToCopy;
-            totalRead += bytesToCopy;
+            head = 0;
         }
-        if (wasFull) notify();
-        return totalRead;
+        mReadPosition = readPosition + length;
+
+        unpark(mParkedWriter);
+        return length;
     }
 
     /**
@@ -63,46 +142,74 @@ final class ByteQueue {
             throw new IllegalArgumentException("length <= 0");
         }
 
-        final int bufferLength = mBuffer.length;
+        long writePosition = mWritePosition;
+        if (mMaxSize != mMinSize) adaptCapacity(writePosition);
+        final byte[] queueBuffer = mBuffer;
+        final int bufferLength = queueBuffer.length;
 
-        synchronized (this) {
-            while (lengthToWrite > 0) {
-                while (bufferLength == mStoredBytes && mOpen) {
-                    try {
-                        wait();
-                    } catch (InterruptedException e) {
-                        // Ignore.
-                    }
+        while (lengthToWrite > 0) {
+            long readPosition = mReadPosition;
+            for (int spins = 0; writePosition - readPosition == bufferLength && mOpen; spins++) {
+                if (spins == 0) {
+                    mSaturated = true;
+                    mLastSaturatedTime = System.nanoTime();
                 }
-                if (!mOpen) return false;
-                final boolean wasEmpty = mStoredBytes == 0;
-                int bytesToWriteBeforeWaiting = Math.min(lengthToWrite, bufferLength - mStoredBytes);
-                lengthToWrite -= bytesToWriteBeforeWaiting;
-
-                while (bytesToWriteBeforeWaiting > 0) {
-                    int tail = mHead + mStoredBytes;
-                    int oneRun;
-                    if (tail >= bufferLength) {
-                        // Buffer: [.............]
-                        // ________________H_______T
-                        // =>
-                        // Buffer: [.............]
-                        // ___________T____H
-                        // onRun= _____----_
-                        tail = tail - bufferLength;
-                        oneRun = mHead - tail;
-                    } else {
-                        oneRun = bufferLength - tail;
-                    }
-                    int bytesToCopy = Math.min(oneRun, bytesToWriteBeforeWaiting);
-                    System.arraycopy(buffer, offset, mBuffer, tail, bytesToCopy);
-                    offset += bytesToCopy;
-                    bytesToWriteBeforeWaiting -= bytesToCopy;
-                    mStoredBytes += bytesToCopy;
+                if (spins < SPIN_TRIES) {
+                    Thread.yield();
+                    readPosition = mReadPosition;
+                    continue;
                 }
-                if (wasEmpty) notify();
+                // Same publish-then-recheck protocol as the reader side.
+                mParkedWriter = Thread.currentThread();
+                readPosition = mReadPosition;
+                if (writePosition - readPosition == bufferLength && mOpen) park();
+                mParkedWriter = null;
+                readPosition = mReadPosition;
             }
+            if (!mOpen) return false;
+
+            int bytesToWriteBeforeWaiting = Math.min(lengthToWrite, bufferLength - (int) (writePosition - readPosition));
+            lengthToWrite -= bytesToWriteBeforeWaiting;
+
+            int tail = (int) (writePosition % bufferLength);
+            int written = 0;
+            while (written < bytesToWriteBeforeWaiting) {
+                int bytesToCopy = Math.min(bytesToWriteBeforeWaiting - written, bufferLength - tail);
+                System.arraycopy(buffer, offset, queueBuffer, tail, bytesToCopy);
+                offset += bytesToCopy;
+                written += bytesToCopy;
+                tail = 0;
+            }
+            writePosition += bytesToWriteBeforeWaiting;
+            mWritePosition = writePosition;
+
+            unpark(mParkedReader);
         }
         return true;
     }
+
+    /** Grow the buffer if the producer has been saturating it or shrink it if not for a while. Producer only. */
+    private void adaptCapacity(long writePosition) {
+        // The consumer may still be copying from the buffer unless it has read everything.
+        if (mReadPosition != writePosition) return;
+
+        final int capacity = mBuffer.length;
+        if (mSaturated) {
+            mSaturated = false;
+            if (capacity < mMaxSize) mBuffer = new byte[(int) Math.min(2L * capacity, mMaxSize)];
+        } else if (capacity > mMinSize && System.nanoTime() - mLastSaturatedTime > mShrinkAfterIdleNanos) {
+            mBuffer = new byte[mMinSize];
+        }
+    }
+
+    private void park() {
+        LockSupport.park(this);
+        // Interrupts have never been a way to abort a queue operation, so swallow it instead of spinning on it.
+        Thread.interrupted();
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
 }
@@ -0,0 +1,172 @@
+package com.termux.terminal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable copy of the screen rows and the cursor and color state of a {@link TerminalEmulator}, published by a
+ * {@link TerminalSession} that runs its emulation on a separate thread so that a view can draw without locking the live
+ * {@link TerminalBuffer} while output is being appended.
+ * <p>
+ * Only the screen rows changed since the previous snapshot are copied, the others are shared with it. Transcript rows
+ * are not copied up front, but from the live buffer by {@link #getRow(int)} a screen of rows at a time, which are kept
+ * for the next snapshots as long as the transcript has not scrolled or changed.
+ * <p>
+ * A view should read the buffer through its current snapshot, as its rows are counted from the screen of the
+ * snapshot, which the live buffer may have scrolled past.
+ */
+public final class ScreenSnapshot {
+
+    public final int mColumns, mRows;
+    public final int mCursorCol, mCursorRow;
+    public final int mCursorStyle;
+    public final boolean mReverseVideo;
+    /** The current colors of the emulator, see {@link TerminalColors#mCurrentColors}. */
+    public final int[] mColors;
+    /** The {@link TerminalBuffer#getScrolledRows()} and {@link TerminalBuffer#getLayoutChanges()} of the screen when taken. */
+    public final long mScrolledRows;
+    public final int mLayoutChanges;
+    /** The {@link TerminalBuffer#getActiveTranscriptRows()} of the screen when taken. */
+    public final int mActiveTranscriptRows;
+    /** If the screen is the alternate buffer, see {@link TerminalEmulator#isAlternateBufferActive()}. */
+    public final boolean mAlternateBufferActive;
+
+    private final boolean mCursorEnabled;
+    private final TerminalEmulator mEmulator;
+    private final TerminalBuffer mScreen;
+    private final TerminalRow[] mScreenRows;
+    /** The screen rows which changed since the snapshot before this one was drawn by a view. */
+    private final BitSet mDirtyRows;
+    private volatile boolean mDirtyRowsDrawn;
+    /** The transcript rows last copied by {@link #getRow(int)}, which may be shared with the previous snapshot. */
+    private volatile TranscriptRows mTranscriptRows;
+
+    /** Consecutive transcript rows copied from the live buffer, with null for rows that had left the transcript. */
+    private static final class TranscriptRows {
+        final int mFirstRow;
+        final TerminalRow[] mRows;
+
+        TranscriptRows(int firstRow, TerminalRow[] rows) {
+            mFirstRow = firstRow;
+            mRows = rows;
+        }
+
+        TerminalRow get(int row) {
+            int index = row - mFirstRow;
+            return (index >= 0 && index < mRows.length) ? mRows[index] : null;
+        }
+    }
+
+    private ScreenSnapshot(TerminalEmulator emulator, ScreenSnapshot previous) {
+        mEmulator = emulator;
+        mScreen = emulator.getScreen();
+        mColumns = emulator.mColumns;
+        mRows = emulator.mRows;
+        mCursorCol = emulator.getCursorCol();
+        mCursorRow = emulator.getCursorRow();
+        mCursorStyle = emulator.getCursorStyle();
+        mCursorEnabled = emulator.isCursorEnabled();
+        mReverseVideo = emulator.isReverseVideo();
+        mScrolledRows = mScreen.mScrolledRows;
+        mLayoutChanges = mScreen.mLayoutChanges;
+        mActiveTranscriptRows = mScreen.getActiveTranscriptRows();
+        mAlternateBufferActive = emulator.isAlternateBufferActive();
+
+        int[] colors = emulator.mColors.mCurrentColors;
+        mColors = (previous != null && Arrays.equals(previous.mColors, colors)) ? previous.mColors : colors.clone();
+
+        boolean copyAll = previous == null || previous.mScreen != mScreen || previous.mColumns != mColumns || previous.mRows != mRows;
+        mScreenRows = copyAll ? new TerminalRow[mRows] : previous.mScreenRows.clone();
+        for (int row = 0; row < mRows; row++)
+            if (copyAll || mScreen.isRowDirty(row)) mScreenRows[row] = new TerminalRow(mScreen.getRow(row));
+
+        mDirtyRows = new BitSet(mRows);
+        if (copyAll) {
+            mDirtyRows.set(0, mRows);
+        } else {
+            for (int row = mScreen.nextDirtyRow(0); row >= 0 && row < mRows; row = mScreen.nextDirtyRow(row + 1))
+                mDirtyRows.set(row);
+            // Rows changed in a snapshot which was replaced before a view got to draw them:
+            if (!previous.mDirtyRowsDrawn) mDirtyRows.or(previous.mDirtyRows);
+        }
+        mScreen.clearDirtyRows();
+
+        // The transcript rows are unchanged as long as the transcript has not scrolled, been reflowed or cleared.
+        if (!copyAll && previous.mScrolledRows == mScrolledRows && previous.mLayoutChanges == mLayoutChanges
+            && previous.mActiveTranscriptRows == mActiveTranscriptRows)
+            mTranscriptRows = previous.mTranscriptRows;
+    }
+
+    /**
+     * Take a snapshot of the emulator, sharing the unchanged rows with the previous one if not null, and clear the
+     * dirty rows of its screen. Must be called while holding the lock of the emulator.
+     */
+    static ScreenSnapshot take(TerminalEmulator emulator, ScreenSnapshot previous) {
+        return new ScreenSnapshot(emulator, previous);
+    }
+
+    /**
+     * Get a row, where rows from 0 are the screen rows of the snapshot and negative rows are transcript rows. As the
+     * transcript is only kept by the live buffer, transcript rows are copied from it while holding the lock of the
+     * emulator, at the position the rows had when the snapshot was taken, a screen of rows from {@code row} at a time
+     * so that drawing a scrolled view only takes the lock once. A row which has since scrolled out of the transcript
+     * is returned blank.
+     */
+    public TerminalRow getRow(int row) {
+        if (row >= 0) return mScreenRows[row];
+
+        TranscriptRows transcriptRows = mTranscriptRows;
+        TerminalRow terminalRow = (transcriptRows == null) ? null : transcriptRows.get(row);
+        if (terminalRow != null) return terminalRow;
+
+        TerminalRow[] rows = new TerminalRow[Math.min(mRows, -row)];
+        synchronized (mEmulator) {
+            if (mEmulator.getScreen() == mScreen && mScreen.mColumns == mColumns) {
+                long scrolledSince = mScreen.mScrolledRows - mScrolledRows;
+                for (int i = 0; i < rows.length; i++) {
+                    long liveRow = row + i - scrolledSince;
+                    if (liveRow >= -mScreen.getActiveTranscriptRows())
+                        rows[i] = new TerminalRow(mScreen.getRow((int) liveRow));
+                }
+            }
+        }
+        mTranscriptRows = new TranscriptRows(row, rows);
+        return (rows[0] != null) ? rows[0] : new TerminalRow(mColumns, TextStyle.NORMAL);
+    }
+
+    /**
+     * Get the text between two positions, with rows counted as by {@link #getRow(int)}, which is read from the live
+     * buffer while holding the lock of the emulator at the position the rows had when the snapshot was taken.
+     */
+    public String getSelectedText(int x1, int y1, int x2, int y2) {
+        synchronized (mEmulator) {
+            if (mEmulator.getScreen() != mScreen || mScreen.mColumns != mColumns) return "";
+            long scrolledSince = mScreen.mScrolledRows - mScrolledRows;
+            int firstRow = -mScreen.getActiveTranscriptRows();
+            int lastRow = mScreen.mScreenRows - 1;
+            y1 = (int) Math.max(firstRow, Math.min(lastRow, y1 - scrolledSince));
+            y2 = (int) Math.max(firstRow, Math.min(lastRow, y2 - scrolledSince));
+            return mScreen.getSelectedText(x1, y1, x2, y2);
+        }
+    }
+
+    /** If the cursor should be drawn, which depends on the current blink state of the emulator. */
+    public boolean shouldCursorBeVisible() {
+        return mEmulator.shouldCursorBeVisible(mCursorEnabled);
+    }
+
+    /** Return the first screen row from {@code fromRow} that changed since the last drawn snapshot, or -1 if none. */
+    public int nextDirtyRow(int fromRow) {
+        return mDirtyRows.nextSetBit(fromRow);
+    }
+
+    public boolean isRowDirty(int row) {
+        return mDirtyRows.get(row);
+    }
+
+    /** Called by the view once it has drawn the snapshot, so that a next snapshot does not include its dirty rows. */
+    public void setDirtyRowsDrawn() {
+        mDirtyRowsDrawn = true;
+    }
+
+}
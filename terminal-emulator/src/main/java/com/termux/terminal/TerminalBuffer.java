@@ -1,6 +1,13 @@
 package com.termux.terminal;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * A circular buffer of {@link TerminalRow}:s which keeps notes about what is visible on a logical screen and the scroll
@@ -19,6 +26,24 @@ public final class TerminalBuffer {
     private int mActiveTranscriptRows = 0;
     /** The index in the circular buffer where the visible screen starts. */
     private int mScreenFirstRow = 0;
+    /** The rows that have scrolled out of the transcript in {@link #mLines}, if enabled. */
+    private TranscriptArchive mArchive;
+    /** The screen rows changed since {@link #clearDirtyRows()}, so that a view only needs to render those again. */
+    private final BitSet mDirtyRows = new BitSet();
+    /** The number of times the screen has scrolled a row into the transcript, to relate rows read at different times. */
+    long mScrolledRows;
+    /** The number of times the rows have been relaid out by a resize or the transcript cleared, which invalidates them. */
+    int mLayoutChanges;
+    /**
+     * The rows of the transcript, oldest first, that a resize changing the columns left to be reflowed later by
+     * {@link #reflowTranscript(int)}. They are older than the rows in {@link #mLines} and newer than the archived ones.
+     */
+    private TerminalRow[] mPendingRows;
+    private int mPendingRowCount;
+    /** The style of blank cells in the rows reflowed from {@link #mPendingRows}. */
+    private long mPendingStyle;
+    /** The rows no longer used by this buffer, to obtain new rows from. */
+    final TerminalRowPool mRowPool;
 
     /**
      * Create a transcript screen.
@@ -33,19 +58,40 @@ public final class TerminalBuffer {
         mTotalRows = totalRows;
         mScreenRows = screenRows;
         mLines = new TerminalRow[totalRows];
+        mRowPool = new TerminalRowPool();
 
         blockSet(0, 0, columns, screenRows, ' ', TextStyle.NORMAL);
     }
 
+    /** Create a screen without a transcript whose rows are obtained from a pool as written, to reflow rows into. */
+    private TerminalBuffer(int columns, int rows, TerminalRowPool rowPool) {
+        mColumns = columns;
+        mTotalRows = mScreenRows = rows;
+        mLines = new TerminalRow[rows];
+        mRowPool = rowPool;
+    }
+
+    /**
+     * Keep up to {@code maxRows} rows that scroll out of the transcript in a compressed {@link TranscriptArchive}, in
+     * addition to the rows of the transcript itself. They are then counted in {@link #getActiveTranscriptRows()} and
+     * returned by {@link #getRow(int)}, but cannot be accessed through {@link #externalToInternalRow(int)}.
+     */
+    void setTranscriptArchiveRows(int maxRows) {
+        mArchive = maxRows > 0 ? new TranscriptArchive(maxRows) : null;
+    }
+
     public String getTranscriptText() {
+        reflowTranscript(Integer.MAX_VALUE);
         return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows).trim();
     }
 
     public String getTranscriptTextWithoutJoinedLines() {
+        reflowTranscript(Integer.MAX_VALUE);
         return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows, false).trim();
     }
 
     public String getTranscriptTextWithFullLinesJoined() {
+        reflowTranscript(Integer.MAX_VALUE);
         return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows, true, true).trim();
     }
 
@@ -59,97 +105,255 @@ public final class TerminalBuffer {
 
     public String getSelectedText(int selX1, int selY1, int selX2, int selY2, boolean joinBackLines, boolean joinFullLines) {
         final StringBuilder builder = new StringBuilder();
-        final int columns = mColumns;
 
         if (selY1 < -getActiveTranscriptRows()) selY1 = -getActiveTranscriptRows();
         if (selY2 >= mScreenRows) selY2 = mScreenRows - 1;
 
-        for (int row = selY1; row <= selY2; row++) {
-            int x1 = (row == selY1) ? selX1 : 0;
-            int x2;
-            if (row == selY2) {
-                x2 = selX2 + 1;
-                if (x2 > columns) x2 = columns;
-            } else {
-                x2 = columns;
-            }
-            TerminalRow lineObject = mLines[externalToInternalRow(row)];
-            int x1Index = lineObject.findStartOfColumn(x1);
-            int x2Index = (x2 < mColumns) ? lineObject.findStartOfColumn(x2) : lineObject.getSpaceUsed();
-            if (x2Index == x1Index) {
-                // Selected the start of a wide character.
-                x2Index = lineObject.findStartOfColumn(x2 + 1);
-            }
-            char[] line = lineObject.mText;
-            int lastPrintingCharIndex = -1;
-            int i;
-            boolean rowLineWrap = getLineWrap(row);
-            if (rowLineWrap && x2 == columns) {
-                // If the line was wrapped, we shouldn't lose trailing space:
-                lastPrintingCharIndex = x2Index - 1;
-            } else {
-                for (i = x1Index; i < x2Index; ++i) {
-                    char c = line[i];
-                    if (c != ' ') lastPrintingCharIndex = i;
+        for (int row = selY1; row <= selY2; row++)
+            appendSelectedRowText(builder, row, selX1, selY1, selX2, selY2, joinBackLines, joinFullLines);
+        return builder.toString();
+    }
+
+    /**
+     * Write the text of the transcript and screen, like {@link #getTranscriptText()} and the other transcript methods
+     * but one row at a time, so that a long transcript is never held in memory as a whole.
+     *
+     * @param trim If leading and trailing whitespace should be left out, like {@link String#trim()} does.
+     */
+    public void writeTranscript(Writer writer, boolean joinBackLines, boolean joinFullLines, boolean trim) throws IOException {
+        readTranscript(joinBackLines, joinFullLines, trim).readRows(writer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Start reading the text of the transcript and screen like {@link #writeTranscript(Writer, boolean, boolean, boolean)}
+     * does, but a chunk of rows at a time, so that a lock guarding this buffer need not be held while writing them.
+     */
+    TranscriptReader readTranscript(boolean joinBackLines, boolean joinFullLines, boolean trim) {
+        reflowTranscript(Integer.MAX_VALUE);
+        return new TranscriptReader(joinBackLines, joinFullLines, trim);
+    }
+
+    /**
+     * Reads the text of the rows of the transcript and screen at the time it was created a chunk at a time. The rows
+     * are identified like {@link #getScrolledRows()} describes, so that rows scrolling into the transcript between
+     * chunks are read once, and rows still on the screen are read as they are when their chunk is read.
+     */
+    final class TranscriptReader {
+
+        private final boolean mJoinBackLines, mJoinFullLines, mTrim;
+        private final int mReadLayoutChanges;
+        /** The next row to read and the row after the last one, as {@link #getScrolledRows()} plus the row. */
+        private long mNextRow;
+        private final long mEndRow;
+        private final StringBuilder mRowText = new StringBuilder(mColumns + 1);
+        /** Whitespace held back while trimming until followed by other text, and if other text has been read. */
+        private final StringBuilder mPendingWhitespace = new StringBuilder();
+        private boolean mStarted;
+
+        TranscriptReader(boolean joinBackLines, boolean joinFullLines, boolean trim) {
+            mJoinBackLines = joinBackLines;
+            mJoinFullLines = joinFullLines;
+            mTrim = trim;
+            mReadLayoutChanges = mLayoutChanges;
+            mNextRow = mScrolledRows - getActiveTranscriptRows();
+            mEndRow = mScrolledRows + mScreenRows;
+            mStarted = !trim;
+        }
+
+        /**
+         * Append the text of up to {@code rows} more rows.
+         *
+         * @return If rows are still left to be read.
+         * @throws IOException If appending fails, or if the rows have been relaid out by a resize or the transcript
+         *                     cleared since the reading started.
+         */
+        boolean readRows(Appendable out, int rows) throws IOException {
+            if (mReadLayoutChanges != mLayoutChanges)
+                throw new IOException("The transcript was resized or cleared while being read");
+            // Skip the rows that have since scrolled out of the transcript.
+            mNextRow = Math.max(mNextRow, mScrolledRows - getActiveTranscriptRows());
+            final long endRow = Math.min(mNextRow + rows, mEndRow);
+            final int lastRow = (int) (mEndRow - 1 - mScrolledRows);
+            for (; mNextRow < endRow; mNextRow++) {
+                int row = (int) (mNextRow - mScrolledRows);
+                mRowText.setLength(0);
+                appendSelectedRowText(mRowText, row, 0, row, mColumns, lastRow, mJoinBackLines, mJoinFullLines);
+                if (!mTrim) {
+                    out.append(mRowText);
+                    continue;
                 }
+
+                int lastNonWhitespace = mRowText.length() - 1;
+                while (lastNonWhitespace >= 0 && mRowText.charAt(lastNonWhitespace) <= ' ') lastNonWhitespace--;
+                if (lastNonWhitespace < 0) {
+                    if (mStarted) mPendingWhitespace.append(mRowText);
+                    continue;
+                }
+                int firstToWrite = 0;
+                if (!mStarted) {
+                    while (mRowText.charAt(firstToWrite) <= ' ') firstToWrite++;
+                    mStarted = true;
+                }
+                out.append(mPendingWhitespace);
+                mPendingWhitespace.setLength(0);
+                out.append(mRowText, firstToWrite, lastNonWhitespace + 1);
+                mPendingWhitespace.append(mRowText, lastNonWhitespace + 1, mRowText.length());
             }
+            return mNextRow < mEndRow;
+        }
 
-            int len = lastPrintingCharIndex - x1Index + 1;
-            if (lastPrintingCharIndex != -1 && len > 0)
-                builder.append(line, x1Index, len);
+    }
 
-            boolean lineFillsWidth = lastPrintingCharIndex == x2Index - 1;
-            if ((!joinBackLines || !rowLineWrap) && (!joinFullLines || !lineFillsWidth)
-                && row < selY2 && row < mScreenRows - 1) builder.append('\n');
-        }
-        return builder.toString();
+    /** Write the transcript encoded in UTF-8 to a stream, see {@link #writeTranscript(Writer, boolean, boolean, boolean)}. */
+    public void writeTranscript(OutputStream outputStream, boolean joinBackLines, boolean joinFullLines, boolean trim) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeTranscript(writer, joinBackLines, joinFullLines, trim);
+        writer.flush();
     }
 
-    public String getWordAtLocation(int x, int y) {
-        // Set y1 and y2 to the lines where the wrapped line starts and ends.
-        // I.e. if a line that is wrapped to 3 lines starts at line 4, and this
-        // is called with y=5, then y1 would be set to 4 and y2 would be set to 6.
-        int y1 = y;
-        int y2 = y;
-        while (y1 > 0 && !getSelectedText(0, y1 - 1, mColumns, y, true, true).contains("\n")) {
-            y1--;
+    /** Append the selected text of a row, and the newline after it if any, for a selection clamped to the active rows. */
+    private void appendSelectedRowText(StringBuilder builder, int row, int selX1, int selY1, int selX2, int selY2,
+                                       boolean joinBackLines, boolean joinFullLines) {
+        final int columns = mColumns;
+        int x1 = (row == selY1) ? selX1 : 0;
+        int x2;
+        if (row == selY2) {
+            x2 = selX2 + 1;
+            if (x2 > columns) x2 = columns;
+        } else {
+            x2 = columns;
         }
-        while (y2 < mScreenRows && !getSelectedText(0, y, mColumns, y2 + 1, true, true).contains("\n")) {
-            y2++;
+        TerminalRow lineObject = getRow(row);
+        int x1Index = lineObject.findStartOfColumn(x1);
+        int x2Index = (x2 < mColumns) ? lineObject.findStartOfColumn(x2) : lineObject.getSpaceUsed();
+        if (x2Index == x1Index) {
+            // Selected the start of a wide character.
+            x2Index = lineObject.findStartOfColumn(x2 + 1);
+        }
+        char[] line = lineObject.mText;
+        int lastPrintingCharIndex = -1;
+        int i;
+        boolean rowLineWrap = lineObject.mLineWrap;
+        if (rowLineWrap && x2 == columns) {
+            // If the line was wrapped, we shouldn't lose trailing space:
+            lastPrintingCharIndex = x2Index - 1;
+        } else {
+            for (i = x1Index; i < x2Index; ++i) {
+                char c = line[i];
+                if (c != ' ') lastPrintingCharIndex = i;
+            }
         }
 
-        // Get the text for the whole wrapped line
-        String text = getSelectedText(0, y1, mColumns, y2, true, true);
-        // The index of x in text
-        int textOffset = (y - y1) * mColumns + x;
+        int len = lastPrintingCharIndex - x1Index + 1;
+        if (lastPrintingCharIndex != -1 && len > 0)
+            builder.append(line, x1Index, len);
 
-        if (textOffset >= text.length()) {
-          // The click was to the right of the last word on the line, so
-          // there's no word to return
-          return "";
-        }
+        boolean lineFillsWidth = lastPrintingCharIndex == x2Index - 1;
+        if ((!joinBackLines || !rowLineWrap) && (!joinFullLines || !lineFillsWidth)
+            && row < selY2 && row < mScreenRows - 1) builder.append('\n');
+    }
+
+    /**
+     * Whether a row continues on the next row as part of the same line, which it does if wrapped or if its text fills
+     * the width of the row, like the rows joined by {@link #getSelectedText(int, int, int, int, boolean, boolean)}.
+     */
+    boolean isJoinedWithNextRow(int row) {
+        TerminalRow line = getRow(row);
+        if (line.mLineWrap) return true;
+        int spaceUsed = line.getSpaceUsed();
+        return spaceUsed > 0 && line.mText[spaceUsed - 1] != ' ';
+    }
 
-        // Set x1 and x2 to the indices of the last space before x and the
-        // first space after x in text respectively
-        int x1 = text.lastIndexOf(' ', textOffset);
-        int x2 = text.indexOf(' ', textOffset);
-        if (x2 == -1) {
-            x2 = text.length();
+    /** Get the first row of the line a row is part of, see {@link #isJoinedWithNextRow(int)}. */
+    public int getLineStartRow(int row) {
+        int transcriptStart = -getActiveTranscriptRows();
+        while (row > transcriptStart && isJoinedWithNextRow(row - 1)) row--;
+        return row;
+    }
+
+    /** Get the last row of the line a row is part of, see {@link #isJoinedWithNextRow(int)}. */
+    public int getLineEndRow(int row) {
+        while (row < mScreenRows - 1 && isJoinedWithNextRow(row)) row++;
+        return row;
+    }
+
+    /**
+     * Get the word at a cell, where a word is delimited by spaces and may continue over the rows of a line, or an
+     * empty string if the cell is a space.
+     */
+    public String getWordAtLocation(int x, int y) {
+        if (x < 0 || x >= mColumns) return "";
+        TerminalRow line = getRow(y);
+        int index = line.findStartOfColumn(x);
+        if (index >= line.getSpaceUsed() || line.mText[index] == ' ') return "";
+
+        // Walk back to the first char of the word, across the rows of the line:
+        final int startRow = getLineStartRow(y);
+        int wordStartRow = y, wordStartIndex = index;
+        while (true) {
+            char[] text = getRow(wordStartRow).mText;
+            while (wordStartIndex > 0 && text[wordStartIndex - 1] != ' ') wordStartIndex--;
+            if (wordStartIndex > 0 || wordStartRow == startRow) break;
+            TerminalRow previous = getRow(wordStartRow - 1);
+            int previousEnd = previous.getSpaceUsed();
+            if (previousEnd == 0 || previous.mText[previousEnd - 1] == ' ') break;
+            wordStartRow--;
+            wordStartIndex = previousEnd;
         }
 
-        if (x1 == x2) {
-          // The click was on a space, so there's no word to return
-          return "";
+        // Walk forward to the end of the word, across the rows of the line:
+        final int endRow = getLineEndRow(y);
+        final StringBuilder builder = new StringBuilder();
+        for (int row = wordStartRow; row <= endRow; row++) {
+            TerminalRow rowObject = getRow(row);
+            char[] text = rowObject.mText;
+            int spaceUsed = rowObject.getSpaceUsed();
+            int from = (row == wordStartRow) ? wordStartIndex : 0;
+            int to = from;
+            while (to < spaceUsed && text[to] != ' ') to++;
+            builder.append(text, from, to - from);
+            if (to < spaceUsed) break;
         }
-        return text.substring(x1 + 1, x2);
+        return builder.toString();
     }
 
     public int getActiveTranscriptRows() {
-        return mActiveTranscriptRows;
+        return mActiveTranscriptRows + getArchivedRows();
+    }
+
+    /**
+     * The number of rows that ever scrolled into the transcript, so that a row of the transcript, which does not change
+     * once scrolled into it, can be identified by {@code getScrolledRows() + row} as long as {@link #getLayoutChanges()}
+     * does not change.
+     */
+    public long getScrolledRows() {
+        return mScrolledRows;
+    }
+
+    /** The number of times the rows have been relaid out by a resize or the transcript cleared. */
+    public int getLayoutChanges() {
+        return mLayoutChanges;
     }
 
     public int getActiveRows() {
-        return mActiveTranscriptRows + mScreenRows;
+        return getActiveTranscriptRows() + mScreenRows;
+    }
+
+    private int getArchivedRows() {
+        return mArchive == null ? 0 : mArchive.size();
+    }
+
+    /**
+     * Get the row at an external row, see {@link #externalToInternalRow(int)}, including rows of the transcript that
+     * have been archived. Archived rows are inflated on demand and must not be modified.
+     */
+    public TerminalRow getRow(int externalRow) {
+        if (externalRow < -mActiveTranscriptRows && mArchive != null) {
+            int archivedRows = mArchive.size();
+            if (externalRow >= -mActiveTranscriptRows - archivedRows)
+                return mArchive.get(archivedRows + mActiveTranscriptRows + externalRow, mColumns);
+        }
+        return allocateFullLineIfNecessary(externalToInternalRow(externalRow));
     }
 
     /**
@@ -185,7 +389,7 @@ public final class TerminalBuffer {
     }
 
     public boolean getLineWrap(int row) {
-        return mLines[externalToInternalRow(row)].mLineWrap;
+        return getRow(row).mLineWrap;
     }
 
     public void clearLineWrap(int row) {
@@ -199,8 +403,12 @@ public final class TerminalBuffer {
      * @param newColumns The number of columns the screen should have.
      * @param newRows    The number of rows the screen should have.
      * @param cursor     An int[2] containing the (column, row) cursor location.
+     * <p>
+     * When the columns change, only the lines needed to fill the new screen are reflowed, and rows are not allocated
+     * for the transcript up front. The older lines of the transcript are left to {@link #reflowTranscript(int)}.
      */
     public void resize(int newColumns, int newRows, int newTotalRows, int[] cursor, long currentStyle, boolean altScreen) {
+        mLayoutChanges++;
         // newRows > mTotalRows should not normally happen since mTotalRows is TRANSCRIPT_ROWS (10000):
         if (newColumns == mColumns && newRows <= mTotalRows) {
             // Fast resize where just the rows changed.
@@ -215,6 +423,9 @@ public final class TerminalBuffer {
                     }
                 }
             } else if (shiftDownOfTopRow < 0) {
+                // Rows left to be reflowed by an earlier resize are needed if the screen moves up into them:
+                while (-shiftDownOfTopRow > mActiveTranscriptRows && hasRowsToReflow())
+                    reflowTranscript(-shiftDownOfTopRow - mActiveTranscriptRows);
                 // Negative shift down = expanding. Only move screen up if there is transcript to show:
                 int actualShift = Math.max(shiftDownOfTopRow, -mActiveTranscriptRows);
                 if (shiftDownOfTopRow != actualShift) {
@@ -232,125 +443,290 @@ public final class TerminalBuffer {
             mScreenRows = newRows;
         } else {
             // Copy away old state and update new:
-            TerminalRow[] oldLines = mLines;
-            mLines = new TerminalRow[newTotalRows];
-            for (int i = 0; i < newTotalRows; i++)
-                mLines[i] = new TerminalRow(newColumns, currentStyle);
-
+            final TerminalRow[] oldLines = mLines;
             final int oldActiveTranscriptRows = mActiveTranscriptRows;
             final int oldScreenFirstRow = mScreenFirstRow;
             final int oldScreenRows = mScreenRows;
             final int oldTotalRows = mTotalRows;
+
+            // The old rows in order, after the rows an earlier resize left to be reflowed:
+            final int pendingRows = mPendingRowCount;
+            final TerminalRow[] oldRows = new TerminalRow[pendingRows + oldActiveTranscriptRows + oldScreenRows];
+            if (pendingRows > 0) System.arraycopy(mPendingRows, 0, oldRows, 0, pendingRows);
+            for (int externalOldRow = -oldActiveTranscriptRows; externalOldRow < oldScreenRows; externalOldRow++) {
+                // Do what externalToInternalRow() does but for the old state:
+                int internalOldRow = oldScreenFirstRow + externalOldRow;
+                internalOldRow = (internalOldRow < 0) ? (oldTotalRows + internalOldRow) : (internalOldRow % oldTotalRows);
+                oldRows[pendingRows + oldActiveTranscriptRows + externalOldRow] = oldLines[internalOldRow];
+            }
+            final int oldCursorRow = pendingRows + oldActiveTranscriptRows + cursor[1];
+            final int firstRowToReflow = getFirstRowToReflow(oldRows, oldCursorRow, newColumns, newRows, newTotalRows);
+
+            // Rows of the transcript are allocated as the reflow scrolls into them:
+            mLines = new TerminalRow[newTotalRows];
+            for (int i = 0; i < newRows; i++)
+                mLines[i] = mRowPool.obtain(newColumns, currentStyle);
+
             mTotalRows = newTotalRows;
             mScreenRows = newRows;
             mActiveTranscriptRows = mScreenFirstRow = 0;
             mColumns = newColumns;
 
-            int newCursorRow = -1;
-            int newCursorColumn = -1;
-            int oldCursorRow = cursor[1];
-            int oldCursorColumn = cursor[0];
-            boolean newCursorPlaced = false;
+            reflowRows(oldRows, firstRowToReflow, oldRows.length, oldCursorRow, cursor, true, currentStyle);
 
-            int currentOutputExternalRow = 0;
-            int currentOutputExternalColumn = 0;
+            for (int i = firstRowToReflow; i < oldRows.length; i++) mRowPool.recycle(oldRows[i]);
+            Arrays.fill(oldRows, firstRowToReflow, oldRows.length, null);
+            mPendingRows = (firstRowToReflow > 0) ? oldRows : null;
+            mPendingRowCount = firstRowToReflow;
+            mPendingStyle = currentStyle;
+        }
 
-            // Loop over every character in the initial state.
-            // Blank lines should be skipped only if at end of transcript (just as is done in the "fast" resize), so we
-            // keep track how many blank lines we have skipped if we later on find a non-blank line.
-            int skippedBlankLines = 0;
-            for (int externalOldRow = -oldActiveTranscriptRows; externalOldRow < oldScreenRows; externalOldRow++) {
-                // Do what externalToInternalRow() does but for the old state:
-                int internalOldRow = oldScreenFirstRow + externalOldRow;
-                internalOldRow = (internalOldRow < 0) ? (oldTotalRows + internalOldRow) : (internalOldRow % oldTotalRows);
+        // Handle cursor scrolling off screen:
+        if (cursor[0] < 0 || cursor[1] < 0) cursor[0] = cursor[1] = 0;
 
-                TerminalRow oldLine = oldLines[internalOldRow];
-                boolean cursorAtThisRow = externalOldRow == oldCursorRow;
-                // The cursor may only be on a non-null line, which we should not skip:
-                if (oldLine == null || (!(!newCursorPlaced && cursorAtThisRow)) && oldLine.isBlank()) {
-                    skippedBlankLines++;
-                    continue;
-                } else if (skippedBlankLines > 0) {
-                    // After skipping some blank lines we encounter a non-blank line. Insert the skipped blank lines.
-                    for (int i = 0; i < skippedBlankLines; i++) {
-                        if (currentOutputExternalRow == mScreenRows - 1) {
-                            scrollDownOneLine(0, mScreenRows, currentStyle);
-                        } else {
-                            currentOutputExternalRow++;
-                        }
-                        currentOutputExternalColumn = 0;
-                    }
-                    skippedBlankLines = 0;
-                }
+        mDirtyRows.clear();
+        markAllRowsDirty();
+    }
 
-                int lastNonSpaceIndex = 0;
-                boolean justToCursor = false;
-                if (cursorAtThisRow || oldLine.mLineWrap) {
-                    // Take the whole line, either because of cursor on it, or if line wrapping.
-                    lastNonSpaceIndex = oldLine.getSpaceUsed();
-                    if (cursorAtThisRow) justToCursor = true;
-                } else {
-                    for (int i = 0; i < oldLine.getSpaceUsed(); i++)
-                        // NEWLY INTRODUCED BUG! Should not index oldLine.mStyle with char indices
-                        if (oldLine.mText[i] != ' '/* || oldLine.mStyle[i] != currentStyle */)
-                            lastNonSpaceIndex = i + 1;
+    /**
+     * Reflow rows into this screen from its top row, as a resize does with the old rows of the transcript and screen.
+     * Blank rows at the end are skipped unless the cursor is on them, as a screen is filled from the top.
+     *
+     * @param rows        The rows to reflow from.
+     * @param from        The first row to reflow, which must start a line.
+     * @param to          One after the last row to reflow.
+     * @param cursorRow   The row of the cursor in {@code rows}, or -1 if none.
+     * @param cursor      The (column, row) cursor location to update if {@code cursorRow} is set.
+     * @param toScreenEnd If the last row ends the screen instead of a line followed by other rows.
+     * @return The number of rows filled, including blank rows at the end if not {@code toScreenEnd}.
+     */
+    private int reflowRows(TerminalRow[] rows, int from, int to, int cursorRow, int[] cursor, boolean toScreenEnd, long style) {
+        int newCursorRow = -1;
+        int newCursorColumn = -1;
+        int oldCursorColumn = (cursor != null) ? cursor[0] : -1;
+        boolean newCursorPlaced = false;
+
+        int currentOutputExternalRow = 0;
+        int currentOutputExternalColumn = 0;
+
+        // Loop over every character in the initial state.
+        // Blank lines should be skipped only if at end of transcript (just as is done in the "fast" resize), so we
+        // keep track how many blank lines we have skipped if we later on find a non-blank line.
+        int skippedBlankLines = 0;
+        for (int oldRow = from; oldRow < to; oldRow++) {
+            TerminalRow oldLine = rows[oldRow];
+            boolean cursorAtThisRow = oldRow == cursorRow;
+            // The cursor may only be on a non-null line, which we should not skip:
+            if (oldLine == null || (!(!newCursorPlaced && cursorAtThisRow)) && oldLine.isBlank()) {
+                skippedBlankLines++;
+                continue;
+            } else if (skippedBlankLines > 0) {
+                // After skipping some blank lines we encounter a non-blank line. Insert the skipped blank lines.
+                for (int i = 0; i < skippedBlankLines; i++) {
+                    if (currentOutputExternalRow == mScreenRows - 1) {
+                        scrollDownOneLine(0, mScreenRows, style);
+                    } else {
+                        currentOutputExternalRow++;
+                    }
+                    currentOutputExternalColumn = 0;
                 }
+                skippedBlankLines = 0;
+            }
 
-                int currentOldCol = 0;
-                long styleAtCol = 0;
-                for (int i = 0; i < lastNonSpaceIndex; i++) {
-                    // Note that looping over java character, not cells.
-                    char c = oldLine.mText[i];
-                    int codePoint = (Character.isHighSurrogate(c)) ? Character.toCodePoint(c, oldLine.mText[++i]) : c;
-                    int displayWidth = WcWidth.width(codePoint);
-                    // Use the last style if this is a zero-width character:
-                    if (displayWidth > 0) styleAtCol = oldLine.getStyle(currentOldCol);
-
-                    // Line wrap as necessary:
-                    if (currentOutputExternalColumn + displayWidth > mColumns) {
-                        setLineWrap(currentOutputExternalRow);
-                        if (currentOutputExternalRow == mScreenRows - 1) {
-                            if (newCursorPlaced) newCursorRow--;
-                            scrollDownOneLine(0, mScreenRows, currentStyle);
-                        } else {
-                            currentOutputExternalRow++;
-                        }
-                        currentOutputExternalColumn = 0;
-                    }
+            int lastNonSpaceIndex = 0;
+            boolean justToCursor = false;
+            if (cursorAtThisRow || oldLine.mLineWrap) {
+                // Take the whole line, either because of cursor on it, or if line wrapping.
+                lastNonSpaceIndex = oldLine.getSpaceUsed();
+                if (cursorAtThisRow) justToCursor = true;
+            } else {
+                for (int i = 0; i < oldLine.getSpaceUsed(); i++)
+                    // NEWLY INTRODUCED BUG! Should not index oldLine.mStyle with char indices
+                    if (oldLine.mText[i] != ' '/* || oldLine.mStyle[i] != currentStyle */)
+                        lastNonSpaceIndex = i + 1;
+            }
 
-                    int offsetDueToCombiningChar = ((displayWidth <= 0 && currentOutputExternalColumn > 0) ? 1 : 0);
-                    int outputColumn = currentOutputExternalColumn - offsetDueToCombiningChar;
-                    setChar(outputColumn, currentOutputExternalRow, codePoint, styleAtCol);
-
-                    if (displayWidth > 0) {
-                        if (oldCursorRow == externalOldRow && oldCursorColumn == currentOldCol) {
-                            newCursorColumn = currentOutputExternalColumn;
-                            newCursorRow = currentOutputExternalRow;
-                            newCursorPlaced = true;
-                        }
-                        currentOldCol += displayWidth;
-                        currentOutputExternalColumn += displayWidth;
-                        if (justToCursor && newCursorPlaced) break;
-                    }
-                }
-                // Old row has been copied. Check if we need to insert newline if old line was not wrapping:
-                if (externalOldRow != (oldScreenRows - 1) && !oldLine.mLineWrap) {
+            int currentOldCol = 0;
+            long styleAtCol = 0;
+            for (int i = 0; i < lastNonSpaceIndex; i++) {
+                // Note that looping over java character, not cells.
+                char c = oldLine.mText[i];
+                int codePoint = (Character.isHighSurrogate(c)) ? Character.toCodePoint(c, oldLine.mText[++i]) : c;
+                int displayWidth = WcWidth.width(codePoint);
+                // Use the last style if this is a zero-width character:
+                if (displayWidth > 0) styleAtCol = oldLine.getStyle(currentOldCol);
+
+                // Line wrap as necessary:
+                if (currentOutputExternalColumn + displayWidth > mColumns) {
+                    setLineWrap(currentOutputExternalRow);
                     if (currentOutputExternalRow == mScreenRows - 1) {
                         if (newCursorPlaced) newCursorRow--;
-                        scrollDownOneLine(0, mScreenRows, currentStyle);
+                        scrollDownOneLine(0, mScreenRows, style);
                     } else {
                         currentOutputExternalRow++;
                     }
                     currentOutputExternalColumn = 0;
                 }
+
+                int offsetDueToCombiningChar = ((displayWidth <= 0 && currentOutputExternalColumn > 0) ? 1 : 0);
+                int outputColumn = currentOutputExternalColumn - offsetDueToCombiningChar;
+                int internalOutputRow = externalToInternalRow(currentOutputExternalRow);
+                if (mLines[internalOutputRow] == null) mLines[internalOutputRow] = mRowPool.obtain(mColumns, style);
+                setChar(outputColumn, currentOutputExternalRow, codePoint, styleAtCol);
+
+                if (displayWidth > 0) {
+                    if (cursorAtThisRow && oldCursorColumn == currentOldCol) {
+                        newCursorColumn = currentOutputExternalColumn;
+                        newCursorRow = currentOutputExternalRow;
+                        newCursorPlaced = true;
+                    }
+                    currentOldCol += displayWidth;
+                    currentOutputExternalColumn += displayWidth;
+                    if (justToCursor && newCursorPlaced) break;
+                }
+            }
+            // Old row has been copied. Check if we need to insert newline if old line was not wrapping:
+            if ((!toScreenEnd || oldRow != to - 1) && !oldLine.mLineWrap) {
+                if (currentOutputExternalRow == mScreenRows - 1) {
+                    if (newCursorPlaced) newCursorRow--;
+                    scrollDownOneLine(0, mScreenRows, style);
+                } else {
+                    currentOutputExternalRow++;
+                }
+                currentOutputExternalColumn = 0;
             }
+        }
 
+        if (cursorRow >= 0) {
             cursor[0] = newCursorColumn;
             cursor[1] = newCursorRow;
         }
+        // Skipped blank lines would each move the output one row down, the first one off a row of a wrapped line:
+        if (skippedBlankLines > 0) return currentOutputExternalRow + skippedBlankLines;
+        return currentOutputExternalRow + (currentOutputExternalColumn > 0 ? 1 : 0);
+    }
 
-        // Handle cursor scrolling off screen:
-        if (cursor[0] < 0 || cursor[1] < 0) cursor[0] = cursor[1] = 0;
+    /** Whether a row continues on the next row when reflowed, which a blank row does not as it is reflowed as empty. */
+    private static boolean isReflowedWithNextRow(TerminalRow row) {
+        return row != null && row.mLineWrap && !row.isBlank();
+    }
+
+    /**
+     * Get the first of the old rows to reflow on a resize, see {@link #reflowRows}, which starts a line such that the
+     * rows from it fill the new screen. Older rows can then be reflowed later without changing the screen. Returns 0 if
+     * all rows should be reflowed at once, if there are not enough rows or if reflowing them could overflow the
+     * transcript.
+     */
+    private static int getFirstRowToReflow(TerminalRow[] rows, int cursorRow, int newColumns, int newRows, int newTotalRows) {
+        // Blank rows after the cursor at the end are skipped by the reflow. The cursor row is always reflowed now.
+        int lastRow = rows.length - 1;
+        while (lastRow > cursorRow && (rows[lastRow] == null || rows[lastRow].isBlank())) lastRow--;
+
+        // A lower bound for the new rows of the lines from the end, where a line is at least one row, or if above the
+        // cursor at least as many rows as its wrapped rows fill, as they each fill all their columns but one at least:
+        int minNewRows = 0;
+        // An upper bound for the new rows, if each row needs to be split across rows of all new columns but one:
+        int maxNewRows = 0;
+        int row = lastRow;
+        while (row >= 0 && (minNewRows < newRows || row >= cursorRow)) {
+            TerminalRow lastLineRow = rows[row];
+            if (lastLineRow == null || lastLineRow.isBlank()) {
+                maxNewRows++;
+                row--;
+                continue;
+            }
+            int firstLineRow = row;
+            while (firstLineRow > 0 && isReflowedWithNextRow(rows[firstLineRow - 1])) firstLineRow--;
+            int wrappedCells = 0;
+            for (int i = firstLineRow; i <= row; i++) {
+                if (i < row) wrappedCells += rows[i].mColumns - 1;
+                maxNewRows += rows[i].mColumns / Math.max(1, newColumns - 1) + 2;
+            }
+            minNewRows += (row >= cursorRow) ? 1 : Math.max(1, wrappedCells / newColumns);
+            row = firstLineRow - 1;
+        }
+        return (minNewRows >= newRows && maxNewRows <= newTotalRows) ? row + 1 : 0;
+    }
+
+    /** Whether a resize left rows of the transcript to be reflowed by {@link #reflowTranscript(int)}. */
+    public boolean hasRowsToReflow() {
+        return mPendingRowCount > 0;
+    }
+
+    /**
+     * Reflow the newest of the rows of the transcript that a resize left to be reflowed, adding them at the top of
+     * the transcript, until at least the specified number of old rows or all rows have been reflowed. This should be
+     * called over time or as the transcript is scrolled to the top, and is called by the methods getting the whole
+     * transcript.
+     *
+     * @return If rows are still left to be reflowed.
+     */
+    public boolean reflowTranscript(int rows) {
+        if (mPendingRowCount == 0) return false;
+
+        final int freeRows = mTotalRows - mScreenRows - mActiveTranscriptRows;
+        if (freeRows == 0 && mArchive == null) {
+            // The rows would be dropped from the transcript right away.
+            clearRowsToReflow();
+            return false;
+        }
+
+        int from = Math.max(0, mPendingRowCount - Math.max(1, rows));
+        while (from > 0 && isReflowedWithNextRow(mPendingRows[from - 1])) from--;
+        final TerminalRow[] reflowed = reflowPendingRows(from, mPendingRowCount);
+        for (int i = from; i < mPendingRowCount; i++) mRowPool.recycle(mPendingRows[i]);
+        Arrays.fill(mPendingRows, from, mPendingRowCount, null);
+        mPendingRowCount = from;
+
+        final int addedRows = Math.min(reflowed.length, freeRows);
+        for (int i = 1; i <= addedRows; i++) {
+            mActiveTranscriptRows++;
+            mLines[externalToInternalRow(-mActiveTranscriptRows)] = reflowed[reflowed.length - i];
+        }
+        if (addedRows < reflowed.length) {
+            // The transcript is full, so the older rows are archived in order or dropped:
+            if (mArchive != null) {
+                archiveRowsToReflow();
+                for (int i = 0; i < reflowed.length - addedRows; i++) mArchive.add(reflowed[i], mColumns);
+            }
+            for (int i = 0; i < reflowed.length - addedRows; i++) mRowPool.recycle(reflowed[i]);
+            clearRowsToReflow();
+        }
+        return mPendingRowCount > 0;
+    }
+
+    /** Reflow the pending rows from {@code from}, which must start a line, to {@code to} to the current columns. */
+    private TerminalRow[] reflowPendingRows(int from, int to) {
+        int maxRows = 0;
+        for (int i = from; i < to; i++)
+            maxRows += (mPendingRows[i] == null) ? 1 : mPendingRows[i].mColumns / Math.max(1, mColumns - 1) + 2;
+
+        final TerminalBuffer buffer = new TerminalBuffer(mColumns, maxRows, mRowPool);
+        final int rows = buffer.reflowRows(mPendingRows, from, to, -1, null, false, mPendingStyle);
+        final TerminalRow[] result = Arrays.copyOf(buffer.mLines, rows);
+        for (int i = 0; i < rows; i++)
+            if (result[i] == null) result[i] = mRowPool.obtain(mColumns, mPendingStyle);
+        return result;
+    }
+
+    /** Reflow all pending rows into the archive, which has to happen before newer rows are archived. */
+    private void archiveRowsToReflow() {
+        int from = 0;
+        while (from < mPendingRowCount) {
+            int to = Math.min(mPendingRowCount, from + TranscriptArchive.ROWS_PER_BLOCK);
+            while (to < mPendingRowCount && isReflowedWithNextRow(mPendingRows[to - 1])) to++;
+            for (TerminalRow row : reflowPendingRows(from, to)) {
+                mArchive.add(row, mColumns);
+                mRowPool.recycle(row);
+            }
+            from = to;
+        }
+    }
+
+    private void clearRowsToReflow() {
+        for (int i = 0; i < mPendingRowCount; i++) mRowPool.recycle(mPendingRows[i]);
+        mPendingRows = null;
+        mPendingRowCount = 0;
     }
 
     /**
@@ -385,6 +761,19 @@ public final class TerminalBuffer {
         if (topMargin > bottomMargin - 1 || topMargin < 0 || bottomMargin > mScreenRows)
             throw new IllegalArgumentException("topMargin=" + topMargin + ", bottomMargin=" + bottomMargin + ", mScreenRows=" + mScreenRows);
 
+        // The oldest transcript row is about to be reused for the newly revealed line if the transcript is full, and
+        // rows left to be reflowed by a resize are older still:
+        if (mPendingRowCount > 0 && mActiveTranscriptRows == mTotalRows - mScreenRows) {
+            if (mArchive != null) archiveRowsToReflow();
+            clearRowsToReflow();
+        }
+        if (mArchive != null && mActiveTranscriptRows > 0 && mActiveTranscriptRows == mTotalRows - mScreenRows)
+            mArchive.add(mLines[(mScreenFirstRow + mScreenRows) % mTotalRows], mColumns);
+
+        // The rows outside the margins keep their content, but are identified by mScrolledRows plus their row like the
+        // rows that scrolled, so a view caching rows by that must draw them again too:
+        markAllRowsDirty();
+
         // Copy the fixed topMargin lines one line down so that they remain on screen in same position:
         blockCopyLinesDown(mScreenFirstRow, topMargin);
         // Copy the fixed mScreenRows-bottomMargin lines one line down so that they remain on screen in same
@@ -393,15 +782,18 @@ public final class TerminalBuffer {
 
         // Update the screen location in the ring buffer:
         mScreenFirstRow = (mScreenFirstRow + 1) % mTotalRows;
+        mScrolledRows++;
         // Note that the history has grown if not already full:
         if (mActiveTranscriptRows < mTotalRows - mScreenRows) mActiveTranscriptRows++;
 
         // Blank the newly revealed line above the bottom margin:
         int blankRow = externalToInternalRow(bottomMargin - 1);
         if (mLines[blankRow] == null) {
-            mLines[blankRow] = new TerminalRow(mColumns, style);
+            mLines[blankRow] = mRowPool.obtain(mColumns, style);
         } else {
+            // A reused row must not keep the line wrap of its previous content:
             mLines[blankRow].clear(style);
+            mLines[blankRow].mLineWrap = false;
         }
     }
 
@@ -421,6 +813,7 @@ public final class TerminalBuffer {
         if (w == 0) return;
         if (sx < 0 || sx + w > mColumns || sy < 0 || sy + h > mScreenRows || dx < 0 || dx + w > mColumns || dy < 0 || dy + h > mScreenRows)
             throw new IllegalArgumentException();
+        mDirtyRows.set(dy, dy + h);
         boolean copyingUp = sy > dy;
         for (int y = 0; y < h; y++) {
             int y2 = copyingUp ? y : (h - (y + 1));
@@ -445,23 +838,34 @@ public final class TerminalBuffer {
     }
 
     public TerminalRow allocateFullLineIfNecessary(int row) {
-        return (mLines[row] == null) ? (mLines[row] = new TerminalRow(mColumns, 0)) : mLines[row];
+        return (mLines[row] == null) ? (mLines[row] = mRowPool.obtain(mColumns, 0)) : mLines[row];
     }
 
     public void setChar(int column, int row, int codePoint, long style) {
         if (row  < 0 || row >= mScreenRows || column < 0 || column >= mColumns)
             throw new IllegalArgumentException("TerminalBuffer.setChar(): row=" + row + ", column=" + column + ", mScreenRows=" + mScreenRows + ", mColumns=" + mColumns);
+        mDirtyRows.set(row);
         row = externalToInternalRow(row);
         allocateFullLineIfNecessary(row).setChar(column, codePoint, style);
     }
 
+    /** Set a run of 7-bit printable ASCII characters, which must all fit on the row, see {@link TerminalRow#setPrintableAsciiChars}. */
+    public void setPrintableAsciiChars(int column, int row, byte[] bytes, int offset, int length, long style) {
+        if (row < 0 || row >= mScreenRows || column < 0 || column + length > mColumns)
+            throw new IllegalArgumentException("TerminalBuffer.setPrintableAsciiChars(): row=" + row + ", column=" + column + ", length=" + length + ", mScreenRows=" + mScreenRows + ", mColumns=" + mColumns);
+        mDirtyRows.set(row);
+        row = externalToInternalRow(row);
+        allocateFullLineIfNecessary(row).setPrintableAsciiChars(column, bytes, offset, length, style);
+    }
+
     public long getStyleAt(int externalRow, int column) {
-        return allocateFullLineIfNecessary(externalToInternalRow(externalRow)).getStyle(column);
+        return getRow(externalRow).getStyle(column);
     }
 
     /** Support for http://vt100.net/docs/vt510-rm/DECCARA and http://vt100.net/docs/vt510-rm/DECCARA */
     public void setOrClearEffect(int bits, boolean setOrClear, boolean reverse, boolean rectangular, int leftMargin, int rightMargin, int top, int left,
                                  int bottom, int right) {
+        if (top < bottom) mDirtyRows.set(top, bottom);
         for (int y = top; y < bottom; y++) {
             TerminalRow line = mLines[externalToInternalRow(y)];
             int startOfLine = (rectangular || y == top) ? left : leftMargin;
@@ -479,12 +883,32 @@ public final class TerminalBuffer {
                 } else {
                     effect &= ~bits;
                 }
-                line.mStyle[x] = TextStyle.encode(foreColor, backColor, effect);
+                line.setStyle(x, x + 1, TextStyle.encode(foreColor, backColor, effect));
             }
         }
     }
 
+    /** Mark all screen rows as changed, for changes to how every row is drawn such as the colors. */
+    public void markAllRowsDirty() {
+        mDirtyRows.set(0, mScreenRows);
+    }
+
+    /** Return the first screen row from {@code fromRow} that changed since {@link #clearDirtyRows()}, or -1 if none. */
+    public int nextDirtyRow(int fromRow) {
+        return mDirtyRows.nextSetBit(fromRow);
+    }
+
+    public boolean isRowDirty(int row) {
+        return mDirtyRows.get(row);
+    }
+
+    /** Called by the view once it has drawn the changed rows. */
+    public void clearDirtyRows() {
+        mDirtyRows.clear();
+    }
+
     public void clearTranscript() {
+        for (int row = -mActiveTranscriptRows; row < 0; row++) mRowPool.recycle(mLines[externalToInternalRow(row)]);
         if (mScreenFirstRow < mActiveTranscriptRows) {
             Arrays.fill(mLines, mTotalRows + mScreenFirstRow - mActiveTranscriptRows, mTotalRows, null);
             Arrays.fill(mLines, 0, mScreenFirstRow, null);
@@ -492,6 +916,9 @@ public final class TerminalBuffer {
             Arrays.fill(mLines, mScreenFirstRow - mActiveTranscriptRows, mScreenFirstRow, null);
         }
         mActiveTranscriptRows = 0;
+        if (mArchive != null) mArchive.clear();
+        clearRowsToReflow();
+        mLayoutChanges++;
     }
 
 }
@@ -148,6 +148,9 @@ public final class TerminalEmulator {
     public static final int TERMINAL_TRANSCRIPT_ROWS_MAX = 50000;
     public static final int DEFAULT_TERMINAL_TRANSCRIPT_ROWS = 2000;
 
+    /** The max rows kept in a compressed {@link TranscriptArchive} after they scroll out of the transcript. */
+    public static final int TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX = 1000000;
+
 
     /* The supported terminal cursor styles. */
 
@@ -326,8 +329,18 @@ public final class TerminalEmulator {
     }
 
     public TerminalEmulator(TerminalOutput session, int columns, int rows, int cellWidthPixels, int cellHeightPixels, Integer transcriptRows, TerminalSessionClient client) {
+        this(session, columns, rows, cellWidthPixels, cellHeightPixels, transcriptRows, 0, client);
+    }
+
+    /**
+     * @param transcriptArchiveRows The max rows to keep compressed after they scroll out of the transcript, up to
+     *                              {@link #TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX}, or 0 to drop them.
+     */
+    public TerminalEmulator(TerminalOutput session, int columns, int rows, int cellWidthPixels, int cellHeightPixels, Integer transcriptRows,
+                            int transcriptArchiveRows, TerminalSessionClient client) {
         mSession = session;
         mScreen = mMainBuffer = new TerminalBuffer(columns, getTerminalTranscriptRows(transcriptRows), rows);
+        mMainBuffer.setTranscriptArchiveRows(Math.min(transcriptArchiveRows, TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX));
         mAltBuffer = new TerminalBuffer(columns, rows, rows);
         mClient = client;
         mRows = rows;
@@ -421,6 +434,20 @@ public final class TerminalEmulator {
         mCursorRow = cursor[1];
     }
 
+    /**
+     * Reflow some of the transcript rows that a resize left to be reflowed, see {@link TerminalBuffer#reflowTranscript(int)}.
+     *
+     * @return If rows are still left to be reflowed.
+     */
+    public boolean reflowTranscript(int rows) {
+        return mMainBuffer.reflowTranscript(rows);
+    }
+
+    /** Whether a resize left rows of the transcript to be reflowed, see {@link TerminalBuffer#hasRowsToReflow()}. */
+    public boolean hasRowsToReflow() {
+        return mMainBuffer.hasRowsToReflow();
+    }
+
     public int getCursorRow() {
         return mCursorRow;
     }
@@ -457,7 +484,12 @@ public final class TerminalEmulator {
         return isDecsetInternalBitSet(DECSET_BIT_CURSOR_ENABLED);
     }
     public boolean shouldCursorBeVisible() {
-        if (!isCursorEnabled())
+        return shouldCursorBeVisible(isCursorEnabled());
+    }
+
+    /** If the cursor should be visible in the current blink state, where it is enabled as specified. */
+    boolean shouldCursorBeVisible(boolean cursorEnabled) {
+        if (!cursorEnabled)
             return false;
         else
             return mCursorBlinkingEnabled ? mCursorBlinkState : true;
@@ -498,8 +530,70 @@ public final class TerminalEmulator {
      * @param length the number of bytes in the array to process
      */
     public void append(byte[] buffer, int length) {
-        for (int i = 0; i < length; i++)
-            processByte(buffer[i]);
+        for (int i = 0; i < length; ) {
+            if (mUtf8ToFollow == 0 && mEscapeState == ESC_NONE && isPrintableAscii(buffer[i])) {
+                int appended = appendPrintableAscii(buffer, i, length);
+                if (appended > 0) {
+                    i += appended;
+                    continue;
+                }
+            }
+            processByte(buffer[i++]);
+        }
+    }
+
+    private static boolean isPrintableAscii(byte b) {
+        return b >= 32 && b < 127;
+    }
+
+    /**
+     * Fast path for the common case of plain 7-bit printable text output in the ground state. Writes each run of
+     * printable ASCII bytes up to the right margin into the current row in one go, instead of going through
+     * {@link #processCodePoint(int)} and {@link #emitCodePoint(int)} for every byte, with the same wrapping and cursor
+     * behaviour as them.
+     *
+     * @return The number of bytes appended, which is 0 if the fast path does not apply in the current state.
+     */
+    private int appendPrintableAscii(byte[] buffer, int start, int end) {
+        if (mInsertMode || (mUseLineDrawingUsesG0 ? mUseLineDrawingG0 : mUseLineDrawingG1)) return 0;
+        // Margins that do not fit on a very narrow screen are clamped by emitCodePoint(), leave them to it.
+        if (mLeftMargin < 0 || mLeftMargin >= mRightMargin || mRightMargin > mColumns) return 0;
+
+        final boolean autoWrap = isDecsetInternalBitSet(DECSET_BIT_AUTOWRAP);
+        final long style = getStyle();
+        int i = start;
+        while (i < end && isPrintableAscii(buffer[i])) {
+            // Leave a cursor outside of the screen or right margin, which emitCodePoint() clamps, to it.
+            if (mCursorCol < 0 || mCursorCol >= mRightMargin) break;
+
+            if (autoWrap && mAboutToAutoWrap && mCursorCol == mRightMargin - 1) {
+                mScreen.setLineWrap(mCursorRow);
+                mCursorCol = mLeftMargin;
+                if (mCursorRow + 1 < mBottomMargin) {
+                    mCursorRow++;
+                } else {
+                    scrollDownOneLine();
+                }
+            }
+
+            final int column = mCursorCol;
+            final int runEnd = Math.min(end, i + (mRightMargin - column));
+            int runLength = 1;
+            while (i + runLength < runEnd && isPrintableAscii(buffer[i + runLength])) runLength++;
+
+            mScreen.setPrintableAsciiChars(column, mCursorRow, buffer, i, runLength, style);
+            i += runLength;
+
+            final int lastColumn = column + runLength - 1;
+            if (autoWrap) mAboutToAutoWrap = (lastColumn == mRightMargin - 1);
+            mCursorCol = Math.min(lastColumn + 1, mRightMargin - 1);
+        }
+
+        if (i > start) {
+            mContinueSequence = false;
+            mLastEmittedCodePoint = buffer[i - 1];
+        }
+        return i - start;
     }
 
     private void processByte(byte byteToProcess) {
@@ -1207,7 +1301,8 @@ public final class TerminalEmulator {
                 break;
             case 4: // DECSCLM-Scrolling Mode. Ignore.
                 break;
-            case 5: // Reverse video. No action.
+            case 5: // Reverse video, which changes the colors of every row.
+                mScreen.markAllRowsDirty();
                 break;
             case 6: // Set: Origin Mode. Reset: Normal Cursor Mode. Ansi name: DECOM.
                 if (setting) setCursorPosition(0, 0);
@@ -1217,8 +1312,7 @@ public final class TerminalEmulator {
             case 9: // X10 mouse reporting - outdated. Do not implement.
             case 12: // Control cursor blinking - ignore.
             case 25: // Hide/show cursor - no action needed, renderer will check with shouldCursorBeVisible().
-                if (mClient != null)
-                    mClient.onTerminalCursorStateChange(setting);
+                mSession.onTerminalCursorStateChange(setting);
                 break;
             case 40: // Allow 80 => 132 Mode, ignore.
             case 45: // TODO: Reverse wrap-around. Implement???
@@ -1256,6 +1350,7 @@ public final class TerminalEmulator {
                     boolean resized = !(newScreen.mColumns == mColumns && newScreen.mScreenRows == mRows);
                     if (setting) saveCursor();
                     mScreen = newScreen;
+                    mScreen.markAllRowsDirty();
                     if (!setting) {
                         int col = mSavedStateMain.mSavedCursorCol;
                         int row = mSavedStateMain.mSavedCursorRow;
@@ -2056,7 +2151,7 @@ public final class TerminalEmulator {
                                 return;
                             } else {
                                 mColors.tryParseColor(colorIndex, textParameter.substring(parsingPairStart, i));
-                                mSession.onColorsChanged();
+                                onColorsChanged();
                                 colorIndex = -1;
                                 parsingPairStart = -1;
                             }
@@ -2092,7 +2187,7 @@ public final class TerminalEmulator {
                                     + String.format(Locale.US, "%04x", b) + bellOrStringTerminator);
                             } else {
                                 mColors.tryParseColor(specialIndex, colorSpec);
-                                mSession.onColorsChanged();
+                                onColorsChanged();
                             }
                             specialIndex++;
                             if (endOfInput || (specialIndex > TextStyle.COLOR_INDEX_CURSOR) || ++charIndex >= textParameter.length())
@@ -2120,7 +2215,7 @@ public final class TerminalEmulator {
                 // parameters are given, the entire table will be reset.
                 if (textParameter.isEmpty()) {
                     mColors.reset();
-                    mSession.onColorsChanged();
+                    onColorsChanged();
                 } else {
                     int lastIndex = 0;
                     for (int charIndex = 0; ; charIndex++) {
@@ -2129,7 +2224,7 @@ public final class TerminalEmulator {
                             try {
                                 int colorToReset = Integer.parseInt(textParameter.substring(lastIndex, charIndex));
                                 mColors.reset(colorToReset);
-                                mSession.onColorsChanged();
+                                onColorsChanged();
                                 if (endOfInput) break;
                                 charIndex++;
                                 lastIndex = charIndex;
@@ -2144,7 +2239,7 @@ public final class TerminalEmulator {
             case 111: // Reset background color.
             case 112: // Reset cursor color.
                 mColors.reset(TextStyle.COLOR_INDEX_FOREGROUND + (value - 110));
-                mSession.onColorsChanged();
+                onColorsChanged();
                 break;
             case 119: // Reset highlight color.
                 break;
@@ -2564,10 +2659,17 @@ public final class TerminalEmulator {
         mUtf8Index = mUtf8ToFollow = 0;
 
         mColors.reset();
+        onColorsChanged();
+    }
+
+    private void onColorsChanged() {
+        // Every row may be drawn with a changed color:
+        mScreen.markAllRowsDirty();
         mSession.onColorsChanged();
     }
 
-    public String getSelectedText(int x1, int y1, int x2, int y2) {
+    /** Synchronized as a session running emulation on a separate thread appends output while holding this lock. */
+    public synchronized String getSelectedText(int x1, int y1, int x2, int y2) {
         return mScreen.getSelectedText(x1, y1, x2, y2);
     }
 
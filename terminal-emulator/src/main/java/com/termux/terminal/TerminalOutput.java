@@ -29,4 +29,8 @@ public abstract class TerminalOutput {
 
     public abstract void onColorsChanged();
 
+    /** Notify the terminal client that the cursor has been shown or hidden. */
+    public void onTerminalCursorStateChange(boolean state) {
+    }
+
 }
@@ -37,27 +37,72 @@ public final class TerminalRow {
      */
     private static final int MAX_COMBINING_CHARACTERS_PER_COLUMN = 15;
 
+    /**
+     * Max style spans a row stores before switching to one style per column in {@link #mStyle}. A span costs 10 bytes,
+     * against 8 bytes per column for the dense array, so this keeps spans smaller than the dense array for rows of 20
+     * or more columns while keeping span edits cheap.
+     */
+    static final int MAX_STYLE_SPANS = 16;
+
     /** The number of columns in this terminal row. */
-    private final int mColumns;
+    final int mColumns;
     /** The text filling this terminal row. */
     public char[] mText;
     /** The number of java chars used in {@link #mText}. */
     private short mSpaceUsed;
     /** If this row has been line wrapped due to text output at the end of line. */
     boolean mLineWrap;
-    /** The style bits of each cell in the row. See {@link TextStyle}. */
-    final long[] mStyle;
+    /**
+     * The style bits of each cell in the row, see {@link TextStyle}, or null while the styles are stored as spans in
+     * {@link #mSpanStarts} and {@link #mSpanStyles}. Most rows only use a few styles, so this is only allocated once a
+     * row needs more than {@link #MAX_STYLE_SPANS} spans, and dropped again when the row is cleared.
+     */
+    long[] mStyle;
+    /** The column each style span starts at, in increasing order and starting with 0. Unused if {@link #mStyle} is set. */
+    short[] mSpanStarts;
+    /** The style of each span, which differs from the style of the span before it. */
+    long[] mSpanStyles;
+    /** The number of style spans. */
+    int mSpanCount;
+    /** The span the last style lookup found, to make sequential column access constant time. */
+    private int mLastSpan;
     /** If this row might contain chars with width != 1, used for deactivating fast path */
     boolean mHasNonOneWidthOrSurrogateChars;
 
+    /**
+     * The index in {@link #mText} where each column starts, as returned by {@link #findStartOfColumn(int)}, so that
+     * rows with chars of width != 1 do not have to be walked from the start on every access. Only allocated for such
+     * rows, and only valid for the first {@link #mIndexedColumns} columns, which are indexed lazily on access and
+     * invalidated from the first column changed on write.
+     */
+    private short[] mColumnIndex;
+    /** The number of columns at the start of the row whose {@link #mColumnIndex} entry is valid. */
+    private int mIndexedColumns;
+    /** The index in {@link #mText} where indexing continues from column {@link #mIndexedColumns}. */
+    private int mIndexedCharIndex;
+
     /** Construct a blank row (containing only whitespace, ' ') with a specified style. */
     public TerminalRow(int columns, long style) {
         mColumns = columns;
         mText = new char[(int) (SPARE_CAPACITY_FACTOR * columns)];
-        mStyle = new long[columns];
+        mSpanStarts = new short[2];
+        mSpanStyles = new long[2];
         clear(style);
     }
 
+    /** Construct a copy of a row, which shares no state with the source row. */
+    TerminalRow(TerminalRow source) {
+        mColumns = source.mColumns;
+        mText = source.mText.clone();
+        mSpaceUsed = source.mSpaceUsed;
+        mLineWrap = source.mLineWrap;
+        mStyle = source.mStyle == null ? null : source.mStyle.clone();
+        mSpanStarts = source.mSpanStarts.clone();
+        mSpanStyles = source.mSpanStyles.clone();
+        mSpanCount = source.mSpanCount;
+        mHasNonOneWidthOrSurrogateChars = source.mHasNonOneWidthOrSurrogateChars;
+    }
+
     /** NOTE: The sourceX2 is exclusive. */
     public void copyInterval(TerminalRow line, int sourceX1, int sourceX2, int destinationX) {
         mHasNonOneWidthOrSurrogateChars |= line.mHasNonOneWidthOrSurrogateChars;
@@ -91,69 +136,73 @@ public final class TerminalRow {
     /** Note that the column may end of second half of wide character. */
     public int findStartOfColumn(int column) {
         if (column == mColumns) return getSpaceUsed();
+        if (!mHasNonOneWidthOrSurrogateChars) return column;
+
+        if (column >= mIndexedColumns) {
+            indexColumns(column);
+            // Only a row whose text does not fill all columns ends before, which should not happen.
+            if (column >= mIndexedColumns) return getSpaceUsed();
+        }
+        return mColumnIndex[column];
+    }
 
-        int currentColumn = 0;
-        int currentCharIndex = 0;
-        while (true) { // 0<2 1 < 2
-            int newCharIndex = currentCharIndex;
-            char c = mText[newCharIndex++]; // cci=1, cci=2
+    /** Extend {@link #mColumnIndex} up to and including the specified column. */
+    private void indexColumns(int column) {
+        if (mColumnIndex == null) mColumnIndex = new short[mColumns];
+        final short[] columnIndex = mColumnIndex;
+        final char[] text = mText;
+        int currentColumn = mIndexedColumns;
+        int currentCharIndex = mIndexedCharIndex;
+        while (currentColumn <= column && currentCharIndex < mSpaceUsed) {
+            char c = text[currentCharIndex];
             boolean isHigh = Character.isHighSurrogate(c);
-            int codePoint = isHigh ? Character.toCodePoint(c, mText[newCharIndex++]) : c;
-            int wcwidth = WcWidth.width(codePoint); // 1, 2
+            int wcwidth = WcWidth.width(isHigh ? Character.toCodePoint(c, text[currentCharIndex + 1]) : c);
+            // Combining chars belong to the column before them, so they are skipped.
             if (wcwidth > 0) {
-                currentColumn += wcwidth;
-                if (currentColumn == column) {
-                    while (newCharIndex < mSpaceUsed) {
-                        // Skip combining chars.
-                        if (Character.isHighSurrogate(mText[newCharIndex])) {
-                            if (WcWidth.width(Character.toCodePoint(mText[newCharIndex], mText[newCharIndex + 1])) <= 0) {
-                                newCharIndex += 2;
-                            } else {
-                                break;
-                            }
-                        } else if (WcWidth.width(mText[newCharIndex]) <= 0) {
-                            newCharIndex++;
-                        } else {
-                            break;
-                        }
-                    }
-                    return newCharIndex;
-                } else if (currentColumn > column) {
-                    // Wide column going past end.
-                    return currentCharIndex;
-                }
+                columnIndex[currentColumn++] = (short) currentCharIndex;
+                // The second half of a wide char starts at the same index as the first half.
+                if (wcwidth == 2 && currentColumn < mColumns) columnIndex[currentColumn++] = (short) currentCharIndex;
             }
-            currentCharIndex = newCharIndex;
+            currentCharIndex += isHigh ? 2 : 1;
         }
+        mIndexedColumns = currentColumn;
+        mIndexedCharIndex = currentCharIndex;
+    }
+
+    /** Invalidate {@link #mColumnIndex} from the specified column, before the text from its start is changed. */
+    private void invalidateColumnIndex(int column) {
+        if (column >= mIndexedColumns) return;
+        // Continue from the first half of a wide char if the column is its second half.
+        if (column > 0 && mColumnIndex[column] == mColumnIndex[column - 1]) column--;
+        mIndexedColumns = column;
+        mIndexedCharIndex = column == 0 ? 0 : mColumnIndex[column];
     }
 
     private boolean wideDisplayCharacterStartingAt(int column) {
-        for (int currentCharIndex = 0, currentColumn = 0; currentCharIndex < mSpaceUsed; ) {
-            char c = mText[currentCharIndex++];
-            int codePoint = Character.isHighSurrogate(c) ? Character.toCodePoint(c, mText[currentCharIndex++]) : c;
-            int wcwidth = WcWidth.width(codePoint);
-            if (wcwidth > 0) {
-                if (currentColumn == column && wcwidth == 2) return true;
-                currentColumn += wcwidth;
-                if (currentColumn > column) return false;
-            }
-        }
-        return false;
+        if (!mHasNonOneWidthOrSurrogateChars || column < 0 || column + 1 >= mColumns) return false;
+        // Both halves of a wide char start at the same index, while other columns start after the previous one.
+        return findStartOfColumn(column) == findStartOfColumn(column + 1);
     }
 
     public void clear(long style) {
         Arrays.fill(mText, ' ');
-        Arrays.fill(mStyle, style);
+        mStyle = null;
+        mSpanStarts[0] = 0;
+        mSpanStyles[0] = style;
+        mSpanCount = 1;
+        mLastSpan = 0;
         mSpaceUsed = (short) mColumns;
         mHasNonOneWidthOrSurrogateChars = false;
+        mIndexedColumns = 0;
+        mIndexedCharIndex = 0;
     }
 
     // https://github.com/steven676/Android-Terminal-Emulator/commit/9a47042620bec87617f0b4f5d50568535668fe26
     public void setChar(int columnToSet, int codePoint, long style) {
-        if (columnToSet  < 0 || columnToSet >= mStyle.length)
+        if (columnToSet  < 0 || columnToSet >= mColumns)
             throw new IllegalArgumentException("TerminalRow.setChar(): columnToSet=" + columnToSet + ", codePoint=" + codePoint + ", style=" + style);
 
-        mStyle[columnToSet] = style;
+        setStyle(columnToSet, columnToSet + 1, style);
 
         final int newCodePointDisplayWidth = WcWidth.width(codePoint);
 
@@ -212,6 +261,9 @@ public final class TerminalRow {
             newCharactersUsedForColumn += oldCharactersUsedForColumn;
         }
 
+        // The text changes from the start of this column on.
+        invalidateColumnIndex(columnToSet);
+
         int oldNextColumnIndex = oldStartOfColumnIndex + oldCharactersUsedForColumn;
         int newNextColumnIndex = oldStartOfColumnIndex + newCharactersUsedForColumn;
 
@@ -270,6 +322,27 @@ public final class TerminalRow {
         }
     }
 
+    /**
+     * Set {@code length} 7-bit printable ASCII characters from {@code bytes} starting at {@code columnToSet}, which is
+     * the same as calling {@link #setChar(int, int, long)} for each of them but copies straight into {@link #mText} and
+     * the row styles when the row only has single width chars.
+     */
+    public void setPrintableAsciiChars(int columnToSet, byte[] bytes, int offset, int length, long style) {
+        if (columnToSet < 0 || columnToSet + length > mColumns)
+            throw new IllegalArgumentException("TerminalRow.setPrintableAsciiChars(): columnToSet=" + columnToSet + ", length=" + length);
+
+        if (mHasNonOneWidthOrSurrogateChars) {
+            for (int i = 0; i < length; i++)
+                setChar(columnToSet + i, bytes[offset + i], style);
+            return;
+        }
+
+        final char[] text = mText;
+        for (int i = 0; i < length; i++)
+            text[columnToSet + i] = (char) bytes[offset + i];
+        setStyle(columnToSet, columnToSet + length, style);
+    }
+
     boolean isBlank() {
         for (int charIndex = 0, charLen = getSpaceUsed(); charIndex < charLen; charIndex++)
             if (mText[charIndex] != ' ') return false;
@@ -277,7 +350,126 @@ public final class TerminalRow {
     }
 
     public final long getStyle(int column) {
-        return mStyle[column];
+        if (mStyle != null) return mStyle[column];
+        return mSpanStyles[findSpan(column)];
+    }
+
+    /** Set the style of the columns from {@code startColumn} to {@code endColumn}, which is exclusive. */
+    public void setStyle(int startColumn, int endColumn, long style) {
+        if (startColumn >= endColumn) return;
+        if (mStyle != null) {
+            Arrays.fill(mStyle, startColumn, endColumn, style);
+            return;
+        }
+
+        final short[] starts = mSpanStarts;
+        final long[] styles = mSpanStyles;
+        final int first = findSpan(startColumn);
+        // Nothing to do when the columns already have the style, which is the common case of writing text in the
+        // current style after the previous text or over blank columns of it.
+        if (styles[first] == style && spanEnd(first) >= endColumn) return;
+        final int last = findSpan(endColumn - 1);
+
+        // The spans from first to last are replaced with up to three: what remains of the first one before the start
+        // column, the new one, and what remains of the last one after the end column. Spans that would have the same
+        // style as the span before them are merged into it instead.
+        int removeFrom = first, removeTo = last + 1;
+        int newCount = 0;
+        short newStart0 = 0, newStart1 = 0, newStart2 = 0;
+        long newStyle0 = 0, newStyle1 = 0, newStyle2 = 0;
+        if (starts[first] < startColumn) {
+            newStart0 = starts[first];
+            newStyle0 = styles[first];
+            newCount = 1;
+        }
+        long previousStyle = newCount > 0 ? newStyle0 : (first > 0 ? styles[first - 1] : ~style);
+        if (previousStyle != style) {
+            if (newCount == 0) {
+                newStart0 = (short) startColumn;
+                newStyle0 = style;
+            } else {
+                newStart1 = (short) startColumn;
+                newStyle1 = style;
+            }
+            newCount++;
+        }
+        if (spanEnd(last) > endColumn) {
+            if (styles[last] != style) {
+                if (newCount == 0) {
+                    newStart0 = (short) endColumn;
+                    newStyle0 = styles[last];
+                } else if (newCount == 1) {
+                    newStart1 = (short) endColumn;
+                    newStyle1 = styles[last];
+                } else {
+                    newStart2 = (short) endColumn;
+                    newStyle2 = styles[last];
+                }
+                newCount++;
+            }
+        } else if (removeTo < mSpanCount && styles[removeTo] == style) {
+            // The span after the last one now continues the new one.
+            removeTo++;
+        }
+
+        final int spanCount = mSpanCount - (removeTo - removeFrom) + newCount;
+        if (spanCount > MAX_STYLE_SPANS) {
+            inflateStyles();
+            Arrays.fill(mStyle, startColumn, endColumn, style);
+            return;
+        }
+        if (spanCount > starts.length) {
+            int capacity = Math.min(MAX_STYLE_SPANS, 2 * starts.length);
+            mSpanStarts = Arrays.copyOf(starts, capacity);
+            mSpanStyles = Arrays.copyOf(styles, capacity);
+        }
+        System.arraycopy(starts, removeTo, mSpanStarts, removeFrom + newCount, mSpanCount - removeTo);
+        System.arraycopy(styles, removeTo, mSpanStyles, removeFrom + newCount, mSpanCount - removeTo);
+        if (newCount > 0) {
+            mSpanStarts[removeFrom] = newStart0;
+            mSpanStyles[removeFrom] = newStyle0;
+        }
+        if (newCount > 1) {
+            mSpanStarts[removeFrom + 1] = newStart1;
+            mSpanStyles[removeFrom + 1] = newStyle1;
+        }
+        if (newCount > 2) {
+            mSpanStarts[removeFrom + 2] = newStart2;
+            mSpanStyles[removeFrom + 2] = newStyle2;
+        }
+        mSpanCount = spanCount;
+        mLastSpan = Math.min(removeFrom, spanCount - 1);
+    }
+
+    /** Return the index of the style span containing the column. */
+    private int findSpan(int column) {
+        final short[] starts = mSpanStarts;
+        int span = mLastSpan;
+        if (column >= starts[span] && (span + 1 == mSpanCount || column < starts[span + 1])) return span;
+        if (span + 1 < mSpanCount && column >= starts[span + 1] && (span + 2 == mSpanCount || column < starts[span + 2])) {
+            span++;
+        } else {
+            int low = 0, high = mSpanCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= column) low = mid; else high = mid - 1;
+            }
+            span = low;
+        }
+        mLastSpan = span;
+        return span;
+    }
+
+    private int spanEnd(int span) {
+        return span + 1 == mSpanCount ? mColumns : mSpanStarts[span + 1];
+    }
+
+    /** Switch to one style per column, for rows with too many style changes to store as spans. */
+    private void inflateStyles() {
+        final long[] style = new long[mColumns];
+        for (int span = 0; span < mSpanCount; span++)
+            Arrays.fill(style, mSpanStarts[span], spanEnd(span), mSpanStyles[span]);
+        mStyle = style;
     }
 
 }
@@ -0,0 +1,87 @@
+package com.termux.terminal;
+
+/**
+ * A pool of {@link TerminalRow}s that a {@link TerminalBuffer} no longer uses, like the rows of a cleared transcript or
+ * the old rows of a resize, to obtain blank rows from instead of allocating them.
+ * <p>
+ * Rows are pooled by their number of columns. Only the two most recently pooled column counts are kept, so that
+ * resizing back and forth, like when rotating the device, can reuse the rows of the previous width, and each is bounded
+ * by {@link #MAX_ROWS_PER_COLUMNS} so that the pool does not keep a whole transcript alive.
+ */
+final class TerminalRowPool {
+
+    static final int MAX_ROWS_PER_COLUMNS = 512;
+    private static final int MAX_COLUMN_COUNTS = 2;
+
+    /** The column count of each pool, most recently pooled first, or 0 if unused. */
+    private final int[] mColumns = new int[MAX_COLUMN_COUNTS];
+    private final TerminalRow[][] mRows = new TerminalRow[MAX_COLUMN_COUNTS][];
+    private final int[] mRowCounts = new int[MAX_COLUMN_COUNTS];
+
+    /** The number of rows allocated by {@link #obtain(int, long)}, and the number reused from the pool. */
+    private long mAllocatedRows, mRecycledRows;
+
+    /** Get a blank row with the specified columns and style, as {@link TerminalRow#TerminalRow(int, long)} creates. */
+    TerminalRow obtain(int columns, long style) {
+        for (int i = 0; i < MAX_COLUMN_COUNTS; i++) {
+            if (mColumns[i] == columns && mRowCounts[i] > 0) {
+                TerminalRow row = mRows[i][--mRowCounts[i]];
+                mRows[i][mRowCounts[i]] = null;
+                row.clear(style);
+                row.mLineWrap = false;
+                mRecycledRows++;
+                return row;
+            }
+        }
+        mAllocatedRows++;
+        return new TerminalRow(columns, style);
+    }
+
+    /** Add a row that is no longer referenced to the pool, if not null and there is room for it. */
+    void recycle(TerminalRow row) {
+        if (row == null) return;
+        int pool = 0;
+        while (pool < MAX_COLUMN_COUNTS && mColumns[pool] != row.mColumns) pool++;
+        if (pool == MAX_COLUMN_COUNTS) {
+            // Evict the rows of the least recently pooled column count.
+            pool = MAX_COLUMN_COUNTS - 1;
+            mColumns[pool] = row.mColumns;
+            mRows[pool] = null;
+            mRowCounts[pool] = 0;
+        }
+        if (pool > 0) {
+            // Move the pool to the front.
+            int columns = mColumns[pool];
+            TerminalRow[] rows = mRows[pool];
+            int rowCount = mRowCounts[pool];
+            System.arraycopy(mColumns, 0, mColumns, 1, pool);
+            System.arraycopy(mRows, 0, mRows, 1, pool);
+            System.arraycopy(mRowCounts, 0, mRowCounts, 1, pool);
+            mColumns[0] = columns;
+            mRows[0] = rows;
+            mRowCounts[0] = rowCount;
+        }
+
+        if (mRowCounts[0] == MAX_ROWS_PER_COLUMNS) return;
+        if (mRows[0] == null) mRows[0] = new TerminalRow[MAX_ROWS_PER_COLUMNS];
+        mRows[0][mRowCounts[0]++] = row;
+    }
+
+    /** The number of rows allocated since the pool was created because none could be reused. */
+    long getAllocatedRows() {
+        return mAllocatedRows;
+    }
+
+    /** The number of rows reused from the pool since it was created. */
+    long getRecycledRows() {
+        return mRecycledRows;
+    }
+
+    /** The number of rows currently in the pool. */
+    int size() {
+        int size = 0;
+        for (int rowCount : mRowCounts) size += rowCount;
+        return size;
+    }
+
+}
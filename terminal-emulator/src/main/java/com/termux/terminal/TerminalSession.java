@@ -2,27 +2,40 @@ package com.termux.terminal;
 
 import android.annotation.SuppressLint;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.system.ErrnoException;
 import android.system.Os;
 import android.system.OsConstants;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A terminal session, consisting of a process coupled to a terminal interface.
  * <p>
  * The subprocess will be executed by the constructor, and when the size is made known by a call to
  * {@link #updateSize(int, int, int, int)} terminal emulation will begin and threads will be spawned to handle the subprocess I/O.
- * All terminal emulation and callback methods will be performed on the main thread.
+ * All terminal emulation and callback methods will be performed on the main thread. Process output wakes up the main
+ * thread at most once per pending batch, which is then appended to the emulator within a time budget and followed by a
+ * single {@link TerminalSessionClient#onTextChanged(TerminalSession)}.
+ * <p>
+ * If created to emulate on a separate thread, process output is instead appended by an emulator thread while holding
+ * the lock of the {@link TerminalEmulator}, which publishes a {@link ScreenSnapshot} for the view to draw after each
+ * batch. Callbacks are still performed on the main thread, and other access to the emulator from the main thread must
+ * hold its lock.
  * <p>
  * The child process may be exited forcefully by using the {@link #finishIfRunning()} method.
  * <p>
@@ -33,6 +46,31 @@ public final class TerminalSession extends TerminalOutput {
     private static final int MSG_NEW_INPUT = 1;
     private static final int MSG_PROCESS_EXITED = 4;
 
+    /**
+     * The maximum time spent on the main thread appending queued process output to the emulator before yielding back to
+     * the looper, so that a fast producer cannot starve input handling and drawing. Roughly half of a 60 Hz frame.
+     */
+    private static final long MAX_INPUT_PROCESSING_TIME_NANOS = 8_000_000L;
+
+    /**
+     * The number of transcript rows left by a resize that are reflowed at a time, see {@link #mReflowTranscriptRunnable},
+     * so that a large transcript does not block input handling and drawing, or the emulator thread for long.
+     */
+    private static final int REFLOW_TRANSCRIPT_ROWS_PER_CHUNK = 500;
+
+    /**
+     * The number of rows read at a time by {@link #writeTranscript(OutputStream, boolean, boolean, boolean)} while
+     * holding the lock of the emulator, so that writing a large transcript does not block appending output for long.
+     */
+    private static final int WRITE_TRANSCRIPT_ROWS_PER_CHUNK = 1000;
+
+    /** The size in bytes of the buffers used for the pty I/O of the session. */
+    public static final int TERMINAL_IO_BUFFER_SIZE_MIN = 1024;
+    public static final int TERMINAL_IO_BUFFER_SIZE_MAX = 1024 * 1024;
+    public static final int DEFAULT_TERMINAL_IO_BUFFER_SIZE = 4096;
+    /** The size in bytes up to which the pty I/O buffers may grow if adaptive, if larger than the configured size. */
+    public static final int TERMINAL_IO_BUFFER_SIZE_ADAPTIVE_MAX = 256 * 1024;
+
     public final String mHandle = UUID.randomUUID().toString();
 
     TerminalEmulator mEmulator;
@@ -41,12 +79,31 @@ public final class TerminalSession extends TerminalOutput {
      * A queue written to from a separate thread when the process outputs, and read by main thread to process by
      * terminal emulator.
      */
-    final ByteQueue mProcessToTerminalIOQueue = new ByteQueue(4096);
+    final ByteQueue mProcessToTerminalIOQueue;
     /**
      * A queue written to from the main thread due to user interaction, and read by another thread which forwards by
      * writing to the {@link #mTerminalFileDescriptor}.
      */
-    final ByteQueue mTerminalToProcessIOQueue = new ByteQueue(4096);
+    final ByteQueue mTerminalToProcessIOQueue;
+    /**
+     * Whether a {@link #MSG_NEW_INPUT} message has been sent and not yet started being handled. Used to post at most one
+     * wakeup per session at a time however often the process outputs.
+     */
+    final AtomicBoolean mNewInputMessagePending = new AtomicBoolean();
+    /** Whether process output is appended to the emulator on a separate thread instead of the main thread. */
+    private final boolean mEmulateOnThread;
+    /** The latest snapshot of the screen if {@link #mEmulateOnThread}, published by the emulator thread. */
+    private volatile ScreenSnapshot mScreenSnapshot;
+    /** The exit code of the process, set by the waiter thread before finishing the output queue if {@link #mEmulateOnThread}. */
+    private volatile int mProcessExitCode;
+    /**
+     * Reflows the transcript rows left by a resize a chunk at a time until none are left. If {@link #mEmulateOnThread},
+     * it runs on a thread of its own, taking the lock of the emulator for each chunk, otherwise on the main thread,
+     * which owns the emulator, reposting itself for each chunk.
+     */
+    private final Runnable mReflowTranscriptRunnable = this::reflowTranscriptChunk;
+    /** Whether the reflow thread is running if {@link #mEmulateOnThread}, guarded by the lock of the emulator. */
+    private boolean mReflowTranscriptThreadRunning;
     /** Buffer to write translate code points into utf8 before writing to mTerminalToProcessIOQueue */
     private final byte[] mUtf8InputBuffer = new byte[5];
 
@@ -75,17 +132,62 @@ public final class TerminalSession extends TerminalOutput {
     private final String[] mArgs;
     private final String[] mEnv;
     private final Integer mTranscriptRows;
+    private final int mTranscriptArchiveRows;
 
 
     private static final String LOG_TAG = "TerminalSession";
 
     public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, TerminalSessionClient client) {
+        this(shellPath, cwd, args, env, transcriptRows, null, false, client);
+    }
+
+    /**
+     * @param ioBufferSize The size in bytes of the pty I/O queues and read buffers. Defaults to
+     *                     {@link #DEFAULT_TERMINAL_IO_BUFFER_SIZE} if {@code null} or not between
+     *                     {@link #TERMINAL_IO_BUFFER_SIZE_MIN} and {@link #TERMINAL_IO_BUFFER_SIZE_MAX}.
+     * @param adaptiveIoBufferSize If the I/O queues should grow up to {@link #TERMINAL_IO_BUFFER_SIZE_ADAPTIVE_MAX}
+     *                             while a process saturates them and shrink back to {@code ioBufferSize} when idle.
+     */
+    public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows,
+                           Integer ioBufferSize, boolean adaptiveIoBufferSize, TerminalSessionClient client) {
+        this(shellPath, cwd, args, env, transcriptRows, 0, ioBufferSize, adaptiveIoBufferSize, client);
+    }
+
+    /**
+     * @param transcriptArchiveRows The max rows to keep compressed after they scroll out of the transcript, see
+     *                              {@link TerminalEmulator#TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX}, or 0 to drop them.
+     */
+    public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, int transcriptArchiveRows,
+                           Integer ioBufferSize, boolean adaptiveIoBufferSize, TerminalSessionClient client) {
+        this(shellPath, cwd, args, env, transcriptRows, transcriptArchiveRows, ioBufferSize, adaptiveIoBufferSize, false, client);
+    }
+
+    /**
+     * @param emulateOnThread If process output should be appended to the emulator on a separate thread, which publishes
+     *                        a {@link ScreenSnapshot} for the view to draw, instead of on the main thread.
+     */
+    public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, int transcriptArchiveRows,
+                           Integer ioBufferSize, boolean adaptiveIoBufferSize, boolean emulateOnThread, TerminalSessionClient client) {
         this.mShellPath = shellPath;
         this.mCwd = cwd;
         this.mArgs = args;
         this.mEnv = env;
         this.mTranscriptRows = transcriptRows;
+        this.mTranscriptArchiveRows = transcriptArchiveRows;
+        this.mEmulateOnThread = emulateOnThread;
         this.mClient = client;
+
+        int bufferSize = getTerminalIOBufferSize(ioBufferSize);
+        int maxBufferSize = adaptiveIoBufferSize ? Math.max(bufferSize, TERMINAL_IO_BUFFER_SIZE_ADAPTIVE_MAX) : bufferSize;
+        mProcessToTerminalIOQueue = new ByteQueue(bufferSize, maxBufferSize);
+        mTerminalToProcessIOQueue = new ByteQueue(bufferSize, maxBufferSize);
+    }
+
+    private static int getTerminalIOBufferSize(Integer ioBufferSize) {
+        if (ioBufferSize == null || ioBufferSize < TERMINAL_IO_BUFFER_SIZE_MIN || ioBufferSize > TERMINAL_IO_BUFFER_SIZE_MAX)
+            return DEFAULT_TERMINAL_IO_BUFFER_SIZE;
+        else
+            return ioBufferSize;
     }
 
     /**
@@ -105,8 +207,100 @@ public final class TerminalSession extends TerminalOutput {
             initializeEmulator(columns, rows, cellWidthPixels, cellHeightPixels);
         } else {
             JNI.setPtyWindowSize(mTerminalFileDescriptor, rows, columns, cellWidthPixels, cellHeightPixels);
-            mEmulator.resize(columns, rows, cellWidthPixels, cellHeightPixels);
+            boolean startReflowThread = false;
+            synchronized (mEmulator) {
+                mEmulator.resize(columns, rows, cellWidthPixels, cellHeightPixels);
+                updateScreenSnapshot();
+                if (mEmulateOnThread && !mReflowTranscriptThreadRunning && mEmulator.hasRowsToReflow())
+                    startReflowThread = mReflowTranscriptThreadRunning = true;
+            }
+            if (mEmulateOnThread) {
+                if (startReflowThread)
+                    new Thread(mReflowTranscriptRunnable, "TermSessionReflow[pid=" + mShellPid + "]").start();
+            } else {
+                mMainThreadHandler.removeCallbacks(mReflowTranscriptRunnable);
+                mMainThreadHandler.post(mReflowTranscriptRunnable);
+            }
+        }
+    }
+
+    /** Reflow the transcript rows that a resize only reflowed the screen for, see {@link TerminalBuffer#resize}. */
+    private void reflowTranscriptChunk() {
+        if (!mEmulateOnThread) {
+            if (reflowTranscript(REFLOW_TRANSCRIPT_ROWS_PER_CHUNK)) mMainThreadHandler.post(mReflowTranscriptRunnable);
+            return;
+        }
+
+        while (true) {
+            synchronized (mEmulator) {
+                // Rows may be left by a resize while the last chunk is reflowed, so stop only while holding the lock.
+                if (!reflowTranscript(REFLOW_TRANSCRIPT_ROWS_PER_CHUNK)) {
+                    mReflowTranscriptThreadRunning = false;
+                    break;
+                }
+            }
+            notifyScreenSnapshotPublished();
+        }
+        notifyScreenSnapshotPublished();
+    }
+
+    /**
+     * Reflow some of the transcript rows left to be reflowed by a resize, like when a view scrolls to the top of the
+     * transcript, and publish a new snapshot with them, see {@link TerminalEmulator#reflowTranscript(int)}.
+     *
+     * @return If rows are still left to be reflowed.
+     */
+    public boolean reflowTranscript(int rows) {
+        synchronized (mEmulator) {
+            if (!mEmulator.hasRowsToReflow()) return false;
+            boolean rowsLeft = mEmulator.reflowTranscript(rows);
+            updateScreenSnapshot();
+            return rowsLeft;
+        }
+    }
+
+    /**
+     * Write the text of the transcript and screen encoded in UTF-8, like
+     * {@link TerminalBuffer#writeTranscript(OutputStream, boolean, boolean, boolean)}, from a thread other than the
+     * main or emulator thread. The rows are read a chunk at a time while holding the lock of the emulator, and each
+     * chunk is written after releasing it, so that output keeps being appended while the stream is written.
+     *
+     * @throws IOException If writing fails, or if the transcript is resized or cleared while being written.
+     */
+    public void writeTranscript(OutputStream outputStream, boolean joinBackLines, boolean joinFullLines, boolean trim) throws IOException {
+        // Reflow the rows left by a resize in chunks too, instead of all of them at once when the reading starts.
+        while (reflowTranscript(REFLOW_TRANSCRIPT_ROWS_PER_CHUNK)) {
+            if (mEmulateOnThread) notifyScreenSnapshotPublished();
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        StringBuilder chunk = new StringBuilder();
+        TerminalBuffer.TranscriptReader transcriptReader;
+        synchronized (mEmulator) {
+            transcriptReader = mEmulator.getScreen().readTranscript(joinBackLines, joinFullLines, trim);
         }
+        boolean rowsLeft;
+        do {
+            chunk.setLength(0);
+            synchronized (mEmulator) {
+                rowsLeft = transcriptReader.readRows(chunk, WRITE_TRANSCRIPT_ROWS_PER_CHUNK);
+            }
+            writer.append(chunk);
+        } while (rowsLeft);
+        writer.flush();
+    }
+
+    /**
+     * The latest snapshot of the screen to draw if the session emulates on a separate thread, else null and the
+     * emulator should be drawn directly.
+     */
+    public ScreenSnapshot getScreenSnapshot() {
+        return mScreenSnapshot;
+    }
+
+    /** Publish a new snapshot of the screen if emulating on a separate thread. Must hold the lock of the emulator. */
+    private void updateScreenSnapshot() {
+        if (mEmulateOnThread) mScreenSnapshot = ScreenSnapshot.take(mEmulator, mScreenSnapshot);
     }
 
     /** The terminal title as set through escape sequences or null if none set. */
@@ -121,7 +315,10 @@ public final class TerminalSession extends TerminalOutput {
      * @param rows    The number of rows in the terminal window.
      */
     public void initializeEmulator(int columns, int rows, int cellWidthPixels, int cellHeightPixels) {
-        mEmulator = new TerminalEmulator(this, columns, rows, cellWidthPixels, cellHeightPixels, mTranscriptRows, mClient);
+        mEmulator = new TerminalEmulator(this, columns, rows, cellWidthPixels, cellHeightPixels, mTranscriptRows, mTranscriptArchiveRows, mClient);
+        synchronized (mEmulator) {
+            updateScreenSnapshot();
+        }
 
         int[] processId = new int[1];
         mTerminalFileDescriptor = JNI.createSubprocess(mShellPath, mCwd, mArgs, mEnv, processId, rows, columns, cellWidthPixels, cellHeightPixels);
@@ -134,12 +331,16 @@ public final class TerminalSession extends TerminalOutput {
             @Override
             public void run() {
                 try (InputStream termIn = new FileInputStream(terminalFileDescriptorWrapped)) {
-                    final byte[] buffer = new byte[4096];
+                    byte[] buffer = new byte[mProcessToTerminalIOQueue.getCapacity()];
                     while (true) {
+                        // Read as much as the queue can currently hold, which may change if it is adaptive.
+                        if (buffer.length != mProcessToTerminalIOQueue.getCapacity())
+                            buffer = new byte[mProcessToTerminalIOQueue.getCapacity()];
                         int read = termIn.read(buffer);
                         if (read == -1) return;
                         if (!mProcessToTerminalIOQueue.write(buffer, 0, read)) return;
-                        mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+                        if (!mEmulateOnThread && mNewInputMessagePending.compareAndSet(false, true))
+                            mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
                     }
                 } catch (Exception e) {
                     // Ignore, just shutting down.
@@ -150,9 +351,11 @@ public final class TerminalSession extends TerminalOutput {
         new Thread("TermSessionOutputWriter[pid=" + mShellPid + "]") {
             @Override
             public void run() {
-                final byte[] buffer = new byte[4096];
+                byte[] buffer = new byte[mTerminalToProcessIOQueue.getCapacity()];
                 try (FileOutputStream termOut = new FileOutputStream(terminalFileDescriptorWrapped)) {
                     while (true) {
+                        if (buffer.length != mTerminalToProcessIOQueue.getCapacity())
+                            buffer = new byte[mTerminalToProcessIOQueue.getCapacity()];
                         int bytesToWrite = mTerminalToProcessIOQueue.read(buffer, true);
                         if (bytesToWrite == -1) return;
                         termOut.write(buffer, 0, bytesToWrite);
@@ -167,16 +370,78 @@ public final class TerminalSession extends TerminalOutput {
             @Override
             public void run() {
                 int processExitCode = JNI.waitFor(mShellPid);
-                mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
+                if (mEmulateOnThread) {
+                    // Let the emulator thread append the remaining output before it reports the exit.
+                    mProcessExitCode = processExitCode;
+                    mProcessToTerminalIOQueue.finishWriting();
+                } else {
+                    mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
+                }
             }
         }.start();
 
+        if (mEmulateOnThread) {
+            new Thread("TermSessionEmulator[pid=" + mShellPid + "]") {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[mProcessToTerminalIOQueue.getCapacity()];
+                    boolean appendedSincePublish = false;
+                    while (true) {
+                        if (buffer.length != mProcessToTerminalIOQueue.getCapacity())
+                            buffer = new byte[mProcessToTerminalIOQueue.getCapacity()];
+                        int read = mProcessToTerminalIOQueue.read(buffer, false);
+                        if (read == 0) {
+                            // Publish what was appended before waiting for more output.
+                            if (appendedSincePublish) publishScreenSnapshot();
+                            appendedSincePublish = false;
+                            read = mProcessToTerminalIOQueue.read(buffer, true);
+                        }
+                        if (read == -1) break;
+                        synchronized (mEmulator) {
+                            mEmulator.append(buffer, read);
+                        }
+                        appendedSincePublish = true;
+                        // Publish at most once per wakeup of the main thread while output keeps coming.
+                        if (!mNewInputMessagePending.get()) {
+                            publishScreenSnapshot();
+                            appendedSincePublish = false;
+                        }
+                    }
+                    if (appendedSincePublish) publishScreenSnapshot();
+                    if (isRunning())
+                        mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, mProcessExitCode));
+                }
+            }.start();
+        }
+
+    }
+
+    /** Take a snapshot of the screen on the emulator thread and wake up the main thread to draw it. */
+    private void publishScreenSnapshot() {
+        synchronized (mEmulator) {
+            updateScreenSnapshot();
+        }
+        notifyScreenSnapshotPublished();
+    }
+
+    /** Wake up the main thread to draw the snapshot published by another thread, unless it is already to be woken up. */
+    private void notifyScreenSnapshotPublished() {
+        if (mNewInputMessagePending.compareAndSet(false, true))
+            mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
     }
 
     /** Write data to the shell process. */
     @Override
     public void write(byte[] data, int offset, int count) {
-        if (mShellPid > 0) mTerminalToProcessIOQueue.write(data, offset, count);
+        if (mShellPid <= 0) return;
+        if (mEmulateOnThread) {
+            // Responses from the emulator thread must not interleave with input written from the main thread.
+            synchronized (mTerminalToProcessIOQueue) {
+                mTerminalToProcessIOQueue.write(data, offset, count);
+            }
+        } else {
+            mTerminalToProcessIOQueue.write(data, offset, count);
+        }
     }
 
     /** Write the Unicode code point to the terminal encoded in UTF-8. */
@@ -227,7 +492,10 @@ public final class TerminalSession extends TerminalOutput {
 
     /** Reset state for terminal emulator state. */
     public void reset() {
-        mEmulator.reset();
+        synchronized (mEmulator) {
+            mEmulator.reset();
+            updateScreenSnapshot();
+        }
         notifyScreenUpdate();
     }
 
@@ -255,9 +523,20 @@ public final class TerminalSession extends TerminalOutput {
         JNI.close(mTerminalFileDescriptor);
     }
 
+    /**
+     * Run a client callback on the main thread, which it is not on if triggered by output appended on the emulator
+     * thread.
+     */
+    private void runOnMainThread(Runnable runnable) {
+        if (mEmulateOnThread && Looper.myLooper() != mMainThreadHandler.getLooper())
+            mMainThreadHandler.post(runnable);
+        else
+            runnable.run();
+    }
+
     @Override
     public void titleChanged(String oldTitle, String newTitle) {
-        mClient.onTitleChanged(this);
+        runOnMainThread(() -> mClient.onTitleChanged(this));
     }
 
     public synchronized boolean isRunning() {
@@ -271,22 +550,27 @@ public final class TerminalSession extends TerminalOutput {
 
     @Override
     public void onCopyTextToClipboard(String text) {
-        mClient.onCopyTextToClipboard(this, text);
+        runOnMainThread(() -> mClient.onCopyTextToClipboard(this, text));
     }
 
     @Override
     public void onPasteTextFromClipboard() {
-        mClient.onPasteTextFromClipboard(this);
+        runOnMainThread(() -> mClient.onPasteTextFromClipboard(this));
     }
 
     @Override
     public void onBell() {
-        mClient.onBell(this);
+        runOnMainThread(() -> mClient.onBell(this));
     }
 
     @Override
     public void onColorsChanged() {
-        mClient.onColorsChanged(this);
+        runOnMainThread(() -> mClient.onColorsChanged(this));
+    }
+
+    @Override
+    public void onTerminalCursorStateChange(boolean state) {
+        runOnMainThread(() -> mClient.onTerminalCursorStateChange(state));
     }
 
     public int getPid() {
@@ -336,17 +620,24 @@ public final class TerminalSession extends TerminalOutput {
     @SuppressLint("HandlerLeak")
     class MainThreadHandler extends Handler {
 
-        final byte[] mReceiveBuffer = new byte[4 * 1024];
+        byte[] mReceiveBuffer;
 
         @Override
         public void handleMessage(Message msg) {
-            int bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false);
-            if (bytesRead > 0) {
-                mEmulator.append(mReceiveBuffer, bytesRead);
-                notifyScreenUpdate();
-            }
+            if (msg.what == MSG_NEW_INPUT) {
+                // Clear the flag before draining, so that output queued after the drain below posts a new wakeup.
+                mNewInputMessagePending.set(false);
+                if (mEmulateOnThread) {
+                    // The emulator or reflow thread has published a new snapshot.
+                    notifyScreenUpdate();
+                } else if (appendQueuedInput(MAX_INPUT_PROCESSING_TIME_NANOS)) {
+                    notifyScreenUpdate();
+                }
+            } else if (msg.what == MSG_PROCESS_EXITED) {
+                // The emulator thread has appended all output before posting the exit.
+                if (!mEmulateOnThread && appendQueuedInput(Long.MAX_VALUE))
+                    notifyScreenUpdate();
 
-            if (msg.what == MSG_PROCESS_EXITED) {
                 int exitCode = (Integer) msg.obj;
                 cleanupResources(exitCode);
 
@@ -361,13 +652,43 @@ public final class TerminalSession extends TerminalOutput {
                 exitDescription += " - press Enter]";
 
                 byte[] bytesToWrite = exitDescription.getBytes(StandardCharsets.UTF_8);
-                mEmulator.append(bytesToWrite, bytesToWrite.length);
+                synchronized (mEmulator) {
+                    mEmulator.append(bytesToWrite, bytesToWrite.length);
+                    updateScreenSnapshot();
+                }
                 notifyScreenUpdate();
 
                 mClient.onSessionFinished(TerminalSession.this);
             }
         }
 
+        /**
+         * Append process output from {@link #mProcessToTerminalIOQueue} to the emulator until the queue is empty or
+         * {@code maxTimeNanos} has passed, in which case a new {@link #MSG_NEW_INPUT} is posted to continue after pending events.
+         *
+         * @return Whether any output was appended.
+         */
+        private boolean appendQueuedInput(long maxTimeNanos) {
+            final long startTime = System.nanoTime();
+            boolean appended = false;
+            if (mReceiveBuffer == null || mReceiveBuffer.length != mProcessToTerminalIOQueue.getCapacity())
+                mReceiveBuffer = new byte[mProcessToTerminalIOQueue.getCapacity()];
+            int bytesRead;
+            while ((bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false)) > 0) {
+                // The lock is taken for a transcript written on another thread, see writeTranscript().
+                synchronized (mEmulator) {
+                    mEmulator.append(mReceiveBuffer, bytesRead);
+                }
+                appended = true;
+                if (System.nanoTime() - startTime > maxTimeNanos) {
+                    if (mNewInputMessagePending.compareAndSet(false, true))
+                        sendEmptyMessage(MSG_NEW_INPUT);
+                    break;
+                }
+            }
+            return appended;
+        }
+
     }
 
 }
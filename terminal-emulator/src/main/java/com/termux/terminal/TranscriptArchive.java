@@ -0,0 +1,217 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The rows that have scrolled out of the {@link TerminalRow} ring of a {@link TerminalBuffer}, kept serialized in
+ * deflate compressed blocks of {@link #ROWS_PER_BLOCK} rows so that a transcript can be far longer than
+ * {@link TerminalEmulator#TERMINAL_TRANSCRIPT_ROWS_MAX} without keeping a live row object per line.
+ * <p>
+ * Rows are inflated on demand, a block at a time, when scrolled to or selected. They keep the columns they were
+ * archived with and are only cut or padded to the current columns when inflated, as reflowing an archive on every
+ * resize would defeat its purpose.
+ */
+final class TranscriptArchive {
+
+    static final int ROWS_PER_BLOCK = 128;
+
+    /** The max number of rows to keep, after which the oldest block is dropped. */
+    private final int mMaxRows;
+
+    /** The compressed blocks, oldest first. Each holds {@link #ROWS_PER_BLOCK} rows. */
+    private final ArrayList<byte[]> mBlocks = new ArrayList<>();
+    /** The block being filled, stored uncompressed until full. */
+    private final ByteArrayOutputStream mOpenBlock = new ByteArrayOutputStream();
+    private final DataOutputStream mOpenBlockOutput = new DataOutputStream(mOpenBlock);
+    private int mOpenBlockRows;
+
+    /** The number of blocks ever dropped, so that the cached block can be identified when blocks are dropped. */
+    private long mDroppedBlocks;
+    /** The rows of the block last inflated, or null. */
+    private TerminalRow[] mCachedRows;
+    /** The absolute number of the block in {@link #mCachedRows}, counting dropped ones. */
+    private long mCachedBlock = -1;
+    /** The columns of the rows in {@link #mCachedRows}. */
+    private int mCachedColumns;
+
+    TranscriptArchive(int maxRows) {
+        mMaxRows = Math.max(maxRows, ROWS_PER_BLOCK);
+    }
+
+    /** The number of rows in the archive. */
+    int size() {
+        return mBlocks.size() * ROWS_PER_BLOCK + mOpenBlockRows;
+    }
+
+    void clear() {
+        mDroppedBlocks += mBlocks.size();
+        mBlocks.clear();
+        mOpenBlock.reset();
+        mOpenBlockRows = 0;
+        mCachedRows = null;
+    }
+
+    /** Append a row of the specified columns after the newest row, where a null row is a blank one. */
+    void add(TerminalRow row, int columns) {
+        try {
+            writeRow(mOpenBlockOutput, row, columns);
+            mOpenBlockOutput.flush();
+        } catch (IOException e) {
+            // Not possible for an in-memory stream.
+            throw new IllegalStateException(e);
+        }
+        if (++mOpenBlockRows < ROWS_PER_BLOCK) return;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(mOpenBlock.size() / 4);
+        try (DeflaterOutputStream output = new DeflaterOutputStream(compressed, deflater)) {
+            mOpenBlock.writeTo(output);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        mBlocks.add(compressed.toByteArray());
+        mOpenBlock.reset();
+        mOpenBlockRows = 0;
+
+        if (size() > mMaxRows) {
+            mBlocks.remove(0);
+            mDroppedBlocks++;
+        }
+    }
+
+    /**
+     * Get a row, where 0 is the oldest row, inflated to the specified number of columns. The returned row is shared
+     * with later calls and must not be modified.
+     */
+    TerminalRow get(int index, int columns) {
+        if (index < 0 || index >= size())
+            throw new IllegalArgumentException("index=" + index + ", size=" + size());
+
+        int block = index / ROWS_PER_BLOCK;
+        long absoluteBlock = mDroppedBlocks + block;
+        boolean compressed = block < mBlocks.size();
+        int rows = compressed ? ROWS_PER_BLOCK : mOpenBlockRows;
+        // The open block grows as rows are added, in which case it is inflated again.
+        if (mCachedRows == null || mCachedBlock != absoluteBlock || mCachedColumns != columns || mCachedRows.length != rows) {
+            byte[] data = compressed ? mBlocks.get(block) : mOpenBlock.toByteArray();
+            mCachedRows = readBlock(data, compressed, rows, columns);
+            mCachedBlock = absoluteBlock;
+            mCachedColumns = columns;
+        }
+        return mCachedRows[index % ROWS_PER_BLOCK];
+    }
+
+    private static TerminalRow[] readBlock(byte[] data, boolean compressed, int rows, int columns) {
+        TerminalRow[] result = new TerminalRow[rows];
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(compressed ? inflate(data) : data))) {
+            for (int i = 0; i < rows; i++) result[i] = readRow(input, columns);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /** Inflate a whole block at once, as reading rows through an InflaterInputStream is several times slower. */
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[data.length * 4];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == result.length) result = Arrays.copyOf(result, 2 * result.length);
+                int inflated = inflater.inflate(result, length, result.length - length);
+                if (inflated == 0 && inflater.needsInput()) throw new IllegalStateException("Truncated block");
+                length += inflated;
+            }
+            return length == result.length ? result : Arrays.copyOf(result, length);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Write the used text of a row followed by its styles as (end column, style) runs, since
+     * {@link TerminalRow#mStyle} may not be allocated.
+     */
+    private static void writeRow(DataOutputStream output, TerminalRow row, int columns) throws IOException {
+        if (row == null) {
+            output.writeBoolean(false);
+            output.writeShort(0);
+            output.writeShort(0);
+            return;
+        }
+        output.writeBoolean(row.mLineWrap);
+        int spaceUsed = row.getSpaceUsed();
+        output.writeShort(spaceUsed);
+        for (int i = 0; i < spaceUsed; i++) output.writeChar(row.mText[i]);
+
+        int runs = 0;
+        for (int column = 1; column <= columns; column++)
+            if (column == columns || row.getStyle(column) != row.getStyle(column - 1)) runs++;
+        output.writeShort(runs);
+        for (int column = 1; column <= columns; column++) {
+            if (column == columns || row.getStyle(column) != row.getStyle(column - 1)) {
+                output.writeShort(column);
+                output.writeLong(row.getStyle(column - 1));
+            }
+        }
+    }
+
+    private static TerminalRow readRow(DataInputStream input, int columns) throws IOException {
+        TerminalRow row = new TerminalRow(columns, TextStyle.NORMAL);
+        row.mLineWrap = input.readBoolean();
+
+        // Lay the text out again like TerminalRow.copyInterval() does, stopping at what fits in the current columns.
+        int spaceUsed = input.readShort();
+        int column = 0, latestNonCombiningWidth = 0;
+        boolean fits = true;
+        for (int i = 0; i < spaceUsed; i++) {
+            char c = input.readChar();
+            int codePoint = c;
+            if (Character.isHighSurrogate(c)) {
+                codePoint = Character.toCodePoint(c, input.readChar());
+                i++;
+            }
+            if (!fits) continue;
+            int width = WcWidth.width(codePoint);
+            if (width > 0) {
+                column += latestNonCombiningWidth;
+                latestNonCombiningWidth = width;
+                if (column + width > columns) {
+                    fits = false;
+                    continue;
+                }
+            } else if (latestNonCombiningWidth == 0) {
+                // A combining char without a base char to modify.
+                continue;
+            }
+            row.setChar(column, codePoint, TextStyle.NORMAL);
+        }
+
+        int runs = input.readShort();
+        int start = 0;
+        for (int i = 0; i < runs; i++) {
+            int end = input.readShort();
+            long style = input.readLong();
+            row.setStyle(Math.min(start, columns), Math.min(end, columns), style);
+            start = end;
+        }
+        return row;
+    }
+
+}
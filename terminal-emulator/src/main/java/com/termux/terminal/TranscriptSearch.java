@@ -0,0 +1,301 @@
+package com.termux.terminal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A search for literal text or a regular expression in the transcript and screen of a {@link TerminalEmulator},
+ * matching across rows joined by line wrapping.
+ * <p>
+ * The rows are scanned in place instead of through {@link TerminalBuffer#getTranscriptText()}. Matches in the
+ * transcript are kept in an index, as transcript rows do not change once scrolled into it, so that only rows which
+ * scrolled into the transcript since the last call are scanned, along with the screen rows. The index is rebuilt after
+ * a resize, a cleared transcript or a switch to the alternate screen. This also makes a search usable as an index of
+ * all matches, like of the urls in the transcript, see {@link #getMatches()}.
+ * <p>
+ * Like the emulator, a search must be used from the thread appending output or while holding the emulator lock.
+ */
+public final class TranscriptSearch {
+
+    /** A match of a search, with rows that are kept up to date as the screen scrolls. */
+    public static final class Match {
+
+        private final TerminalBuffer mScreen;
+        /** The rows, counted from the first row that ever scrolled into the transcript, see {@link TerminalBuffer#mScrolledRows}. */
+        private final long mStartRow, mEndRow;
+        /** The column of the first cell of the match, and of the last cell which is inclusive. */
+        public final int mStartColumn, mEndColumn;
+
+        Match(TerminalBuffer screen, long startRow, int startColumn, long endRow, int endColumn) {
+            mScreen = screen;
+            mStartRow = startRow;
+            mStartColumn = startColumn;
+            mEndRow = endRow;
+            mEndColumn = endColumn;
+        }
+
+        /** The row the match starts on, where negative rows are in the transcript, as currently scrolled. */
+        public int getStartRow() {
+            return getStartRow(mScreen.mScrolledRows);
+        }
+
+        /** The row the match ends on, where negative rows are in the transcript, as currently scrolled. */
+        public int getEndRow() {
+            return getEndRow(mScreen.mScrolledRows);
+        }
+
+        /**
+         * The row the match starts on, as scrolled when the screen had the specified {@link TerminalBuffer#getScrolledRows()},
+         * like the {@link ScreenSnapshot#mScrolledRows} of the snapshot being drawn.
+         */
+        public int getStartRow(long scrolledRows) {
+            return (int) (mStartRow - scrolledRows);
+        }
+
+        /** The row the match ends on, as scrolled when the screen had the specified {@link TerminalBuffer#getScrolledRows()}. */
+        public int getEndRow(long scrolledRows) {
+            return (int) (mEndRow - scrolledRows);
+        }
+
+        /** Get the text of the match, as long as its rows have not scrolled out of the transcript. */
+        public String getText() {
+            return mScreen.getSelectedText(mStartColumn, getStartRow(), mEndColumn, getEndRow(), true, true);
+        }
+
+        /** Whether the match starts before the specified position. */
+        boolean isBefore(long row, int column) {
+            return mStartRow < row || (mStartRow == row && mStartColumn < column);
+        }
+
+        @Override
+        public String toString() {
+            return "Match[" + getStartRow() + "," + mStartColumn + " - " + getEndRow() + "," + mEndColumn + "]";
+        }
+
+    }
+
+    private final TerminalEmulator mEmulator;
+    private final Pattern mPattern;
+    /** If rows filled to the last column are joined with the next row, see {@link TerminalBuffer#isJoinedWithNextRow(int)}. */
+    private final boolean mJoinFullLines;
+
+    /** The screen the index is for, null until indexed. */
+    private TerminalBuffer mScreen;
+    /** The {@link TerminalBuffer#mLayoutChanges} of {@link #mScreen} when indexed. */
+    private int mLayoutChanges;
+    /** The matches in complete lines of the transcript, in order. Matches before {@link #mFirstMatch} are stale. */
+    private final ArrayList<Match> mMatches = new ArrayList<>();
+    private int mFirstMatch;
+    /**
+     * The first row of the transcript when indexed, counted like {@link Match#mStartRow}. Rows left to be reflowed by
+     * a resize are added above it as they are reflowed, see {@link TerminalBuffer#reflowTranscript(int)}.
+     */
+    private long mIndexedStartRow;
+    /** The row from which lines have not been indexed, counted like {@link Match#mStartRow}. */
+    private long mIndexedEndRow;
+
+    /** The text of the line being scanned, and the row and first and last column of each of its chars. */
+    private final StringBuilder mLineText = new StringBuilder();
+    private long[] mCharRows = new long[256];
+    private int[] mCharStartColumns = new int[256];
+    private int[] mCharEndColumns = new int[256];
+
+    /**
+     * @param query The text to search for, or a regular expression if {@code regex}.
+     * @throws java.util.regex.PatternSyntaxException If {@code regex} and the query is not a valid expression.
+     */
+    public TranscriptSearch(TerminalEmulator emulator, String query, boolean regex, boolean ignoreCase) {
+        this(emulator, Pattern.compile(query, (regex ? 0 : Pattern.LITERAL) | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0)), false);
+    }
+
+    /**
+     * @param joinFullLines If rows which are filled to the last column without having wrapped, like when redrawn by a
+     *                      full screen program, are joined with the next row as the same line.
+     */
+    public TranscriptSearch(TerminalEmulator emulator, Pattern pattern, boolean joinFullLines) {
+        mEmulator = emulator;
+        mPattern = pattern;
+        mJoinFullLines = joinFullLines;
+    }
+
+    /**
+     * Find the first match starting after a cell, or null if none. Use a row of {@code -getActiveTranscriptRows() - 1}
+     * to search from the start of the transcript.
+     */
+    public Match findNext(int row, int column) {
+        TerminalBuffer screen = updateIndex();
+        long fromRow = screen.mScrolledRows + row;
+
+        // The first indexed match not before or at the cell:
+        int low = mFirstMatch, high = mMatches.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mMatches.get(middle).isBefore(fromRow, column + 1)) low = middle + 1;
+            else high = middle;
+        }
+        if (low < mMatches.size()) return mMatches.get(low);
+
+        ArrayList<Match> screenMatches = new ArrayList<>();
+        scanLines(screen, mIndexedEndRow, screen.mScrolledRows + screen.mScreenRows, screenMatches);
+        for (Match match : screenMatches)
+            if (!match.isBefore(fromRow, column + 1)) return match;
+        return null;
+    }
+
+    /** Find the last match starting before a cell, or null if none. Use a row of {@code mRows} to search from the end. */
+    public Match findPrevious(int row, int column) {
+        TerminalBuffer screen = updateIndex();
+        long fromRow = screen.mScrolledRows + row;
+
+        ArrayList<Match> screenMatches = new ArrayList<>();
+        scanLines(screen, mIndexedEndRow, screen.mScrolledRows + screen.mScreenRows, screenMatches);
+        for (int i = screenMatches.size() - 1; i >= 0; i--)
+            if (screenMatches.get(i).isBefore(fromRow, column)) return screenMatches.get(i);
+
+        // The last indexed match before the cell:
+        int low = mFirstMatch, high = mMatches.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mMatches.get(middle).isBefore(fromRow, column)) low = middle + 1;
+            else high = middle;
+        }
+        return (low > mFirstMatch) ? mMatches.get(low - 1) : null;
+    }
+
+    /** Find the match covering a cell, or null if none. */
+    public Match findAt(int row, int column) {
+        Match match = findPrevious(row, column + 1);
+        if (match == null) return null;
+        int endRow = match.getEndRow();
+        return (endRow > row || (endRow == row && match.mEndColumn >= column)) ? match : null;
+    }
+
+    /** Get all matches in the transcript and on the screen, in order. */
+    public List<Match> getMatches() {
+        TerminalBuffer screen = updateIndex();
+        ArrayList<Match> result = new ArrayList<>(mMatches.subList(mFirstMatch, mMatches.size()));
+        scanLines(screen, mIndexedEndRow, screen.mScrolledRows + screen.mScreenRows, result);
+        return result;
+    }
+
+    /**
+     * Index the lines which have completely scrolled into the transcript since the last call, and the lines reflowed
+     * into the top of the transcript since then. Rows still left to be reflowed by a resize are not searched, as they
+     * are reflowed over time, see {@link TerminalSession#reflowTranscript(int)}, instead of all at once here.
+     */
+    private TerminalBuffer updateIndex() {
+        TerminalBuffer screen = mEmulator.getScreen();
+        long transcriptStartRow = screen.mScrolledRows - screen.getActiveTranscriptRows();
+        if (screen != mScreen || screen.mLayoutChanges != mLayoutChanges) {
+            mScreen = screen;
+            mLayoutChanges = screen.mLayoutChanges;
+            mMatches.clear();
+            mFirstMatch = 0;
+            mIndexedStartRow = mIndexedEndRow = transcriptStartRow;
+        } else if (mIndexedEndRow < transcriptStartRow) {
+            // All indexed rows have been dropped from the transcript.
+            mIndexedStartRow = mIndexedEndRow = transcriptStartRow;
+        } else if (transcriptStartRow < mIndexedStartRow) {
+            // Rows have been reflowed into the top of the transcript, which end on a line boundary:
+            ArrayList<Match> reflowedMatches = new ArrayList<>();
+            scanLines(screen, transcriptStartRow, mIndexedStartRow, reflowedMatches);
+            mMatches.subList(0, mFirstMatch).clear();
+            mMatches.addAll(0, reflowedMatches);
+            mFirstMatch = 0;
+            mIndexedStartRow = transcriptStartRow;
+        } else {
+            mIndexedStartRow = transcriptStartRow;
+        }
+
+        // Drop the matches in rows no longer in the transcript, compacting once most are stale:
+        while (mFirstMatch < mMatches.size() && mMatches.get(mFirstMatch).mStartRow < transcriptStartRow) mFirstMatch++;
+        if (mFirstMatch > mMatches.size() / 2) {
+            mMatches.subList(0, mFirstMatch).clear();
+            mFirstMatch = 0;
+        }
+
+        // Only complete lines are indexed, as the last line of the transcript may continue on the screen:
+        long lineEndRow = screen.mScrolledRows - 1;
+        while (lineEndRow >= mIndexedEndRow && isJoinedWithNextRow(screen, lineEndRow)) lineEndRow--;
+        if (lineEndRow >= mIndexedEndRow) {
+            scanLines(screen, mIndexedEndRow, lineEndRow + 1, mMatches);
+            mIndexedEndRow = lineEndRow + 1;
+        }
+        return screen;
+    }
+
+    private static TerminalRow getRow(TerminalBuffer screen, long row) {
+        return screen.getRow((int) (row - screen.mScrolledRows));
+    }
+
+    private boolean isJoinedWithNextRow(TerminalBuffer screen, long row) {
+        return mJoinFullLines ? screen.isJoinedWithNextRow((int) (row - screen.mScrolledRows)) : getRow(screen, row).mLineWrap;
+    }
+
+    /** Add the matches in the lines from {@code startRow} to the line ending before {@code endRow} to a list, in order. */
+    private void scanLines(TerminalBuffer screen, long startRow, long endRow, ArrayList<Match> result) {
+        long lineStartRow = startRow;
+        for (long row = startRow; row < endRow; row++) {
+            if (row == endRow - 1 || !isJoinedWithNextRow(screen, row)) {
+                scanLine(screen, lineStartRow, row, result);
+                lineStartRow = row + 1;
+            }
+        }
+    }
+
+    /** Add the matches in the line from {@code startRow} to {@code endRow}, which is inclusive, to a list. */
+    private void scanLine(TerminalBuffer screen, long startRow, long endRow, ArrayList<Match> result) {
+        final StringBuilder text = mLineText;
+        text.setLength(0);
+        for (long row = startRow; row <= endRow; row++) {
+            TerminalRow line = getRow(screen, row);
+            final char[] chars = line.mText;
+            final int spaceUsed = line.getSpaceUsed();
+            final int rowStart = text.length();
+            int column = 0, latestNonCombiningWidth = 0;
+            for (int i = 0; i < spaceUsed; ) {
+                final int charCount = Character.isHighSurrogate(chars[i]) && i + 1 < spaceUsed ? 2 : 1;
+                final int width = WcWidth.width(chars, i);
+                if (width > 0) {
+                    column += latestNonCombiningWidth;
+                    latestNonCombiningWidth = width;
+                }
+                for (int j = 0; j < charCount; j++) {
+                    addChar(chars[i + j], row, column, column + Math.max(latestNonCombiningWidth, 1) - 1);
+                }
+                i += charCount;
+            }
+            // Trailing blanks do not belong to the line unless it wraps onto the next row.
+            if (row == endRow || !line.mLineWrap) {
+                int length = text.length();
+                while (length > rowStart && text.charAt(length - 1) == ' ') length--;
+                text.setLength(length);
+            }
+        }
+
+        Matcher matcher = mPattern.matcher(text);
+        while (matcher.find()) {
+            if (matcher.start() == matcher.end()) continue;
+            int last = matcher.end() - 1;
+            if (Character.isLowSurrogate(text.charAt(last)) && last > matcher.start()) last--;
+            result.add(new Match(screen, mCharRows[matcher.start()], mCharStartColumns[matcher.start()], mCharRows[last], mCharEndColumns[last]));
+        }
+    }
+
+    private void addChar(char c, long row, int startColumn, int endColumn) {
+        final int index = mLineText.length();
+        if (index == mCharRows.length) {
+            mCharRows = Arrays.copyOf(mCharRows, 2 * index);
+            mCharStartColumns = Arrays.copyOf(mCharStartColumns, 2 * index);
+            mCharEndColumns = Arrays.copyOf(mCharEndColumns, 2 * index);
+        }
+        mLineText.append(c);
+        mCharRows[index] = row;
+        mCharStartColumns[index] = startColumn;
+        mCharEndColumns[index] = endColumn;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.termux.terminal;
 
+import java.util.Arrays;
+
 /**
  * Implementation of wcwidth(3) for Unicode 15.
  *
@@ -16,7 +18,7 @@ public final class WcWidth {
     // From https://github.com/jquast/wcwidth/blob/master/wcwidth/table_zero.py
     // from https://github.com/jquast/wcwidth/pull/64
     // at commit 1b9b6585b0080ea5cb88dc9815796505724793fe (2022-12-16):
-    private static final int[][] ZERO_WIDTH = {
+    static final int[][] ZERO_WIDTH = {
         {0x00300, 0x0036f},  // Combining Grave Accent  ..Combining Latin Small Le
         {0x00483, 0x00489},  // Combining Cyrillic Titlo..Combining Cyrillic Milli
         {0x00591, 0x005bd},  // Hebrew Accent Etnahta   ..Hebrew Point Meteg
@@ -365,7 +367,7 @@ public final class WcWidth {
     // https://github.com/jquast/wcwidth/blob/master/wcwidth/table_wide.py
     // from https://github.com/jquast/wcwidth/pull/64
     // at commit 1b9b6585b0080ea5cb88dc9815796505724793fe (2022-12-16):
-    private static final int[][] WIDE_EASTASIAN = {
+    static final int[][] WIDE_EASTASIAN = {
         {0x01100, 0x0115f},  // Hangul Choseong Kiyeok  ..Hangul Choseong Filler
         {0x0231a, 0x0231b},  // Watch                   ..Hourglass
         {0x02329, 0x0232a},  // Left-pointing Angle Brac..Right-pointing Angle Bra
@@ -490,46 +492,101 @@ public final class WcWidth {
     };
 
 
-    private static boolean intable(int[][] table, int c) {
-        // First quick check f|| Latin1 etc. characters.
-        if (c < table[0][0]) return false;
+    /**
+     * Code points of width 0 that are not in {@link #ZERO_WIDTH}: C0/C1 control characters (Termux change: 0 instead of
+     * -1), the combining grapheme joiner, zero width and bidi formatting characters, line and paragraph separators and
+     * the word joiner and invisible operators.
+     */
+    private static final int[][] ZERO_WIDTH_OTHER = {
+        {0x00000, 0x0001f},
+        {0x0007f, 0x0009f},
+        {0x0034f, 0x0034f},
+        {0x0200b, 0x0200f},
+        {0x02028, 0x0202e},
+        {0x02060, 0x02063},
+    };
+
+    /** Number of code points covered by each block of the lookup table. */
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    /** Each int of a block packs the 2 bit widths of 16 code points. */
+    private static final int INTS_PER_BLOCK = BLOCK_SIZE / 16;
+    private static final int CODE_POINT_LIMIT = Character.MAX_CODE_POINT + 1;
 
-        // Binary search in table.
-        int bot = 0;
-        int top = table.length - 1; // (int)(size / sizeof(struct interval) - 1);
-        while (top >= bot) {
-            int mid = (bot + top) / 2;
-            if (table[mid][1] < c) {
-                bot = mid + 1;
-            } else if (table[mid][0] > c) {
-                top = mid - 1;
+    /**
+     * Two-level lookup table of the width of every code point, built from the range tables above. {@link #BLOCK_INDEX}
+     * gives, for every block of {@link #BLOCK_SIZE} code points, the offset in {@link #BLOCKS} of its packed widths.
+     * Blocks entirely of width 1 or 2 all share the same packed block, so only about a hundred blocks are stored.
+     */
+    private static final char[] BLOCK_INDEX = new char[CODE_POINT_LIMIT >> BLOCK_SHIFT];
+    private static final int[] BLOCKS;
+
+    static {
+        // The first two blocks are the ones of all width 1 and all width 2, shared by most of Unicode.
+        int[] blocks = new int[128 * INTS_PER_BLOCK];
+        Arrays.fill(blocks, 0, INTS_PER_BLOCK, 0x55555555);
+        Arrays.fill(blocks, INTS_PER_BLOCK, 2 * INTS_PER_BLOCK, 0xAAAAAAAA);
+        int blocksLength = 2 * INTS_PER_BLOCK;
+
+        byte[] widths = new byte[BLOCK_SIZE];
+        int[] zeroWidthOtherIndex = new int[1], zeroWidthIndex = new int[1], wideIndex = new int[1];
+        for (int block = 0; block < BLOCK_INDEX.length; block++) {
+            int blockStart = block << BLOCK_SHIFT;
+            boolean wide = overlaps(blockStart, WIDE_EASTASIAN, wideIndex);
+            boolean zeroWidth = overlaps(blockStart, ZERO_WIDTH, zeroWidthIndex)
+                | overlaps(blockStart, ZERO_WIDTH_OTHER, zeroWidthOtherIndex);
+
+            if (!wide && !zeroWidth) {
+                BLOCK_INDEX[block] = 0;
+            } else if (!zeroWidth && WIDE_EASTASIAN[wideIndex[0]][0] <= blockStart
+                && WIDE_EASTASIAN[wideIndex[0]][1] >= blockStart + BLOCK_SIZE - 1) {
+                BLOCK_INDEX[block] = INTS_PER_BLOCK;
             } else {
-                return true;
+                Arrays.fill(widths, (byte) 1);
+                // Zero width ranges are applied last as they take precedence, some wide ranges contain combining chars.
+                fillBlock(widths, blockStart, WIDE_EASTASIAN, wideIndex[0], 2);
+                fillBlock(widths, blockStart, ZERO_WIDTH, zeroWidthIndex[0], 0);
+                fillBlock(widths, blockStart, ZERO_WIDTH_OTHER, zeroWidthOtherIndex[0], 0);
+
+                if (blocksLength == blocks.length) blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+                for (int i = 0; i < BLOCK_SIZE; i++) blocks[blocksLength + (i >> 4)] |= widths[i] << ((i & 15) << 1);
+                BLOCK_INDEX[block] = (char) blocksLength;
+                blocksLength += INTS_PER_BLOCK;
             }
         }
-        return false;
+        BLOCKS = Arrays.copyOf(blocks, blocksLength);
+    }
+
+    /**
+     * Advance {@code tableIndex} to the first range of {@code table} that may overlap the block starting at
+     * {@code blockStart} or a later one, as blocks are visited in order and ranges are sorted, and return whether that
+     * range overlaps this block.
+     */
+    private static boolean overlaps(int blockStart, int[][] table, int[] tableIndex) {
+        int i = tableIndex[0];
+        while (i < table.length && table[i][1] < blockStart) i++;
+        tableIndex[0] = i;
+        return i < table.length && table[i][0] < blockStart + BLOCK_SIZE;
+    }
+
+    /** Set the width of the code points of {@code table} ranges, from {@code tableIndex} on, that fall in the block. */
+    private static void fillBlock(byte[] widths, int blockStart, int[][] table, int tableIndex, int width) {
+        int blockEnd = blockStart + BLOCK_SIZE - 1;
+        for (int i = tableIndex; i < table.length && table[i][0] <= blockEnd; i++) {
+            int from = Math.max(table[i][0], blockStart) - blockStart;
+            int to = Math.min(table[i][1], blockEnd) - blockStart;
+            Arrays.fill(widths, from, to + 1, (byte) width);
+        }
     }
 
     /** Return the terminal display width of a code point: 0, 1 || 2. */
     public static int width(int ucs) {
-        if (ucs == 0 ||
-            ucs == 0x034F ||
-            (0x200B <= ucs && ucs <= 0x200F) ||
-            ucs == 0x2028 ||
-            ucs == 0x2029 ||
-            (0x202A <= ucs && ucs <= 0x202E) ||
-            (0x2060 <= ucs && ucs <= 0x2063)) {
-            return 0;
+        if (ucs >>> BLOCK_SHIFT >= BLOCK_INDEX.length) {
+            // Negative values are treated like control characters and values above the Unicode range as unassigned.
+            return ucs < 0 ? 0 : 1;
         }
-
-        // C0/C1 control characters
-        // Termux change: Return 0 instead of -1.
-        if (ucs < 32 || (0x07F <= ucs && ucs < 0x0A0)) return 0;
-
-        // combining characters with zero width
-        if (intable(ZERO_WIDTH, ucs)) return 0;
-
-        return intable(WIDE_EASTASIAN, ucs) ? 2 : 1;
+        int packed = BLOCKS[BLOCK_INDEX[ucs >>> BLOCK_SHIFT] + ((ucs >>> 4) & (INTS_PER_BLOCK - 1))];
+        return (packed >>> ((ucs & 15) << 1)) & 3;
     }
 
     /** The width at an index position in a java char array. */
@@ -0,0 +1,108 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests that the printable ASCII fast path of {@link TerminalEmulator#append(byte[], int)} gives the same result as
+ * processing each code point through {@link TerminalEmulator#processCodePoint(int)}.
+ */
+public class AsciiFastPathTest extends TerminalTestCase {
+
+	private static final String[] SEQUENCES = {
+		"\r", "\n", "\r\n", "\t", "\b",
+		"\033[?7l", "\033[?7h", // Autowrap off and on.
+		"\033[4h", "\033[4l", // Insert mode on and off.
+		"\033(0", "\033(B", "\016", "\017", // Line drawing charset and shift out/in.
+		"\033[2;4r", "\033[r", // Top and bottom margins.
+		"\033[?69h\033[3;7s", "\033[?69l", // Left and right margins.
+		"\033[31;1m", "\033[44m", "\033[0m",
+		"\033[H", "\033[3;5H", "\033[9G", "\033[2b", // Cursor movement and repeat.
+		"é", "中", "́", "😀", // Non-ascii, wide, combining and surrogate pair.
+		"\033]0;title\007",
+	};
+
+	public void testWrapsAtEndOfLine() {
+		withTerminalSized(3, 3).enterString("abcdefg").assertLinesAre("abc", "def", "g  ");
+		assertCursorAt(2, 1);
+		assertTrue(mTerminal.getScreen().getLineWrap(0));
+		assertTrue(mTerminal.getScreen().getLineWrap(1));
+		assertFalse(mTerminal.getScreen().getLineWrap(2));
+	}
+
+	public void testScrollsWhenWrappingOnLastLine() {
+		withTerminalSized(3, 2).enterString("abcdefghijk").assertLinesAre("ghi", "jk ");
+		assertHistoryStartsWith("def", "abc");
+	}
+
+	public void testNoAutoWrapOverwritesLastColumn() {
+		withTerminalSized(3, 2).enterString("\033[?7labcdefg").assertLinesAre("abg", "   ");
+		assertCursorAt(0, 2);
+	}
+
+	public void testStopsAtEscapeSequence() {
+		withTerminalSized(5, 2).enterString("ab\033[31mcd\033[0me");
+		assertLinesAre("abcde", "     ");
+		assertEquals(TextStyle.COLOR_INDEX_FOREGROUND, TextStyle.decodeForeColor(mTerminal.getScreen().getStyleAt(0, 1)));
+		assertEquals(1, TextStyle.decodeForeColor(mTerminal.getScreen().getStyleAt(0, 2)));
+		assertEquals(1, TextStyle.decodeForeColor(mTerminal.getScreen().getStyleAt(0, 3)));
+		assertEquals(TextStyle.COLOR_INDEX_FOREGROUND, TextStyle.decodeForeColor(mTerminal.getScreen().getStyleAt(0, 4)));
+	}
+
+	public void testRowWithWideCharacters() {
+		withTerminalSized(6, 2).enterString("中\rabcd").assertLinesAre("abcd  ", "      ");
+		withTerminalSized(6, 2).enterString("ab中\rxyz").assertLinesAre("xyz   ", "      ");
+	}
+
+	public void testMatchesCodePointProcessing() {
+		Random random = new Random(1234);
+		for (int round = 0; round < 200; round++) {
+			int columns = 1 + random.nextInt(12);
+			// At least two rows, as DECSTBM requires top + 2 <= bottom.
+			int rows = 2 + random.nextInt(5);
+			TerminalEmulator fast = new TerminalEmulator(new MockTerminalOutput(), columns, rows, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, rows * 2, null);
+			TerminalEmulator reference = new TerminalEmulator(new MockTerminalOutput(), columns, rows, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, rows * 2, null);
+
+			StringBuilder input = new StringBuilder();
+			for (int i = 0; i < 100; i++) {
+				if (random.nextInt(4) == 0) {
+					input.append(SEQUENCES[random.nextInt(SEQUENCES.length)]);
+				} else {
+					int length = random.nextInt(3 * columns);
+					for (int j = 0; j < length; j++) input.append((char) (32 + random.nextInt(95)));
+				}
+			}
+
+			String inputString = input.toString();
+			byte[] bytes = inputString.getBytes(StandardCharsets.UTF_8);
+			try {
+				inputString.codePoints().forEach(reference::processCodePoint);
+			} catch (RuntimeException e) {
+				// Some random combinations of margins, insert mode and wide chars are not handled by the emulator at
+				// all, which is not what is being tested here.
+				continue;
+			}
+			fast.append(bytes, bytes.length);
+
+			assertSameState("Input: " + inputString, reference, fast);
+		}
+	}
+
+	private static void assertSameState(String message, TerminalEmulator expected, TerminalEmulator actual) {
+		assertEquals(message, expected.getCursorRow(), actual.getCursorRow());
+		assertEquals(message, expected.getCursorCol(), actual.getCursorCol());
+		TerminalBuffer expectedScreen = expected.getScreen();
+		TerminalBuffer actualScreen = actual.getScreen();
+		assertEquals(message, expectedScreen.getActiveTranscriptRows(), actualScreen.getActiveTranscriptRows());
+		for (int row = -expectedScreen.getActiveTranscriptRows(); row < expected.mRows; row++) {
+			TerminalRow expectedRow = expectedScreen.allocateFullLineIfNecessary(expectedScreen.externalToInternalRow(row));
+			TerminalRow actualRow = actualScreen.allocateFullLineIfNecessary(actualScreen.externalToInternalRow(row));
+			String rowMessage = message + ", row: " + row;
+			assertEquals(rowMessage, new String(expectedRow.mText, 0, expectedRow.getSpaceUsed()), new String(actualRow.mText, 0, actualRow.getSpaceUsed()));
+			for (int column = 0; column < expected.mColumns; column++)
+				assertEquals(rowMessage + ", column: " + column, expectedRow.getStyle(column), actualRow.getStyle(column));
+			assertEquals(rowMessage, expectedRow.mLineWrap, actualRow.mLineWrap);
+		}
+	}
+
+}
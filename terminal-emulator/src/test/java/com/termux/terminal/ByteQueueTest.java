@@ -51,4 +51,126 @@ public class ByteQueueTest extends TestCase {
 		assertEquals(0, q.read(new byte[128], false));
 	}
 
+	public void testReadReturnsEndOfStreamAfterClose() throws Exception {
+		ByteQueue q = new ByteQueue(10);
+		assertTrue(q.write(new byte[]{1, 2, 3}, 0, 3));
+		q.close();
+		assertEquals(-1, q.read(new byte[10], true));
+		assertEquals(-1, q.read(new byte[10], false));
+	}
+
+	public void testFinishWritingReturnsRemainingBytesThenEndOfStream() throws Exception {
+		final ByteQueue q = new ByteQueue(10);
+		final int[] result = new int[]{Integer.MIN_VALUE};
+		Thread reader = new Thread(() -> result[0] = q.read(new byte[10], true));
+		reader.start();
+		Thread.sleep(50);
+		q.finishWriting();
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		assertEquals(-1, result[0]);
+
+		ByteQueue q2 = new ByteQueue(10);
+		assertTrue(q2.write(new byte[]{1, 2, 3}, 0, 3));
+		q2.finishWriting();
+		assertEquals(3, q2.read(new byte[10], true));
+		assertEquals(-1, q2.read(new byte[10], false));
+	}
+
+	public void testCloseWakesBlockedReader() throws Exception {
+		final ByteQueue q = new ByteQueue(10);
+		final int[] result = new int[]{Integer.MIN_VALUE};
+		Thread reader = new Thread(() -> result[0] = q.read(new byte[10], true));
+		reader.start();
+		Thread.sleep(50);
+		q.close();
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		assertEquals(-1, result[0]);
+	}
+
+	public void testCloseWakesBlockedWriter() throws Exception {
+		final ByteQueue q = new ByteQueue(10);
+		final boolean[] result = new boolean[]{true};
+		Thread writer = new Thread(() -> result[0] = q.write(new byte[20], 0, 20));
+		writer.start();
+		Thread.sleep(50);
+		q.close();
+		writer.join(5000);
+		assertFalse(writer.isAlive());
+		assertFalse(result[0]);
+	}
+
+	public void testConcurrentTransfer() throws Exception {
+		// Odd queue and chunk sizes so that both sides wrap around and block at every possible offset.
+		final ByteQueue q = new ByteQueue(61);
+		final int totalBytes = 1024 * 1024;
+		Thread writer = new Thread(() -> {
+			byte[] chunk = new byte[37];
+			int written = 0;
+			while (written < totalBytes) {
+				int length = Math.min(chunk.length, totalBytes - written);
+				for (int i = 0; i < length; i++) chunk[i] = (byte) (written + i);
+				q.write(chunk, 0, length);
+				written += length;
+			}
+		});
+		writer.start();
+
+		byte[] readBuffer = new byte[53];
+		int read = 0;
+		while (read < totalBytes) {
+			int bytesRead = q.read(readBuffer, true);
+			assertTrue(bytesRead > 0);
+			for (int i = 0; i < bytesRead; i++) {
+				if (readBuffer[i] != (byte) (read + i)) fail("Corrupted byte at position " + (read + i));
+			}
+			read += bytesRead;
+		}
+		writer.join(5000);
+		assertEquals(0, q.read(readBuffer, false));
+	}
+
+	public void testAdaptiveQueueGrowsWhenSaturated() throws Exception {
+		ByteQueue q = new ByteQueue(8, 32);
+		assertEquals(8, q.getCapacity());
+
+		// Not waiting on a full queue does not grow it.
+		assertTrue(q.write(new byte[8], 0, 8));
+		assertEquals(8, q.read(new byte[8], true));
+		assertTrue(q.write(new byte[1], 0, 1));
+		assertEquals(1, q.read(new byte[8], true));
+		assertEquals(8, q.getCapacity());
+
+		for (int expectedCapacity : new int[]{16, 32, 32}) {
+			saturate(q);
+			assertEquals(expectedCapacity, q.getCapacity());
+		}
+	}
+
+	public void testAdaptiveQueueShrinksWhenIdle() throws Exception {
+		ByteQueue q = new ByteQueue(8, 32, 0);
+		saturate(q);
+		assertEquals(16, q.getCapacity());
+
+		// Not saturated since the last write and idle for longer than the shrink delay.
+		assertTrue(q.write(new byte[]{42}, 0, 1));
+		assertEquals(8, q.getCapacity());
+		byte[] buffer = new byte[8];
+		assertEquals(1, q.read(buffer, true));
+		assertEquals(42, buffer[0]);
+	}
+
+	/** Make a producer thread wait on a full queue, then write again once it has been drained. */
+	private static void saturate(final ByteQueue q) throws Exception {
+		Thread writer = new Thread(() -> q.write(new byte[100], 0, 100));
+		writer.start();
+		int read = 0;
+		byte[] buffer = new byte[100];
+		while (read < 100) read += q.read(buffer, true);
+		writer.join();
+		assertTrue(q.write(new byte[1], 0, 1));
+		assertEquals(1, q.read(buffer, true));
+	}
+
 }
@@ -0,0 +1,90 @@
+package com.termux.terminal;
+
+public class DirtyRowsTest extends TerminalTestCase {
+
+	private void assertDirtyRows(int... rows) {
+		TerminalBuffer screen = mTerminal.getScreen();
+		StringBuilder expected = new StringBuilder(), actual = new StringBuilder();
+		for (int row : rows) expected.append(row).append(' ');
+		for (int row = screen.nextDirtyRow(0); row >= 0; row = screen.nextDirtyRow(row + 1)) actual.append(row).append(' ');
+		assertEquals(expected.toString(), actual.toString());
+		screen.clearDirtyRows();
+	}
+
+	@Override
+	protected TerminalTestCase withTerminalSized(int columns, int rows) {
+		super.withTerminalSized(columns, rows);
+		mTerminal.getScreen().clearDirtyRows();
+		return this;
+	}
+
+	public void testNewScreenIsDirty() {
+		super.withTerminalSized(3, 3);
+		assertDirtyRows(0, 1, 2);
+	}
+
+	public void testWritingDirtiesRow() {
+		withTerminalSized(5, 4).enterString("ab");
+		assertDirtyRows(0);
+		enterString("\r\n\nä");
+		assertDirtyRows(2);
+		enterString("\033[4;1Hxyz");
+		assertDirtyRows(3);
+	}
+
+	public void testCursorMovementDoesNotDirty() {
+		withTerminalSized(5, 4).enterString("\033[3;3H\033[A\r\n\033[C");
+		assertDirtyRows();
+	}
+
+	public void testScrollingDirtiesScrolledRows() {
+		withTerminalSized(3, 4).enterString("\033[4;1H\n");
+		assertDirtyRows(0, 1, 2, 3);
+		// Scroll region from the second to the third row, where the rows outside the margins are dirtied too as
+		// scrolling changes the scrolled rows count identifying them:
+		enterString("\033[2;3r\033[3;1H\n");
+		assertDirtyRows(0, 1, 2, 3);
+	}
+
+	public void testScrollRegionDirtiesFixedHeaderRow() {
+		withTerminalSized(3, 5).enterString("top\033[2;4r\033[4;1H");
+		mTerminal.getScreen().clearDirtyRows();
+		long scrolledRows = mTerminal.getScreen().getScrolledRows();
+		enterString("\n");
+		assertEquals(scrolledRows + 1, mTerminal.getScreen().getScrolledRows());
+		assertLineIs(0, "top");
+		assertDirtyRows(0, 1, 2, 3, 4);
+	}
+
+	public void testEraseAndInsert() {
+		withTerminalSized(5, 4).enterString("\033[2;1H\033[K");
+		assertDirtyRows(1);
+		enterString("\033[2J");
+		assertDirtyRows(0, 1, 2, 3);
+		enterString("\033[3;1H\033[L");
+		assertDirtyRows(2, 3);
+	}
+
+	public void testChangeAttributes() {
+		// DECCARA setting bold on the second and third rows.
+		withTerminalSized(5, 4).enterString("\033[2;1;3;5;1$r");
+		assertDirtyRows(1, 2);
+	}
+
+	public void testColorsAndScreenChangesDirtyAllRows() {
+		withTerminalSized(3, 3).enterString("\033]4;1;#ffffff\007");
+		assertDirtyRows(0, 1, 2);
+		enterString("\033[?5h");
+		assertDirtyRows(0, 1, 2);
+		enterString("\033[?1049h");
+		assertDirtyRows(0, 1, 2);
+		enterString("\033[?1049l");
+		assertDirtyRows(0, 1, 2);
+	}
+
+	public void testResizeDirtiesAllRows() {
+		withTerminalSized(3, 3).resize(4, 2);
+		assertDirtyRows(0, 1);
+	}
+
+}
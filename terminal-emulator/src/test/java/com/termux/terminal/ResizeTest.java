@@ -209,4 +209,40 @@ public class ResizeTest extends TerminalTestCase {
 		resize(5, rows).assertLinesAre("ＱＲ ", "     ", "     ", "     ");
 	}
 
+	public void testResizeReflowsTranscriptLazily() {
+		mTerminal = new TerminalEmulator(mOutput, 6, 4, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, 100, null);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 10; i < 30; i++) {
+			enterString("line" + i + "\r\n");
+			expected.append("line").append(i).append('\n');
+		}
+		TerminalBuffer screen = mTerminal.getScreen();
+		assertFalse(screen.hasRowsToReflow());
+
+		// Only the screen is reflowed, leaving the older lines of the transcript for later:
+		resize(4, 4).assertLinesAre("28  ", "line", "29  ", "    ").assertCursorAt(3, 0);
+		assertTrue(screen.hasRowsToReflow());
+		int activeTranscriptRows = screen.getActiveTranscriptRows();
+		assertTrue(mTerminal.reflowTranscript(2));
+		assertTrue(screen.getActiveTranscriptRows() > activeTranscriptRows);
+		assertLinesAre("28  ", "line", "29  ", "    ");
+
+		assertEquals(expected.toString().trim(), screen.getTranscriptText());
+		assertFalse(screen.hasRowsToReflow());
+		assertEquals(37, screen.getActiveTranscriptRows());
+		assertLineIs(-37, "line");
+		assertLineIs(-36, "10  ");
+		assertInvariants();
+	}
+
+	public void testResizeReflowsTranscriptLazilyWhenScreenGrows() {
+		mTerminal = new TerminalEmulator(mOutput, 6, 4, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, 100, null);
+		for (int i = 10; i < 30; i++) enterString("line" + i + "\r\n");
+		resize(4, 4);
+		assertTrue(mTerminal.getScreen().hasRowsToReflow());
+		// Rows left to be reflowed are needed to fill the taller screen:
+		resize(4, 8).assertLinesAre("26  ", "line", "27  ", "line", "28  ", "line", "29  ", "    ").assertCursorAt(7, 0);
+		assertEquals("line10", mTerminal.getScreen().getTranscriptText().substring(0, 6));
+	}
+
 }
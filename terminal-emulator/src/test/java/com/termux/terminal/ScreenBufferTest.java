@@ -1,5 +1,10 @@
 package com.termux.terminal;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
 public class ScreenBufferTest extends TerminalTestCase {
 
 	public void testBasics() {
@@ -62,4 +67,83 @@ public class ScreenBufferTest extends TerminalTestCase {
 		assertEquals("", mTerminal.getScreen().getWordAtLocation(1, 2));
 		assertEquals("", mTerminal.getScreen().getWordAtLocation(2, 2));
 	}
+
+	public void testGetWordAtLocationInTranscriptAndWideChars() {
+		// A word wrapped over five rows of which the first three have scrolled into the transcript.
+		withTerminalSized(4, 3).enterString("x abcdefghijklmnopq\r\n");
+		TerminalBuffer screen = mTerminal.getScreen();
+		assertEquals(-3, screen.getLineStartRow(1));
+		assertEquals(1, screen.getLineEndRow(-3));
+		assertEquals("abcdefghijklmnopq", screen.getWordAtLocation(2, -3));
+		assertEquals("abcdefghijklmnopq", screen.getWordAtLocation(0, 1));
+		assertEquals("x", screen.getWordAtLocation(0, -3));
+		assertEquals("", screen.getWordAtLocation(3, 1));
+
+		withTerminalSized(6, 3).enterString("a 中文b");
+		assertEquals("中文b", mTerminal.getScreen().getWordAtLocation(4, 0));
+		assertEquals("中文b", mTerminal.getScreen().getWordAtLocation(6 - 1, 0));
+		assertEquals("a", mTerminal.getScreen().getWordAtLocation(0, 0));
+	}
+
+	private String writeTranscript(boolean joinBackLines, boolean joinFullLines, boolean trim) throws IOException {
+		StringWriter writer = new StringWriter();
+		mTerminal.getScreen().writeTranscript(writer, joinBackLines, joinFullLines, trim);
+		return writer.toString();
+	}
+
+	public void testWriteTranscript() throws IOException {
+		String[] outputs = {"", "   \r\n\r\n", "  ab  \r\n\r\ncd\r\n", "abcdefghij  kl\r\n\r\n  mnopq r\r\n\r\n\r\n", "中文 wide chars over the line\r\n  "};
+		for (String output : outputs) {
+			withTerminalSized(5, 3).enterString(output);
+			TerminalBuffer screen = mTerminal.getScreen();
+			assertEquals(screen.getTranscriptText(), writeTranscript(true, false, true));
+			assertEquals(screen.getTranscriptTextWithoutJoinedLines(), writeTranscript(false, false, true));
+			assertEquals(screen.getTranscriptTextWithFullLinesJoined(), writeTranscript(true, true, true));
+			assertEquals(screen.getSelectedText(0, -screen.getActiveTranscriptRows(), 5, 3), writeTranscript(true, false, false));
+		}
+
+		withTerminalSized(5, 3).enterString("ä€😀");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		mTerminal.getScreen().writeTranscript(output, true, false, true);
+		assertEquals("ä€😀", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	public void testReadTranscriptInChunks() throws IOException {
+		String[] outputs = {"", "   \r\n\r\n", "  ab  \r\n\r\ncd\r\n", "abcdefghij  kl\r\n\r\n  mnopq r\r\n\r\n\r\n", "中文 wide chars over the line\r\n  "};
+		for (String output : outputs) {
+			withTerminalSized(5, 3).enterString(output);
+			String expected = writeTranscript(true, false, true);
+			TerminalBuffer.TranscriptReader reader = mTerminal.getScreen().readTranscript(true, false, true);
+			StringBuilder text = new StringBuilder();
+			while (reader.readRows(text, 1)) ;
+			assertEquals(expected, text.toString());
+		}
+	}
+
+	public void testReadTranscriptWhileScrolling() throws IOException {
+		withTerminalSized(5, 3).enterString("1\r\n2\r\n3\r\n4");
+		TerminalBuffer.TranscriptReader reader = mTerminal.getScreen().readTranscript(false, false, false);
+		StringBuilder text = new StringBuilder();
+		assertTrue(reader.readRows(text, 2));
+		// The rows scrolling into the transcript between chunks are read once, and the rows on the screen as they are
+		// when read.
+		enterString("5\r\n6");
+		while (reader.readRows(text, 2)) ;
+		assertEquals("1\n2\n3\n45", text.toString());
+	}
+
+	public void testReadTranscriptAfterResizeFails() throws IOException {
+		withTerminalSized(5, 3).enterString("1\r\n2\r\n3\r\n4");
+		TerminalBuffer.TranscriptReader reader = mTerminal.getScreen().readTranscript(true, false, true);
+		StringBuilder text = new StringBuilder();
+		assertTrue(reader.readRows(text, 1));
+		resize(4, 3);
+		try {
+			reader.readRows(text, 1);
+			fail();
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
 }
@@ -0,0 +1,119 @@
+package com.termux.terminal;
+
+public class ScreenSnapshotTest extends TerminalTestCase {
+
+	private static String rowText(TerminalRow row) {
+		return new String(row.mText, 0, row.getSpaceUsed());
+	}
+
+	public void testSnapshotMatchesScreen() {
+		withTerminalSized(5, 3).enterString("ab\r\n\033[31mcd\033[?25l");
+		ScreenSnapshot snapshot = ScreenSnapshot.take(mTerminal, null);
+		assertEquals(5, snapshot.mColumns);
+		assertEquals(3, snapshot.mRows);
+		assertEquals(1, snapshot.mCursorRow);
+		assertEquals(2, snapshot.mCursorCol);
+		assertFalse(snapshot.shouldCursorBeVisible());
+		assertEquals("ab   ", rowText(snapshot.getRow(0)));
+		assertEquals("cd   ", rowText(snapshot.getRow(1)));
+		assertEquals(mTerminal.getScreen().getStyleAt(1, 0), snapshot.getRow(1).getStyle(0));
+	}
+
+	public void testSnapshotIsNotChangedByLaterOutput() {
+		withTerminalSized(5, 3).enterString("ab");
+		ScreenSnapshot snapshot = ScreenSnapshot.take(mTerminal, null);
+		enterString("\rxy\033[2;1Hz");
+		assertEquals("ab   ", rowText(snapshot.getRow(0)));
+		assertEquals("     ", rowText(snapshot.getRow(1)));
+		assertEquals(0, snapshot.mCursorRow);
+		assertEquals(2, snapshot.mCursorCol);
+	}
+
+	public void testUnchangedRowsAreShared() {
+		withTerminalSized(5, 3).enterString("ab\r\ncd");
+		ScreenSnapshot first = ScreenSnapshot.take(mTerminal, null);
+		enterString("e");
+		ScreenSnapshot second = ScreenSnapshot.take(mTerminal, first);
+		assertSame(first.getRow(0), second.getRow(0));
+		assertNotSame(first.getRow(1), second.getRow(1));
+		assertEquals("cde  ", rowText(second.getRow(1)));
+		assertSame(first.mColors, second.mColors);
+	}
+
+	public void testDirtyRowsAreMergedUntilDrawn() {
+		withTerminalSized(5, 4);
+		ScreenSnapshot first = ScreenSnapshot.take(mTerminal, null);
+		assertEquals(0, first.nextDirtyRow(0));
+		first.setDirtyRowsDrawn();
+
+		enterString("\033[2;1Ha");
+		ScreenSnapshot second = ScreenSnapshot.take(mTerminal, first);
+		enterString("\033[4;1Hb");
+		ScreenSnapshot third = ScreenSnapshot.take(mTerminal, second);
+		// The second snapshot was never drawn, so the third includes its dirty row.
+		assertEquals(1, third.nextDirtyRow(0));
+		assertEquals(3, third.nextDirtyRow(2));
+		assertTrue(third.isRowDirty(1));
+		assertFalse(third.isRowDirty(2));
+		third.setDirtyRowsDrawn();
+
+		ScreenSnapshot fourth = ScreenSnapshot.take(mTerminal, third);
+		assertEquals(-1, fourth.nextDirtyRow(0));
+	}
+
+	public void testAlternateBufferMarksAllRowsDirty() {
+		withTerminalSized(5, 3);
+		ScreenSnapshot first = ScreenSnapshot.take(mTerminal, null);
+		assertFalse(first.mAlternateBufferActive);
+		first.setDirtyRowsDrawn();
+		enterString("\033[?1049h");
+		ScreenSnapshot second = ScreenSnapshot.take(mTerminal, first);
+		assertTrue(second.mAlternateBufferActive);
+		assertTrue(second.isRowDirty(0));
+		assertTrue(second.isRowDirty(2));
+	}
+
+	public void testTranscriptRowsKeepTheirPositionAfterScrolling() {
+		withTerminalSized(5, 2).enterString("1\r\n2\r\n3\r\n");
+		ScreenSnapshot snapshot = ScreenSnapshot.take(mTerminal, null);
+		assertEquals("2    ", rowText(snapshot.getRow(-1)));
+		enterString("4\r\n5\r\n");
+		assertEquals("2    ", rowText(snapshot.getRow(-1)));
+		assertEquals("1    ", rowText(snapshot.getRow(-2)));
+	}
+
+	public void testTranscriptRowsAreCopiedOnceAndShared() {
+		withTerminalSized(5, 2).enterString("1\r\n2\r\n3\r\n");
+		ScreenSnapshot first = ScreenSnapshot.take(mTerminal, null);
+		TerminalRow row = first.getRow(-1);
+		assertSame(row, first.getRow(-1));
+		enterString("x");
+		// The transcript has not scrolled, so the next snapshot keeps the copied rows.
+		ScreenSnapshot second = ScreenSnapshot.take(mTerminal, first);
+		assertSame(row, second.getRow(-1));
+		enterString("\r\n");
+		ScreenSnapshot third = ScreenSnapshot.take(mTerminal, second);
+		assertEquals("3    ", rowText(third.getRow(-1)));
+		assertEquals("2    ", rowText(third.getRow(-2)));
+	}
+
+	public void testSelectedTextIsReadAtSnapshotPosition() {
+		withTerminalSized(5, 2).enterString("1\r\n2\r\n3");
+		ScreenSnapshot snapshot = ScreenSnapshot.take(mTerminal, null);
+		assertEquals("2", snapshot.getSelectedText(0, 0, 4, 0));
+		enterString("\r\n4\r\n5");
+		assertEquals("2", snapshot.getSelectedText(0, 0, 4, 0));
+		assertEquals("1\n2", snapshot.getSelectedText(0, -1, 4, 0));
+	}
+
+	public void testRowCopyIsIndependent() {
+		TerminalRow row = new TerminalRow(4, TextStyle.NORMAL);
+		row.setChar(0, 'a', TextStyle.encode(1, 2, 0));
+		TerminalRow copy = new TerminalRow(row);
+		row.setChar(0, 'b', TextStyle.NORMAL);
+		row.setChar(1, '中', TextStyle.NORMAL);
+		assertEquals("a   ", rowText(copy));
+		assertEquals(TextStyle.encode(1, 2, 0), copy.getStyle(0));
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Checks that the style spans of {@link TerminalRow} never take more memory than the previous layout of one long per
+ * column, for a full transcript of {@link #TRANSCRIPT_ROWS} rows. The memory of a full
+ * {@link TerminalEmulator#TERMINAL_TRANSCRIPT_ROWS_MAX} transcript is measured by the StyleMemoryBenchmark of the
+ * terminal-emulator-benchmarks module.
+ */
+public class StyleMemoryTest extends TestCase {
+
+	private static final int COLUMNS = 120;
+	private static final int ROWS = 40;
+	private static final int TRANSCRIPT_ROWS = 2000;
+
+	public void testPlainText() {
+		assertSpansTakeNoMoreMemory((builder, random) -> {
+			int length = random.nextInt(COLUMNS);
+			for (int i = 0; i < length; i++) builder.append((char) ('a' + random.nextInt(26)));
+		});
+	}
+
+	public void testColoredListing() {
+		assertSpansTakeNoMoreMemory((builder, random) -> {
+			for (int i = 0; i < 6; i++) {
+				builder.append("\033[01;3").append(1 + random.nextInt(6)).append("mfile").append(i).append("\033[0m   ");
+			}
+		});
+	}
+
+	public void testColorPerCharacter() {
+		assertSpansTakeNoMoreMemory((builder, random) -> {
+			for (int i = 0; i < COLUMNS - 1; i++) builder.append("\033[3").append(i % 8).append("mx");
+			builder.append("\033[0m");
+		});
+	}
+
+	interface LineGenerator {
+		void appendLine(StringBuilder builder, Random random);
+	}
+
+	private static void assertSpansTakeNoMoreMemory(LineGenerator generator) {
+		TerminalEmulator emulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, 10, 20,
+			TRANSCRIPT_ROWS, null);
+		Random random = new Random(42);
+		for (int line = 0; line < TRANSCRIPT_ROWS; line++) {
+			StringBuilder builder = new StringBuilder();
+			generator.appendLine(builder, random);
+			builder.append("\r\n");
+			byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+			emulator.append(bytes, bytes.length);
+		}
+
+		long denseBytes = 0, spanBytes = 0;
+		for (TerminalRow row : emulator.getScreen().mLines) {
+			if (row == null) continue;
+			denseBytes += arrayBytes(8, COLUMNS);
+			spanBytes += row.mStyle != null ? arrayBytes(8, COLUMNS)
+				: arrayBytes(2, row.mSpanStarts.length) + arrayBytes(8, row.mSpanStyles.length);
+		}
+		assertTrue(spanBytes <= denseBytes);
+	}
+
+	/** The heap size of an array, assuming a 16 byte header and 8 byte alignment. */
+	private static long arrayBytes(int elementSize, int length) {
+		return (16 + (long) elementSize * length + 7) & ~7L;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.termux.terminal;
+
+public class TerminalRowPoolTest extends TerminalTestCase {
+
+	private static final int COLUMNS = 20;
+	private static final int ROWS = 5;
+	private static final int TRANSCRIPT_ROWS = TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MIN;
+
+	private void fillLines(int lines) {
+		for (int i = 0; i < lines; i++) enterString("line " + i + "\r\n");
+	}
+
+	public void testObtainReusesRecycledRows() {
+		TerminalRowPool pool = new TerminalRowPool();
+		TerminalRow row = pool.obtain(COLUMNS, TextStyle.NORMAL);
+		row.setChar(0, 'a', TextStyle.encode(1, 2, 0));
+		row.mLineWrap = true;
+		pool.recycle(row);
+		assertEquals(1, pool.size());
+
+		long style = TextStyle.encode(3, 4, 0);
+		assertSame(row, pool.obtain(COLUMNS, style));
+		assertEquals(1, pool.getAllocatedRows());
+		assertEquals(1, pool.getRecycledRows());
+		assertTrue(row.isBlank());
+		assertFalse(row.mLineWrap);
+		assertEquals(style, row.getStyle(0));
+
+		// Rows of other columns are not reused:
+		pool.recycle(row);
+		assertNotSame(row, pool.obtain(COLUMNS + 1, style));
+		assertEquals(2, pool.getAllocatedRows());
+	}
+
+	public void testPoolIsBounded() {
+		TerminalRowPool pool = new TerminalRowPool();
+		for (int i = 0; i < TerminalRowPool.MAX_ROWS_PER_COLUMNS + 10; i++) pool.recycle(new TerminalRow(COLUMNS, TextStyle.NORMAL));
+		assertEquals(TerminalRowPool.MAX_ROWS_PER_COLUMNS, pool.size());
+
+		// Only the two most recently pooled column counts are kept:
+		pool.recycle(new TerminalRow(COLUMNS + 1, TextStyle.NORMAL));
+		pool.recycle(new TerminalRow(COLUMNS + 2, TextStyle.NORMAL));
+		assertEquals(2, pool.size());
+		pool.obtain(COLUMNS + 1, TextStyle.NORMAL);
+		pool.obtain(COLUMNS + 2, TextStyle.NORMAL);
+		assertEquals(0, pool.getAllocatedRows());
+	}
+
+	public void testScrollingFullTranscriptDoesNotAllocate() {
+		mTerminal = new TerminalEmulator(mOutput, COLUMNS, ROWS, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, TRANSCRIPT_ROWS, null);
+		TerminalRowPool pool = mTerminal.getScreen().mRowPool;
+		fillLines(TRANSCRIPT_ROWS);
+		assertEquals(TRANSCRIPT_ROWS, pool.getAllocatedRows());
+
+		fillLines(10 * TRANSCRIPT_ROWS);
+		assertEquals(TRANSCRIPT_ROWS, pool.getAllocatedRows());
+	}
+
+	public void testClearedTranscriptRowsAreReused() {
+		mTerminal = new TerminalEmulator(mOutput, COLUMNS, ROWS, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, TRANSCRIPT_ROWS, null);
+		TerminalRowPool pool = mTerminal.getScreen().mRowPool;
+		fillLines(50);
+		long allocatedRows = pool.getAllocatedRows();
+
+		int transcriptRows = mTerminal.getScreen().getActiveTranscriptRows();
+		enterString("\033[3J");
+		assertEquals(0, mTerminal.getScreen().getActiveTranscriptRows());
+		fillLines(transcriptRows);
+		assertEquals(allocatedRows, pool.getAllocatedRows());
+		assertEquals(transcriptRows, pool.getRecycledRows());
+	}
+
+	public void testResizeBackReusesRows() {
+		mTerminal = new TerminalEmulator(mOutput, COLUMNS, ROWS, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, TRANSCRIPT_ROWS, null);
+		TerminalRowPool pool = mTerminal.getScreen().mRowPool;
+		fillLines(50);
+		resize(COLUMNS / 2, ROWS);
+		long allocatedRows = pool.getAllocatedRows();
+
+		// The rows replaced by the first resize are reused by resizing back:
+		resize(COLUMNS, ROWS).assertLinesAre("line 46             ", "line 47             ", "line 48             ", "line 49             ", "                    ");
+		assertEquals(allocatedRows, pool.getAllocatedRows());
+		// Reflowing the transcript in chunks reuses the rows of each chunk for the next, so only the first allocates:
+		while (mTerminal.reflowTranscript(10)) ;
+		assertEquals(allocatedRows + 10, pool.getAllocatedRows());
+		assertEquals("line 0", mTerminal.getScreen().getTranscriptText().substring(0, 6));
+	}
+
+}
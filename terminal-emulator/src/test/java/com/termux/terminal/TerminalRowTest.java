@@ -429,4 +429,111 @@ public class TerminalRowTest extends TestCase {
 		// assertEquals(' ', line.mText[line.findStartOfColumn(COLUMNS - 1)]);
 	}
 
+	public void testColumnIndexAfterRandomWrites() {
+		int[] codePoints = {'a', 'Z', ONE_JAVA_CHAR_DISPLAY_WIDTH_TWO_1, TWO_JAVA_CHARS_DISPLAY_WIDTH_TWO_1,
+			TWO_JAVA_CHARS_DISPLAY_WIDTH_ONE_1, DIARESIS_CODEPOINT};
+		Random random = new Random(1234);
+		TerminalRow other = new TerminalRow(COLUMNS, TextStyle.NORMAL);
+		for (int i = 0; i < 20000; i++) {
+			if (random.nextInt(500) == 0) row.clear(TextStyle.NORMAL);
+			int codePoint = codePoints[random.nextInt(codePoints.length)];
+			int column = random.nextInt(WcWidth.width(codePoint) == 2 ? COLUMNS - 1 : COLUMNS);
+			if (random.nextInt(50) == 0) {
+				int start = random.nextInt(COLUMNS);
+				int end = start + random.nextInt(COLUMNS - start + 1);
+				other.copyInterval(row, start, end, random.nextInt(COLUMNS - (end - start) + 1));
+				row.copyInterval(other, 0, COLUMNS, 0);
+			} else {
+				row.setChar(column, codePoint, TextStyle.NORMAL);
+			}
+			for (int c = 0; c < COLUMNS; c++)
+				assertEquals("Write " + i + ", column " + c, walkToStartOfColumn(row, c), row.findStartOfColumn(c));
+		}
+	}
+
+	/** Find the start of a column by walking the row text from its start, as done before columns were indexed. */
+	private static int walkToStartOfColumn(TerminalRow row, int column) {
+		char[] text = row.mText;
+		int currentColumn = 0;
+		int currentCharIndex = 0;
+		while (true) {
+			int newCharIndex = currentCharIndex;
+			char c = text[newCharIndex++];
+			int codePoint = Character.isHighSurrogate(c) ? Character.toCodePoint(c, text[newCharIndex++]) : c;
+			int wcwidth = WcWidth.width(codePoint);
+			if (wcwidth > 0) {
+				currentColumn += wcwidth;
+				if (currentColumn == column) {
+					while (newCharIndex < row.getSpaceUsed() && WcWidth.width(text, newCharIndex) <= 0)
+						newCharIndex += Character.isHighSurrogate(text[newCharIndex]) ? 2 : 1;
+					return newCharIndex;
+				} else if (currentColumn > column) {
+					return currentCharIndex;
+				}
+			}
+			currentCharIndex = newCharIndex;
+		}
+	}
+
+	public void testStyleSpansMatchDenseStyles() {
+		long[] styles = {TextStyle.NORMAL, TextStyle.encode(1, 2, 0), TextStyle.encode(3, 4, TextStyle.CHARACTER_ATTRIBUTE_BOLD), 0};
+		long[] expected = new long[COLUMNS];
+		Arrays.fill(expected, TextStyle.NORMAL);
+		Random random = new Random(1234);
+		for (int i = 0; i < 20000; i++) {
+			long style = styles[random.nextInt(styles.length)];
+			if (random.nextInt(200) == 0) {
+				row.clear(style);
+				Arrays.fill(expected, style);
+			} else {
+				// Mostly short runs, like text written in one style, as long runs leave few spans to test.
+				int start = random.nextInt(COLUMNS);
+				int end = Math.min(COLUMNS, start + 1 + random.nextInt(random.nextBoolean() ? 3 : COLUMNS));
+				row.setStyle(start, end, style);
+				Arrays.fill(expected, start, end, style);
+			}
+
+			for (int column = 0; column < COLUMNS; column++)
+				assertEquals("Write " + i + ", column " + column, expected[column], row.getStyle(column));
+			if (row.mStyle == null) {
+				assertEquals(0, row.mSpanStarts[0]);
+				assertTrue(row.mSpanCount <= TerminalRow.MAX_STYLE_SPANS);
+				for (int span = 1; span < row.mSpanCount; span++) {
+					assertTrue(row.mSpanStarts[span] > row.mSpanStarts[span - 1]);
+					assertTrue(row.mSpanStyles[span] != row.mSpanStyles[span - 1]);
+				}
+			}
+		}
+	}
+
+	public void testSetCharKeepsOneSpanPerStyleRun() {
+		long red = TextStyle.encode(1, TextStyle.COLOR_INDEX_BACKGROUND, 0);
+		for (int column = 10; column < 20; column++) row.setChar(column, 'a', red);
+		assertNull(row.mStyle);
+		assertEquals(3, row.mSpanCount);
+		assertEquals(red, row.getStyle(10));
+		assertEquals(red, row.getStyle(19));
+		assertEquals(TextStyle.NORMAL, row.getStyle(20));
+
+		for (int column = 10; column < 20; column++) row.setChar(column, 'a', TextStyle.NORMAL);
+		assertEquals(1, row.mSpanCount);
+	}
+
+	public void testManyStylesInflateToDenseStyles() {
+		// Together with the blank rest of the row, this makes MAX_STYLE_SPANS spans.
+		int styledColumns = TerminalRow.MAX_STYLE_SPANS - 1;
+		for (int column = 0; column < styledColumns; column++) row.setChar(column, 'a', TextStyle.encode(column, 0, 0));
+		assertNull(row.mStyle);
+		assertEquals(TerminalRow.MAX_STYLE_SPANS, row.mSpanCount);
+		row.setChar(styledColumns, 'a', TextStyle.encode(styledColumns, 0, 0));
+		assertNotNull(row.mStyle);
+		for (int column = 0; column <= styledColumns; column++)
+			assertEquals(TextStyle.encode(column, 0, 0), row.getStyle(column));
+		assertEquals(TextStyle.NORMAL, row.getStyle(COLUMNS - 1));
+
+		row.clear(TextStyle.NORMAL);
+		assertNull(row.mStyle);
+		assertEquals(TextStyle.NORMAL, row.getStyle(0));
+	}
+
 }
@@ -0,0 +1,89 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+
+public class TranscriptArchiveTest extends TerminalTestCase {
+
+	private static final int COLUMNS = 20;
+	private static final int ROWS = 5;
+	private static final int TRANSCRIPT_ROWS = TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MIN;
+
+	private TerminalEmulator newEmulator(int transcriptRows, int archiveRows) {
+		return new TerminalEmulator(new MockTerminalOutput(), COLUMNS, ROWS, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS,
+			transcriptRows, archiveRows, null);
+	}
+
+	private static void append(TerminalEmulator emulator, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		emulator.append(bytes, bytes.length);
+	}
+
+	/** Lines with colors, wide and combining chars and some wrapping over the end of line. */
+	private static String line(int i) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("\033[3").append(i % 8).append('m').append(i).append("\033[0m ");
+		if (i % 3 == 0) builder.append("中文");
+		if (i % 5 == 0) builder.append("ê");
+		if (i % 7 == 0) builder.append("\033[1;44mwrapping over the end of the line\033[0m");
+		return builder.append("\r\n").toString();
+	}
+
+	public void testArchivedRowsMatchLongerTranscript() {
+		TerminalEmulator archived = newEmulator(TRANSCRIPT_ROWS, 10000);
+		TerminalEmulator expected = newEmulator(2000, 0);
+		for (int i = 0; i < 1000; i++) {
+			append(archived, line(i));
+			append(expected, line(i));
+		}
+
+		TerminalBuffer archivedScreen = archived.getScreen();
+		TerminalBuffer expectedScreen = expected.getScreen();
+		assertEquals(expectedScreen.getActiveTranscriptRows(), archivedScreen.getActiveTranscriptRows());
+		assertTrue(archivedScreen.getActiveTranscriptRows() > TRANSCRIPT_ROWS);
+		assertEquals(expectedScreen.getTranscriptText(), archivedScreen.getTranscriptText());
+		assertEquals(expectedScreen.getTranscriptTextWithFullLinesJoined(), archivedScreen.getTranscriptTextWithFullLinesJoined());
+		for (int row = -expectedScreen.getActiveTranscriptRows(); row < ROWS; row++) {
+			assertEquals("row " + row, expectedScreen.getLineWrap(row), archivedScreen.getLineWrap(row));
+			for (int column = 0; column < COLUMNS; column++)
+				assertEquals("row " + row + ", column " + column, expectedScreen.getStyleAt(row, column), archivedScreen.getStyleAt(row, column));
+		}
+	}
+
+	public void testOldestBlocksAreDropped() {
+		TerminalEmulator emulator = newEmulator(TRANSCRIPT_ROWS, TranscriptArchive.ROWS_PER_BLOCK);
+		for (int i = 0; i < 1000; i++) append(emulator, "line " + i + "\r\n");
+
+		TerminalBuffer screen = emulator.getScreen();
+		int transcriptRows = screen.getActiveTranscriptRows();
+		assertTrue(transcriptRows >= TRANSCRIPT_ROWS - ROWS + TranscriptArchive.ROWS_PER_BLOCK);
+		assertTrue(transcriptRows < TRANSCRIPT_ROWS - ROWS + 2 * TranscriptArchive.ROWS_PER_BLOCK);
+		// The cursor is on the blank last row, after line 999 on the row above.
+		for (int row = -transcriptRows; row < ROWS - 1; row++)
+			assertEquals("line " + (999 - (ROWS - 2) + row), screen.getSelectedText(0, row, COLUMNS, row).trim());
+	}
+
+	public void testClearTranscriptClearsArchive() {
+		TerminalEmulator emulator = newEmulator(TRANSCRIPT_ROWS, 10000);
+		for (int i = 0; i < 500; i++) append(emulator, line(i));
+		assertTrue(emulator.getScreen().getActiveTranscriptRows() > TRANSCRIPT_ROWS);
+
+		append(emulator, "\033[3J");
+		assertEquals(0, emulator.getScreen().getActiveTranscriptRows());
+		append(emulator, "\033[2J\033[Hafter\r\n");
+		assertEquals("after", emulator.getScreen().getTranscriptText());
+	}
+
+	public void testResizeCutsArchivedRows() {
+		TerminalEmulator emulator = newEmulator(TRANSCRIPT_ROWS, 10000);
+		for (int i = 0; i < 500; i++) append(emulator, i + " abcdefghijklmnopq\r\n");
+		TerminalBuffer screen = emulator.getScreen();
+		int archivedRow = -screen.getActiveTranscriptRows();
+		assertEquals("0 abcdefghijklmnopq", screen.getSelectedText(0, archivedRow, COLUMNS, archivedRow).trim());
+
+		emulator.resize(10, ROWS, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS);
+		archivedRow = -screen.getActiveTranscriptRows();
+		assertEquals("0 abcdefgh", screen.getSelectedText(0, archivedRow, 10, archivedRow));
+		assertEquals(10, screen.getRow(archivedRow).getSpaceUsed());
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.termux.terminal;
+
+public class TranscriptSearchTest extends TerminalTestCase {
+
+	private static String describe(TranscriptSearch.Match match) {
+		return (match == null) ? null : match.getStartRow() + "," + match.mStartColumn + "-" + match.getEndRow() + "," + match.mEndColumn;
+	}
+
+	public void testFindLiteralOnScreen() {
+		withTerminalSized(10, 3).enterString("foo bar\r\nbar foo");
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "foo", false, false);
+		assertEquals("0,0-0,2", describe(search.findNext(-1, 0)));
+		assertEquals("1,4-1,6", describe(search.findNext(0, 0)));
+		assertNull(search.findNext(1, 4));
+		assertEquals("1,4-1,6", describe(search.findPrevious(3, 0)));
+		assertEquals("0,0-0,2", describe(search.findPrevious(1, 4)));
+		assertNull(search.findPrevious(0, 0));
+	}
+
+	public void testMatchRowsAsScrolledInSnapshot() {
+		withTerminalSized(10, 3).enterString("foo");
+		ScreenSnapshot snapshot = ScreenSnapshot.take(mTerminal, null);
+		TranscriptSearch.Match match = new TranscriptSearch(mTerminal, "foo", false, false).findNext(-1, 0);
+		enterString("\r\n\r\n\r\n");
+		assertEquals(-1, match.getStartRow());
+		assertEquals(0, match.getStartRow(snapshot.mScrolledRows));
+		assertEquals(0, match.getEndRow(snapshot.mScrolledRows));
+	}
+
+	public void testIgnoreCaseAndRegex() {
+		withTerminalSized(10, 3).enterString("Foo f00\r\nfoo");
+		assertEquals("1,0-1,2", describe(new TranscriptSearch(mTerminal, "foo", false, false).findNext(-1, 0)));
+		assertEquals("0,0-0,2", describe(new TranscriptSearch(mTerminal, "foo", false, true).findNext(-1, 0)));
+		assertEquals("0,4-0,6", describe(new TranscriptSearch(mTerminal, "f[0-9]+", true, false).findNext(-1, 0)));
+		// A literal query is not a regex:
+		assertNull(new TranscriptSearch(mTerminal, "f[0-9]+", false, false).findNext(-1, 0));
+	}
+
+	public void testMatchAcrossWrappedRows() {
+		withTerminalSized(5, 3).enterString("abcdefgh");
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "def", false, false);
+		assertEquals("0,3-1,0", describe(search.findNext(-1, 0)));
+		// Not across rows which are not wrapped:
+		withTerminalSized(5, 3).enterString("abcd\r\nefgh");
+		assertNull(new TranscriptSearch(mTerminal, "def", false, false).findNext(-1, 0));
+	}
+
+	public void testWideCharColumns() {
+		withTerminalSized(10, 3).enterString("a中文b");
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "文b", false, false);
+		assertEquals("0,3-0,5", describe(search.findNext(-1, 0)));
+		assertEquals("0,1-0,2", describe(new TranscriptSearch(mTerminal, "中", false, false).findNext(-1, 0)));
+	}
+
+	public void testIncrementalIndexFollowsScrolling() {
+		withTerminalSized(10, 3);
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "x", false, false);
+		for (int i = 0; i < 100; i++) {
+			enterString((i % 10 == 0) ? "x" + i + "\r\n" : "line\r\n");
+			TranscriptSearch.Match match = search.findPrevious(3, 0);
+			assertNotNull(match);
+			// The row of the latest line with an x, as the screen scrolls once the third row is reached:
+			assertEquals((i - i % 10) - Math.max(0, i - 1), match.getStartRow());
+		}
+		// All ten matches can be walked through from the start of the transcript:
+		TerminalBuffer screen = mTerminal.getScreen();
+		int count = 0;
+		TranscriptSearch.Match match = search.findNext(-screen.getActiveTranscriptRows() - 1, 0);
+		while (match != null) {
+			count++;
+			match = search.findNext(match.getStartRow(), match.mStartColumn);
+		}
+		assertEquals(10, count);
+		// Matches from rows which scrolled out of the transcript are dropped:
+		for (int i = 0; i < 2000; i++) enterString("line\r\n");
+		assertNull(search.findNext(-screen.getActiveTranscriptRows() - 1, 0));
+	}
+
+	public void testFindAtAndGetMatches() {
+		withTerminalSized(5, 3).enterString("ab x\r\nyabcd\r\n\r\n\r\nab");
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "ab", false, false);
+		assertEquals("-1,1--1,2", describe(search.findAt(-1, 2)));
+		assertNull(search.findAt(-1, 3));
+		assertEquals("2,0-2,1", describe(search.findAt(2, 0)));
+
+		StringBuilder matches = new StringBuilder();
+		for (TranscriptSearch.Match match : search.getMatches())
+			matches.append(describe(match)).append(' ').append(match.getText()).append(' ');
+		assertEquals("-2,0--2,1 ab -1,1--1,2 ab 2,0-2,1 ab ", matches.toString());
+	}
+
+	public void testJoinFullLines() {
+		// Rows filled to the last column without wrapping, like when redrawn by a full screen program:
+		withTerminalSized(5, 3).enterString("abcde\033[2;1Hfgh");
+		java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("[a-z]+");
+		TranscriptSearch.Match match = new TranscriptSearch(mTerminal, pattern, true).findNext(-1, 0);
+		assertEquals("0,0-1,2", describe(match));
+		assertEquals("abcdefgh", match.getText());
+		assertEquals("0,0-0,4", describe(new TranscriptSearch(mTerminal, pattern, false).findNext(-1, 0)));
+	}
+
+	public void testIndexIsRebuiltAfterClearAndResize() {
+		withTerminalSized(10, 3).enterString("x\r\n\r\n\r\n\r\n");
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "x", false, false);
+		assertEquals("-2,0--2,0", describe(search.findNext(-10, 0)));
+		enterString("\033[3J");
+		assertNull(search.findNext(-10, 0));
+
+		withTerminalSized(10, 3).enterString("abcdef\r\n\r\n\r\n\r\n");
+		search = new TranscriptSearch(mTerminal, "de", false, false);
+		assertEquals("-2,3--2,4", describe(search.findNext(-10, 0)));
+		resize(4, 3);
+		TranscriptSearch.Match match = search.findNext(-10, 0);
+		assertEquals(3, match.mStartColumn);
+		assertEquals(match.getStartRow() + 1, match.getEndRow());
+		assertEquals(0, match.mEndColumn);
+	}
+
+	public void testRowsReflowedAfterIndexingAreFound() {
+		mTerminal = new TerminalEmulator(mOutput, 6, 4, INITIAL_CELL_WIDTH_PIXELS, INITIAL_CELL_HEIGHT_PIXELS, 100, null);
+		for (int i = 10; i < 30; i++) enterString("line" + i + "\r\n");
+		resize(4, 4);
+		assertTrue(mTerminal.getScreen().hasRowsToReflow());
+		// The search does not reflow the transcript itself, so only the rows reflowed so far are found:
+		TranscriptSearch search = new TranscriptSearch(mTerminal, "ne10", false, false);
+		assertNull(search.findPrevious(0, 0));
+		TranscriptSearch.Match latest = new TranscriptSearch(mTerminal, "ne", false, false).findPrevious(0, 0);
+		assertNotNull(latest);
+
+		mTerminal.reflowTranscript(Integer.MAX_VALUE);
+		assertFalse(mTerminal.getScreen().hasRowsToReflow());
+		assertEquals("-37,2--36,1", describe(search.findPrevious(0, 0)));
+		assertEquals(1, search.getMatches().size());
+	}
+
+}
@@ -78,4 +78,46 @@ public class WcWidthTest extends TestCase {
 		assertWidthIs(2, 0x1F643); // UPSIDE-DOWN FACE (Unicode 8).
 	}
 
+	public void testMatchesRangeTables() {
+		for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+			if (WcWidth.width(codePoint) != referenceWidth(codePoint))
+				fail("Wrong width of U+" + Integer.toHexString(codePoint) + ": " + WcWidth.width(codePoint));
+		}
+		assertWidthIs(0, -1);
+		assertWidthIs(1, Character.MAX_CODE_POINT + 1);
+	}
+
+	/** The previous {@link WcWidth#width(int)} implementation, binary searching the range tables. */
+	private static int referenceWidth(int ucs) {
+		if (ucs == 0 ||
+			ucs == 0x034F ||
+			(0x200B <= ucs && ucs <= 0x200F) ||
+			ucs == 0x2028 ||
+			ucs == 0x2029 ||
+			(0x202A <= ucs && ucs <= 0x202E) ||
+			(0x2060 <= ucs && ucs <= 0x2063)) {
+			return 0;
+		}
+		if (ucs < 32 || (0x07F <= ucs && ucs < 0x0A0)) return 0;
+		if (intable(WcWidth.ZERO_WIDTH, ucs)) return 0;
+		return intable(WcWidth.WIDE_EASTASIAN, ucs) ? 2 : 1;
+	}
+
+	private static boolean intable(int[][] table, int c) {
+		if (c < table[0][0]) return false;
+		int bot = 0;
+		int top = table.length - 1;
+		while (top >= bot) {
+			int mid = (bot + top) / 2;
+			if (table[mid][1] < c) {
+				bot = mid + 1;
+			} else if (table[mid][0] > c) {
+				top = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,104 @@
+package com.termux.view;
+
+import android.graphics.Canvas;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.termux.terminal.TerminalEmulator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Frame time benchmark for rendering screens full of wide CJK characters, like the output of commands listing files
+ * with Chinese, Japanese or Korean names. Each code point outside of ASCII is measured once and then looked up in the
+ * {@link GlyphWidthCache} of the renderer.
+ *
+ * The frame times are logged with the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CjkRenderBenchmarkTest {
+
+    private static final String LOG_TAG = "CjkRenderBenchmark";
+
+    private static final int WARMUP_FRAMES = 30;
+    private static final int FRAMES = 300;
+
+    /** Return a line of wide CJK ideographs, Hangul syllables and kana filling the columns of the screen. */
+    private static String cjkLine(Random random) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < RenderBenchmarks.COLUMNS / 2; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    // The most common CJK unified ideographs.
+                    line.appendCodePoint(0x4E00 + random.nextInt(800));
+                    break;
+                case 2:
+                    line.appendCodePoint(0xAC00 + random.nextInt(300));
+                    break;
+                default:
+                    line.appendCodePoint(0x3041 + random.nextInt(0x56));
+                    break;
+            }
+        }
+        return line.toString();
+    }
+
+    @Test
+    public void benchmarkScrollingCjkOutput() {
+        TerminalEmulator emulator = RenderBenchmarks.newEmulator();
+        TerminalRenderer renderer = RenderBenchmarks.newRenderer();
+        Canvas canvas = RenderBenchmarks.newCanvas(renderer);
+        Random random = new Random(1);
+
+        // Each frame scrolls a new line onto the screen, so that every row is rendered again.
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            RenderBenchmarks.append(emulator, "\r\n" + cjkLine(random));
+            RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        long[] frameTimes = new long[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            RenderBenchmarks.append(emulator, "\r\n" + cjkLine(random));
+            frameTimes[i] = RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        RenderBenchmarks.logFrameTimes(LOG_TAG, "scrolling " + RenderBenchmarks.COLUMNS + "x" + RenderBenchmarks.ROWS + " CJK", frameTimes);
+        long hits = renderer.getGlyphWidthCacheHits(), misses = renderer.getGlyphWidthCacheMisses();
+        Log.i(LOG_TAG, "Glyph width cache hits " + hits + ", misses " + misses);
+        // The frames draw less distinct code points than fit in the cache, so each is only measured once.
+        assertTrue(misses <= GlyphWidthCache.MAX_ENTRIES);
+        assertTrue(hits > 100 * misses);
+    }
+
+    @Test
+    public void benchmarkStaticCjkScreen() {
+        TerminalEmulator emulator = RenderBenchmarks.newEmulator();
+        TerminalRenderer renderer = RenderBenchmarks.newRenderer();
+        Canvas canvas = RenderBenchmarks.newCanvas(renderer);
+        Random random = new Random(2);
+        for (int i = 0; i < RenderBenchmarks.ROWS; i++)
+            RenderBenchmarks.append(emulator, "\r\n" + cjkLine(random));
+
+        // Only the cursor blinks, so the rows are drawn from the row bitmap cache after the first frames.
+        for (int i = 0; i < WARMUP_FRAMES; i++)
+            RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+
+        long[] frameTimes = new long[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            emulator.setCursorBlinkState(i % 2 == 0);
+            frameTimes[i] = RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        RenderBenchmarks.logFrameTimes(LOG_TAG, "static " + RenderBenchmarks.COLUMNS + "x" + RenderBenchmarks.ROWS + " CJK", frameTimes);
+        Log.i(LOG_TAG, "Row bitmap cache hits " + renderer.getRowBitmapCacheHits() + ", misses " + renderer.getRowBitmapCacheMisses());
+        assertTrue(renderer.getRowBitmapCacheHits() > renderer.getRowBitmapCacheMisses());
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.termux.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TerminalOutput;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Helpers for the benchmarks of {@link TerminalRenderer}, which render an emulator into a bitmap canvas like
+ * {@link TerminalView#onDraw(Canvas)} does with the live screen, and log the frame times.
+ */
+final class RenderBenchmarks {
+
+    static final int COLUMNS = 80;
+    static final int ROWS = 40;
+    static final int TEXT_SIZE = 24;
+
+    /** A {@link TerminalOutput} discarding everything, as the benchmarks only render the emulator. */
+    private static final class NullTerminalOutput extends TerminalOutput {
+
+        @Override
+        public void write(byte[] data, int offset, int count) {
+        }
+
+        @Override
+        public void titleChanged(String oldTitle, String newTitle) {
+        }
+
+        @Override
+        public void onCopyTextToClipboard(String text) {
+        }
+
+        @Override
+        public void onPasteTextFromClipboard() {
+        }
+
+        @Override
+        public void onBell() {
+        }
+
+        @Override
+        public void onColorsChanged() {
+        }
+
+    }
+
+    private RenderBenchmarks() {
+    }
+
+    static TerminalEmulator newEmulator() {
+        return new TerminalEmulator(new NullTerminalOutput(), COLUMNS, ROWS, 12, 24, 2000, null);
+    }
+
+    static TerminalRenderer newRenderer() {
+        return new TerminalRenderer(TEXT_SIZE, Typeface.MONOSPACE);
+    }
+
+    /** Create a canvas of the size of the screen of the emulator rendered by the renderer. */
+    static Canvas newCanvas(TerminalRenderer renderer) {
+        int width = (int) Math.ceil(COLUMNS * renderer.mFontWidth);
+        int height = renderer.mFontLineSpacingAndAscent + ROWS * renderer.mFontLineSpacing;
+        return new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+    }
+
+    static void append(TerminalEmulator emulator, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        emulator.append(bytes, bytes.length);
+    }
+
+    /** Render a frame of the live screen like the view does, and return the time it took in nanoseconds. */
+    static long renderFrame(TerminalRenderer renderer, TerminalEmulator emulator, Canvas canvas) {
+        long startTime = System.nanoTime();
+        canvas.drawColor(0xFF000000);
+        renderer.render(emulator, canvas, 0, -1, -1, -1, -1);
+        emulator.getScreen().clearDirtyRows();
+        return System.nanoTime() - startTime;
+    }
+
+    static void logFrameTimes(String logTag, String label, long[] frameTimes) {
+        long[] sortedFrameTimes = frameTimes.clone();
+        Arrays.sort(sortedFrameTimes);
+        long total = 0;
+        for (long frameTime : sortedFrameTimes)
+            total += frameTime;
+
+        Log.i(logTag, String.format(Locale.ENGLISH, "%s: %d frames, average %d us, p50 %d us, p90 %d us, p99 %d us, max %d us",
+            label, sortedFrameTimes.length, total / sortedFrameTimes.length / 1000,
+            sortedFrameTimes[sortedFrameTimes.length / 2] / 1000, sortedFrameTimes[sortedFrameTimes.length * 9 / 10] / 1000,
+            sortedFrameTimes[sortedFrameTimes.length * 99 / 100] / 1000, sortedFrameTimes[sortedFrameTimes.length - 1] / 1000));
+    }
+
+}
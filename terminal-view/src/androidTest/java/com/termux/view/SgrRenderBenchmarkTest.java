@@ -0,0 +1,172 @@
+package com.termux.view;
+
+import android.graphics.Canvas;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.termux.terminal.TerminalEmulator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Frame time benchmark for rendering screens with many SGR (Select Graphic Rendition) style changes per row, like the
+ * ones of htop and of a colorized diff. Consecutive runs of such screens mostly share a few styles, which the renderer
+ * resolves into colors and text flags once per palette.
+ *
+ * The frame times are logged with the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SgrRenderBenchmarkTest {
+
+    private static final String LOG_TAG = "SgrRenderBenchmark";
+
+    private static final int WARMUP_FRAMES = 30;
+    private static final int FRAMES = 300;
+
+    private static final String[] USERS = {"root", "u0_a123", "system", "shell"};
+    /** The commands of the processes, short enough for the rows to fit in {@link RenderBenchmarks#COLUMNS}. */
+    private static final String[] COMMANDS = {"/system/bin/surfaceflinger", "com.termux", "/usr/bin/bash -l",
+        "/system/bin/dex2oat64", "python3 -m http.server", "vim Renderer.java"};
+
+    /** Return a htop like meter row, with a bar of green, blue, magenta and red parts between bold brackets. */
+    private static String meterRow(Random random, String label) {
+        StringBuilder row = new StringBuilder();
+        row.append("\033[36m").append(label).append("\033[1;37m[");
+        int[] colors = {32, 34, 35, 31};
+        int remaining = 50;
+        for (int color : colors) {
+            int length = random.nextInt(remaining / 2 + 1);
+            remaining -= length;
+            row.append("\033[0;").append(color).append('m');
+            for (int i = 0; i < length; i++) row.append('|');
+        }
+        for (int i = 0; i < remaining; i++) row.append(' ');
+        row.append(String.format(Locale.ENGLISH, "\033[0;90m%5.1f%%\033[1;37m]\033[m", random.nextFloat() * 100));
+        return row.toString();
+    }
+
+    /** Return a htop like process row, with colored columns and a highlighted basename in the command. */
+    private static String processRow(Random random, boolean selected) {
+        StringBuilder row = new StringBuilder();
+        if (selected) row.append("\033[30;46m");
+        row.append(String.format(Locale.ENGLISH, "%6d ", random.nextInt(30000)));
+        if (!selected) row.append("\033[1;30m");
+        row.append(String.format(Locale.ENGLISH, "%-8s", USERS[random.nextInt(USERS.length)]));
+        if (!selected) row.append("\033[0m");
+        row.append(String.format(Locale.ENGLISH, " %3d %3d ", 10 + random.nextInt(20), random.nextInt(40) - 20));
+        // Large sizes are highlighted in cyan, and the units in the default color
+        if (!selected) row.append("\033[36m");
+        row.append(String.format(Locale.ENGLISH, "%5d", random.nextInt(9999)));
+        if (!selected) row.append("\033[39m");
+        row.append("M ");
+        if (!selected) row.append(random.nextBoolean() ? "\033[32m" : "\033[1;30m");
+        row.append(random.nextBoolean() ? 'R' : 'S');
+        if (!selected) row.append("\033[0m");
+        row.append(String.format(Locale.ENGLISH, " %4.1f %4.1f ", random.nextFloat() * 100, random.nextFloat() * 10));
+        if (!selected) row.append("\033[38;5;244m");
+        row.append(String.format(Locale.ENGLISH, "%2d:%02d.%02d ", random.nextInt(60), random.nextInt(60), random.nextInt(100)));
+        if (!selected) row.append("\033[39m");
+        String command = COMMANDS[random.nextInt(COMMANDS.length)];
+        int basenameStart = command.lastIndexOf('/', command.indexOf(' ') < 0 ? command.length() : command.indexOf(' ')) + 1;
+        row.append(command, 0, basenameStart);
+        if (!selected) row.append("\033[1m");
+        row.append(command.substring(basenameStart));
+        row.append("\033[K\033[m");
+        return row.toString();
+    }
+
+    /** Return a htop like frame, which redraws the whole screen from the top left corner. */
+    private static String htopFrame(Random random) {
+        StringBuilder frame = new StringBuilder("\033[H");
+        for (int i = 0; i < 4; i++)
+            frame.append(meterRow(random, String.format(Locale.ENGLISH, "%3d", i))).append("\033[K\r\n");
+        frame.append("\033[30;42m    PID USER     PRI  NI  VIRT S  CPU% MEM%   TIME+  Command\033[K\033[m\r\n");
+        int selectedRow = random.nextInt(RenderBenchmarks.ROWS - 6);
+        for (int i = 0; i < RenderBenchmarks.ROWS - 6; i++)
+            frame.append(processRow(random, i == selectedRow)).append("\r\n");
+        frame.append("\033[30;46mF1\033[mHelp  \033[30;46mF2\033[mSetup \033[30;46mF3\033[mSearch\033[30;46mF10\033[mQuit\033[K");
+        return frame.toString();
+    }
+
+    /** Return a row of a colorized unified diff, as output by {@code git diff --color}. */
+    private static String diffRow(Random random, int row) {
+        if (row % 20 == 0) return "\033[1mdiff --git a/Renderer.java b/Renderer.java\033[m";
+        if (row % 20 == 1) return "\033[36m@@ -" + row + ",7 +" + row + ",8 @@\033[m private void render() {";
+        StringBuilder code = new StringBuilder("        ");
+        int words = 1 + random.nextInt(6);
+        for (int i = 0; i < words; i++)
+            code.append("word").append(random.nextInt(100)).append(' ');
+        switch (random.nextInt(4)) {
+            case 0:
+                return "\033[31m-" + code + "\033[m";
+            case 1:
+                // A trailing whitespace error highlighted in reverse video red.
+                return "\033[32m+" + code + "\033[m\033[41m \033[m";
+            default:
+                return " " + code;
+        }
+    }
+
+    @Test
+    public void benchmarkHtopScreen() {
+        TerminalEmulator emulator = RenderBenchmarks.newEmulator();
+        TerminalRenderer renderer = RenderBenchmarks.newRenderer();
+        Canvas canvas = RenderBenchmarks.newCanvas(renderer);
+        Random random = new Random(1);
+
+        // Each frame redraws every row, like htop refreshing its process list.
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            RenderBenchmarks.append(emulator, htopFrame(random));
+            RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        long[] frameTimes = new long[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            RenderBenchmarks.append(emulator, htopFrame(random));
+            frameTimes[i] = RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        RenderBenchmarks.logFrameTimes(LOG_TAG, "htop " + RenderBenchmarks.COLUMNS + "x" + RenderBenchmarks.ROWS, frameTimes);
+        logAndCheckResolvedStyles(renderer);
+    }
+
+    @Test
+    public void benchmarkScrollingDiff() {
+        TerminalEmulator emulator = RenderBenchmarks.newEmulator();
+        TerminalRenderer renderer = RenderBenchmarks.newRenderer();
+        Canvas canvas = RenderBenchmarks.newCanvas(renderer);
+        Random random = new Random(2);
+
+        // Each frame scrolls a new line onto the screen, so that every row is rendered again.
+        int row = 0;
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            RenderBenchmarks.append(emulator, "\r\n" + diffRow(random, row++));
+            RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        long[] frameTimes = new long[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            RenderBenchmarks.append(emulator, "\r\n" + diffRow(random, row++));
+            frameTimes[i] = RenderBenchmarks.renderFrame(renderer, emulator, canvas);
+        }
+
+        RenderBenchmarks.logFrameTimes(LOG_TAG, "scrolling " + RenderBenchmarks.COLUMNS + "x" + RenderBenchmarks.ROWS + " diff", frameTimes);
+        logAndCheckResolvedStyles(renderer);
+    }
+
+    private static void logAndCheckResolvedStyles(TerminalRenderer renderer) {
+        long hits = renderer.getResolvedStyleHits(), misses = renderer.getResolvedStyleMisses();
+        Log.i(LOG_TAG, "Resolved style hits " + hits + ", misses " + misses);
+        // The screens use a few styles, so most runs are drawn with a style resolved in an earlier frame, except for
+        // styles alternating within a row that share a slot of the resolved styles.
+        assertTrue(hits > 5 * misses);
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.termux.view;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of the measured widths of code points, and of whether they mismatch the width expected by
+ * {@link com.termux.terminal.WcWidth}, so that the {@link TerminalRenderer} does not measure every non-ASCII cell on
+ * every frame.
+ * <p>
+ * The code points are kept in a hash table with open addressing and linear probing in primitive arrays to avoid boxing.
+ * The table is cleared once it fills to its max load, which bounds it to {@link #MAX_ENTRIES} code points. A cache
+ * belongs to a renderer, which is recreated when the typeface or text size changes, and so is scoped to them.
+ */
+final class GlyphWidthCache {
+
+    private static final int CAPACITY = 2048;
+    static final int MAX_ENTRIES = CAPACITY * 3 / 4;
+    private static final int EMPTY = -1;
+
+    private final int[] mCodePoints = new int[CAPACITY];
+    private final float[] mWidths = new float[CAPACITY];
+    private final boolean[] mWidthMismatches = new boolean[CAPACITY];
+    private int mSize;
+
+    /** The number of lookups that found a code point, and that did not. */
+    private long mHits, mMisses;
+
+    GlyphWidthCache() {
+        Arrays.fill(mCodePoints, EMPTY);
+    }
+
+    private static int slotOf(int codePoint) {
+        // Fibonacci hashing spreads the mostly consecutive code points of a script across the table.
+        return (codePoint * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(CAPACITY));
+    }
+
+    /** Find the slot of a code point, or -1 if it has not been added. */
+    int find(int codePoint) {
+        for (int slot = slotOf(codePoint); ; slot = (slot + 1) & (CAPACITY - 1)) {
+            final int slotCodePoint = mCodePoints[slot];
+            if (slotCodePoint == codePoint) {
+                mHits++;
+                return slot;
+            } else if (slotCodePoint == EMPTY) {
+                mMisses++;
+                return -1;
+            }
+        }
+    }
+
+    /** Add a code point which {@link #find(int)} did not find, and return its slot. */
+    int add(int codePoint, float width, boolean widthMismatch) {
+        if (mSize == MAX_ENTRIES) {
+            Arrays.fill(mCodePoints, EMPTY);
+            mSize = 0;
+        }
+        int slot = slotOf(codePoint);
+        while (mCodePoints[slot] != EMPTY) slot = (slot + 1) & (CAPACITY - 1);
+        mCodePoints[slot] = codePoint;
+        mWidths[slot] = width;
+        mWidthMismatches[slot] = widthMismatch;
+        mSize++;
+        return slot;
+    }
+
+    /** The measured width of the code point in a slot. */
+    float getWidth(int slot) {
+        return mWidths[slot];
+    }
+
+    /** Whether the measured width of the code point in a slot is not the width expected by wcwidth(). */
+    boolean isWidthMismatch(int slot) {
+        return mWidthMismatches[slot];
+    }
+
+    long getHits() {
+        return mHits;
+    }
+
+    long getMisses() {
+        return mMisses;
+    }
+
+}
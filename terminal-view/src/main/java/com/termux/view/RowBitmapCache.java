@@ -0,0 +1,125 @@
+package com.termux.view;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of the rendered bitmaps of rows, so that rows which did not change are drawn from the
+ * bitmaps instead of laying out their text again on every frame.
+ * <p>
+ * Rows are identified by {@link com.termux.terminal.TerminalBuffer#getScrolledRows()} plus their row, so that a screen
+ * row keeps its bitmap as it scrolls into the transcript, where rows do not change. The renderer removes the bitmaps of
+ * screen rows that changed. All bitmaps are dropped when the layout of the rows, the colors, the reverse video mode,
+ * the buffer shown or the size of a row changes. A cache belongs to a renderer, which is recreated when the typeface or
+ * text size changes, and so is scoped to them.
+ * <p>
+ * The cache keeps up to two screens of rows, so that a frame never evicts a row it drew, and reuses the bitmaps it
+ * evicts. The bitmaps are also kept within {@link #MAX_BYTES}, as the rows of large displays take a lot of memory, and
+ * the cache is not used at all if a screen of rows does not fit, since every frame would then evict the rows it drew.
+ */
+final class RowBitmapCache {
+
+    /** The most memory the bitmaps may take, which is about two screens of rows of a 1080p display. */
+    static final long MAX_BYTES = 16 * 1024 * 1024;
+
+    private final LinkedHashMap<Long, Bitmap> mBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    /** A bitmap evicted from {@link #mBitmaps}, to reuse for the next row drawn. */
+    private Bitmap mFreeBitmap;
+    private int mMaxBitmaps;
+
+    /** The state the bitmaps were drawn for. */
+    private int mLayoutChanges;
+    private int[] mPalette;
+    private boolean mReverseVideo;
+    private boolean mAlternateBufferActive;
+    private int mWidth, mHeight;
+
+    /** The number of rows drawn from a cached bitmap, and the number rendered into a new one. */
+    private long mHits, mMisses;
+
+    /**
+     * Drop the bitmaps if they were drawn for another state than the specified one.
+     *
+     * @param screenRows The rows of the screen, of which to keep up to two screens of rows.
+     * @return Whether a screen of rows fits in the cache, else it must not be used and holds no bitmaps.
+     */
+    boolean validate(int layoutChanges, int[] palette, boolean reverseVideo, boolean alternateBufferActive, int width, int height,
+                     int screenRows) {
+        if (layoutChanges != mLayoutChanges || reverseVideo != mReverseVideo || alternateBufferActive != mAlternateBufferActive
+            || width != mWidth || height != mHeight || !Arrays.equals(palette, mPalette)) {
+            clear();
+            mLayoutChanges = layoutChanges;
+            mPalette = palette.clone();
+            mReverseVideo = reverseVideo;
+            mAlternateBufferActive = alternateBufferActive;
+            if (width != mWidth || height != mHeight) mFreeBitmap = null;
+            mWidth = width;
+            mHeight = height;
+        }
+        mMaxBitmaps = (int) Math.min(2L * screenRows, MAX_BYTES / Math.max(1L, 4L * width * height));
+        if (mMaxBitmaps < screenRows) {
+            clear();
+            mFreeBitmap = null;
+            return false;
+        }
+        while (mBitmaps.size() > mMaxBitmaps) evictEldest();
+        return true;
+    }
+
+    /** Get the bitmap of a row, or null if it has not been drawn. */
+    Bitmap get(long row) {
+        Bitmap bitmap = mBitmaps.get(row);
+        if (bitmap != null) mHits++;
+        else mMisses++;
+        return bitmap;
+    }
+
+    /** Add a blank bitmap for a row that {@link #get(long)} did not find, to draw the row on. */
+    Bitmap add(long row) {
+        Bitmap bitmap = mFreeBitmap;
+        mFreeBitmap = null;
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(0);
+        }
+        mBitmaps.put(row, bitmap);
+
+        if (mBitmaps.size() > mMaxBitmaps) evictEldest();
+        return bitmap;
+    }
+
+    /** Drop the least recently used bitmap, keeping it for reuse. */
+    private void evictEldest() {
+        Iterator<Map.Entry<Long, Bitmap>> eldest = mBitmaps.entrySet().iterator();
+        mFreeBitmap = eldest.next().getValue();
+        eldest.remove();
+    }
+
+    /** Drop the bitmap of a row, if any, as the row changed. */
+    void remove(long row) {
+        Bitmap bitmap = mBitmaps.remove(row);
+        if (bitmap != null && mFreeBitmap == null) mFreeBitmap = bitmap;
+    }
+
+    /** Drop all bitmaps. */
+    void clear() {
+        if (!mBitmaps.isEmpty()) {
+            if (mFreeBitmap == null) mFreeBitmap = mBitmaps.values().iterator().next();
+            mBitmaps.clear();
+        }
+    }
+
+    long getHits() {
+        return mHits;
+    }
+
+    long getMisses() {
+        return mMisses;
+    }
+
+}
@@ -1,16 +1,20 @@
 package com.termux.view;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.Typeface;
 
+import com.termux.terminal.ScreenSnapshot;
 import com.termux.terminal.TerminalBuffer;
 import com.termux.terminal.TerminalEmulator;
 import com.termux.terminal.TerminalRow;
 import com.termux.terminal.TextStyle;
 import com.termux.terminal.WcWidth;
 
+import java.util.Arrays;
+
 /**
  * Renderer of a {@link TerminalEmulator} into a {@link Canvas}.
  * <p/>
@@ -32,6 +36,34 @@ public final class TerminalRenderer {
     final int mFontLineSpacingAndAscent;
 
     private final float[] asciiMeasures = new float[127];
+    /** The measured widths of the other code points drawn, as measuring them on every frame is expensive. */
+    private final GlyphWidthCache mGlyphWidths = new GlyphWidthCache();
+    /** The rendered bitmaps of the rows that did not change since they were last drawn. */
+    private final RowBitmapCache mRowBitmaps = new RowBitmapCache();
+    private final Canvas mRowBitmapCanvas = new Canvas();
+    /** The snapshot last rendered, whose dirty rows have been drawn if it is rendered again. */
+    private ScreenSnapshot mRenderedSnapshot;
+
+    /**
+     * The colors and text flags that styles resolve to with the palette {@link #mResolvedPalette}, in a direct mapped
+     * table indexed by {@link #resolveStyle(long, boolean, int[])}, as most runs of a screen share a few styles.
+     */
+    private static final int RESOLVED_STYLES = 64;
+    private final long[] mResolvedStyles = new long[RESOLVED_STYLES];
+    /** Whether the style in a slot was resolved in reverse video, or not at all. */
+    private final byte[] mResolvedStyleStates = new byte[RESOLVED_STYLES];
+    private final int[] mResolvedForeColors = new int[RESOLVED_STYLES];
+    private final int[] mResolvedBackColors = new int[RESOLVED_STYLES];
+    private final int[] mResolvedTextFlags = new int[RESOLVED_STYLES];
+    private int[] mResolvedPalette;
+    private long mResolvedStyleHits, mResolvedStyleMisses;
+    private static final byte STYLE_UNRESOLVED = 0, STYLE_RESOLVED = 1, STYLE_RESOLVED_REVERSED = 2;
+    private static final int TEXT_FLAG_BOLD = 1, TEXT_FLAG_UNDERLINE = 2, TEXT_FLAG_ITALIC = 4,
+        TEXT_FLAG_STRIKETHROUGH = 8, TEXT_FLAG_INVISIBLE = 16;
+
+    /** The color and text flags last set on {@link #mTextPaint}, to skip setting them again if unchanged. */
+    private int mPaintColor;
+    private int mPaintTextFlags;
 
     public TerminalRenderer(int textSize, Typeface typeface) {
         mTextSize = textSize;
@@ -45,6 +77,7 @@ public final class TerminalRenderer {
         mFontAscent = (int) Math.ceil(mTextPaint.ascent());
         mFontLineSpacingAndAscent = mFontLineSpacing + mFontAscent;
         mFontWidth = mTextPaint.measureText("X");
+        mPaintColor = mTextPaint.getColor();
 
         StringBuilder sb = new StringBuilder(" ");
         for (int i = 0; i < asciiMeasures.length; i++) {
@@ -53,22 +86,60 @@ public final class TerminalRenderer {
         }
     }
 
-    /** Render the terminal to a canvas with at a specified row scroll, and an optional rectangular selection. */
+    /**
+     * Render the terminal to a canvas with at a specified row scroll, and an optional rectangular selection.
+     * <p/>
+     * The screen rows which did not change since they were last drawn, see {@link TerminalBuffer#nextDirtyRow(int)}, are
+     * drawn from bitmaps, so the caller should clear the dirty rows after rendering.
+     */
     public final void render(TerminalEmulator mEmulator, Canvas canvas, int topRow,
                              int selectionY1, int selectionY2, int selectionX1, int selectionX2) {
-        final boolean reverseVideo = mEmulator.isReverseVideo();
-        final int endRow = topRow + mEmulator.mRows;
-        final int columns = mEmulator.mColumns;
-        final int cursorCol = mEmulator.getCursorCol();
-        final int cursorRow = mEmulator.getCursorRow();
-        final boolean cursorVisible = mEmulator.shouldCursorBeVisible();
-        final TerminalBuffer screen = mEmulator.getScreen();
-        final int[] palette = mEmulator.mColors.mCurrentColors;
-        final int cursorShape = mEmulator.getCursorStyle();
+        TerminalBuffer screen = mEmulator.getScreen();
+        render(screen, null, screen.getScrolledRows(), screen.getLayoutChanges(), mEmulator.isReverseVideo(),
+            mEmulator.isAlternateBufferActive(), mEmulator.mRows, mEmulator.mColumns,
+            mEmulator.getCursorCol(), mEmulator.getCursorRow(), mEmulator.shouldCursorBeVisible(),
+            mEmulator.mColors.mCurrentColors, mEmulator.getCursorStyle(),
+            canvas, topRow, selectionY1, selectionY2, selectionX1, selectionX2);
+    }
+
+    /**
+     * Render a snapshot of a terminal emulating on a separate thread, like {@link #render(TerminalEmulator, Canvas, int, int, int, int, int)}.
+     * The caller should call {@link ScreenSnapshot#setDirtyRowsDrawn()} after rendering.
+     */
+    public final void render(ScreenSnapshot snapshot, Canvas canvas, int topRow,
+                             int selectionY1, int selectionY2, int selectionX1, int selectionX2) {
+        render(null, snapshot, snapshot.mScrolledRows, snapshot.mLayoutChanges, snapshot.mReverseVideo,
+            snapshot.mAlternateBufferActive, snapshot.mRows, snapshot.mColumns,
+            snapshot.mCursorCol, snapshot.mCursorRow, snapshot.shouldCursorBeVisible(),
+            snapshot.mColors, snapshot.mCursorStyle,
+            canvas, topRow, selectionY1, selectionY2, selectionX1, selectionX2);
+    }
+
+    /**
+     * Render the rows of either a live screen or a snapshot of one. Rows without the cursor or selected cells are drawn
+     * from {@link #mRowBitmaps}, identified by {@code scrolledRows} plus their row, unless they changed since they were
+     * last drawn or a screen of rows does not fit in it.
+     */
+    private void render(TerminalBuffer screen, ScreenSnapshot snapshot, long scrolledRows, int layoutChanges,
+                        boolean reverseVideo, boolean alternateBufferActive, int rows, int columns,
+                        int cursorCol, int cursorRow, boolean cursorVisible, int[] palette, int cursorShape,
+                        Canvas canvas, int topRow, int selectionY1, int selectionY2, int selectionX1, int selectionX2) {
+        final int endRow = topRow + rows;
 
         if (reverseVideo)
             canvas.drawColor(palette[TextStyle.COLOR_INDEX_FOREGROUND], PorterDuff.Mode.SRC);
 
+        if (!Arrays.equals(palette, mResolvedPalette)) {
+            Arrays.fill(mResolvedStyleStates, STYLE_UNRESOLVED);
+            mResolvedPalette = palette.clone();
+        }
+
+        final boolean useRowBitmaps = mRowBitmaps.validate(layoutChanges, palette, reverseVideo, alternateBufferActive,
+            (int) Math.ceil(columns * mFontWidth), mFontLineSpacing, rows);
+        // The dirty rows of a snapshot rendered again have already been drawn.
+        final boolean checkDirtyRows = snapshot == null || snapshot != mRenderedSnapshot;
+        mRenderedSnapshot = snapshot;
+
         float heightOffset = mFontLineSpacingAndAscent;
         for (int row = topRow; row < endRow; row++) {
             heightOffset += mFontLineSpacing;
@@ -77,114 +148,123 @@ public final class TerminalRenderer {
             int selx1 = -1, selx2 = -1;
             if (row >= selectionY1 && row <= selectionY2) {
                 if (row == selectionY1) selx1 = selectionX1;
-                selx2 = (row == selectionY2) ? selectionX2 : mEmulator.mColumns;
+                selx2 = (row == selectionY2) ? selectionX2 : columns;
             }
-
-            TerminalRow lineObject = screen.allocateFullLineIfNecessary(screen.externalToInternalRow(row));
-            final char[] line = lineObject.mText;
-            final int charsUsedInLine = lineObject.getSpaceUsed();
-
-            long lastRunStyle = 0;
-            boolean lastRunInsideCursor = false;
-            boolean lastRunInsideSelection = false;
-            int lastRunStartColumn = -1;
-            int lastRunStartIndex = 0;
-            boolean lastRunFontWidthMismatch = false;
-            int currentCharIndex = 0;
-            float measuredWidthForRun = 0.f;
-
-            for (int column = 0; column < columns; ) {
-                final char charAtIndex = line[currentCharIndex];
-                final boolean charIsHighsurrogate = Character.isHighSurrogate(charAtIndex);
-                final int charsForCodePoint = charIsHighsurrogate ? 2 : 1;
-                final int codePoint = charIsHighsurrogate ? Character.toCodePoint(charAtIndex, line[currentCharIndex + 1]) : charAtIndex;
-                final int codePointWcWidth = WcWidth.width(codePoint);
-                final boolean insideCursor = (cursorX == column || (codePointWcWidth == 2 && cursorX == column + 1));
-                final boolean insideSelection = column >= selx1 && column <= selx2;
-                final long style = lineObject.getStyle(column);
-
-                // Check if the measured text width for this code point is not the same as that expected by wcwidth().
-                // This could happen for some fonts which are not truly monospace, or for more exotic characters such as
-                // smileys which android font renders as wide.
-                // If this is detected, we draw this code point scaled to match what wcwidth() expects.
-                final float measuredCodePointWidth = (codePoint < asciiMeasures.length) ? asciiMeasures[codePoint] : mTextPaint.measureText(line,
-                    currentCharIndex, charsForCodePoint);
-                final boolean fontWidthMismatch = Math.abs(measuredCodePointWidth / mFontWidth - codePointWcWidth) > 0.01;
-
-                if (style != lastRunStyle || insideCursor != lastRunInsideCursor || insideSelection != lastRunInsideSelection || fontWidthMismatch || lastRunFontWidthMismatch) {
-                    if (column == 0) {
-                        // Skip first column as there is nothing to draw, just record the current style.
-                    } else {
-                        final int columnWidthSinceLastRun = column - lastRunStartColumn;
-                        final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
-                        int cursorColor = lastRunInsideCursor ? mEmulator.mColors.mCurrentColors[TextStyle.COLOR_INDEX_CURSOR] : 0;
-                        boolean invertCursorTextColor = false;
-                        if (lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK) {
-                            invertCursorTextColor = true;
-                        }
-                        drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun,
-                            lastRunStartIndex, charsSinceLastRun, measuredWidthForRun,
-                            cursorColor, cursorShape, lastRunStyle, reverseVideo || invertCursorTextColor || lastRunInsideSelection);
-                    }
-                    measuredWidthForRun = 0.f;
-                    lastRunStyle = style;
-                    lastRunInsideCursor = insideCursor;
-                    lastRunInsideSelection = insideSelection;
-                    lastRunStartColumn = column;
-                    lastRunStartIndex = currentCharIndex;
-                    lastRunFontWidthMismatch = fontWidthMismatch;
-                }
-                measuredWidthForRun += measuredCodePointWidth;
-                column += codePointWcWidth;
-                currentCharIndex += charsForCodePoint;
-                while (currentCharIndex < charsUsedInLine && WcWidth.width(line, currentCharIndex) <= 0) {
-                    // Eat combining chars so that they are treated as part of the last non-combining code point,
-                    // instead of e.g. being considered inside the cursor in the next run.
-                    currentCharIndex += Character.isHighSurrogate(line[currentCharIndex]) ? 2 : 1;
+            if (useRowBitmaps && row >= 0 && checkDirtyRows && ((snapshot != null) ? snapshot.isRowDirty(row) : screen.isRowDirty(row))) {
+                // A changed row is likely to change again on the next frame, so it is drawn directly until it does not.
+                mRowBitmaps.remove(scrolledRows + row);
+            } else if (useRowBitmaps && cursorX < 0 && selx2 < 0) {
+                Bitmap bitmap = mRowBitmaps.get(scrolledRows + row);
+                if (bitmap == null) {
+                    TerminalRow lineObject = (snapshot != null) ? snapshot.getRow(row) : screen.getRow(row);
+                    bitmap = mRowBitmaps.add(scrolledRows + row);
+                    mRowBitmapCanvas.setBitmap(bitmap);
+                    renderRow(mRowBitmapCanvas, lineObject, mFontLineSpacing, columns, -1, -1, -1, palette, reverseVideo, cursorShape);
                 }
+                canvas.drawBitmap(bitmap, 0, heightOffset - mFontLineSpacing, null);
+                continue;
             }
 
-            final int columnWidthSinceLastRun = columns - lastRunStartColumn;
-            final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
-            int cursorColor = lastRunInsideCursor ? mEmulator.mColors.mCurrentColors[TextStyle.COLOR_INDEX_CURSOR] : 0;
-            boolean invertCursorTextColor = false;
-            if (lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK) {
-                invertCursorTextColor = true;
-            }
-            drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun, lastRunStartIndex, charsSinceLastRun,
-                measuredWidthForRun, cursorColor, cursorShape, lastRunStyle, reverseVideo || invertCursorTextColor || lastRunInsideSelection);
+            TerminalRow lineObject = (snapshot != null) ? snapshot.getRow(row) : screen.getRow(row);
+            renderRow(canvas, lineObject, heightOffset, columns, cursorX, selx1, selx2, palette, reverseVideo, cursorShape);
         }
     }
 
-    private void drawTextRun(Canvas canvas, char[] text, int[] palette, float y, int startColumn, int runWidthColumns,
-                             int startCharIndex, int runWidthChars, float mes, int cursor, int cursorStyle,
-                             long textStyle, boolean reverseVideo) {
-        int foreColor = TextStyle.decodeForeColor(textStyle);
-        final int effect = TextStyle.decodeEffect(textStyle);
-        int backColor = TextStyle.decodeBackColor(textStyle);
-        final boolean bold = (effect & (TextStyle.CHARACTER_ATTRIBUTE_BOLD | TextStyle.CHARACTER_ATTRIBUTE_BLINK)) != 0;
-        final boolean underline = (effect & TextStyle.CHARACTER_ATTRIBUTE_UNDERLINE) != 0;
-        final boolean italic = (effect & TextStyle.CHARACTER_ATTRIBUTE_ITALIC) != 0;
-        final boolean strikeThrough = (effect & TextStyle.CHARACTER_ATTRIBUTE_STRIKETHROUGH) != 0;
-        final boolean dim = (effect & TextStyle.CHARACTER_ATTRIBUTE_DIM) != 0;
+    /** Render a row with its bottom at {@code heightOffset}, with the cursor at {@code cursorX} if not -1. */
+    private void renderRow(Canvas canvas, TerminalRow lineObject, float heightOffset, int columns, int cursorX,
+                           int selx1, int selx2, int[] palette, boolean reverseVideo, int cursorShape) {
+        final char[] line = lineObject.mText;
+        final int charsUsedInLine = lineObject.getSpaceUsed();
+
+        long lastRunStyle = 0;
+        boolean lastRunInsideCursor = false;
+        boolean lastRunInsideSelection = false;
+        int lastRunStartColumn = -1;
+        int lastRunStartIndex = 0;
+        boolean lastRunFontWidthMismatch = false;
+        int currentCharIndex = 0;
+        float measuredWidthForRun = 0.f;
+
+        for (int column = 0; column < columns; ) {
+            final char charAtIndex = line[currentCharIndex];
+            final boolean charIsHighsurrogate = Character.isHighSurrogate(charAtIndex);
+            final int charsForCodePoint = charIsHighsurrogate ? 2 : 1;
+            final int codePoint = charIsHighsurrogate ? Character.toCodePoint(charAtIndex, line[currentCharIndex + 1]) : charAtIndex;
+            final int codePointWcWidth = WcWidth.width(codePoint);
+            final boolean insideCursor = (cursorX == column || (codePointWcWidth == 2 && cursorX == column + 1));
+            final boolean insideSelection = column >= selx1 && column <= selx2;
+            final long style = lineObject.getStyle(column);
+
+            // Check if the measured text width for this code point is not the same as that expected by wcwidth().
+            // This could happen for some fonts which are not truly monospace, or for more exotic characters such as
+            // smileys which android font renders as wide.
+            // If this is detected, we draw this code point scaled to match what wcwidth() expects.
+            final float measuredCodePointWidth;
+            final boolean fontWidthMismatch;
+            if (codePoint < asciiMeasures.length) {
+                measuredCodePointWidth = asciiMeasures[codePoint];
+                fontWidthMismatch = Math.abs(measuredCodePointWidth / mFontWidth - codePointWcWidth) > 0.01;
+            } else {
+                int slot = mGlyphWidths.find(codePoint);
+                if (slot < 0) {
+                    float width = mTextPaint.measureText(line, currentCharIndex, charsForCodePoint);
+                    slot = mGlyphWidths.add(codePoint, width, Math.abs(width / mFontWidth - codePointWcWidth) > 0.01);
+                }
+                measuredCodePointWidth = mGlyphWidths.getWidth(slot);
+                fontWidthMismatch = mGlyphWidths.isWidthMismatch(slot);
+            }
 
-        if ((foreColor & 0xff000000) != 0xff000000) {
-            // Let bold have bright colors if applicable (one of the first 8):
-            if (bold && foreColor >= 0 && foreColor < 8) foreColor += 8;
-            foreColor = palette[foreColor];
+            if (style != lastRunStyle || insideCursor != lastRunInsideCursor || insideSelection != lastRunInsideSelection || fontWidthMismatch || lastRunFontWidthMismatch) {
+                if (column == 0) {
+                    // Skip first column as there is nothing to draw, just record the current style.
+                } else {
+                    final int columnWidthSinceLastRun = column - lastRunStartColumn;
+                    final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
+                    int cursorColor = lastRunInsideCursor ? palette[TextStyle.COLOR_INDEX_CURSOR] : 0;
+                    boolean invertCursorTextColor = false;
+                    if (lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK) {
+                        invertCursorTextColor = true;
+                    }
+                    drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun,
+                        lastRunStartIndex, charsSinceLastRun, measuredWidthForRun,
+                        cursorColor, cursorShape, lastRunStyle, reverseVideo || invertCursorTextColor || lastRunInsideSelection);
+                }
+                measuredWidthForRun = 0.f;
+                lastRunStyle = style;
+                lastRunInsideCursor = insideCursor;
+                lastRunInsideSelection = insideSelection;
+                lastRunStartColumn = column;
+                lastRunStartIndex = currentCharIndex;
+                lastRunFontWidthMismatch = fontWidthMismatch;
+            }
+            measuredWidthForRun += measuredCodePointWidth;
+            column += codePointWcWidth;
+            currentCharIndex += charsForCodePoint;
+            while (currentCharIndex < charsUsedInLine && WcWidth.width(line, currentCharIndex) <= 0) {
+                // Eat combining chars so that they are treated as part of the last non-combining code point,
+                // instead of e.g. being considered inside the cursor in the next run.
+                currentCharIndex += Character.isHighSurrogate(line[currentCharIndex]) ? 2 : 1;
+            }
         }
 
-        if ((backColor & 0xff000000) != 0xff000000) {
-            backColor = palette[backColor];
+        final int columnWidthSinceLastRun = columns - lastRunStartColumn;
+        final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
+        int cursorColor = lastRunInsideCursor ? palette[TextStyle.COLOR_INDEX_CURSOR] : 0;
+        boolean invertCursorTextColor = false;
+        if (lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK) {
+            invertCursorTextColor = true;
         }
+        drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun, lastRunStartIndex, charsSinceLastRun,
+            measuredWidthForRun, cursorColor, cursorShape, lastRunStyle, reverseVideo || invertCursorTextColor || lastRunInsideSelection);
+    }
 
-        // Reverse video here if _one and only one_ of the reverse flags are set:
-        final boolean reverseVideoHere = reverseVideo ^ (effect & (TextStyle.CHARACTER_ATTRIBUTE_INVERSE)) != 0;
-        if (reverseVideoHere) {
-            int tmp = foreColor;
-            foreColor = backColor;
-            backColor = tmp;
-        }
+    private void drawTextRun(Canvas canvas, char[] text, int[] palette, float y, int startColumn, int runWidthColumns,
+                             int startCharIndex, int runWidthChars, float mes, int cursor, int cursorStyle,
+                             long textStyle, boolean reverseVideo) {
+        final int slot = resolveStyle(textStyle, reverseVideo, palette);
+        final int foreColor = mResolvedForeColors[slot];
+        final int backColor = mResolvedBackColors[slot];
+        final int textFlags = mResolvedTextFlags[slot];
 
         float left = startColumn * mFontWidth;
         float right = left + runWidthColumns * mFontWidth;
@@ -201,36 +281,27 @@ public final class TerminalRenderer {
 
         if (backColor != palette[TextStyle.COLOR_INDEX_BACKGROUND]) {
             // Only draw non-default background.
-            mTextPaint.setColor(backColor);
+            setPaintColor(backColor);
             canvas.drawRect(left, y - mFontLineSpacingAndAscent + mFontAscent, right, y, mTextPaint);
         }
 
         if (cursor != 0) {
-            mTextPaint.setColor(cursor);
+            setPaintColor(cursor);
             float cursorHeight = mFontLineSpacingAndAscent - mFontAscent;
             if (cursorStyle == TerminalEmulator.TERMINAL_CURSOR_STYLE_UNDERLINE) cursorHeight /= 4.;
             else if (cursorStyle == TerminalEmulator.TERMINAL_CURSOR_STYLE_BAR) right -= ((right - left) * 3) / 4.;
             canvas.drawRect(left, y - cursorHeight, right, y, mTextPaint);
         }
 
-        if ((effect & TextStyle.CHARACTER_ATTRIBUTE_INVISIBLE) == 0) {
-            if (dim) {
-                int red = (0xFF & (foreColor >> 16));
-                int green = (0xFF & (foreColor >> 8));
-                int blue = (0xFF & foreColor);
-                // Dim color handling used by libvte which in turn took it from xterm
-                // (https://bug735245.bugzilla-attachments.gnome.org/attachment.cgi?id=284267):
-                red = red * 2 / 3;
-                green = green * 2 / 3;
-                blue = blue * 2 / 3;
-                foreColor = 0xFF000000 + (red << 16) + (green << 8) + blue;
+        if ((textFlags & TEXT_FLAG_INVISIBLE) == 0) {
+            if ((textFlags & ~TEXT_FLAG_INVISIBLE) != mPaintTextFlags) {
+                mPaintTextFlags = textFlags & ~TEXT_FLAG_INVISIBLE;
+                mTextPaint.setFakeBoldText((textFlags & TEXT_FLAG_BOLD) != 0);
+                mTextPaint.setUnderlineText((textFlags & TEXT_FLAG_UNDERLINE) != 0);
+                mTextPaint.setTextSkewX((textFlags & TEXT_FLAG_ITALIC) != 0 ? -0.35f : 0.f);
+                mTextPaint.setStrikeThruText((textFlags & TEXT_FLAG_STRIKETHROUGH) != 0);
             }
-
-            mTextPaint.setFakeBoldText(bold);
-            mTextPaint.setUnderlineText(underline);
-            mTextPaint.setTextSkewX(italic ? -0.35f : 0.f);
-            mTextPaint.setStrikeThruText(strikeThrough);
-            mTextPaint.setColor(foreColor);
+            setPaintColor(foreColor);
 
             // The text alignment is the default Paint.Align.LEFT.
             canvas.drawTextRun(text, startCharIndex, runWidthChars, startCharIndex, runWidthChars, left, y - mFontLineSpacingAndAscent, false, mTextPaint);
@@ -239,6 +310,78 @@ public final class TerminalRenderer {
         if (savedMatrix) canvas.restore();
     }
 
+    /**
+     * Resolve the colors and text flags of a style with a palette into a slot of the {@code mResolved*} arrays, unless
+     * already resolved.
+     */
+    private int resolveStyle(long textStyle, boolean reverseVideo, int[] palette) {
+        // The top 6 bits of a Fibonacci hash of the style index the 64 slots:
+        final int slot = (int) ((textStyle ^ (textStyle >>> 29)) * 0x9E3779B97F4A7C15L >>> 58);
+        final byte state = reverseVideo ? STYLE_RESOLVED_REVERSED : STYLE_RESOLVED;
+        if (mResolvedStyleStates[slot] == state && mResolvedStyles[slot] == textStyle) {
+            mResolvedStyleHits++;
+            return slot;
+        }
+        mResolvedStyleMisses++;
+
+        int foreColor = TextStyle.decodeForeColor(textStyle);
+        final int effect = TextStyle.decodeEffect(textStyle);
+        int backColor = TextStyle.decodeBackColor(textStyle);
+        final boolean bold = (effect & (TextStyle.CHARACTER_ATTRIBUTE_BOLD | TextStyle.CHARACTER_ATTRIBUTE_BLINK)) != 0;
+        final boolean dim = (effect & TextStyle.CHARACTER_ATTRIBUTE_DIM) != 0;
+
+        if ((foreColor & 0xff000000) != 0xff000000) {
+            // Let bold have bright colors if applicable (one of the first 8):
+            if (bold && foreColor >= 0 && foreColor < 8) foreColor += 8;
+            foreColor = palette[foreColor];
+        }
+
+        if ((backColor & 0xff000000) != 0xff000000) {
+            backColor = palette[backColor];
+        }
+
+        // Reverse video here if _one and only one_ of the reverse flags are set:
+        final boolean reverseVideoHere = reverseVideo ^ (effect & (TextStyle.CHARACTER_ATTRIBUTE_INVERSE)) != 0;
+        if (reverseVideoHere) {
+            int tmp = foreColor;
+            foreColor = backColor;
+            backColor = tmp;
+        }
+
+        if (dim) {
+            int red = (0xFF & (foreColor >> 16));
+            int green = (0xFF & (foreColor >> 8));
+            int blue = (0xFF & foreColor);
+            // Dim color handling used by libvte which in turn took it from xterm
+            // (https://bug735245.bugzilla-attachments.gnome.org/attachment.cgi?id=284267):
+            red = red * 2 / 3;
+            green = green * 2 / 3;
+            blue = blue * 2 / 3;
+            foreColor = 0xFF000000 + (red << 16) + (green << 8) + blue;
+        }
+
+        int textFlags = 0;
+        if (bold) textFlags |= TEXT_FLAG_BOLD;
+        if ((effect & TextStyle.CHARACTER_ATTRIBUTE_UNDERLINE) != 0) textFlags |= TEXT_FLAG_UNDERLINE;
+        if ((effect & TextStyle.CHARACTER_ATTRIBUTE_ITALIC) != 0) textFlags |= TEXT_FLAG_ITALIC;
+        if ((effect & TextStyle.CHARACTER_ATTRIBUTE_STRIKETHROUGH) != 0) textFlags |= TEXT_FLAG_STRIKETHROUGH;
+        if ((effect & TextStyle.CHARACTER_ATTRIBUTE_INVISIBLE) != 0) textFlags |= TEXT_FLAG_INVISIBLE;
+
+        mResolvedStyles[slot] = textStyle;
+        mResolvedStyleStates[slot] = state;
+        mResolvedForeColors[slot] = foreColor;
+        mResolvedBackColors[slot] = backColor;
+        mResolvedTextFlags[slot] = textFlags;
+        return slot;
+    }
+
+    private void setPaintColor(int color) {
+        if (color != mPaintColor) {
+            mTextPaint.setColor(color);
+            mPaintColor = color;
+        }
+    }
+
     public float getFontWidth() {
         return mFontWidth;
     }
@@ -246,4 +389,37 @@ public final class TerminalRenderer {
     public int getFontLineSpacing() {
         return mFontLineSpacing;
     }
+
+    /** The number of lookups of the measured widths of non-ASCII code points that were cached, and that were not. */
+    public long getGlyphWidthCacheHits() {
+        return mGlyphWidths.getHits();
+    }
+
+    public long getGlyphWidthCacheMisses() {
+        return mGlyphWidths.getMisses();
+    }
+
+    /** The number of rows drawn from a cached bitmap, and that had to be rendered into one. */
+    public long getRowBitmapCacheHits() {
+        return mRowBitmaps.getHits();
+    }
+
+    public long getRowBitmapCacheMisses() {
+        return mRowBitmaps.getMisses();
+    }
+
+    /** The number of runs drawn with an already resolved style, and whose style had to be resolved. */
+    public long getResolvedStyleHits() {
+        return mResolvedStyleHits;
+    }
+
+    public long getResolvedStyleMisses() {
+        return mResolvedStyleMisses;
+    }
+
+    /** Drop the cached bitmaps of rows, which must be done when the renderer draws another session. */
+    public void clearRowBitmaps() {
+        mRowBitmaps.clear();
+        mRenderedSnapshot = null;
+    }
 }
@@ -38,8 +38,10 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import com.termux.terminal.KeyHandler;
+import com.termux.terminal.ScreenSnapshot;
 import com.termux.terminal.TerminalEmulator;
 import com.termux.terminal.TerminalSession;
+import com.termux.terminal.TranscriptSearch;
 import com.termux.view.textselection.TextSelectionCursorController;
 
 /** View displaying and interacting with a {@link TerminalSession}. */
@@ -69,6 +71,9 @@ public final class TerminalView extends View {
     /** The top row of text to display. Ranges from -activeTranscriptRows to 0. */
     int mTopRow;
     int[] mDefaultSelectors = new int[]{-1,-1,-1,-1};
+    /** The search match highlighted while not selecting text, or null. */
+    private TranscriptSearch.Match mSearchMatch;
+    private final int[] mSearchMatchSelectors = new int[4];
 
     float mScaleFactor = 1.f;
     final GestureAndScaleRecognizer mGestureRecognizer;
@@ -204,7 +209,7 @@ public final class TerminalView extends View {
                 if (mouseTrackingAtStartOfFling) {
                     mScroller.fling(0, 0, 0, -(int) (velocityY * SCALE), 0, 0, -mEmulator.mRows / 2, mEmulator.mRows / 2);
                 } else {
-                    mScroller.fling(0, mTopRow, 0, -(int) (velocityY * SCALE), 0, 0, -mEmulator.getScreen().getActiveTranscriptRows(), 0);
+                    mScroller.fling(0, mTopRow, 0, -(int) (velocityY * SCALE), 0, 0, -getActiveTranscriptRows(), 0);
                 }
 
                 post(new Runnable() {
@@ -294,6 +299,8 @@ public final class TerminalView extends View {
         mTermSession = session;
         mEmulator = null;
         mCombiningAccent = 0;
+        // The rows of another session may be identified like the rows of this one.
+        if (mRenderer != null) mRenderer.clearRowBitmaps();
 
         updateSize();
 
@@ -437,7 +444,7 @@ public final class TerminalView extends View {
 
     @Override
     protected int computeVerticalScrollRange() {
-        return mEmulator == null ? 1 : mEmulator.getScreen().getActiveRows();
+        return mEmulator == null ? 1 : getActiveTranscriptRows() + mEmulator.mRows;
     }
 
     @Override
@@ -447,7 +454,7 @@ public final class TerminalView extends View {
 
     @Override
     protected int computeVerticalScrollOffset() {
-        return mEmulator == null ? 1 : mEmulator.getScreen().getActiveRows() + mTopRow - mEmulator.mRows;
+        return mEmulator == null ? 1 : getActiveTranscriptRows() + mTopRow;
     }
 
     public void onScreenUpdated() {
@@ -457,42 +464,45 @@ public final class TerminalView extends View {
     public void onScreenUpdated(boolean skipScrolling) {
         if (mEmulator == null) return;
 
-        int rowsInHistory = mEmulator.getScreen().getActiveTranscriptRows();
-        if (mTopRow < -rowsInHistory) mTopRow = -rowsInHistory;
+        // The emulator may be appending output on its own thread, see TerminalSession#getScreenSnapshot().
+        synchronized (mEmulator) {
+            int rowsInHistory = mEmulator.getScreen().getActiveTranscriptRows();
+            if (mTopRow < -rowsInHistory) mTopRow = -rowsInHistory;
 
-        if (isSelectingText() || mEmulator.isAutoScrollDisabled()) {
+            if (isSelectingText() || mEmulator.isAutoScrollDisabled()) {
 
-            // Do not scroll when selecting text.
-            int rowShift = mEmulator.getScrollCounter();
-            if (-mTopRow + rowShift > rowsInHistory) {
-                // .. unless we're hitting the end of history transcript, in which
-                // case we abort text selection and scroll to end.
-                if (isSelectingText())
-                    stopTextSelectionMode();
+                // Do not scroll when selecting text.
+                int rowShift = mEmulator.getScrollCounter();
+                if (-mTopRow + rowShift > rowsInHistory) {
+                    // .. unless we're hitting the end of history transcript, in which
+                    // case we abort text selection and scroll to end.
+                    if (isSelectingText())
+                        stopTextSelectionMode();
 
-                if (mEmulator.isAutoScrollDisabled()) {
-                    mTopRow = -rowsInHistory;
+                    if (mEmulator.isAutoScrollDisabled()) {
+                        mTopRow = -rowsInHistory;
+                        skipScrolling = true;
+                    }
+                } else {
                     skipScrolling = true;
+                    mTopRow -= rowShift;
+                    decrementYTextSelectionCursors(rowShift);
                 }
-            } else {
-                skipScrolling = true;
-                mTopRow -= rowShift;
-                decrementYTextSelectionCursors(rowShift);
             }
-        }
 
-        if (!skipScrolling && mTopRow != 0) {
-            // Scroll down if not already there.
-            if (mTopRow < -3) {
-                // Awaken scroll bars only if scrolling a noticeable amount
-                // - we do not want visible scroll bars during normal typing
-                // of one row at a time.
-                awakenScrollBars();
+            if (!skipScrolling && mTopRow != 0) {
+                // Scroll down if not already there.
+                if (mTopRow < -3) {
+                    // Awaken scroll bars only if scrolling a noticeable amount
+                    // - we do not want visible scroll bars during normal typing
+                    // of one row at a time.
+                    awakenScrollBars();
+                }
+                mTopRow = 0;
             }
-            mTopRow = 0;
-        }
 
-        mEmulator.clearScrollCounter();
+            mEmulator.clearScrollCounter();
+        }
 
         invalidate();
         if (mAccessibilityEnabled) setContentDescription(getText());
@@ -582,7 +592,11 @@ public final class TerminalView extends View {
                 // e.g. less, which shifts to the alt screen without mouse handling.
                 handleKeyCode(up ? KeyEvent.KEYCODE_DPAD_UP : KeyEvent.KEYCODE_DPAD_DOWN, 0);
             } else {
-                mTopRow = Math.min(0, Math.max(-(mEmulator.getScreen().getActiveTranscriptRows()), mTopRow + (up ? -1 : 1)));
+                if (up && mTopRow == -getActiveTranscriptRows()) {
+                    // Reflow the older rows left by a resize now that they are scrolled to.
+                    mTermSession.reflowTranscript(mEmulator.mRows);
+                }
+                mTopRow = Math.min(0, Math.max(-getActiveTranscriptRows(), mTopRow + (up ? -1 : 1)));
                 if (!awakenScrollBars()) invalidate();
             }
         }
@@ -1015,20 +1029,77 @@ public final class TerminalView extends View {
             if (mTextSelectionCursorController != null) {
                 mTextSelectionCursorController.getSelectors(sel);
             }
+            ScreenSnapshot snapshot = mTermSession.getScreenSnapshot();
+            if (mSearchMatch != null && !isSelectingText()) {
+                // The rows of the match are counted from the screen being drawn, which the live screen may have
+                // scrolled past.
+                long scrolledRows = (snapshot != null) ? snapshot.mScrolledRows : mEmulator.getScreen().getScrolledRows();
+                sel = mSearchMatchSelectors;
+                sel[0] = mSearchMatch.getStartRow(scrolledRows);
+                sel[1] = mSearchMatch.getEndRow(scrolledRows);
+                sel[2] = mSearchMatch.mStartColumn;
+                sel[3] = mSearchMatch.mEndColumn;
+            }
 
-            mRenderer.render(mEmulator, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+            if (snapshot != null) {
+                // The emulator thread clears the dirty rows of the screen when taking a snapshot.
+                mRenderer.render(snapshot, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+                snapshot.setDirtyRowsDrawn();
+            } else {
+                mRenderer.render(mEmulator, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+                mEmulator.getScreen().clearDirtyRows();
+            }
 
             // render the text selection handles
             renderTextSelection();
         }
     }
 
+    /**
+     * Highlight a match found by a {@link TranscriptSearch} of the current emulator, scrolling to it if it is not
+     * visible, or stop highlighting if null.
+     */
+    public void setSearchMatch(TranscriptSearch.Match match) {
+        mSearchMatch = match;
+        if (match != null && mEmulator != null) {
+            ScreenSnapshot snapshot = mTermSession.getScreenSnapshot();
+            long scrolledRows = (snapshot != null) ? snapshot.mScrolledRows : mEmulator.getScreen().getScrolledRows();
+            int row = match.getStartRow(scrolledRows);
+            if (row < mTopRow || match.getEndRow(scrolledRows) >= mTopRow + mEmulator.mRows) {
+                // Show the match in the middle of the view.
+                mTopRow = Math.max(-getActiveTranscriptRows(), Math.min(0, row - mEmulator.mRows / 2));
+            }
+        }
+        invalidate();
+    }
+
     public TerminalSession getCurrentSession() {
         return mTermSession;
     }
 
     private CharSequence getText() {
-        return mEmulator.getScreen().getSelectedText(0, mTopRow, mEmulator.mColumns, mTopRow + mEmulator.mRows);
+        return getSelectedText(0, mTopRow, mEmulator.mColumns, mTopRow + mEmulator.mRows);
+    }
+
+    /**
+     * Get the text between two positions of the screen as drawn, where negative rows are in the transcript. If the
+     * emulation runs on a separate thread, then the rows are counted from the screen snapshot being drawn, see
+     * {@link ScreenSnapshot#getSelectedText(int, int, int, int)}.
+     */
+    public String getSelectedText(int x1, int y1, int x2, int y2) {
+        ScreenSnapshot snapshot = mTermSession.getScreenSnapshot();
+        if (snapshot != null) return snapshot.getSelectedText(x1, y1, x2, y2);
+        return mEmulator.getSelectedText(x1, y1, x2, y2);
+    }
+
+    /**
+     * Get the number of transcript rows above the screen as drawn, which the view can scroll up to. If the emulation
+     * runs on a separate thread, then this is read from the screen snapshot being drawn instead of the live screen.
+     */
+    public int getActiveTranscriptRows() {
+        ScreenSnapshot snapshot = mTermSession.getScreenSnapshot();
+        if (snapshot != null) return snapshot.mActiveTranscriptRows;
+        return mEmulator.getScreen().getActiveTranscriptRows();
     }
 
     public int getCursorX(float x) {
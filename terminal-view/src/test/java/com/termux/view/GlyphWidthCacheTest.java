@@ -0,0 +1,65 @@
+package com.termux.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GlyphWidthCacheTest {
+
+    @Test
+    public void testAddedCodePointIsFound() {
+        GlyphWidthCache cache = new GlyphWidthCache();
+        assertEquals(-1, cache.find('中'));
+
+        int slot = cache.add('中', 24.5f, false);
+        assertEquals(slot, cache.find('中'));
+        assertEquals(24.5f, cache.getWidth(slot), 0);
+        assertFalse(cache.isWidthMismatch(slot));
+
+        int emojiSlot = cache.add(0x1F600, 30f, true);
+        assertEquals(emojiSlot, cache.find(0x1F600));
+        assertTrue(cache.isWidthMismatch(emojiSlot));
+        assertEquals(slot, cache.find('中'));
+    }
+
+    @Test
+    public void testConsecutiveCodePointsAreAllFound() {
+        GlyphWidthCache cache = new GlyphWidthCache();
+        // The most common CJK ideographs are consecutive code points, which must not collide into long probes.
+        for (int codePoint = 0x4E00; codePoint < 0x4E00 + GlyphWidthCache.MAX_ENTRIES; codePoint++)
+            cache.add(codePoint, codePoint, codePoint % 3 == 0);
+
+        for (int codePoint = 0x4E00; codePoint < 0x4E00 + GlyphWidthCache.MAX_ENTRIES; codePoint++) {
+            int slot = cache.find(codePoint);
+            assertTrue(slot >= 0);
+            assertEquals(codePoint, cache.getWidth(slot), 0);
+            assertEquals(codePoint % 3 == 0, cache.isWidthMismatch(slot));
+        }
+        assertEquals(-1, cache.find(0x4E00 + GlyphWidthCache.MAX_ENTRIES));
+    }
+
+    @Test
+    public void testFullCacheIsCleared() {
+        GlyphWidthCache cache = new GlyphWidthCache();
+        for (int i = 0; i < GlyphWidthCache.MAX_ENTRIES; i++)
+            cache.add(0x3000 + i, 1f, false);
+        assertTrue(cache.find(0x3000) >= 0);
+
+        int slot = cache.add(0x10000, 2f, false);
+        assertEquals(slot, cache.find(0x10000));
+        assertEquals(-1, cache.find(0x3000));
+        assertEquals(-1, cache.find(0x3000 + GlyphWidthCache.MAX_ENTRIES - 1));
+    }
+
+    @Test
+    public void testHitsAndMissesAreCounted() {
+        GlyphWidthCache cache = new GlyphWidthCache();
+        cache.find('a');
+        cache.add('a', 1f, false);
+        cache.find('a');
+        cache.find('a');
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+}
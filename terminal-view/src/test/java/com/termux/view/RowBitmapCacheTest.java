@@ -0,0 +1,29 @@
+package com.termux.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RowBitmapCacheTest {
+
+    private static final int[] PALETTE = new int[259];
+
+    @Test
+    public void testScreenWithinBudgetUsesCache() {
+        RowBitmapCache cache = new RowBitmapCache();
+        // A 1080 pixels wide phone screen with rows of 40 pixels.
+        assertTrue(cache.validate(0, PALETTE, false, false, 1080, 40, 60));
+    }
+
+    @Test
+    public void testScreenOverBudgetDoesNotUseCache() {
+        RowBitmapCache cache = new RowBitmapCache();
+        int width = 3840, height = 60;
+        int rowsInBudget = (int) (RowBitmapCache.MAX_BYTES / (4L * width * height));
+        assertTrue(cache.validate(0, PALETTE, false, false, width, height, rowsInBudget));
+        assertFalse(cache.validate(0, PALETTE, false, false, width, height, rowsInBudget + 1));
+        // The cache is used again once a screen of rows fits, like after the text size is increased.
+        assertTrue(cache.validate(0, PALETTE, false, false, width, 2 * height, rowsInBudget / 2));
+    }
+
+}
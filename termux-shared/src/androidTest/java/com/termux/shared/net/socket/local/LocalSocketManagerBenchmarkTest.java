@@ -0,0 +1,213 @@
+package com.termux.shared.net.socket.local;
+
+import android.content.Context;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency benchmark for the request and response round trip of {@link LocalSocketManager} clients,
+ * like for calls to the termux-am socket server in tight loops from scripts. A {@link LocalSocket}
+ * stands in for the native client, which sends its data, closes its output or terminates the data
+ * with a null character, and reads the response until end of stream. The server echoes the data
+ * it read back to the client.
+ *
+ * The latencies are logged with the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalSocketManagerBenchmarkTest {
+
+    private static final String LOG_TAG = "LocalSocketManagerBenchmark";
+
+    private static final int MAX_CLIENT_THREADS = 4;
+    private static final int WARMUP_REQUESTS = 50;
+    private static final int REQUESTS = 500;
+    private static final int CONCURRENT_CLIENTS = 16;
+    /** Far below the receive timeout, after which a server still waiting for the end of stream would fail. */
+    private static final long NULL_TERMINATED_REQUEST_TIMEOUT_NANOS = 1000L * 1000 * 1000;
+
+    private String mSocketPath;
+    private LocalSocketManager mLocalSocketManager;
+
+    /** The server client that echoes the data read from each client back to it. */
+    private static class EchoServerClient extends LocalSocketManagerClientBase {
+
+        @Override
+        public void onClientAccepted(@NonNull LocalSocketManager localSocketManager,
+                                     @NonNull LocalClientSocket clientSocket) {
+            StringBuilder data = new StringBuilder();
+            if (clientSocket.readDataOnInputStream(data, true) == null)
+                clientSocket.sendDataToOutputStream(data.toString(), true);
+            clientSocket.closeClientSocket(true);
+        }
+
+        @Override
+        protected String getLogTag() {
+            return LOG_TAG;
+        }
+
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mSocketPath = context.getCacheDir().getAbsolutePath() + "/local-socket-benchmark";
+
+        LocalSocketRunConfig localSocketRunConfig = new LocalSocketRunConfig("LocalSocketBenchmark",
+            mSocketPath, new EchoServerClient());
+        localSocketRunConfig.setMaxClientThreads(MAX_CLIENT_THREADS);
+
+        mLocalSocketManager = new LocalSocketManager(context, localSocketRunConfig);
+        assertNull(mLocalSocketManager.start());
+    }
+
+    @After
+    public void tearDown() {
+        if (mLocalSocketManager != null)
+            mLocalSocketManager.stop();
+    }
+
+    @Test
+    public void benchmarkSequentialRequests() throws Exception {
+        String request = "start -n com.termux/.app.TermuxActivity --es key \u00e9\u20ac\uD83D\uDE00";
+        for (int i = 0; i < WARMUP_REQUESTS; i++)
+            assertEquals(request, sendRequest(request));
+
+        long[] latencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long startTime = System.nanoTime();
+            assertEquals(request, sendRequest(request));
+            latencies[i] = System.nanoTime() - startTime;
+        }
+
+        logLatencies("sequential " + request.length() + " chars", latencies);
+    }
+
+    @Test
+    public void benchmarkNullTerminatedRequests() throws Exception {
+        // The client keeps its output open, so the server must return once it reads the null
+        // character instead of waiting for the end of stream
+        String request = "start -n com.termux/.app.TermuxActivity --es key \u00e9\u20ac\uD83D\uDE00";
+        for (int i = 0; i < WARMUP_REQUESTS; i++)
+            assertEquals(request, sendRequest(request, true));
+
+        long[] latencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long startTime = System.nanoTime();
+            assertEquals(request, sendRequest(request, true));
+            latencies[i] = System.nanoTime() - startTime;
+        }
+
+        logLatencies("null terminated " + request.length() + " chars", latencies);
+        assertTrue(latencies[latencies.length - 1] < NULL_TERMINATED_REQUEST_TIMEOUT_NANOS);
+    }
+
+    @Test
+    public void benchmarkLargeRequests() throws Exception {
+        char[] chars = new char[64 * 1024 + 7];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (i % 3 == 0) ? '\u00e9' : (char) ('a' + i % 26);
+        String request = new String(chars);
+
+        long[] latencies = new long[REQUESTS / 10];
+        for (int i = 0; i < latencies.length; i++) {
+            long startTime = System.nanoTime();
+            assertEquals(request, sendRequest(request));
+            latencies[i] = System.nanoTime() - startTime;
+        }
+
+        logLatencies("sequential " + request.length() + " chars", latencies);
+    }
+
+    @Test
+    public void benchmarkConcurrentRequests() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_CLIENTS);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                final String request = "broadcast -a com.termux.benchmark --ei id " + i;
+                futures.add(clients.submit(() -> {
+                    long startTime = System.nanoTime();
+                    assertEquals(request, sendRequest(request));
+                    return System.nanoTime() - startTime;
+                }));
+            }
+
+            long[] latencies = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++)
+                latencies[i] = futures.get(i).get();
+
+            logLatencies(CONCURRENT_CLIENTS + " concurrent clients", latencies);
+        } finally {
+            clients.shutdown();
+        }
+
+        Log.i(LOG_TAG, mLocalSocketManager.getMetricsLogString());
+        assertTrue(mLocalSocketManager.mClientThreadPool.getLargestPoolSize() <= MAX_CLIENT_THREADS);
+    }
+
+    /** Send a request like the native client does and return the response. */
+    private String sendRequest(String request) throws IOException {
+        return sendRequest(request, false);
+    }
+
+    /**
+     * Send a request and return the response. If {@code nullTerminated} is {@code true}, then the
+     * request is terminated with a null character and the output is kept open while reading the
+     * response, otherwise the output is closed after the request.
+     */
+    private String sendRequest(String request, boolean nullTerminated) throws IOException {
+        try (LocalSocket socket = new LocalSocket()) {
+            socket.connect(new LocalSocketAddress(mSocketPath, LocalSocketAddress.Namespace.FILESYSTEM));
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            if (nullTerminated)
+                socket.getOutputStream().write(0);
+            else
+                socket.shutdownOutput();
+
+            InputStream inputStream = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1)
+                response.write(buffer, 0, bytesRead);
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void logLatencies(String label, long[] latencies) {
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies)
+            total += latency;
+
+        Log.i(LOG_TAG, String.format(Locale.ENGLISH, "%s: %d requests, average %d us, p50 %d us, p90 %d us, p99 %d us, max %d us",
+            label, latencies.length, total / latencies.length / 1000,
+            latencies[latencies.length / 2] / 1000, latencies[latencies.length * 9 / 10] / 1000,
+            latencies[latencies.length * 99 / 100] / 1000, latencies[latencies.length - 1] / 1000));
+    }
+
+}
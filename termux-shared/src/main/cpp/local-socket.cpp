@@ -365,11 +365,10 @@ Java_com_termux_shared_net_socket_local_LocalSocketManager_readNative(JNIEnv *en
     }
 
     struct timespec time = {};
-    jbyte* current = data;
     int bytes = env->GetArrayLength(dataArray);
     if (checkJniException(env)) return NULL;
     int bytesRead = 0;
-    while (bytesRead < bytes) {
+    while (bytes > 0) {
         if (deadline > 0) {
             if (clock_gettime(CLOCK_REALTIME, &time) != -1) {
                 // If current time is greater than the time defined in deadline
@@ -386,21 +385,20 @@ Java_com_termux_shared_net_socket_local_LocalSocketManager_readNative(JNIEnv *en
             }
         }
 
-        // Read data from socket
-        int ret = read(fd, current, bytes);
+        // Read the data available on the socket into the buffer
+        int ret = read(fd, data, bytes);
         if (ret == -1) {
             int errnoBackup = errno;
+            if (errnoBackup == EINTR) continue;
             env->ReleaseByteArrayElements(dataArray, data, 0);
             if (checkJniException(env)) return NULL;
             return getJniResult(env, logTitle, -1, errnoBackup, "readNative(): Failed to read on fd "  + to_string(fd));
         }
-        // EOF, peer closed writing end
-        if (ret == 0) {
-            break;
-        }
-
-        bytesRead += ret;
-        current += ret;
+        // Return after a single read like read(2), even if the buffer is not full, so that callers
+        // that look for the end of a message in the data read, like a NUL, do not block until the
+        // peer closes its writing end. A return value of 0 is EOF, as the peer closed writing end.
+        bytesRead = ret;
+        break;
     }
 
     env->ReleaseByteArrayElements(dataArray, data, 0);
@@ -1697,6 +1697,44 @@ public class FileUtils {
         return null;
     }
 
+    /**
+     * Write {@code data} bytes to file at path.
+     *
+     * @param label The optional label for file to write. This can optionally be {@code null}.
+     * @param filePath The {@code path} for file to write.
+     * @param data The data to write to file.
+     * @param offset The offset in {@code data} to start writing from.
+     * @param count The number of bytes of {@code data} to write.
+     * @param append The {@code boolean} that decides if file should be appended to or not.
+     * @return Returns the {@code error} if writing was not successful, otherwise {@code null}.
+     */
+    public static Error writeBytesToFile(String label, final String filePath, @NonNull final byte[] data, int offset, int count, final boolean append) {
+        label = (label == null || label.isEmpty() ? "" : label + " ");
+        if (filePath == null || filePath.isEmpty()) return FunctionErrno.ERRNO_NULL_OR_EMPTY_PARAMETER.getError(label + "file path", "writeBytesToFile");
+
+        Logger.logVerbose(LOG_TAG, "Writing " + count + " bytes to " + label + "file at path \"" + filePath + "\"");
+
+        Error error;
+
+        error = preWriteToFile(label, filePath);
+        if (error != null)
+            return error;
+
+        FileOutputStream fileOutputStream = null;
+        try {
+            // Write bytes to file
+            fileOutputStream = new FileOutputStream(filePath, append);
+            fileOutputStream.write(data, offset, count);
+            fileOutputStream.flush();
+        } catch (Exception e) {
+            return FileUtilsErrno.ERRNO_WRITING_BYTES_TO_FILE_FAILED_WITH_EXCEPTION.getError(e, label + "file", filePath, e.getMessage());
+        } finally {
+            closeCloseable(fileOutputStream);
+        }
+
+        return null;
+    }
+
     /**
      * Write the {@link Serializable} {@code serializableObject} to file at path.
      *
@@ -80,6 +80,30 @@ public class ShareUtils {
         openSystemAppChooser(context, shareTextIntent, DataUtils.isNullOrEmpty(title) ? context.getString(R.string.title_share_with) : title);
     }
 
+    /**
+     * Share the content of an {@link Uri}, like a file exposed by a {@link android.content.ContentProvider}, which
+     * unlike {@link #shareText(Context, String, String, String)} is not limited by the binder transaction size.
+     *
+     * @param context The context for operations.
+     * @param subject The subject for sharing.
+     * @param uri The content uri to share, for which read permission is granted to the receiving app.
+     * @param mimeType The mime type of the content.
+     * @param title The title for share menu.
+     */
+    public static void shareStream(final Context context, final String subject, final Uri uri, final String mimeType, @Nullable final String title) {
+        if (context == null || uri == null) return;
+
+        final Intent shareStreamIntent = new Intent(Intent.ACTION_SEND);
+        shareStreamIntent.setType(mimeType);
+        shareStreamIntent.putExtra(Intent.EXTRA_SUBJECT, subject);
+        shareStreamIntent.putExtra(Intent.EXTRA_STREAM, uri);
+        // The clip data carries the read permission grant through the chooser intent.
+        shareStreamIntent.setClipData(ClipData.newRawUri(subject, uri));
+        shareStreamIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        openSystemAppChooser(context, shareStreamIntent, DataUtils.isNullOrEmpty(title) ? context.getString(R.string.title_share_with) : title);
+    }
+
 
 
     /** Wrapper for {@link #copyTextToClipboard(Context, String, String, String)} with `null` `clipDataLabel` and `toastString`. */
@@ -8,19 +8,23 @@ import com.termux.shared.jni.models.JniResult;
 import com.termux.shared.logger.Logger;
 import com.termux.shared.markdown.MarkdownUtils;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 
 /** The client socket for {@link LocalSocketManager}. */
 public class LocalClientSocket implements Closeable {
 
     public static final String LOG_TAG = "LocalClientSocket";
 
+    /** The size of the buffer that {@link #readDataOnInputStream(StringBuilder, boolean)} reads into. */
+    protected static final int READ_BUFFER_SIZE = 8192;
+
     /** The {@link LocalSocketManager} instance for the local socket. */
     @NonNull protected final LocalSocketManager mLocalSocketManager;
 
@@ -107,9 +111,9 @@ public class LocalClientSocket implements Closeable {
      * to end-of-file, or because we are reading from a pipe), or because read() was interrupted by
      * a signal.
      *
-     * If while reading the {@link #mCreationTime} + the milliseconds returned by
-     * {@link LocalSocketRunConfig#getDeadline()} elapses but all the data has not been read, an
-     * error would be returned.
+     * If the {@link #mCreationTime} + the milliseconds returned by
+     * {@link LocalSocketRunConfig#getDeadline()} has elapsed before reading, an error would be
+     * returned.
      *
      * This is a wrapper for {@link LocalSocketManager#read(String, int, byte[], long)}, which can
      * be called instead if you want to get access to errno int value instead of {@link JniResult}
@@ -173,10 +177,13 @@ public class LocalClientSocket implements Closeable {
     }
 
     /**
-     * Attempts to read all the bytes available on {@link SocketInputStream} and appends them to
-     * {@code data} {@link StringBuilder}.
+     * Attempts to read all the bytes available on {@link SocketInputStream} until end of stream or
+     * a null character and appends them to {@code data} {@link StringBuilder} decoded as UTF-8.
      *
-     * This is a wrapper for {@link #read(byte[], MutableInt)} called via {@link SocketInputStream#read()}.
+     * This is a wrapper for {@link #read(byte[], MutableInt)} called via {@link SocketInputStream#read(byte[])}.
+     * The bytes are read in chunks of up to {@link #READ_BUFFER_SIZE} bytes as they arrive, and
+     * each chunk is checked for the null character, so a client that terminates its data with one
+     * does not need to close its output stream for the read to return.
      *
      * @param data The data {@link StringBuilder} to append the bytes read into.
      * @param closeStreamOnFinish If set to {@code true}, then underlying input stream will closed
@@ -185,12 +192,20 @@ public class LocalClientSocket implements Closeable {
      * error {@link String}, otherwise {@code null}.
      */
     public Error readDataOnInputStream(@NonNull StringBuilder data, boolean closeStreamOnFinish) {
-        int c;
-        InputStreamReader inputStreamReader = getInputStreamReader();
+        InputStream inputStream = getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int bytesRead;
         try {
-            while ((c = inputStreamReader.read()) > 0) {
-                data.append((char) c);
+            while ((bytesRead = inputStream.read(buffer)) > 0) {
+                int nullIndex = 0;
+                while (nullIndex < bytesRead && buffer[nullIndex] != 0) nullIndex++;
+                bytes.write(buffer, 0, nullIndex);
+                if (nullIndex < bytesRead)
+                    break;
             }
+            // Decode once, so that multi-byte characters split across reads are decoded correctly
+            data.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
         } catch (IOException e) {
             // The SocketInputStream.read() throws the Error message in an IOException,
             // so just read the exception message and not the stack trace, otherwise it would result
@@ -202,7 +217,7 @@ public class LocalClientSocket implements Closeable {
                 e, mLocalSocketRunConfig.getTitle(), e.getMessage());
         } finally {
             if (closeStreamOnFinish) {
-                try { inputStreamReader.close();
+                try { inputStream.close();
                 } catch (IOException e) {
                     // Ignore
                 }
@@ -215,7 +230,8 @@ public class LocalClientSocket implements Closeable {
     /**
      * Attempts to send all the bytes passed to {@link SocketOutputStream} .
      *
-     * This is a wrapper for {@link #send(byte[])} called via {@link SocketOutputStream#write(int)}.
+     * This is a wrapper for {@link #send(byte[])} called via {@link SocketOutputStream#write(byte[])},
+     * which sends all of the UTF-8 encoded {@code data} at once.
      *
      * @param data The {@link String} bytes to send.
      * @param closeStreamOnFinish If set to {@code true}, then underlying output stream will closed
@@ -225,11 +241,11 @@ public class LocalClientSocket implements Closeable {
      */
     public Error sendDataToOutputStream(@NonNull String data, boolean closeStreamOnFinish) {
 
-        OutputStreamWriter outputStreamWriter = getOutputStreamWriter();
+        OutputStream outputStream = getOutputStream();
 
-        try (BufferedWriter byteStreamWriter = new BufferedWriter(outputStreamWriter)) {
-            byteStreamWriter.write(data);
-            byteStreamWriter.flush();
+        try {
+            outputStream.write(data.getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
         } catch (IOException e) {
             // The SocketOutputStream.write() throws the Error message in an IOException,
             // so just read the exception message and not the stack trace, otherwise it would result
@@ -242,7 +258,7 @@ public class LocalClientSocket implements Closeable {
         } finally {
             if (closeStreamOnFinish) {
                 try {
-                    outputStreamWriter.close();
+                    outputStream.close();
                 } catch (IOException e) {
                     // Ignore
                 }
@@ -274,7 +290,7 @@ public class LocalClientSocket implements Closeable {
             return null;
         }
 
-        JniResult result = LocalSocketManager.available(mLocalSocketRunConfig.getLogTitle() + " (client)", mLocalSocketRunConfig.getFD());
+        JniResult result = LocalSocketManager.available(mLocalSocketRunConfig.getLogTitle() + " (client)", mFD);
         if (result == null || result.retval != 0) {
             return LocalSocketErrno.ERRNO_CHECK_AVAILABLE_DATA_ON_CLIENT_SOCKET_FAILED.getError(
                 mLocalSocketRunConfig.getTitle(), JniResult.getErrorString(result));
@@ -422,7 +438,7 @@ public class LocalClientSocket implements Closeable {
                 return -1;
             }
 
-            return mBytes[0];
+            return mBytes[0] & 0xFF;
         }
 
         @Override
@@ -444,6 +460,24 @@ public class LocalClientSocket implements Closeable {
             return bytesRead.value;
         }
 
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (offset < 0 || length < 0 || length > bytes.length - offset) {
+                throw new IndexOutOfBoundsException();
+            } else if (length == 0) {
+                return 0;
+            } else if (offset == 0 && length == bytes.length) {
+                return read(bytes);
+            }
+
+            // The native read reads into a whole array, so read into one of the requested length
+            byte[] buffer = new byte[length];
+            int bytesRead = read(buffer);
+            if (bytesRead > 0)
+                System.arraycopy(buffer, 0, bytes, offset, bytesRead);
+            return bytesRead;
+        }
+
         @Override
         public int available() throws IOException {
             MutableInt available = new MutableInt(0);
@@ -478,6 +512,23 @@ public class LocalClientSocket implements Closeable {
                 throw new IOException(error.getErrorMarkdownString());
             }
         }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (offset < 0 || length < 0 || length > bytes.length - offset) {
+                throw new IndexOutOfBoundsException();
+            } else if (length == 0) {
+                return;
+            } else if (offset == 0 && length == bytes.length) {
+                write(bytes);
+                return;
+            }
+
+            // The native send sends a whole array, so send a copy of the requested range
+            byte[] buffer = new byte[length];
+            System.arraycopy(bytes, offset, buffer, 0, length);
+            write(buffer);
+        }
     }
 
 }
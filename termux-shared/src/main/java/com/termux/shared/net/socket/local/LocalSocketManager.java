@@ -9,6 +9,12 @@ import com.termux.shared.errors.Error;
 import com.termux.shared.jni.models.JniResult;
 import com.termux.shared.logger.Logger;
 
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Manager for an AF_UNIX/SOCK_STREAM local server.
  *
@@ -30,6 +36,9 @@ public class LocalSocketManager {
     /** Whether {@link #LOCAL_SOCKET_LIBRARY} has been loaded or not. */
     protected static boolean localSocketLibraryLoaded;
 
+    /** The milliseconds after which an idle thread of {@link #mClientThreadPool} is stopped. */
+    protected static final long CLIENT_THREAD_KEEP_ALIVE_TIME = 30000;
+
     /** The {@link Context} that may needed for various operations. */
     @NonNull protected final Context mContext;
 
@@ -45,9 +54,21 @@ public class LocalSocketManager {
     /** The {@link Thread.UncaughtExceptionHandler} used for client thread started by {@link LocalSocketManager}. */
     @NonNull protected final Thread.UncaughtExceptionHandler mLocalSocketManagerClientThreadUEH;
 
+    /**
+     * The pool of up to {@link LocalSocketRunConfig#getMaxClientThreads()} threads that client
+     * callbacks are run on by {@link #startLocalSocketManagerClientThread(LocalClientSocket, Runnable)}.
+     * It is created by {@link #start()} and shut down by {@link #stop()}.
+     */
+    @Nullable protected ThreadPoolExecutor mClientThreadPool;
+
     /** Whether the {@link LocalServerSocket} managed by {@link LocalSocketManager} in running or not. */
     protected boolean mIsRunning;
 
+    /** The number of client callbacks run, and the total and max milliseconds they waited for a thread. */
+    protected long mClientCallbacksRun;
+    protected long mTotalClientCallbackWaitTime;
+    protected long mMaxClientCallbackWaitTime;
+
 
     /**
      * Create an new instance of {@link LocalSocketManager}.
@@ -82,6 +103,9 @@ public class LocalSocketManager {
             }
         }
 
+        if (mClientThreadPool == null || mClientThreadPool.isShutdown())
+            mClientThreadPool = createClientThreadPool();
+
         mIsRunning = true;
         return mServerSocket.start();
     }
@@ -93,7 +117,12 @@ public class LocalSocketManager {
         if (mIsRunning) {
             Logger.logDebugExtended(LOG_TAG, "stop\n" + mLocalSocketRunConfig);
             mIsRunning = false;
-            return mServerSocket.stop();
+            Logger.logVerbose(LOG_TAG, getMetricsLogString());
+            Error error = mServerSocket.stop();
+            // Let the callbacks already started or queued finish, but stop the idle threads
+            if (mClientThreadPool != null)
+                mClientThreadPool.shutdown();
+            return error;
         }
         return null;
     }
@@ -179,7 +208,8 @@ public class LocalSocketManager {
      * to end-of-file, or because we are reading from a pipe), or because read() was interrupted by
      * a signal. On error, the {@link JniResult#errno} and {@link JniResult#errmsg} will be set.
      *
-     * If while reading the deadline elapses but all the data has not been read, the call will fail.
+     * This returns after a single read, once any bytes are available, instead of waiting until the
+     * data buffer is full. If the deadline has elapsed before the read, the call will fail.
      *
      * @param serverTitle The server title used for logging and errors.
      * @param fd The socket fd.
@@ -311,33 +341,83 @@ public class LocalSocketManager {
 
     /** Wrapper to call {@link ILocalSocketManager#onError(LocalSocketManager, LocalClientSocket, Error)} in a new thread. */
     public void onError(@Nullable LocalClientSocket clientSocket, @NonNull Error error) {
-        startLocalSocketManagerClientThread(() ->
+        startLocalSocketManagerClientThread(clientSocket, () ->
             mLocalSocketManagerClient.onError(this, clientSocket, error));
     }
 
     /** Wrapper to call {@link ILocalSocketManager#onDisallowedClientConnected(LocalSocketManager, LocalClientSocket, Error)} in a new thread. */
     public void onDisallowedClientConnected(@NonNull LocalClientSocket clientSocket, @NonNull Error error) {
-        startLocalSocketManagerClientThread(() ->
+        startLocalSocketManagerClientThread(clientSocket, () ->
             mLocalSocketManagerClient.onDisallowedClientConnected(this, clientSocket, error));
     }
 
     /** Wrapper to call {@link ILocalSocketManager#onClientAccepted(LocalSocketManager, LocalClientSocket)} in a new thread. */
     public void onClientAccepted(@NonNull LocalClientSocket clientSocket) {
-        startLocalSocketManagerClientThread(() ->
+        startLocalSocketManagerClientThread(clientSocket, () ->
             mLocalSocketManagerClient.onClientAccepted(this, clientSocket));
     }
 
-    /** All client accept logic must be run on separate threads so that incoming client acceptance is not blocked. */
+    /** Wrapper for {@link #startLocalSocketManagerClientThread(LocalClientSocket, Runnable)} for {@code null} {@link LocalClientSocket}. */
     public void startLocalSocketManagerClientThread(@NonNull Runnable runnable) {
-        Thread thread = new Thread(runnable);
-        thread.setUncaughtExceptionHandler(getLocalSocketManagerClientThreadUEH());
+        startLocalSocketManagerClientThread(null, runnable);
+    }
+
+    /**
+     * All client accept logic must be run on separate threads so that incoming client acceptance is
+     * not blocked. The {@code runnable} is run on a thread of {@link #mClientThreadPool}, and waits
+     * for one to be free if all are busy.
+     *
+     * If {@link LocalSocketRunConfig#getMaxQueuedClients()} callbacks are already waiting, or the
+     * {@link LocalSocketManager} has been stopped, then the {@code runnable} is not run and the
+     * {@code clientSocket} is closed, if not {@code null}.
+     */
+    public void startLocalSocketManagerClientThread(@Nullable LocalClientSocket clientSocket, @NonNull Runnable runnable) {
+        final long queueTime = System.currentTimeMillis();
+        ThreadPoolExecutor clientThreadPool = mClientThreadPool;
         try {
-            thread.start();
+            if (clientThreadPool == null)
+                throw new RejectedExecutionException("The client thread pool has not been started");
+            clientThreadPool.execute(() -> {
+                onClientCallbackStarted(System.currentTimeMillis() - queueTime);
+                runnable.run();
+            });
+        } catch (RejectedExecutionException e) {
+            Logger.logWarn(LOG_TAG, "Rejected " + mLocalSocketRunConfig.getTitle() + " server client callback since " +
+                (clientThreadPool == null || clientThreadPool.isShutdown() ? "the server is stopped" : "too many are queued") +
+                (clientSocket != null ? ", closing client socket" : ""));
+            if (clientSocket != null)
+                clientSocket.closeClientSocket(true);
         } catch (Exception e) {
             Logger.logStackTraceWithMessage(LOG_TAG, "LocalSocketManagerClientThread start failed", e);
         }
     }
 
+    /**
+     * Create the {@link #mClientThreadPool}. Its threads use the {@link #mLocalSocketManagerClientThreadUEH},
+     * and a thread that dies due to an uncaught exception is replaced for later callbacks. Its queue
+     * is bounded by {@link LocalSocketRunConfig#getMaxQueuedClients()}.
+     */
+    @NonNull
+    protected ThreadPoolExecutor createClientThreadPool() {
+        int maxClientThreads = mLocalSocketRunConfig.getMaxClientThreads();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(maxClientThreads, maxClientThreads,
+            CLIENT_THREAD_KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(mLocalSocketRunConfig.getMaxQueuedClients()),
+            runnable -> {
+                Thread thread = new Thread(runnable, mLocalSocketRunConfig.getTitle() + "-LocalSocketManagerClientThread");
+                thread.setUncaughtExceptionHandler(getLocalSocketManagerClientThreadUEH());
+                return thread;
+            });
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    private synchronized void onClientCallbackStarted(long waitTime) {
+        mClientCallbacksRun++;
+        mTotalClientCallbackWaitTime += waitTime;
+        mMaxClientCallbackWaitTime = Math.max(mMaxClientCallbackWaitTime, waitTime);
+    }
+
 
 
     /** Get {@link #mContext}. */
@@ -384,6 +464,24 @@ public class LocalSocketManager {
         return mIsRunning;
     }
 
+    /** Get the average milliseconds that client callbacks waited for a thread of {@link #mClientThreadPool}. */
+    public synchronized long getAverageClientCallbackWaitTime() {
+        return mClientCallbacksRun == 0 ? 0 : mTotalClientCallbackWaitTime / mClientCallbacksRun;
+    }
+
+    /** Get the max milliseconds that a client callback waited for a thread of {@link #mClientThreadPool}. */
+    public synchronized long getMaxClientCallbackWaitTime() {
+        return mMaxClientCallbackWaitTime;
+    }
+
+    /** Get a log {@link String} for the client callback metrics of the {@link LocalSocketManager}. */
+    @NonNull
+    public synchronized String getMetricsLogString() {
+        return String.format(Locale.ENGLISH, "%s server ran %d client callbacks on at most %d of max %d threads, average wait %d ms, max %d ms",
+            mLocalSocketRunConfig.getTitle(), mClientCallbacksRun, mClientThreadPool != null ? mClientThreadPool.getLargestPoolSize() : 0,
+            mLocalSocketRunConfig.getMaxClientThreads(), getAverageClientCallbackWaitTime(), mMaxClientCallbackWaitTime);
+    }
+
 
 
     /** Get an error log {@link String} for the {@link LocalSocketManager}. */
@@ -94,6 +94,27 @@ public class LocalSocketRunConfig implements Serializable {
     protected Integer mBacklog;
     public static final int DEFAULT_BACKLOG = 50;
 
+    /**
+     * The max number of threads that {@link LocalSocketManager} runs the {@link ILocalSocketManager}
+     * callbacks on, like for each accepted {@link LocalClientSocket}. Callbacks for clients
+     * accepted while all threads are busy wait in a queue until a thread is free. Idle threads are
+     * stopped, so that no threads are kept while clients are not connecting. Value must be greater
+     * than 0.
+     * Defaults to {@link #DEFAULT_MAX_CLIENT_THREADS}.
+     */
+    protected Integer mMaxClientThreads;
+    public static final int DEFAULT_MAX_CLIENT_THREADS = 8;
+
+    /**
+     * The max number of callbacks that may wait in the queue for a thread while all
+     * {@link #mMaxClientThreads} are busy. Clients accepted while the queue is full are closed
+     * without being handled, so that clients that keep connecting cannot queue unbounded callbacks.
+     * Value must be greater than 0.
+     * Defaults to {@link #DEFAULT_MAX_QUEUED_CLIENTS}.
+     */
+    protected Integer mMaxQueuedClients;
+    public static final int DEFAULT_MAX_QUEUED_CLIENTS = 50;
+
 
     /**
      * Create an new instance of {@link LocalSocketRunConfig}.
@@ -194,6 +215,34 @@ public class LocalSocketRunConfig implements Serializable {
             mBacklog = backlog;
     }
 
+    /** Get {@link #mMaxClientThreads} if set, otherwise {@link #DEFAULT_MAX_CLIENT_THREADS}. */
+    public Integer getMaxClientThreads() {
+        return mMaxClientThreads != null ? mMaxClientThreads : DEFAULT_MAX_CLIENT_THREADS;
+    }
+
+    /**
+     * Set {@link #mMaxClientThreads}. Value must be greater than 0. This must be set before the
+     * {@link LocalSocketManager} is started.
+     */
+    public void setMaxClientThreads(Integer maxClientThreads) {
+        if (maxClientThreads > 0)
+            mMaxClientThreads = maxClientThreads;
+    }
+
+    /** Get {@link #mMaxQueuedClients} if set, otherwise {@link #DEFAULT_MAX_QUEUED_CLIENTS}. */
+    public Integer getMaxQueuedClients() {
+        return mMaxQueuedClients != null ? mMaxQueuedClients : DEFAULT_MAX_QUEUED_CLIENTS;
+    }
+
+    /**
+     * Set {@link #mMaxQueuedClients}. Value must be greater than 0. This must be set before the
+     * {@link LocalSocketManager} is started.
+     */
+    public void setMaxQueuedClients(Integer maxQueuedClients) {
+        if (maxQueuedClients > 0)
+            mMaxQueuedClients = maxQueuedClients;
+    }
+
 
     /**
      * Get a log {@link String} for {@link LocalSocketRunConfig}.
@@ -221,6 +270,8 @@ public class LocalSocketRunConfig implements Serializable {
         logString.append("\n").append(Logger.getSingleLineLogStringEntry("SendTimeout", getSendTimeout(), "-"));
         logString.append("\n").append(Logger.getSingleLineLogStringEntry("Deadline", getDeadline(), "-"));
         logString.append("\n").append(Logger.getSingleLineLogStringEntry("Backlog", getBacklog(), "-"));
+        logString.append("\n").append(Logger.getSingleLineLogStringEntry("MaxClientThreads", getMaxClientThreads(), "-"));
+        logString.append("\n").append(Logger.getSingleLineLogStringEntry("MaxQueuedClients", getMaxQueuedClients(), "-"));
 
         return logString.toString();
     }
@@ -250,6 +301,8 @@ public class LocalSocketRunConfig implements Serializable {
         markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("SendTimeout", getSendTimeout(), "-"));
         markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Deadline", getDeadline(), "-"));
         markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Backlog", getBacklog(), "-"));
+        markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("MaxClientThreads", getMaxClientThreads(), "-"));
+        markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("MaxQueuedClients", getMaxQueuedClients(), "-"));
 
         return markdownString.toString();
     }
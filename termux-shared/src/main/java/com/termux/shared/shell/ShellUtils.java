@@ -3,11 +3,20 @@ package com.termux.shared.shell;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.termux.shared.errors.Error;
+import com.termux.shared.errors.FunctionErrno;
 import com.termux.shared.file.FileUtils;
+import com.termux.shared.file.FileUtilsErrno;
 import com.termux.terminal.TerminalBuffer;
 import com.termux.terminal.TerminalEmulator;
 import com.termux.terminal.TerminalSession;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 
 import java.util.ArrayList;
@@ -31,6 +40,37 @@ public class ShellUtils {
         }
     }
 
+    /**
+     * Get the {@link FileDescriptor} of a {@link Process} stream, like returned by
+     * {@link Process#getInputStream()}, which is a {@link FileInputStream} that may be wrapped in
+     * {@link FilterInputStream}s, like a {@link java.io.BufferedInputStream}. Returns {@code null}
+     * if the stream is not backed by a file descriptor, like once a {@link Process} stream has been
+     * drained into a buffer after the process exited.
+     *
+     * The file descriptor is owned by the stream, which may close it at any time, so it should
+     * only be used to poll the stream after duplicating it while synchronized on the stream, and
+     * the bytes should still be read through the stream, as data buffered by the wrappers would
+     * be skipped by reading from the file descriptor.
+     */
+    @Nullable
+    public static FileDescriptor getFileDescriptor(InputStream inputStream) {
+        try {
+            Field f = FilterInputStream.class.getDeclaredField("in");
+            f.setAccessible(true);
+            try {
+                while (inputStream instanceof FilterInputStream)
+                    inputStream = (InputStream) f.get(inputStream);
+            } finally {
+                f.setAccessible(false);
+            }
+            if (inputStream instanceof FileInputStream)
+                return ((FileInputStream) inputStream).getFD();
+        } catch (Throwable e) {
+            // Fall through
+        }
+        return null;
+    }
+
     /** Setup shell command arguments for the execute. */
     @NonNull
     public static String[] setupShellCommandArguments(@NonNull String executable, @Nullable String[] arguments) {
@@ -55,15 +95,18 @@ public class ShellUtils {
         TerminalEmulator terminalEmulator = terminalSession.getEmulator();
         if (terminalEmulator == null) return null;
 
-        TerminalBuffer terminalBuffer = terminalEmulator.getScreen();
-        if (terminalBuffer == null) return null;
-
         String transcriptText;
 
-        if (linesJoined)
-            transcriptText = terminalBuffer.getTranscriptTextWithFullLinesJoined();
-        else
-            transcriptText = terminalBuffer.getTranscriptTextWithoutJoinedLines();
+        // The emulator may be appending output on its own thread.
+        synchronized (terminalEmulator) {
+            TerminalBuffer terminalBuffer = terminalEmulator.getScreen();
+            if (terminalBuffer == null) return null;
+
+            if (linesJoined)
+                transcriptText = terminalBuffer.getTranscriptTextWithFullLinesJoined();
+            else
+                transcriptText = terminalBuffer.getTranscriptTextWithoutJoinedLines();
+        }
 
         if (transcriptText == null) return null;
 
@@ -73,4 +116,37 @@ public class ShellUtils {
         return transcriptText;
     }
 
+    /**
+     * Write the trimmed transcript for {@link TerminalSession} to a file in UTF-8, encoded one row at a time instead
+     * of building a {@link String} like {@link #getTerminalSessionTranscriptText(TerminalSession, boolean, boolean)}.
+     *
+     * The transcript is streamed to the file a chunk of rows at a time by
+     * {@link TerminalSession#writeTranscript(java.io.OutputStream, boolean, boolean, boolean)}, which only holds the lock
+     * of the emulator while reading a chunk, so that slow storage does not block appending output. This must not be
+     * called from the main thread.
+     *
+     * @param terminalSession The {@link TerminalSession} whose transcript to write.
+     * @param filePath The {@code path} for file to write.
+     * @param linesJoined If full lines should be joined like for {@link TerminalBuffer#getTranscriptTextWithFullLinesJoined()}.
+     * @return Returns the {@code error} if writing was not successful, otherwise {@code null}.
+     */
+    public static Error writeTerminalSessionTranscriptToFile(TerminalSession terminalSession, String filePath, boolean linesJoined) {
+        if (terminalSession == null || terminalSession.getEmulator() == null)
+            return FunctionErrno.ERRNO_NULL_OR_EMPTY_PARAMETER.getError("terminal session emulator", "writeTerminalSessionTranscriptToFile");
+        if (filePath == null || filePath.isEmpty())
+            return FunctionErrno.ERRNO_NULL_OR_EMPTY_PARAMETER.getError("file path", "writeTerminalSessionTranscriptToFile");
+
+        Error error = FileUtils.createParentDirectoryFile("transcript file parent", filePath);
+        if (error != null)
+            return error;
+
+        try (BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(filePath))) {
+            terminalSession.writeTranscript(outputStream, !linesJoined, linesJoined, true);
+        } catch (Exception e) {
+            return FileUtilsErrno.ERRNO_WRITING_TEXT_TO_FILE_FAILED_WITH_EXCEPTION.getError(e, "transcript file", filePath, e.getMessage());
+        }
+
+        return null;
+    }
+
 }
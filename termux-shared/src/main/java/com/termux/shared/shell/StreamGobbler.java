@@ -29,6 +29,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.termux.shared.logger.Logger;
+import com.termux.shared.shell.command.result.OutputStore;
 
 /**
  * Thread utility class continuously reading from an InputStream
@@ -77,13 +78,16 @@ public class StreamGobbler extends Thread {
     private final String shell;
     @NonNull
     private final InputStream inputStream;
-    @NonNull
+    /** The reader of lines from the {@link #inputStream}, or {@code null} if raw bytes are read into {@link #outputStore}. */
+    @Nullable
     private final BufferedReader reader;
     @Nullable
     private final List<String> listWriter;
     @Nullable
     private final StringBuilder stringWriter;
     @Nullable
+    private final OutputStore outputStore;
+    @Nullable
     private final OnLineListener lineListener;
     @Nullable
     private final OnStreamClosedListener streamClosedListener;
@@ -92,6 +96,8 @@ public class StreamGobbler extends Thread {
     private volatile boolean active = true;
     private volatile boolean calledOnClose = false;
 
+    private static final int BYTES_BUFFER_SIZE = 8192;
+
     private static final String LOG_TAG = "StreamGobbler";
 
     /**
@@ -119,6 +125,7 @@ public class StreamGobbler extends Thread {
 
         listWriter = outputList;
         stringWriter = null;
+        outputStore = null;
         lineListener = null;
 
         mLogLevel = logLevel;
@@ -151,6 +158,41 @@ public class StreamGobbler extends Thread {
 
         listWriter = null;
         stringWriter = outputString;
+        outputStore = null;
+        lineListener = null;
+
+        mLogLevel = logLevel;
+    }
+
+    /**
+     * <p>StreamGobbler constructor</p>
+     *
+     * <p>We use this class because shell STDOUT and STDERR should be read as quickly as
+     * possible to prevent a deadlock from occurring, or Process.waitFor() never
+     * returning (as the buffer is full, pausing the native process)</p>
+     *
+     * <p>The stream is read as raw bytes instead of lines, so that output without newlines
+     * or that is not text is kept as is.</p>
+     *
+     * @param shell Name of the shell
+     * @param inputStream InputStream to read from
+     * @param outputStore {@link OutputStore} to write to
+     * @param logLevel The custom log level to use for logging the command output. If set to
+     *                 {@code null}, then {@link Logger#LOG_LEVEL_VERBOSE} will be used.
+     */
+    @AnyThread
+    public StreamGobbler(@NonNull String shell, @NonNull InputStream inputStream,
+                         @NonNull OutputStore outputStore,
+                         @Nullable Integer logLevel) {
+        super("Gobbler#" + incThreadCounter());
+        this.shell = shell;
+        this.inputStream = inputStream;
+        reader = null;
+        streamClosedListener = null;
+
+        listWriter = null;
+        stringWriter = null;
+        this.outputStore = outputStore;
         lineListener = null;
 
         mLogLevel = logLevel;
@@ -183,6 +225,7 @@ public class StreamGobbler extends Thread {
 
         listWriter = null;
         stringWriter = null;
+        outputStore = null;
         lineListener = onLineListener;
 
         mLogLevel = logLevel;
@@ -198,22 +241,28 @@ public class StreamGobbler extends Thread {
         // keep reading the InputStream until it ends (or an error occurs)
         // optionally pausing when a command is executed that consumes the InputStream itself
         try {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (loggingEnabled)
-                    Logger.logVerboseForce(defaultLogTag + "Command", String.format(Locale.ENGLISH, "[%s] %s", shell, line)); // This will get truncated by LOGGER_ENTRY_MAX_LEN, likely 4KB
-
-                if (stringWriter != null) stringWriter.append(line).append("\n");
-                if (listWriter != null) listWriter.add(line);
-                if (lineListener != null) lineListener.onLine(line);
-                while (!active) {
-                    synchronized (this) {
-                        try {
-                            this.wait(128);
-                        } catch (InterruptedException e) {
-                            // no action
-                        }
-                    }
+            if (outputStore != null) {
+                // Read raw bytes directly from the stream
+                byte[] buffer = new byte[BYTES_BUFFER_SIZE];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    if (loggingEnabled)
+                        Logger.logVerboseForce(defaultLogTag + "Command", String.format(Locale.ENGLISH, "[%s] %s", shell, new String(buffer, 0, count))); // This will get truncated by LOGGER_ENTRY_MAX_LEN, likely 4KB
+
+                    if (!outputStore.write(buffer, 0, count, null))
+                        outputStore.waitForPendingFileWrites();
+                    waitWhileSuspended();
+                }
+            } else if (reader != null) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (loggingEnabled)
+                        Logger.logVerboseForce(defaultLogTag + "Command", String.format(Locale.ENGLISH, "[%s] %s", shell, line)); // This will get truncated by LOGGER_ENTRY_MAX_LEN, likely 4KB
+
+                    if (stringWriter != null) stringWriter.append(line).append("\n");
+                    if (listWriter != null) listWriter.add(line);
+                    if (lineListener != null) lineListener.onLine(line);
+                    waitWhileSuspended();
                 }
             }
         } catch (IOException e) {
@@ -226,7 +275,10 @@ public class StreamGobbler extends Thread {
 
         // make sure our stream is closed and resources will be freed
         try {
-            reader.close();
+            if (reader != null)
+                reader.close();
+            else
+                inputStream.close();
         } catch (IOException e) {
             // read already closed
         }
@@ -239,6 +291,18 @@ public class StreamGobbler extends Thread {
         }
     }
 
+    private void waitWhileSuspended() {
+        while (!active) {
+            synchronized (this) {
+                try {
+                    this.wait(128);
+                } catch (InterruptedException e) {
+                    // no action
+                }
+            }
+        }
+    }
+
     /**
      * <p>Resume consuming the input from the stream</p>
      */
@@ -0,0 +1,425 @@
+package com.termux.shared.shell;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+
+import androidx.annotation.NonNull;
+
+import com.termux.shared.file.FileUtils;
+import com.termux.shared.logger.Logger;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * A single thread that reads the stdout and stderr pipes of all background commands with
+ * {@link Os#poll(StructPollfd[], int)} and delivers their output through callbacks, instead of
+ * a {@link StreamGobbler} thread for every stream.
+ *
+ * The pipe of each stream is polled through a duplicate of its file descriptor owned by the
+ * poller, while the bytes are read through the stream itself. The {@link Process} streams of
+ * Android drain the bytes left in their pipe into a buffer and close their file descriptor once
+ * the process exits, so polling their file descriptor directly could lose the trailing output
+ * or poll a closed or reused file descriptor. Once a process has exited,
+ * {@link #onProcessExited()} must be called so that the streams drained like that, which will no
+ * longer become ready, are read until they end without polling.
+ *
+ * A client may pause its stream while it catches up, like when its output is waiting to be
+ * written to a file, by returning {@code false} from {@link StreamClient#onBytes(byte[], int)},
+ * after which it is not polled until {@link #resume(StreamClient)} is called.
+ *
+ * The thread is started when the first stream is registered and exits once all streams have
+ * closed. A pipe is used to wake it up to add streams registered while it is polling.
+ *
+ * The number of streams serviced at once, which is the number of threads saved, and the time
+ * taken to service the streams ready after each poll are kept as metrics and logged once the
+ * thread goes idle, see {@link #getMetricsLogString()}.
+ */
+public final class StreamPoller {
+
+    /** The client of a stream, which is called on the poller thread. */
+    public interface StreamClient {
+
+        /**
+         * Called when bytes have been read from the stream. This should process them as quickly
+         * as possible since it delays the output of all other streams.
+         *
+         * @param buffer The buffer containing the bytes, which is reused after this returns.
+         * @param count The number of bytes read.
+         * @return Returns {@code true} to keep reading the stream, or {@code false} to pause it
+         * until {@link #resume(StreamClient)} is called.
+         */
+        boolean onBytes(@NonNull byte[] buffer, int count);
+
+        /** Called once the stream has ended or failed to be read, after it has been closed. */
+        void onStreamClosed();
+
+    }
+
+    private static final class Stream {
+
+        final String label;
+        final InputStream inputStream;
+        /** The duplicate of the file descriptor of {@link #inputStream} that is polled. */
+        final FileDescriptor pollFileDescriptor;
+        final StreamClient client;
+
+        /** If the stream has been paused by its client, guarded by the {@link StreamPoller}. */
+        boolean paused;
+        /** If the client resumed the stream before it was paused, guarded by the {@link StreamPoller}. */
+        boolean resumePending;
+        /**
+         * If the stream no longer reads from its file descriptor, as it has been drained after
+         * its process exited, in which case it is read without polling. This is only used by
+         * the poller thread.
+         */
+        boolean drained;
+
+        Stream(String label, InputStream inputStream, FileDescriptor pollFileDescriptor, StreamClient client) {
+            this.label = label;
+            this.inputStream = inputStream;
+            this.pollFileDescriptor = pollFileDescriptor;
+            this.client = client;
+        }
+
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /** A file descriptor that is never valid, for unused entries of the poll set. */
+    private static final FileDescriptor INVALID_FD = new FileDescriptor();
+
+    private static StreamPoller sInstance;
+
+    /** The registered streams, guarded by {@code this}. */
+    private final ArrayList<Stream> mStreams = new ArrayList<>();
+    /** If {@link #mStreams} or their paused state have changed since the poll set was built, guarded by {@code this}. */
+    private boolean mStreamsChanged;
+    /** If a process has exited since the streams were last checked for being drained, guarded by {@code this}. */
+    private boolean mProcessExited;
+    private Thread mThread;
+    private FileDescriptor mWakeupReadFd;
+    private FileDescriptor mWakeupWriteFd;
+
+    /** The streams polled and their poll set, which are only used by the poller thread and rebuilt when {@link #mStreamsChanged}. */
+    private Stream[] mPollStreams = new Stream[0];
+    private StructPollfd[] mPollFds = new StructPollfd[0];
+    private int mPollCount;
+
+    /** The number of streams registered, and the max number open at once. */
+    private long mStreamsServiced;
+    private int mPeakStreams;
+    /** The number of polls that returned ready streams, and the total and max time taken to service them. */
+    private long mPollsServiced;
+    private long mTotalServiceNanos;
+    private long mMaxServiceNanos;
+
+    private static final String LOG_TAG = "StreamPoller";
+
+    private StreamPoller() {
+    }
+
+    /** Get the {@link StreamPoller} shared by all background commands. */
+    @NonNull
+    public static synchronized StreamPoller getInstance() {
+        if (sInstance == null)
+            sInstance = new StreamPoller();
+        return sInstance;
+    }
+
+    /**
+     * Register a stream to be read until it ends. The stream will be closed by the poller and
+     * must not be read by the caller.
+     *
+     * @param label The label for the stream used for logging.
+     * @param inputStream The stream to read, which must be backed by a file descriptor, see
+     *                    {@link ShellUtils#getFileDescriptor(InputStream)}.
+     * @param client The {@link StreamClient} to call with the output of the stream.
+     * @return Returns {@code true} if the stream was registered, or {@code false} if the stream
+     * is not backed by a file descriptor or the poller could not be set up, in which case it
+     * should be read with a {@link StreamGobbler} instead.
+     */
+    public boolean register(@NonNull String label, @NonNull InputStream inputStream, @NonNull StreamClient client) {
+        FileDescriptor pollFileDescriptor;
+        // The Process streams synchronize on themselves while they drain and close their file
+        // descriptor after the process exits, so it cannot be closed before it is duplicated
+        synchronized (inputStream) {
+            FileDescriptor fileDescriptor = ShellUtils.getFileDescriptor(inputStream);
+            if (fileDescriptor == null || !fileDescriptor.valid()) return false;
+            try {
+                pollFileDescriptor = Os.dup(fileDescriptor);
+            } catch (ErrnoException e) {
+                Logger.logStackTraceWithMessage(LOG_TAG, "Failed to duplicate \"" + label + "\" stream file descriptor", e);
+                return false;
+            }
+        }
+
+        synchronized (this) {
+            if (mWakeupWriteFd == null) {
+                try {
+                    FileDescriptor[] wakeupPipe = Os.pipe();
+                    mWakeupReadFd = wakeupPipe[0];
+                    mWakeupWriteFd = wakeupPipe[1];
+                } catch (ErrnoException e) {
+                    Logger.logStackTraceWithMessage(LOG_TAG, "Failed to create wakeup pipe", e);
+                    closeFileDescriptor(pollFileDescriptor);
+                    return false;
+                }
+            }
+
+            mStreams.add(new Stream(label, inputStream, pollFileDescriptor, client));
+            mStreamsChanged = true;
+            mStreamsServiced++;
+            mPeakStreams = Math.max(mPeakStreams, mStreams.size());
+
+            if (mThread == null) {
+                mThread = new Thread(this::pollStreams, "StreamPoller");
+                mThread.setDaemon(true);
+                mThread.start();
+            } else {
+                wakeup();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Resume reading the stream of a client that was paused by returning {@code false} from
+     * {@link StreamClient#onBytes(byte[], int)}. This can be called from any thread, including
+     * before {@link StreamClient#onBytes(byte[], int)} has returned.
+     */
+    public synchronized void resume(@NonNull StreamClient client) {
+        for (Stream stream : mStreams) {
+            if (stream.client != client) continue;
+            if (stream.paused) {
+                stream.paused = false;
+                mStreamsChanged = true;
+                wakeup();
+            } else {
+                stream.resumePending = true;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Notify the poller that a process whose streams are registered has exited, so that streams
+     * that have been drained are read until they end. This must be called after
+     * {@link Process#waitFor()} has returned.
+     */
+    public synchronized void onProcessExited() {
+        if (mThread == null) return;
+        mProcessExited = true;
+        wakeup();
+    }
+
+    /** Wake up the poller thread so that it polls the streams registered since it started polling. */
+    private void wakeup() {
+        try {
+            Os.write(mWakeupWriteFd, new byte[] {1}, 0, 1);
+        } catch (ErrnoException | InterruptedIOException e) {
+            Logger.logStackTraceWithMessage(LOG_TAG, "Failed to wake up poller thread", e);
+        }
+    }
+
+    private void pollStreams() {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (true) {
+            boolean checkDrained;
+            synchronized (this) {
+                if (mStreams.isEmpty()) {
+                    mThread = null;
+                    mPollStreams = new Stream[0];
+                    mPollFds = new StructPollfd[0];
+                    mPollCount = 0;
+                    Logger.logVerbose(LOG_TAG, getMetricsLogString());
+                    return;
+                }
+                if (mStreamsChanged) {
+                    mStreamsChanged = false;
+                    buildPollSet();
+                }
+                checkDrained = mProcessExited;
+                mProcessExited = false;
+            }
+
+            // Streams that have been drained will not become ready, so read them without waiting
+            boolean hasDrainedStreams = false;
+            for (int i = 0; i < mPollCount; i++) {
+                Stream stream = mPollStreams[i];
+                if (checkDrained && !stream.drained && ShellUtils.getFileDescriptor(stream.inputStream) == null)
+                    stream.drained = true;
+                hasDrainedStreams |= stream.drained;
+            }
+
+            try {
+                Os.poll(mPollFds, hasDrainedStreams ? 0 : -1);
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.EINTR) continue;
+                // Polling cannot continue, so end all streams
+                Logger.logStackTraceWithMessage(LOG_TAG, "Failed to poll streams", e);
+                for (int i = 0; i < mPollCount; i++)
+                    closeStream(mPollStreams[i]);
+                continue;
+            }
+
+            long startTime = System.nanoTime();
+
+            if (mPollFds[mPollCount].revents != 0) {
+                try {
+                    Os.read(mWakeupReadFd, buffer, 0, buffer.length);
+                } catch (ErrnoException | InterruptedIOException e) {
+                    // The streams will be polled again regardless
+                }
+            }
+
+            boolean serviced = false;
+            for (int i = 0; i < mPollCount; i++) {
+                if (mPollFds[i].revents == 0 && !mPollStreams[i].drained) continue;
+                readStream(mPollStreams[i], buffer);
+                serviced = true;
+            }
+
+            if (serviced) {
+                long serviceTime = System.nanoTime() - startTime;
+                synchronized (this) {
+                    mPollsServiced++;
+                    mTotalServiceNanos += serviceTime;
+                    mMaxServiceNanos = Math.max(mMaxServiceNanos, serviceTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the poll set of the streams that are not paused, followed by the wakeup pipe. The
+     * arrays are only reallocated if they have grown.
+     */
+    private void buildPollSet() {
+        if (mPollFds.length < mStreams.size() + 1) {
+            mPollStreams = new Stream[mStreams.size()];
+            mPollFds = new StructPollfd[mStreams.size() + 1];
+            for (int i = 0; i < mPollFds.length; i++) {
+                mPollFds[i] = new StructPollfd();
+                mPollFds[i].events = (short) OsConstants.POLLIN;
+            }
+        }
+
+        mPollCount = 0;
+        for (Stream stream : mStreams) {
+            if (stream.paused) continue;
+            mPollStreams[mPollCount] = stream;
+            mPollFds[mPollCount].fd = stream.pollFileDescriptor;
+            mPollCount++;
+        }
+        // Unused trailing entries are ignored by poll() since their fd is negative
+        for (int i = mPollCount; i < mPollFds.length; i++) {
+            mPollFds[i].fd = (i == mPollCount) ? mWakeupReadFd : INVALID_FD;
+            mPollFds[i].revents = 0;
+        }
+    }
+
+    /**
+     * Read the bytes available from a ready stream, or close it if it has ended.
+     *
+     * The bytes are read through the stream instead of from its file descriptor, so that the
+     * bytes drained into it after its process exited are not lost. This does not block, since
+     * the stream is either ready or drained.
+     */
+    private void readStream(@NonNull Stream stream, @NonNull byte[] buffer) {
+        int count;
+        try {
+            count = stream.inputStream.read(buffer, 0, buffer.length);
+        } catch (InterruptedIOException e) {
+            return;
+        } catch (IOException e) {
+            Logger.logDebug(LOG_TAG, "Failed to read \"" + stream.label + "\" stream: " + e.getMessage());
+            closeStream(stream);
+            return;
+        }
+
+        if (count < 0) {
+            closeStream(stream);
+            return;
+        }
+        if (count == 0) return;
+
+        boolean keepReading;
+        try {
+            keepReading = stream.client.onBytes(buffer, count);
+        } catch (RuntimeException e) {
+            Logger.logStackTraceWithMessage(LOG_TAG, "The \"" + stream.label + "\" stream client failed", e);
+            closeStream(stream);
+            return;
+        }
+
+        if (!keepReading) {
+            synchronized (this) {
+                if (stream.resumePending) {
+                    stream.resumePending = false;
+                } else {
+                    stream.paused = true;
+                    mStreamsChanged = true;
+                }
+            }
+        }
+    }
+
+    private void closeStream(@NonNull Stream stream) {
+        synchronized (this) {
+            if (!mStreams.remove(stream)) return;
+            mStreamsChanged = true;
+        }
+        closeFileDescriptor(stream.pollFileDescriptor);
+        FileUtils.closeCloseable(stream.inputStream);
+        stream.client.onStreamClosed();
+    }
+
+    private static void closeFileDescriptor(@NonNull FileDescriptor fileDescriptor) {
+        try {
+            Os.close(fileDescriptor);
+        } catch (ErrnoException e) {
+            // Nothing left to do
+        }
+    }
+
+    /** Get the number of streams currently registered, each of which would otherwise use a {@link StreamGobbler} thread. */
+    public synchronized int getStreamCount() {
+        return mStreams.size();
+    }
+
+    /** Get the max number of streams registered at once. */
+    public synchronized int getPeakStreamCount() {
+        return mPeakStreams;
+    }
+
+    /** Get the number of streams registered since the app started. */
+    public synchronized long getStreamsServiced() {
+        return mStreamsServiced;
+    }
+
+    /** Get the max time in microseconds taken to service the streams ready after a poll. */
+    public synchronized long getMaxServiceLatencyMicros() {
+        return mMaxServiceNanos / 1000;
+    }
+
+    /** Get the average time in microseconds taken to service the streams ready after a poll. */
+    public synchronized long getAverageServiceLatencyMicros() {
+        return mPollsServiced == 0 ? 0 : mTotalServiceNanos / mPollsServiced / 1000;
+    }
+
+    @NonNull
+    public synchronized String getMetricsLogString() {
+        return String.format(Locale.ENGLISH, "Serviced %d streams on 1 thread with at most %d streams at once, average service latency %d us, max %d us",
+            mStreamsServiced, mPeakStreams, getAverageServiceLatencyMicros(), getMaxServiceLatencyMicros());
+    }
+
+}
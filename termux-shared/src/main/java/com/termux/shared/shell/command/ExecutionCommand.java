@@ -167,6 +167,14 @@ public class ExecutionCommand {
 
     /** The terminal transcript rows for the {@link ExecutionCommand}. */
     public Integer terminalTranscriptRows;
+    /** The terminal transcript rows kept compressed after they scroll out of the transcript for the {@link ExecutionCommand}. */
+    public int terminalTranscriptArchiveRows;
+    /** The terminal I/O buffer size in bytes for the {@link ExecutionCommand}. */
+    public Integer terminalIOBufferSize;
+    /** If the terminal I/O buffers for the {@link ExecutionCommand} should adapt to the output rate. */
+    public boolean isTerminalIOBufferAdaptive;
+    /** If the terminal session for the {@link ExecutionCommand} should append its output on a separate thread. */
+    public boolean isTerminalEmulationThreadEnabled;
 
 
     /** The {@link Runner} for the {@link ExecutionCommand}. */
@@ -184,6 +192,16 @@ public class ExecutionCommand {
      */
     public Integer backgroundCustomLogLevel;
 
+    /**
+     * The max bytes of stdout and of stderr kept in memory for background {@link AppShell} commands,
+     * see {@link com.termux.shared.shell.command.result.OutputStore}. If {@code null} or {@code 0},
+     * then all output is kept in {@link ResultData#stdout} and {@link ResultData#stderr}, or in
+     * stores without a limit if {@link ResultConfig#resultFilesStreamed} is enabled.
+     */
+    public Integer backgroundOutputMemoryLimit;
+    /** The path to the directory to spill background {@link AppShell} command output to once it exceeds {@link #backgroundOutputMemoryLimit}. */
+    public String backgroundOutputSpillDirectoryPath;
+
 
     /** The session action of {@link Runner#TERMINAL_SESSION} commands. */
     public String sessionAction;
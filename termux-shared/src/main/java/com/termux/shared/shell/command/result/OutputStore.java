@@ -0,0 +1,444 @@
+package com.termux.shared.shell.command.result;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.termux.shared.errors.Error;
+import com.termux.shared.errors.FunctionErrno;
+import com.termux.shared.file.FileUtils;
+import com.termux.shared.file.FileUtilsErrno;
+import com.termux.shared.logger.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A bounded store for the raw bytes of the stdout or stderr of a command, to capture the output
+ * of background commands without keeping all of it in memory.
+ *
+ * At most {@link #mMaxMemoryBytes} bytes are kept in memory, the first half from the start of the
+ * output and the rest in a ring of its latest bytes. If the output grows beyond that, then all of
+ * it is spilled to a file under {@link #mSpillDirectoryPath}, which is then appended to as
+ * the output continues, so that the complete output can still be sent with
+ * {@link #writeToFile(String, String)}. If there is no spill directory or the file cannot be
+ * written, then the output between the head and the tail is dropped.
+ *
+ * The output can also be streamed to a file as it is written with {@link #streamToFile(String, String)},
+ * like to a result file that the caller of the command reads while it runs, in which case the
+ * output is not spilled as well.
+ *
+ * Files are written on the threads of {@link #FILE_WRITER}, so that the thread writing output to
+ * the store, like the {@link com.termux.shared.shell.StreamPoller} thread shared by all commands,
+ * is not blocked by slow storage. Up to {@link #MAX_PENDING_FILE_BYTES} bytes may wait to be
+ * written, after which {@link #write(byte[], int, int, Runnable)} returns {@code false} so that
+ * the writer stops reading output until they have been written.
+ *
+ * The memory buffers grow as output is written, so that small outputs do not allocate up to the
+ * limit. The store may be written by one thread while others read from it.
+ */
+public class OutputStore {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /** The max number of bytes waiting to be written to the spill or stream file before the writer should wait. */
+    static final int MAX_PENDING_FILE_BYTES = 1024 * 1024;
+
+    /** The executor that writes the spill and stream files of all stores. */
+    private static final ExecutorService FILE_WRITER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "OutputStoreFileWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int mMaxMemoryBytes;
+    private final String mSpillDirectoryPath;
+    private final String mLabel;
+
+    /** The first bytes of the output, up to half of {@link #mMaxMemoryBytes}. */
+    private byte[] mHead = new byte[0];
+    private int mHeadLength;
+    /** A ring of the latest bytes of the output after {@link #mHead}, which starts at {@link #mTailStart}. */
+    private byte[] mTail = new byte[0];
+    private int mTailStart;
+    private int mTailLength;
+    /** The number of bytes written to the store. */
+    private long mLength;
+    /** The number of UTF-16 chars of the output written to the store decoded as UTF-8. */
+    private long mCharLength;
+
+    /** If the output is being spilled, in which case all of it is written to {@link #mSpillFilePath}. */
+    private boolean mSpilling;
+    private String mSpillFilePath;
+    /** If the output could not be spilled, or the spill file has been deleted. */
+    private boolean mSpillFailed;
+
+    private String mStreamFilePath;
+    /** If writing to the stream file failed, in which case it is missing some of the output. */
+    private boolean mStreamFailed;
+
+    /** The bytes waiting to be written to the spill or stream file, in order. */
+    private final ArrayDeque<byte[]> mPendingFileWrites = new ArrayDeque<>();
+    private int mPendingFileBytes;
+    /** If a task of {@link #FILE_WRITER} is writing {@link #mPendingFileWrites}. */
+    private boolean mFileWriterRunning;
+    /** Called once the pending file writes have drained after {@link #write(byte[], int, int, Runnable)} returned {@code false}. */
+    private Runnable mOnPendingFileWritesDrained;
+    /** If the store has been closed, after which no more files are written. */
+    private boolean mClosed;
+
+    /** The spill or stream file, which is only used by the {@link #FILE_WRITER} task, or once it has finished. */
+    private FileOutputStream mFileStream;
+
+    private static final String LOG_TAG = "OutputStore";
+
+    /**
+     * @param maxMemoryBytes The max number of bytes of the output to keep in memory.
+     * @param spillDirectoryPath The path to the directory to spill the output to once it does not
+     *                           fit in memory. This can optionally be {@code null}.
+     * @param label The label of the output, used as the prefix of the spill file name.
+     */
+    public OutputStore(int maxMemoryBytes, @Nullable String spillDirectoryPath, @NonNull String label) {
+        mMaxMemoryBytes = Math.max(maxMemoryBytes, 2);
+        mSpillDirectoryPath = spillDirectoryPath;
+        mLabel = label;
+    }
+
+    /** Write {@code count} bytes of {@code buffer} starting at {@code offset} to the end of the output. */
+    public void write(@NonNull byte[] buffer, int offset, int count) {
+        write(buffer, offset, count, null);
+    }
+
+    /**
+     * Write {@code count} bytes of {@code buffer} starting at {@code offset} to the end of the output.
+     *
+     * @param onPendingFileWritesDrained The optional callback to call from another thread once the
+     *                                   pending file writes have drained if {@code false} is returned.
+     * @return Returns {@code false} if more than {@link #MAX_PENDING_FILE_BYTES} bytes are waiting
+     * to be written to a file, in which case the writer should stop reading output until
+     * {@code onPendingFileWritesDrained} is called or {@link #waitForPendingFileWrites()} returns,
+     * otherwise {@code true}.
+     */
+    public synchronized boolean write(@NonNull byte[] buffer, int offset, int count, @Nullable Runnable onPendingFileWritesDrained) {
+        if (count <= 0) return true;
+
+        // Spill before the first bytes are dropped from memory, so that the file gets all of the output.
+        if (!mSpilling && !mSpillFailed && mStreamFilePath == null && mLength + count > mMaxMemoryBytes)
+            startSpilling();
+        if (!mClosed && ((mSpilling && !mSpillFailed) || (mStreamFilePath != null && !mStreamFailed)))
+            addPendingFileWrite(Arrays.copyOfRange(buffer, offset, offset + count));
+        mLength += count;
+        mCharLength += getUtf16Length(buffer, offset, count);
+
+        int headCount = Math.min(count, mMaxMemoryBytes / 2 - mHeadLength);
+        if (headCount > 0) {
+            mHead = grow(mHead, mHeadLength + headCount, mMaxMemoryBytes / 2);
+            System.arraycopy(buffer, offset, mHead, mHeadLength, headCount);
+            mHeadLength += headCount;
+            offset += headCount;
+            count -= headCount;
+        }
+        if (count > 0) appendTail(buffer, offset, count);
+
+        if (mPendingFileBytes > MAX_PENDING_FILE_BYTES) {
+            mOnPendingFileWritesDrained = onPendingFileWritesDrained;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of UTF-16 chars that {@code count} bytes of UTF-8 starting at {@code offset}
+     * decode to. Each byte that does not continue a sequence starts a char, and a 4 byte sequence
+     * decodes to a surrogate pair. Sequences may be split across calls.
+     */
+    private static int getUtf16Length(@NonNull byte[] buffer, int offset, int count) {
+        int length = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int b = buffer[i];
+            if ((b & 0xC0) != 0x80) length++;
+            if ((b & 0xF8) == 0xF0) length++;
+        }
+        return length;
+    }
+
+    private void appendTail(byte[] buffer, int offset, int count) {
+        final int maxTailLength = mMaxMemoryBytes - mMaxMemoryBytes / 2;
+        if (count >= maxTailLength) {
+            // Only the end of the buffer fits.
+            offset += count - maxTailLength;
+            count = maxTailLength;
+            mTailStart = 0;
+            mTailLength = 0;
+        }
+
+        // The ring only wraps once grown to its max length, and does not start before then.
+        mTail = grow(mTail, Math.min(mTailLength + count, maxTailLength), maxTailLength);
+        int position = (mTailStart + mTailLength) % maxTailLength;
+        int firstCount = Math.min(count, maxTailLength - position);
+        System.arraycopy(buffer, offset, mTail, position, firstCount);
+        System.arraycopy(buffer, offset + firstCount, mTail, 0, count - firstCount);
+
+        int overwritten = mTailLength + count - maxTailLength;
+        if (overwritten > 0) {
+            mTailStart = (mTailStart + overwritten) % maxTailLength;
+            mTailLength = maxTailLength;
+        } else {
+            mTailLength += count;
+        }
+    }
+
+    private static byte[] grow(byte[] buffer, int minLength, int maxLength) {
+        if (buffer.length >= minLength) return buffer;
+        return Arrays.copyOf(buffer, Math.min(maxLength, Math.max(minLength, Math.max(2 * buffer.length, INITIAL_BUFFER_SIZE))));
+    }
+
+    /**
+     * Start spilling the output, with the output kept in memory, which is all of it since it has
+     * not overflowed yet, as the first bytes to write to the spill file.
+     */
+    private void startSpilling() {
+        if (mSpillDirectoryPath == null || mClosed) {
+            mSpillFailed = true;
+            return;
+        }
+
+        mSpilling = true;
+        byte[] output = Arrays.copyOf(mHead, mHeadLength + mTailLength);
+        System.arraycopy(mTail, 0, output, mHeadLength, mTailLength);
+        addPendingFileWrite(output);
+    }
+
+    private void addPendingFileWrite(@NonNull byte[] bytes) {
+        if (bytes.length == 0) return;
+        mPendingFileWrites.add(bytes);
+        mPendingFileBytes += bytes.length;
+        if (!mFileWriterRunning) {
+            mFileWriterRunning = true;
+            FILE_WRITER.execute(this::writePendingFileWrites);
+        }
+    }
+
+    /** Write the {@link #mPendingFileWrites} to the spill or stream file until none are left. */
+    private void writePendingFileWrites() {
+        while (true) {
+            byte[] bytes;
+            boolean spilling;
+            synchronized (this) {
+                bytes = mPendingFileWrites.poll();
+                if (bytes == null) {
+                    mFileWriterRunning = false;
+                    notifyAll();
+                    return;
+                }
+                spilling = mStreamFilePath == null;
+            }
+
+            writeBytesToFile(bytes, spilling);
+
+            Runnable onPendingFileWritesDrained = null;
+            synchronized (this) {
+                mPendingFileBytes -= bytes.length;
+                if (mPendingFileBytes <= MAX_PENDING_FILE_BYTES / 2) {
+                    onPendingFileWritesDrained = mOnPendingFileWritesDrained;
+                    mOnPendingFileWritesDrained = null;
+                    notifyAll();
+                }
+            }
+            if (onPendingFileWritesDrained != null)
+                onPendingFileWritesDrained.run();
+        }
+    }
+
+    private void writeBytesToFile(@NonNull byte[] bytes, boolean spilling) {
+        synchronized (this) {
+            if (spilling ? mSpillFailed : mStreamFailed) return;
+        }
+
+        try {
+            if (mFileStream == null) {
+                // The stream file is opened by streamToFile(), so only the spill file is created here
+                File spillFile = File.createTempFile(mLabel + "-", ".log", new File(mSpillDirectoryPath));
+                synchronized (this) {
+                    mSpillFilePath = spillFile.getAbsolutePath();
+                }
+                mFileStream = new FileOutputStream(spillFile);
+                Logger.logVerbose(LOG_TAG, "Spilling \"" + mLabel + "\" output larger than " + mMaxMemoryBytes + " bytes to file at path \"" + mSpillFilePath + "\"");
+            }
+            mFileStream.write(bytes);
+        } catch (IOException | RuntimeException e) {
+            FileUtils.closeCloseable(mFileStream);
+            mFileStream = null;
+            synchronized (this) {
+                if (spilling) {
+                    Logger.logStackTraceWithMessage(LOG_TAG, "Failed to spill \"" + mLabel + "\" output to directory at path \"" + mSpillDirectoryPath + "\"", e);
+                    deleteSpillFile();
+                } else {
+                    Logger.logStackTraceWithMessage(LOG_TAG, "Failed to stream \"" + mLabel + "\" output to file at path \"" + mStreamFilePath + "\"", e);
+                    mStreamFailed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream the output to a file as it is written, which is created or truncated. This must be
+     * called before any output is written.
+     *
+     * @param label The optional label for file to write. This can optionally be {@code null}.
+     * @param filePath The {@code path} for file to write.
+     * @return Returns the {@code error} if the file could not be opened, otherwise {@code null}.
+     */
+    public synchronized Error streamToFile(String label, @NonNull String filePath) {
+        label = (label == null || label.isEmpty() ? "" : label + " ");
+        if (mLength > 0 || mStreamFilePath != null || mClosed)
+            return FunctionErrno.ERRNO_INVALID_PARAMETER.getError("filePath", "streamToFile", "The " + label + "output has already been written or streamed");
+
+        try {
+            mFileStream = new FileOutputStream(filePath, false);
+            mStreamFilePath = filePath;
+        } catch (IOException e) {
+            return FileUtilsErrno.ERRNO_WRITING_BYTES_TO_FILE_FAILED_WITH_EXCEPTION.getError(e, label + "file", filePath, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Get whether all of the output has been written to the file passed to {@link #streamToFile(String, String)}.
+     * This is only final once the store has been closed.
+     */
+    public synchronized boolean isStreamedToFile() {
+        return mStreamFilePath != null && !mStreamFailed;
+    }
+
+    /** Wait until at most half of {@link #MAX_PENDING_FILE_BYTES} bytes are waiting to be written to a file. */
+    public synchronized void waitForPendingFileWrites() {
+        waitForPendingFileWrites(MAX_PENDING_FILE_BYTES / 2);
+    }
+
+    private synchronized void waitForPendingFileWrites(int maxPendingFileBytes) {
+        boolean interrupted = false;
+        while (mFileWriterRunning && mPendingFileBytes > maxPendingFileBytes) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Get the number of bytes written to the store. */
+    public synchronized long getLength() {
+        return mLength;
+    }
+
+    /**
+     * Get the number of UTF-16 chars of the output written to the store decoded as UTF-8, which is
+     * the {@link String#length()} all of it would have if it is valid UTF-8.
+     */
+    public synchronized long getCharLength() {
+        return mCharLength;
+    }
+
+    /** Get whether bytes have been dropped from the output kept in memory. */
+    public synchronized boolean isTruncated() {
+        return mLength > mHeadLength + mTailLength;
+    }
+
+    /**
+     * Get the path of the file containing all of the output, or {@code null} if it has not been
+     * spilled to a file. The file is only complete once the store has been closed.
+     */
+    @Nullable
+    public synchronized String getSpillFilePath() {
+        return mSpillFailed ? null : mSpillFilePath;
+    }
+
+    /**
+     * Get the output kept in memory decoded as UTF-8. If the output is truncated, then the head and
+     * tail of it are separated by a line stating the number of bytes dropped.
+     */
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        String head = new String(mHead, 0, mHeadLength, StandardCharsets.UTF_8);
+        if (mTailLength == 0) return head;
+
+        StringBuilder output = new StringBuilder(mHeadLength + mTailLength + 64);
+        output.append(head);
+        if (isTruncated())
+            output.append("\n(truncated ").append(mLength - mHeadLength - mTailLength).append(" bytes)\n");
+        int firstCount = Math.min(mTailLength, mTail.length - mTailStart);
+        byte[] tail = new byte[mTailLength];
+        System.arraycopy(mTail, mTailStart, tail, 0, firstCount);
+        System.arraycopy(mTail, 0, tail, firstCount, mTailLength - firstCount);
+        output.append(new String(tail, StandardCharsets.UTF_8));
+        return output.toString();
+    }
+
+    /**
+     * Write the output to a file. If the output has been spilled, then the spill file is copied,
+     * otherwise the output kept in memory is written. This waits for the pending file writes, and
+     * so should be called after {@link #close()} from a thread that may do file I/O.
+     *
+     * @param label The optional label for file to write. This can optionally be {@code null}.
+     * @param filePath The {@code path} for file to write.
+     * @return Returns the {@code error} if writing was not successful, otherwise {@code null}.
+     */
+    public synchronized Error writeToFile(String label, @NonNull String filePath) {
+        waitForPendingFileWrites(0);
+
+        if (!mSpillFailed && mSpillFilePath != null) {
+            if (mFileStream != null) {
+                try {
+                    mFileStream.flush();
+                } catch (IOException e) {
+                    // The copy will be missing the bytes that failed to be written
+                }
+            }
+            return FileUtils.copyRegularFile(label, mSpillFilePath, filePath, false);
+        }
+
+        Error error = FileUtils.writeBytesToFile(label, filePath, mHead, 0, mHeadLength, false);
+        if (error != null) return error;
+        int firstCount = Math.min(mTailLength, mTail.length - mTailStart);
+        error = FileUtils.writeBytesToFile(label, filePath, mTail, mTailStart, firstCount, true);
+        if (error != null) return error;
+        return FileUtils.writeBytesToFile(label, filePath, mTail, 0, mTailLength - firstCount, true);
+    }
+
+    /**
+     * Wait for the pending file writes and close the stream and spill files, if any, once no more
+     * output will be written.
+     */
+    public synchronized void close() {
+        waitForPendingFileWrites(0);
+        mClosed = true;
+        FileUtils.closeCloseable(mFileStream);
+        mFileStream = null;
+    }
+
+    /**
+     * Close and delete the spill file, if any. The output kept in memory is kept, and is no longer
+     * spilled. The stream file is closed but not deleted, since it belongs to the caller.
+     */
+    public synchronized void delete() {
+        close();
+        deleteSpillFile();
+    }
+
+    private synchronized void deleteSpillFile() {
+        mSpillFailed = true;
+        if (mSpillFilePath != null) {
+            FileUtils.deleteRegularFile(mLabel + " spill file", mSpillFilePath, true);
+            mSpillFilePath = null;
+        }
+    }
+
+}
@@ -49,6 +49,10 @@ public class ResultConfig {
     /** Defines the suffix of the result files that should be created in {@link #resultDirectoryPath}
      * if {@link #resultSingleFile} is {@code true}. */
     public String resultFilesSuffix;
+    /** Defines whether the stdout and stderr result files should be written in {@link #resultDirectoryPath}
+     * while the command runs if {@link #resultSingleFile} is {@code false}, so that the caller can
+     * read the output before the command finishes. */
+    public boolean resultFilesStreamed;
 
 
     public ResultConfig() {
@@ -135,6 +139,8 @@ public class ResultConfig {
             resultDirectoryVariablesString.append("\n").append(Logger.getSingleLineLogStringEntry("Result File Error Format", resultFileErrorFormat, "-"));
         if (!ignoreNull || resultFilesSuffix != null)
             resultDirectoryVariablesString.append("\n").append(Logger.getSingleLineLogStringEntry("Result Files Suffix", resultFilesSuffix, "-"));
+        if (!resultSingleFile)
+            resultDirectoryVariablesString.append("\n").append(Logger.getSingleLineLogStringEntry("Result Files Streamed", resultFilesStreamed, "-"));
 
         return resultDirectoryVariablesString.toString();
     }
@@ -162,6 +168,7 @@ public class ResultConfig {
             markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Result File Output Format", resultConfig.resultFileOutputFormat, "-"));
             markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Result File Error Format", resultConfig.resultFileErrorFormat, "-"));
             markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Result Files Suffix", resultConfig.resultFilesSuffix, "-"));
+            markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Result Files Streamed", resultConfig.resultFilesStreamed, "-"));
         }
 
         return markdownString.toString();
@@ -19,6 +19,16 @@ public class ResultData implements Serializable {
     public final StringBuilder stdout = new StringBuilder();
     /** The stderr of command. */
     public final StringBuilder stderr = new StringBuilder();
+    /**
+     * The stdout of command if it was captured to an {@link OutputStore}, in which case it is used
+     * instead of {@link #stdout}. Use {@link #getStdout()} to get it.
+     */
+    public transient OutputStore stdoutStore;
+    /**
+     * The stderr of command if it was captured to an {@link OutputStore}, in which case it is used
+     * instead of {@link #stderr}. Use {@link #getStderr()} to get it.
+     */
+    public transient OutputStore stderrStore;
     /** The exit code of command. */
     public Integer exitCode;
 
@@ -30,6 +40,23 @@ public class ResultData implements Serializable {
     }
 
 
+    /** Get the stdout of command from {@link #stdoutStore} if set, otherwise from {@link #stdout}. */
+    public String getStdout() {
+        return stdoutStore != null ? stdoutStore.toString() : stdout.toString();
+    }
+
+    /** Get the stderr of command from {@link #stderrStore} if set, otherwise from {@link #stderr}. */
+    public String getStderr() {
+        return stderrStore != null ? stderrStore.toString() : stderr.toString();
+    }
+
+    /** Delete the spill files of {@link #stdoutStore} and {@link #stderrStore} once the result has been processed. */
+    public void deleteOutputStores() {
+        if (stdoutStore != null) stdoutStore.delete();
+        if (stderrStore != null) stderrStore.delete();
+    }
+
+
     public void clearStdout() {
         stdout.setLength(0);
     }
@@ -155,17 +182,19 @@ public class ResultData implements Serializable {
 
 
     public String getStdoutLogString() {
-        if (stdout.toString().isEmpty())
+        String output = getStdout();
+        if (output.isEmpty())
             return Logger.getSingleLineLogStringEntry("Stdout", null, "-");
         else
-            return Logger.getMultiLineLogStringEntry("Stdout", DataUtils.getTruncatedCommandOutput(stdout.toString(), Logger.LOGGER_ENTRY_MAX_SAFE_PAYLOAD / 5, false, false, true), "-");
+            return Logger.getMultiLineLogStringEntry("Stdout", DataUtils.getTruncatedCommandOutput(output, Logger.LOGGER_ENTRY_MAX_SAFE_PAYLOAD / 5, false, false, true), "-");
     }
 
     public String getStderrLogString() {
-        if (stderr.toString().isEmpty())
+        String output = getStderr();
+        if (output.isEmpty())
             return Logger.getSingleLineLogStringEntry("Stderr", null, "-");
         else
-            return Logger.getMultiLineLogStringEntry("Stderr", DataUtils.getTruncatedCommandOutput(stderr.toString(), Logger.LOGGER_ENTRY_MAX_SAFE_PAYLOAD / 5, false, false, true), "-");
+            return Logger.getMultiLineLogStringEntry("Stderr", DataUtils.getTruncatedCommandOutput(output, Logger.LOGGER_ENTRY_MAX_SAFE_PAYLOAD / 5, false, false, true), "-");
     }
 
     public String getExitCodeLogString() {
@@ -201,15 +230,17 @@ public class ResultData implements Serializable {
 
         StringBuilder markdownString = new StringBuilder();
 
-        if (resultData.stdout.toString().isEmpty())
+        String stdout = resultData.getStdout();
+        if (stdout.isEmpty())
             markdownString.append(MarkdownUtils.getSingleLineMarkdownStringEntry("Stdout", null, "-"));
         else
-            markdownString.append(MarkdownUtils.getMultiLineMarkdownStringEntry("Stdout", resultData.stdout.toString(), "-"));
+            markdownString.append(MarkdownUtils.getMultiLineMarkdownStringEntry("Stdout", stdout, "-"));
 
-        if (resultData.stderr.toString().isEmpty())
+        String stderr = resultData.getStderr();
+        if (stderr.isEmpty())
             markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Stderr", null, "-"));
         else
-            markdownString.append("\n").append(MarkdownUtils.getMultiLineMarkdownStringEntry("Stderr", resultData.stderr.toString(), "-"));
+            markdownString.append("\n").append(MarkdownUtils.getMultiLineMarkdownStringEntry("Stderr", stderr, "-"));
 
         markdownString.append("\n").append(MarkdownUtils.getSingleLineMarkdownStringEntry("Exit Code", resultData.exitCode, "-"));
 
@@ -74,14 +74,15 @@ public class ResultSender {
 
         Logger.logDebugExtended(logTag, "Sending result for command \"" + label + "\":\n" + resultConfig.toString() + "\n" + ResultData.getResultDataLogString(resultData, logStdoutAndStderr));
 
-        String resultDataStdout = resultData.stdout.toString();
-        String resultDataStderr = resultData.stderr.toString();
+        // The output of stores is already bounded by their memory limit, if any
+        String resultDataStdout = resultData.getStdout();
+        String resultDataStderr = resultData.getStderr();
 
         String truncatedStdout = null;
         String truncatedStderr = null;
 
-        String stdoutOriginalLength = String.valueOf(resultDataStdout.length());
-        String stderrOriginalLength = String.valueOf(resultDataStderr.length());
+        String stdoutOriginalLength = String.valueOf(getOriginalLength(resultDataStdout, resultData.stdoutStore));
+        String stderrOriginalLength = String.valueOf(getOriginalLength(resultDataStderr, resultData.stderrStore));
 
         // Truncate stdout and stdout to max TRANSACTION_SIZE_LIMIT_IN_BYTES
         if (resultDataStderr.isEmpty()) {
@@ -165,8 +166,8 @@ public class ResultSender {
 
         Error error;
 
-        String resultDataStdout = resultData.stdout.toString();
-        String resultDataStderr = resultData.stderr.toString();
+        String resultDataStdout = resultData.getStdout();
+        String resultDataStderr = resultData.getStderr();
 
         String resultDataExitCode = "";
         if (resultData.exitCode != null)
@@ -277,21 +278,32 @@ public class ResultSender {
 
             // Write result to result files under resultDirectoryPath
 
-            // Write stdout to file
-            if (!resultDataStdout.isEmpty()) {
+            // Write stdout to file, unless it was already streamed to it while the command ran
+            // The output of a store is written from its spill file if it did not fit in memory
+            if (resultData.stdoutStore != null && resultData.stdoutStore.isStreamedToFile()) {
+                Logger.logVerbose(logTag, "Not writing stdout result file since it was streamed");
+            } else if (!resultDataStdout.isEmpty()) {
                 filename = RESULT_SENDER.RESULT_FILE_STDOUT_PREFIX + resultConfig.resultFilesSuffix;
-                error = FileUtils.writeTextToFile(filename, resultConfig.resultDirectoryPath + "/" + filename,
-                    null, resultDataStdout, false);
+                if (resultData.stdoutStore != null)
+                    error = resultData.stdoutStore.writeToFile(filename, resultConfig.resultDirectoryPath + "/" + filename);
+                else
+                    error = FileUtils.writeTextToFile(filename, resultConfig.resultDirectoryPath + "/" + filename,
+                        null, resultDataStdout, false);
                 if (error != null) {
                     return error;
                 }
             }
 
             // Write stderr to file
-            if (!resultDataStderr.isEmpty()) {
+            if (resultData.stderrStore != null && resultData.stderrStore.isStreamedToFile()) {
+                Logger.logVerbose(logTag, "Not writing stderr result file since it was streamed");
+            } else if (!resultDataStderr.isEmpty()) {
                 filename = RESULT_SENDER.RESULT_FILE_STDERR_PREFIX + resultConfig.resultFilesSuffix;
-                error = FileUtils.writeTextToFile(filename, resultConfig.resultDirectoryPath + "/" + filename,
-                    null, resultDataStderr, false);
+                if (resultData.stderrStore != null)
+                    error = resultData.stderrStore.writeToFile(filename, resultConfig.resultDirectoryPath + "/" + filename);
+                else
+                    error = FileUtils.writeTextToFile(filename, resultConfig.resultDirectoryPath + "/" + filename,
+                        null, resultDataStderr, false);
                 if (error != null) {
                     return error;
                 }
@@ -346,4 +358,69 @@ public class ResultSender {
         return null;
     }
 
+    /**
+     * Start streaming the output of a command to the stdout and stderr result files in
+     * {@link ResultConfig#resultDirectoryPath}, so that the caller can read them while the command
+     * runs. The files are created empty right away. The rest of the result files are written by
+     * {@link #sendCommandResultDataToDirectory(Context, String, String, ResultConfig, ResultData, boolean)}
+     * once the command has finished, which skips the files that were streamed.
+     *
+     * This must be called before any output has been written to {@link ResultData#stdoutStore}
+     * and {@link ResultData#stderrStore}, and only if {@link ResultConfig#resultSingleFile} is
+     * {@code false}, since a single result file can only be formatted once all output is known.
+     *
+     * @param context The {@link Context} for operations.
+     * @param logTag The log tag to use for logging.
+     * @param label The label for the command.
+     * @param resultConfig The {@link ResultConfig} object containing information on how to send the result.
+     * @param resultData The {@link ResultData} object containing the output stores.
+     * @return Returns the {@link Error} if failed to start streaming, otherwise {@code null}.
+     */
+    public static Error startStreamingCommandResultToDirectory(Context context, String logTag, String label, ResultConfig resultConfig, ResultData resultData) {
+        if (context == null || resultConfig == null || resultData == null || DataUtils.isNullOrEmpty(resultConfig.resultDirectoryPath))
+            return FunctionErrno.ERRNO_NULL_OR_EMPTY_PARAMETER.getError("context, resultConfig, resultData or resultConfig.resultDirectoryPath", "startStreamingCommandResultToDirectory");
+        if (resultConfig.resultSingleFile || resultData.stdoutStore == null || resultData.stderrStore == null)
+            return FunctionErrno.ERRNO_UNSET_PARAMETERS.getError("resultConfig.resultSingleFile false, resultData.stdoutStore and resultData.stderrStore", "startStreamingCommandResultToDirectory");
+
+        logTag = DataUtils.getDefaultIfNull(logTag, LOG_TAG);
+
+        Error error;
+
+        resultConfig.resultDirectoryPath = FileUtils.getCanonicalPath(resultConfig.resultDirectoryPath, null);
+
+        // Check sendCommandResultDataToDirectory() for why permissions are validated like this
+        error = FileUtils.validateDirectoryFileExistenceAndPermissions("result", resultConfig.resultDirectoryPath,
+            resultConfig.resultDirectoryAllowedParentPath, true,
+            FileUtils.APP_WORKING_DIRECTORY_PERMISSIONS, true, true,
+            true, true);
+        if (error != null) {
+            error.appendMessage("\n" + context.getString(R.string.msg_directory_absolute_path, "Result", resultConfig.resultDirectoryPath));
+            return error;
+        }
+
+        String resultFilesSuffix = DataUtils.getDefaultIfNull(resultConfig.resultFilesSuffix, "");
+        if (resultFilesSuffix.contains("/"))
+            return ResultSenderErrno.ERROR_RESULT_FILES_SUFFIX_INVALID.getError(resultFilesSuffix);
+
+        Logger.logDebug(logTag, "Streaming stdout and stderr result files for command \"" + label + "\" to directory at path \"" + resultConfig.resultDirectoryPath + "\"");
+
+        String filename = RESULT_SENDER.RESULT_FILE_STDOUT_PREFIX + resultFilesSuffix;
+        error = resultData.stdoutStore.streamToFile(filename, resultConfig.resultDirectoryPath + "/" + filename);
+        if (error != null) return error;
+
+        filename = RESULT_SENDER.RESULT_FILE_STDERR_PREFIX + resultFilesSuffix;
+        return resultData.stderrStore.streamToFile(filename, resultConfig.resultDirectoryPath + "/" + filename);
+    }
+
+    /**
+     * Get the original length in chars of command output, which is the length of the {@code output}
+     * string, or the length of all of the output written to the {@code outputStore} if it was truncated.
+     */
+    private static long getOriginalLength(String output, OutputStore outputStore) {
+        if (outputStore != null && outputStore.isTruncated())
+            return outputStore.getCharLength();
+        else
+            return output.length();
+    }
+
 }
@@ -13,21 +13,28 @@ import com.termux.shared.R;
 import com.termux.shared.data.DataUtils;
 import com.termux.shared.shell.command.ExecutionCommand;
 import com.termux.shared.shell.command.environment.ShellEnvironmentUtils;
+import com.termux.shared.shell.command.result.OutputStore;
+import com.termux.shared.shell.command.result.ResultSender;
 import com.termux.shared.shell.command.result.ResultData;
 import com.termux.shared.errors.Errno;
+import com.termux.shared.errors.Error;
 import com.termux.shared.logger.Logger;
 import com.termux.shared.shell.command.ExecutionCommand.ExecutionState;
 import com.termux.shared.shell.command.environment.IShellEnvironment;
 import com.termux.shared.shell.ShellUtils;
 import com.termux.shared.shell.StreamGobbler;
+import com.termux.shared.shell.StreamPoller;
 
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * A class that maintains info for background app shells run with {@link Runtime#exec(String[], String[], File)}.
@@ -161,7 +168,9 @@ public final class AppShell {
     /**
      * Sets up stdout and stderr readers for the {@link #mProcess} and waits for the process to end.
      *
-     * If the processes finishes, then sets {@link ResultData#stdout}, {@link ResultData#stderr}
+     * If the processes finishes, then sets {@link ResultData#stdout} and {@link ResultData#stderr},
+     * or {@link ResultData#stdoutStore} and {@link ResultData#stderrStore} if
+     * {@link ExecutionCommand#backgroundOutputMemoryLimit} is set or the result files are streamed,
      * and {@link ResultData#exitCode} for the {@link #mExecutionCommand} of the {@code appShell}
      * and then calls {@link #processAppShellResult(AppShell, ExecutionCommand) to process the result}.
      *
@@ -176,12 +185,41 @@ public final class AppShell {
 
         // setup stdin, and stdout and stderr gobblers
         DataOutputStream STDIN = new DataOutputStream(mProcess.getOutputStream());
-        StreamGobbler STDOUT = new StreamGobbler(mExecutionCommand.mPid + "-stdout", mProcess.getInputStream(), mExecutionCommand.resultData.stdout, mExecutionCommand.backgroundCustomLogLevel);
-        StreamGobbler STDERR = new StreamGobbler(mExecutionCommand.mPid + "-stderr", mProcess.getErrorStream(), mExecutionCommand.resultData.stderr, mExecutionCommand.backgroundCustomLogLevel);
+        StreamGobbler STDOUT;
+        StreamGobbler STDERR;
+        // Counted down as each stream read by the StreamPoller closes, or right away if gobbled
+        final CountDownLatch polledStreamsClosed = new CountDownLatch(2);
+        // If requested, stream the output to the result files while the command runs, otherwise
+        // the result files are only written once it has finished
+        boolean streamResultFiles = mExecutionCommand.resultConfig.resultFilesStreamed &&
+            mExecutionCommand.resultConfig.resultDirectoryPath != null && !mExecutionCommand.resultConfig.resultSingleFile;
+        // If a memory limit is set or the result files are streamed, then capture raw output bytes
+        // to stores instead, which keep all of the output in memory if there is no limit
+        Integer outputMemoryLimit = mExecutionCommand.backgroundOutputMemoryLimit;
+        boolean outputMemoryLimited = outputMemoryLimit != null && outputMemoryLimit > 0;
+        if (outputMemoryLimited || streamResultFiles) {
+            int maxMemoryBytes = outputMemoryLimited ? outputMemoryLimit : Integer.MAX_VALUE;
+            ResultData resultData = mExecutionCommand.resultData;
+            resultData.stdoutStore = new OutputStore(maxMemoryBytes, mExecutionCommand.backgroundOutputSpillDirectoryPath, mExecutionCommand.mPid + "-stdout");
+            resultData.stderrStore = new OutputStore(maxMemoryBytes, mExecutionCommand.backgroundOutputSpillDirectoryPath, mExecutionCommand.mPid + "-stderr");
+            if (streamResultFiles) {
+                Error error = ResultSender.startStreamingCommandResultToDirectory(context, LOG_TAG,
+                    mExecutionCommand.getCommandIdAndLabelLogString(), mExecutionCommand.resultConfig, resultData);
+                if (error != null)
+                    Logger.logErrorExtended(LOG_TAG, "Failed to stream result files for \"" + mExecutionCommand.getCommandIdAndLabelLogString() + "\" AppShell, they will be written once it has finished\n" + error.getErrorLogString());
+            }
+            STDOUT = pollOrGobble(mExecutionCommand.mPid + "-stdout", mProcess.getInputStream(), resultData.stdoutStore, polledStreamsClosed);
+            STDERR = pollOrGobble(mExecutionCommand.mPid + "-stderr", mProcess.getErrorStream(), resultData.stderrStore, polledStreamsClosed);
+        } else {
+            STDOUT = new StreamGobbler(mExecutionCommand.mPid + "-stdout", mProcess.getInputStream(), mExecutionCommand.resultData.stdout, mExecutionCommand.backgroundCustomLogLevel);
+            STDERR = new StreamGobbler(mExecutionCommand.mPid + "-stderr", mProcess.getErrorStream(), mExecutionCommand.resultData.stderr, mExecutionCommand.backgroundCustomLogLevel);
+            polledStreamsClosed.countDown();
+            polledStreamsClosed.countDown();
+        }
 
         // start gobbling
-        STDOUT.start();
-        STDERR.start();
+        if (STDOUT != null) STDOUT.start();
+        if (STDERR != null) STDERR.start();
 
         if (!DataUtils.isNullOrEmpty(mExecutionCommand.stdin)) {
             try {
@@ -210,6 +248,8 @@ public final class AppShell {
 
         // wait for our process to finish, while we gobble away in the background
         int exitCode = mProcess.waitFor();
+        // Let the poller read the output drained from the pipes of the process once it exited
+        StreamPoller.getInstance().onProcessExited();
 
         // make sure our threads are done gobbling
         // and the process is destroyed - while the latter shouldn't be
@@ -221,9 +261,12 @@ public final class AppShell {
         } catch (IOException e) {
             // might be closed already
         }
-        STDOUT.join();
-        STDERR.join();
+        if (STDOUT != null) STDOUT.join();
+        if (STDERR != null) STDERR.join();
+        polledStreamsClosed.await();
         mProcess.destroy();
+        if (mExecutionCommand.resultData.stdoutStore != null) mExecutionCommand.resultData.stdoutStore.close();
+        if (mExecutionCommand.resultData.stderrStore != null) mExecutionCommand.resultData.stderrStore.close();
 
         // Process result
         if (exitCode == 0)
@@ -245,6 +288,48 @@ public final class AppShell {
         AppShell.processAppShellResult(this, null);
     }
 
+    /**
+     * Read a stream of the {@link #mProcess} into an {@link OutputStore} with the shared
+     * {@link StreamPoller} instead of a thread of its own if possible.
+     *
+     * @param shell The name of the stream.
+     * @param inputStream The stream to read.
+     * @param outputStore The {@link OutputStore} to write to.
+     * @param polledStreamsClosed The latch to count down once the stream is closed, or right
+     *                            away if it is not polled.
+     * @return Returns {@code null} if the stream is polled, otherwise the {@link StreamGobbler}
+     * to start for it.
+     */
+    @Nullable
+    private StreamGobbler pollOrGobble(@NonNull String shell, @NonNull InputStream inputStream,
+                                       @NonNull OutputStore outputStore,
+                                       @NonNull CountDownLatch polledStreamsClosed) {
+        final boolean loggingEnabled = Logger.shouldEnableLoggingForCustomLogLevel(mExecutionCommand.backgroundCustomLogLevel);
+        final String commandLogTag = Logger.getDefaultLogTag() + "Command";
+
+        boolean polled = StreamPoller.getInstance().register(shell, inputStream, new StreamPoller.StreamClient() {
+            // Resume the stream once the output store has written its pending output to its file
+            private final Runnable mResume = () -> StreamPoller.getInstance().resume(this);
+
+            @Override
+            public boolean onBytes(@NonNull byte[] buffer, int count) {
+                if (loggingEnabled)
+                    Logger.logVerboseForce(commandLogTag, String.format(Locale.ENGLISH, "[%s] %s", shell, new String(buffer, 0, count))); // This will get truncated by LOGGER_ENTRY_MAX_LEN, likely 4KB
+
+                return outputStore.write(buffer, 0, count, mResume);
+            }
+
+            @Override
+            public void onStreamClosed() {
+                polledStreamsClosed.countDown();
+            }
+        });
+        if (polled) return null;
+
+        polledStreamsClosed.countDown();
+        return new StreamGobbler(shell, inputStream, outputStore, mExecutionCommand.backgroundCustomLogLevel);
+    }
+
     /**
      * Kill this {@link AppShell} by sending a {@link OsConstants#SIGILL} to its {@link #mProcess}
      * if its still executing.
@@ -12,7 +12,7 @@ import java.util.Formatter;
 import java.util.List;
 
 /*
- * Version: v0.53.0
+ * Version: v0.54.0
  * SPDX-License-Identifier: MIT
  *
  * Changelog
@@ -282,6 +282,10 @@ import java.util.List;
  * - 0.53.0 (2025-01-12)
  *      - Renamed `TERMUX_API`, `TERMUX_STYLING`, `TERMUX_TASKER`, `TERMUX_WIDGET` classes with `_APP` suffix added.
  *      - Added `TERMUX_*_MAIN_ACTIVITY_NAME` and `TERMUX_*_LAUNCHER_ACTIVITY_NAME` constants to each app class.
+ *
+ * - 0.54.0 (2026-10-18)
+ *      - Added `TERMUX_TRANSCRIPT_SHARE_URI_AUTHORITY`.
+ *      - Added `TERMUX_SERVICE.EXTRA_RESULT_FILES_STREAMED` and `RUN_COMMAND_SERVICE.EXTRA_RESULT_FILES_STREAMED`.
  */
 
 /**
@@ -897,6 +901,9 @@ public final class TermuxConstants {
     /** The Uri authority for Termux app file shares */
     public static final String TERMUX_FILE_SHARE_URI_AUTHORITY = TERMUX_PACKAGE_NAME + ".files"; // Default: "com.termux.files"
 
+    /** The Uri authority for Termux app session transcript shares */
+    public static final String TERMUX_TRANSCRIPT_SHARE_URI_AUTHORITY = TERMUX_PACKAGE_NAME + ".transcripts"; // Default: "com.termux.transcripts"
+
     /** The normal comma character (U+002C, &comma;, &#44;, comma) */
     public static final String COMMA_NORMAL = ","; // Default: ","
 
@@ -1051,6 +1058,11 @@ public final class TermuxConstants {
              * be created in {@link #EXTRA_RESULT_DIRECTORY} if {@link #EXTRA_RESULT_SINGLE_FILE} is
              * {@code false} for the TERMUX_SERVICE.ACTION_SERVICE_EXECUTE intent */
             public static final String EXTRA_RESULT_FILES_SUFFIX = TERMUX_PACKAGE_NAME + ".execute.result_files_suffix"; // Default: "com.termux.execute.result_files_suffix"
+            /** Intent {@code boolean} extra for whether the stdout and stderr result files should be
+             * written in {@link #EXTRA_RESULT_DIRECTORY} while the command runs instead of after it
+             * has finished if {@link #EXTRA_RESULT_SINGLE_FILE} is {@code false}. The err file is
+             * still only created once the command has finished for the TERMUX_SERVICE.ACTION_SERVICE_EXECUTE intent */
+            public static final String EXTRA_RESULT_FILES_STREAMED = TERMUX_PACKAGE_NAME + ".execute.result_files_streamed"; // Default: "com.termux.execute.result_files_streamed"
 
 
 
@@ -1189,6 +1201,11 @@ public final class TermuxConstants {
              * created in {@link #EXTRA_RESULT_DIRECTORY} if {@link #EXTRA_RESULT_SINGLE_FILE} is
              * {@code false} for the RUN_COMMAND_SERVICE.ACTION_RUN_COMMAND intent */
             public static final String EXTRA_RESULT_FILES_SUFFIX = TERMUX_PACKAGE_NAME + ".RUN_COMMAND_RESULT_FILES_SUFFIX"; // Default: "com.termux.RUN_COMMAND_RESULT_FILES_SUFFIX"
+            /** Intent {@code boolean} extra for whether the stdout and stderr result files should be
+             * written in {@link #EXTRA_RESULT_DIRECTORY} while the command runs instead of after it
+             * has finished if {@link #EXTRA_RESULT_SINGLE_FILE} is {@code false}. The err file is
+             * still only created once the command has finished for the RUN_COMMAND_SERVICE.ACTION_RUN_COMMAND intent */
+            public static final String EXTRA_RESULT_FILES_STREAMED = TERMUX_PACKAGE_NAME + ".RUN_COMMAND_RESULT_FILES_STREAMED"; // Default: "com.termux.RUN_COMMAND_RESULT_FILES_STREAMED"
 
         }
     }
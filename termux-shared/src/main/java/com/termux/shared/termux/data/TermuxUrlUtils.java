@@ -1,5 +1,8 @@
 package com.termux.shared.termux.data;
 
+import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TranscriptSearch;
+
 import java.util.LinkedHashSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -101,4 +104,21 @@ public class TermuxUrlUtils {
         return urlSet;
     }
 
+    /**
+     * Get a {@link TranscriptSearch} for the urls in the transcript and screen of a {@link TerminalEmulator}. The urls
+     * in the transcript are indexed incrementally, so an index should be kept to be reused for later lookups.
+     */
+    public static TranscriptSearch getUrlIndex(TerminalEmulator emulator) {
+        // Lines are joined like for TerminalBuffer.getTranscriptTextWithFullLinesJoined().
+        return new TranscriptSearch(emulator, getUrlMatchRegex(), true);
+    }
+
+    /** Extract the urls from an index created by {@link #getUrlIndex(TerminalEmulator)}. */
+    public static LinkedHashSet<CharSequence> extractUrls(TranscriptSearch urlIndex) {
+        LinkedHashSet<CharSequence> urlSet = new LinkedHashSet<>();
+        for (TranscriptSearch.Match match : urlIndex.getMatches())
+            urlSet.add(match.getText());
+        return urlSet;
+    }
+
 }
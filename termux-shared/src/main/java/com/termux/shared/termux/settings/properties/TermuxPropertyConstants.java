@@ -9,6 +9,7 @@ import com.termux.shared.settings.properties.SharedProperties;
 import com.termux.shared.termux.TermuxConstants;
 import com.termux.shared.logger.Logger;
 import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TerminalSession;
 import com.termux.view.TerminalView;
 
 import java.io.File;
@@ -18,7 +19,7 @@ import java.util.List;
 import java.util.Set;
 
 /*
- * Version: v0.18.0
+ * Version: v0.19.0
  * SPDX-License-Identifier: MIT
  *
  * Changelog
@@ -80,6 +81,13 @@ import java.util.Set;
  *
  * - 0.18.0 (2022-06-13)
  *      - Add `KEY_DISABLE_FILE_SHARE_RECEIVER` and `KEY_DISABLE_FILE_VIEW_RECEIVER`.
+ *
+ * - 0.19.0 (2026-10-18)
+ *      - Add `*KEY_TERMINAL_IO_BUFFER_SIZE*` and `KEY_TERMINAL_IO_BUFFER_ADAPTIVE`.
+ *      - Add `*KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS*`.
+ *      - Add `KEY_TERMINAL_EMULATION_THREAD`.
+ *      - Add `*KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT*`.
+ *      - Add `*KEY_BACKGROUND_TASKS_MAX_QUEUED*` and `*KEY_BACKGROUND_TASKS_MAX_RUNNING*`.
  */
 
 /**
@@ -137,6 +145,16 @@ public final class TermuxPropertyConstants {
 
 
 
+    /** Defines the key for whether the terminal I/O buffers will grow while a session saturates them and shrink back when idle */
+    public static final String KEY_TERMINAL_IO_BUFFER_ADAPTIVE =  "terminal-io-buffer-adaptive"; // Default: "terminal-io-buffer-adaptive"
+
+
+
+    /** Defines the key for whether terminal sessions will append their output to the terminal on a separate thread instead of the main thread */
+    public static final String KEY_TERMINAL_EMULATION_THREAD =  "terminal-emulation-thread"; // Default: "terminal-emulation-thread"
+
+
+
     /** Defines the key for whether url links in terminal transcript will automatically open on click or on tap */
     public static final String KEY_TERMINAL_ONCLICK_URL_OPEN =  "terminal-onclick-url-open"; // Default: "terminal-onclick-url-open"
 
@@ -167,6 +185,28 @@ public final class TermuxPropertyConstants {
 
     /* int */
 
+    /** Defines the key for the max bytes of stdout and of stderr of background tasks kept in memory, `0` to keep all */
+    public static final String KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT =  "background-output-memory-limit"; // Default: "background-output-memory-limit"
+    public static final int IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MIN = 0;
+    public static final int IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MAX = 64 * 1024 * 1024;
+    public static final int DEFAULT_IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT = 256 * 1024;
+
+
+
+    /** Defines the key for the max number of background tasks waiting for running tasks to finish */
+    public static final String KEY_BACKGROUND_TASKS_MAX_QUEUED =  "background-tasks-max-queued"; // Default: "background-tasks-max-queued"
+    public static final int IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MIN = 0;
+    public static final int IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MAX = 10000;
+    public static final int DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_QUEUED = 1000;
+
+    /** Defines the key for the max number of background tasks started by plugins running at once */
+    public static final String KEY_BACKGROUND_TASKS_MAX_RUNNING =  "background-tasks-max-running"; // Default: "background-tasks-max-running"
+    public static final int IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MIN = 1;
+    public static final int IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MAX = 256;
+    public static final int DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_RUNNING = 8;
+
+
+
     /** Defines the key for the bell behaviour */
     public static final String KEY_BELL_BEHAVIOUR =  "bell-character"; // Default: "bell-character"
 
@@ -233,6 +273,14 @@ public final class TermuxPropertyConstants {
 
 
 
+    /** Defines the key for the terminal I/O buffer size in bytes */
+    public static final String KEY_TERMINAL_IO_BUFFER_SIZE =  "terminal-io-buffer-size"; // Default: "terminal-io-buffer-size"
+    public static final int IVALUE_TERMINAL_IO_BUFFER_SIZE_MIN = TerminalSession.TERMINAL_IO_BUFFER_SIZE_MIN;
+    public static final int IVALUE_TERMINAL_IO_BUFFER_SIZE_MAX = TerminalSession.TERMINAL_IO_BUFFER_SIZE_MAX;
+    public static final int DEFAULT_IVALUE_TERMINAL_IO_BUFFER_SIZE = TerminalSession.DEFAULT_TERMINAL_IO_BUFFER_SIZE;
+
+
+
     /** Defines the key for the terminal margin on left and right in dp units */
     public static final String KEY_TERMINAL_MARGIN_HORIZONTAL =  "terminal-margin-horizontal"; // Default: "terminal-margin-horizontal"
     public static final int IVALUE_TERMINAL_MARGIN_HORIZONTAL_MIN = 0;
@@ -247,6 +295,14 @@ public final class TermuxPropertyConstants {
 
 
 
+    /** Defines the key for the terminal transcript rows kept compressed after they scroll out of the transcript */
+    public static final String KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS =  "terminal-transcript-archive-rows"; // Default: "terminal-transcript-archive-rows"
+    public static final int IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MIN = 0;
+    public static final int IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX = TerminalEmulator.TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX;
+    public static final int DEFAULT_IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS = 0;
+
+
+
     /** Defines the key for the terminal transcript rows */
     public static final String KEY_TERMINAL_TRANSCRIPT_ROWS =  "terminal-transcript-rows"; // Default: "terminal-transcript-rows"
     public static final int IVALUE_TERMINAL_TRANSCRIPT_ROWS_MIN = TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MIN;
@@ -399,6 +455,8 @@ public final class TermuxPropertyConstants {
         KEY_EXTRA_KEYS_TEXT_ALL_CAPS,
         KEY_HIDE_SOFT_KEYBOARD_ON_STARTUP,
         KEY_RUN_TERMUX_AM_SOCKET_SERVER,
+        KEY_TERMINAL_EMULATION_THREAD,
+        KEY_TERMINAL_IO_BUFFER_ADAPTIVE,
         KEY_TERMINAL_ONCLICK_URL_OPEN,
         KEY_USE_CTRL_SPACE_WORKAROUND,
         KEY_USE_FULLSCREEN,
@@ -406,12 +464,17 @@ public final class TermuxPropertyConstants {
         TermuxConstants.PROP_ALLOW_EXTERNAL_APPS,
 
         /* int */
+        KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT,
+        KEY_BACKGROUND_TASKS_MAX_QUEUED,
+        KEY_BACKGROUND_TASKS_MAX_RUNNING,
         KEY_BELL_BEHAVIOUR,
         KEY_DELETE_TMPDIR_FILES_OLDER_THAN_X_DAYS_ON_EXIT,
         KEY_TERMINAL_CURSOR_BLINK_RATE,
         KEY_TERMINAL_CURSOR_STYLE,
+        KEY_TERMINAL_IO_BUFFER_SIZE,
         KEY_TERMINAL_MARGIN_HORIZONTAL,
         KEY_TERMINAL_MARGIN_VERTICAL,
+        KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS,
         KEY_TERMINAL_TRANSCRIPT_ROWS,
 
         /* float */
@@ -445,6 +508,8 @@ public final class TermuxPropertyConstants {
         KEY_DISABLE_TERMINAL_SESSION_CHANGE_TOAST,
         KEY_ENFORCE_CHAR_BASED_INPUT,
         KEY_HIDE_SOFT_KEYBOARD_ON_STARTUP,
+        KEY_TERMINAL_EMULATION_THREAD,
+        KEY_TERMINAL_IO_BUFFER_ADAPTIVE,
         KEY_TERMINAL_ONCLICK_URL_OPEN,
         KEY_USE_CTRL_SPACE_WORKAROUND,
         KEY_USE_FULLSCREEN,
@@ -259,6 +259,12 @@ public abstract class TermuxSharedProperties {
          */
         switch (key) {
             /* int */
+            case TermuxPropertyConstants.KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT:
+                return (int) getBackgroundOutputMemoryLimitInternalPropertyValueFromValue(value);
+            case TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_QUEUED:
+                return (int) getBackgroundTasksMaxQueuedInternalPropertyValueFromValue(value);
+            case TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_RUNNING:
+                return (int) getBackgroundTasksMaxRunningInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_BELL_BEHAVIOUR:
                 return (int) getBellBehaviourInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_DELETE_TMPDIR_FILES_OLDER_THAN_X_DAYS_ON_EXIT:
@@ -267,10 +273,14 @@ public abstract class TermuxSharedProperties {
                 return (int) getTerminalCursorBlinkRateInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_TERMINAL_CURSOR_STYLE:
                 return (int) getTerminalCursorStyleInternalPropertyValueFromValue(value);
+            case TermuxPropertyConstants.KEY_TERMINAL_IO_BUFFER_SIZE:
+                return (int) getTerminalIOBufferSizeInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_TERMINAL_MARGIN_HORIZONTAL:
                 return (int) getTerminalMarginHorizontalInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_TERMINAL_MARGIN_VERTICAL:
                 return (int) getTerminalMarginVerticalInternalPropertyValueFromValue(value);
+            case TermuxPropertyConstants.KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS:
+                return (int) getTerminalTranscriptArchiveRowsInternalPropertyValueFromValue(value);
             case TermuxPropertyConstants.KEY_TERMINAL_TRANSCRIPT_ROWS:
                 return (int) getTerminalTranscriptRowsInternalPropertyValueFromValue(value);
 
@@ -324,6 +334,60 @@ public abstract class TermuxSharedProperties {
 
 
 
+    /**
+     * Returns the int for the value if its not null and is between
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MIN} and
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MAX},
+     * otherwise returns {@link TermuxPropertyConstants#DEFAULT_IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT}.
+     *
+     * @param value The {@link String} value to convert.
+     * @return Returns the internal value for value.
+     */
+    public static int getBackgroundOutputMemoryLimitInternalPropertyValueFromValue(String value) {
+        return SharedProperties.getDefaultIfNotInRange(TermuxPropertyConstants.KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT,
+            DataUtils.getIntFromString(value, TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT),
+            TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MIN,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_OUTPUT_MEMORY_LIMIT_MAX,
+            true, true, LOG_TAG);
+    }
+
+    /**
+     * Returns the int for the value if its not null and is between
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MIN} and
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MAX},
+     * otherwise returns {@link TermuxPropertyConstants#DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_QUEUED}.
+     *
+     * @param value The {@link String} value to convert.
+     * @return Returns the internal value for value.
+     */
+    public static int getBackgroundTasksMaxQueuedInternalPropertyValueFromValue(String value) {
+        return SharedProperties.getDefaultIfNotInRange(TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_QUEUED,
+            DataUtils.getIntFromString(value, TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_QUEUED),
+            TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_QUEUED,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MIN,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_TASKS_MAX_QUEUED_MAX,
+            true, true, LOG_TAG);
+    }
+
+    /**
+     * Returns the int for the value if its not null and is between
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MIN} and
+     * {@link TermuxPropertyConstants#IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MAX},
+     * otherwise returns {@link TermuxPropertyConstants#DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_RUNNING}.
+     *
+     * @param value The {@link String} value to convert.
+     * @return Returns the internal value for value.
+     */
+    public static int getBackgroundTasksMaxRunningInternalPropertyValueFromValue(String value) {
+        return SharedProperties.getDefaultIfNotInRange(TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_RUNNING,
+            DataUtils.getIntFromString(value, TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_RUNNING),
+            TermuxPropertyConstants.DEFAULT_IVALUE_BACKGROUND_TASKS_MAX_RUNNING,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MIN,
+            TermuxPropertyConstants.IVALUE_BACKGROUND_TASKS_MAX_RUNNING_MAX,
+            true, true, LOG_TAG);
+    }
+
     /**
      * Returns the internal value after mapping it based on
      * {@code TermuxPropertyConstants#MAP_BELL_BEHAVIOUR} if the value is not {@code null}
@@ -384,6 +448,24 @@ public abstract class TermuxSharedProperties {
         return (int) SharedProperties.getDefaultIfNotInMap(TermuxPropertyConstants.KEY_TERMINAL_CURSOR_STYLE, TermuxPropertyConstants.MAP_TERMINAL_CURSOR_STYLE, SharedProperties.toLowerCase(value), TermuxPropertyConstants.DEFAULT_IVALUE_TERMINAL_CURSOR_STYLE, true, LOG_TAG);
     }
 
+    /**
+     * Returns the int for the value if its not null and is between
+     * {@link TermuxPropertyConstants#IVALUE_TERMINAL_IO_BUFFER_SIZE_MIN} and
+     * {@link TermuxPropertyConstants#IVALUE_TERMINAL_IO_BUFFER_SIZE_MAX},
+     * otherwise returns {@link TermuxPropertyConstants#DEFAULT_IVALUE_TERMINAL_IO_BUFFER_SIZE}.
+     *
+     * @param value The {@link String} value to convert.
+     * @return Returns the internal value for value.
+     */
+    public static int getTerminalIOBufferSizeInternalPropertyValueFromValue(String value) {
+        return SharedProperties.getDefaultIfNotInRange(TermuxPropertyConstants.KEY_TERMINAL_IO_BUFFER_SIZE,
+            DataUtils.getIntFromString(value, TermuxPropertyConstants.DEFAULT_IVALUE_TERMINAL_IO_BUFFER_SIZE),
+            TermuxPropertyConstants.DEFAULT_IVALUE_TERMINAL_IO_BUFFER_SIZE,
+            TermuxPropertyConstants.IVALUE_TERMINAL_IO_BUFFER_SIZE_MIN,
+            TermuxPropertyConstants.IVALUE_TERMINAL_IO_BUFFER_SIZE_MAX,
+            true, true, LOG_TAG);
+    }
+
     /**
      * Returns the int for the value if its not null and is between
      * {@link TermuxPropertyConstants#IVALUE_TERMINAL_MARGIN_HORIZONTAL_MIN} and
@@ -420,6 +502,24 @@ public abstract class TermuxSharedProperties {
             true, true, LOG_TAG);
     }
 
+    /**
+     * Returns the int for the value if its not null and is between
+     * {@link TermuxPropertyConstants#IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MIN} and
+     * {@link TermuxPropertyConstants#IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX},
+     * otherwise returns {@link TermuxPropertyConstants#DEFAULT_IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS}.
+     *
+     * @param value The {@link String} value to convert.
+     * @return Returns the internal value for value.
+     */
+    public static int getTerminalTranscriptArchiveRowsInternalPropertyValueFromValue(String value) {
+        return SharedProperties.getDefaultIfNotInRange(TermuxPropertyConstants.KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS,
+            DataUtils.getIntFromString(value, TermuxPropertyConstants.DEFAULT_IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS),
+            TermuxPropertyConstants.DEFAULT_IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS,
+            TermuxPropertyConstants.IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MIN,
+            TermuxPropertyConstants.IVALUE_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS_MAX,
+            true, true, LOG_TAG);
+    }
+
     /**
      * Returns the int for the value if its not null and is between
      * {@link TermuxPropertyConstants#IVALUE_TERMINAL_TRANSCRIPT_ROWS_MIN} and
@@ -626,6 +726,18 @@ public abstract class TermuxSharedProperties {
         return (boolean) getInternalPropertyValue(TermuxPropertyConstants.KEY_USE_FULLSCREEN_WORKAROUND, true);
     }
 
+    public int getBackgroundOutputMemoryLimit() {
+        return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_BACKGROUND_OUTPUT_MEMORY_LIMIT, true);
+    }
+
+    public int getBackgroundTasksMaxQueued() {
+        return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_QUEUED, true);
+    }
+
+    public int getBackgroundTasksMaxRunning() {
+        return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_BACKGROUND_TASKS_MAX_RUNNING, true);
+    }
+
     public int getBellBehaviour() {
         return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_BELL_BEHAVIOUR, true);
     }
@@ -642,6 +754,18 @@ public abstract class TermuxSharedProperties {
         return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_CURSOR_STYLE, true);
     }
 
+    public int getTerminalIOBufferSize() {
+        return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_IO_BUFFER_SIZE, true);
+    }
+
+    public boolean isTerminalEmulationThreadEnabled() {
+        return (boolean) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_EMULATION_THREAD, true);
+    }
+
+    public boolean isTerminalIOBufferAdaptive() {
+        return (boolean) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_IO_BUFFER_ADAPTIVE, true);
+    }
+
     public int getTerminalMarginHorizontal() {
         return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_MARGIN_HORIZONTAL, true);
     }
@@ -650,6 +774,10 @@ public abstract class TermuxSharedProperties {
         return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_MARGIN_VERTICAL, true);
     }
 
+    public int getTerminalTranscriptArchiveRows() {
+        return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_TRANSCRIPT_ARCHIVE_ROWS, true);
+    }
+
     public int getTerminalTranscriptRows() {
         return (int) getInternalPropertyValue(TermuxPropertyConstants.KEY_TERMINAL_TRANSCRIPT_ROWS, true);
     }
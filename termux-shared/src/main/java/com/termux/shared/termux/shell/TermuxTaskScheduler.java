@@ -0,0 +1,246 @@
+package com.termux.shared.termux.shell;
+
+import androidx.annotation.NonNull;
+
+import com.termux.shared.logger.Logger;
+import com.termux.shared.shell.command.ExecutionCommand;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An admission controlled scheduler for background TermuxTasks, so that a burst of execution
+ * commands, like from a plugin, does not fork all of their processes at once.
+ *
+ * At most {@link #mMaxRunningTasks} tasks submitted to the scheduler run at once. Further tasks
+ * wait in a FIFO queue per caller package, which is the creator package of the result pending
+ * intent of the command, and the queues are served round robin so that one caller cannot starve
+ * the others. Commands without a pending intent share a queue. Once {@link #mMaxQueuedTasks}
+ * tasks are waiting, further tasks are rejected, so that the caller can be sent an error result.
+ *
+ * The queue depth and the time tasks waited in the queue are kept as metrics, see
+ * {@link #getMetricsLogString()}.
+ *
+ * This class is not thread safe and must only be used from the main thread, like by
+ * {@code TermuxService}.
+ */
+public class TermuxTaskScheduler {
+
+    /** The starter of tasks admitted by the scheduler. */
+    public interface TaskStarter {
+
+        /**
+         * Start a TermuxTask for the execution command. Since a queued task may be started long
+         * after it was submitted, the starter must re-check any conditions for starting it, like
+         * whether a task with the same shell name is already running.
+         *
+         * @param executionCommand The {@link ExecutionCommand} to start.
+         * @return Returns {@code true} if the task was started, in which case
+         * {@link #onTaskExited(ExecutionCommand)} must be called once it exits.
+         */
+        boolean startTask(@NonNull ExecutionCommand executionCommand);
+
+    }
+
+    private static final class QueuedTask {
+
+        final ExecutionCommand executionCommand;
+        final long queueTime;
+
+        QueuedTask(ExecutionCommand executionCommand, long queueTime) {
+            this.executionCommand = executionCommand;
+            this.queueTime = queueTime;
+        }
+
+    }
+
+    private final TaskStarter mTaskStarter;
+    private int mMaxRunningTasks;
+    private int mMaxQueuedTasks;
+
+    private final Set<ExecutionCommand> mRunningTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** The queue of each caller package with queued tasks, in the order they are served. */
+    private final LinkedHashMap<String, ArrayDeque<QueuedTask>> mQueues = new LinkedHashMap<>();
+    private int mQueuedTasks;
+
+    /** The max number of tasks queued at once, and the number of tasks that were queued, started from the queue or rejected. */
+    private int mPeakQueuedTasks;
+    private long mTasksQueued;
+    private long mTasksDequeued;
+    private long mTasksRejected;
+    /** The total and max time in milliseconds that tasks waited in the queue before being started. */
+    private long mTotalWaitTime;
+    private long mMaxWaitTime;
+
+    private static final String LOG_TAG = "TermuxTaskScheduler";
+
+    /**
+     * @param taskStarter The {@link TaskStarter} to start admitted tasks with.
+     * @param maxRunningTasks The max number of tasks to run at once.
+     * @param maxQueuedTasks The max number of tasks to queue while {@code maxRunningTasks} are running.
+     */
+    public TermuxTaskScheduler(@NonNull TaskStarter taskStarter, int maxRunningTasks, int maxQueuedTasks) {
+        mTaskStarter = taskStarter;
+        setLimits(maxRunningTasks, maxQueuedTasks);
+    }
+
+    /**
+     * Set the max number of tasks to run at once and to queue. Tasks already queued are kept, and
+     * are started if more tasks may now run.
+     */
+    public void setLimits(int maxRunningTasks, int maxQueuedTasks) {
+        mMaxRunningTasks = Math.max(maxRunningTasks, 1);
+        mMaxQueuedTasks = Math.max(maxQueuedTasks, 0);
+        startQueuedTasks();
+    }
+
+    /**
+     * Submit a task to be started now if less than {@link #mMaxRunningTasks} are running,
+     * otherwise once it reaches the front of the queue.
+     *
+     * @param executionCommand The {@link ExecutionCommand} to start.
+     * @return Returns {@code false} if the task was rejected since the queue is full, otherwise {@code true}.
+     */
+    public boolean submit(@NonNull ExecutionCommand executionCommand) {
+        if (mQueuedTasks == 0 && mRunningTasks.size() < mMaxRunningTasks) {
+            startTask(executionCommand);
+            return true;
+        }
+
+        if (mQueuedTasks >= mMaxQueuedTasks) {
+            mTasksRejected++;
+            Logger.logWarn(LOG_TAG, "Rejecting \"" + executionCommand.getCommandIdAndLabelLogString() + "\" TermuxTask since " + mQueuedTasks + " tasks are already queued");
+            return false;
+        }
+
+        String callerPackage = getCallerPackage(executionCommand);
+        ArrayDeque<QueuedTask> queue = mQueues.get(callerPackage);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            mQueues.put(callerPackage, queue);
+        }
+        queue.add(new QueuedTask(executionCommand, System.currentTimeMillis()));
+        mQueuedTasks++;
+        mTasksQueued++;
+        mPeakQueuedTasks = Math.max(mPeakQueuedTasks, mQueuedTasks);
+
+        Logger.logDebug(LOG_TAG, "Queued \"" + executionCommand.getCommandIdAndLabelLogString() + "\" TermuxTask of \"" + callerPackage + "\" behind " + (mQueuedTasks - 1) + " tasks");
+        return true;
+    }
+
+    /** Notify the scheduler that a task has exited, so that the next queued task can be started. */
+    public void onTaskExited(@NonNull ExecutionCommand executionCommand) {
+        if (mRunningTasks.remove(executionCommand))
+            startQueuedTasks();
+    }
+
+    /**
+     * Remove all queued tasks without starting them, like when the service is being stopped. Their
+     * execution commands are expected to be cancelled by the caller.
+     *
+     * @return Returns the {@link ExecutionCommand} of the removed tasks in the order they were queued
+     * for each caller package.
+     */
+    @NonNull
+    public List<ExecutionCommand> clearQueuedTasks() {
+        List<ExecutionCommand> executionCommands = new ArrayList<>(mQueuedTasks);
+        for (ArrayDeque<QueuedTask> queue : mQueues.values()) {
+            for (QueuedTask queuedTask : queue)
+                executionCommands.add(queuedTask.executionCommand);
+        }
+        mQueues.clear();
+        mQueuedTasks = 0;
+        return executionCommands;
+    }
+
+    private void startTask(@NonNull ExecutionCommand executionCommand) {
+        if (mTaskStarter.startTask(executionCommand))
+            mRunningTasks.add(executionCommand);
+    }
+
+    private void startQueuedTasks() {
+        while (mQueuedTasks > 0 && mRunningTasks.size() < mMaxRunningTasks) {
+            // Take a task from the queue of the next caller, and move its queue to the end
+            Iterator<Map.Entry<String, ArrayDeque<QueuedTask>>> iterator = mQueues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<QueuedTask>> entry = iterator.next();
+            iterator.remove();
+            QueuedTask queuedTask = entry.getValue().poll();
+            if (!entry.getValue().isEmpty())
+                mQueues.put(entry.getKey(), entry.getValue());
+            mQueuedTasks--;
+            mTasksDequeued++;
+
+            long waitTime = System.currentTimeMillis() - queuedTask.queueTime;
+            mTotalWaitTime += waitTime;
+            mMaxWaitTime = Math.max(mMaxWaitTime, waitTime);
+
+            startTask(queuedTask.executionCommand);
+
+            if (mQueuedTasks == 0)
+                Logger.logVerbose(LOG_TAG, getMetricsLogString());
+        }
+    }
+
+    /** Get the caller package whose queue the execution command is added to. */
+    @NonNull
+    protected String getCallerPackage(@NonNull ExecutionCommand executionCommand) {
+        if (executionCommand.resultConfig.resultPendingIntent != null) {
+            String creatorPackage = executionCommand.resultConfig.resultPendingIntent.getCreatorPackage();
+            if (creatorPackage != null) return creatorPackage;
+        }
+        return "";
+    }
+
+    /** Get the number of tasks started by the scheduler that are running. */
+    public int getRunningTaskCount() {
+        return mRunningTasks.size();
+    }
+
+    /** Get the number of tasks waiting in the queue. */
+    public int getQueuedTaskCount() {
+        return mQueuedTasks;
+    }
+
+    public int getMaxRunningTasks() {
+        return mMaxRunningTasks;
+    }
+
+    public int getMaxQueuedTasks() {
+        return mMaxQueuedTasks;
+    }
+
+    /** Get the max number of tasks waiting in the queue at once. */
+    public int getPeakQueuedTaskCount() {
+        return mPeakQueuedTasks;
+    }
+
+    /** Get the number of tasks rejected since the queue was full. */
+    public long getRejectedTaskCount() {
+        return mTasksRejected;
+    }
+
+    /** Get the average time in milliseconds that queued tasks waited before being started. */
+    public long getAverageWaitTime() {
+        return mTasksDequeued == 0 ? 0 : mTotalWaitTime / mTasksDequeued;
+    }
+
+    /** Get the max time in milliseconds that a queued task waited before being started. */
+    public long getMaxWaitTime() {
+        return mMaxWaitTime;
+    }
+
+    @NonNull
+    public String getMetricsLogString() {
+        return String.format(Locale.ENGLISH, "Running %d of max %d tasks, queued %d tasks with at most %d at once, rejected %d, average wait %d ms, max %d ms",
+            mRunningTasks.size(), mMaxRunningTasks, mTasksQueued, mPeakQueuedTasks, mTasksRejected, getAverageWaitTime(), mMaxWaitTime);
+    }
+
+}
@@ -155,7 +155,9 @@ public class TermuxSession {
         Logger.logDebug(LOG_TAG, "Running \"" + executionCommand.getCommandIdAndLabelLogString() + "\" TermuxSession");
         TerminalSession terminalSession = new TerminalSession(executionCommand.executable,
             executionCommand.workingDirectory, executionCommand.arguments, environmentArray,
-            executionCommand.terminalTranscriptRows, terminalSessionClient);
+            executionCommand.terminalTranscriptRows, executionCommand.terminalTranscriptArchiveRows,
+            executionCommand.terminalIOBufferSize,
+            executionCommand.isTerminalIOBufferAdaptive, executionCommand.isTerminalEmulationThreadEnabled, terminalSessionClient);
 
         if (executionCommand.shellName != null) {
             terminalSession.mSessionName = executionCommand.shellName;
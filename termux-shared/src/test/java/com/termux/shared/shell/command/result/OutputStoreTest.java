@@ -0,0 +1,147 @@
+package com.termux.shared.shell.command.result;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OutputStoreTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static void write(OutputStore outputStore, String output) {
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        outputStore.write(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testSmallOutputIsKeptInMemory() {
+        OutputStore outputStore = new OutputStore(100, null, "test");
+        write(outputStore, "hello ");
+        write(outputStore, "world\n");
+        outputStore.close();
+
+        assertEquals("hello world\n", outputStore.toString());
+        assertEquals(12, outputStore.getLength());
+        assertFalse(outputStore.isTruncated());
+        assertNull(outputStore.getSpillFilePath());
+    }
+
+    @Test
+    public void testHeadAndTailAreKeptWithoutSpillDirectory() {
+        OutputStore outputStore = new OutputStore(10, null, "test");
+        write(outputStore, "0123456789");
+        assertFalse(outputStore.isTruncated());
+        write(outputStore, "abcdefgh");
+        outputStore.close();
+
+        assertTrue(outputStore.isTruncated());
+        assertEquals(18, outputStore.getLength());
+        assertEquals("01234\n(truncated 8 bytes)\ndefgh", outputStore.toString());
+        assertNull(outputStore.getSpillFilePath());
+    }
+
+    @Test
+    public void testTailLongerThanRingKeepsLatestBytes() {
+        OutputStore outputStore = new OutputStore(8, null, "test");
+        write(outputStore, "abcd");
+        write(outputStore, "0123456789");
+        write(outputStore, "xy");
+        assertEquals("abcd\n(truncated 8 bytes)\n89xy", outputStore.toString());
+    }
+
+    @Test
+    public void testCharLengthCountsUtf16Chars() {
+        OutputStore outputStore = new OutputStore(4, null, "test");
+        String output = "a\u00e9\u20ac\uD83D\uDE00b";
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        // Split the multi byte sequences across writes
+        for (int i = 0; i < bytes.length; i++)
+            outputStore.write(bytes, i, 1);
+
+        assertTrue(outputStore.isTruncated());
+        assertEquals(bytes.length, outputStore.getLength());
+        assertEquals(output.length(), outputStore.getCharLength());
+    }
+
+    @Test
+    public void testOutputIsSpilledToFile() throws Exception {
+        File spillDirectory = mTemporaryFolder.newFolder();
+        OutputStore outputStore = new OutputStore(1000, spillDirectory.getAbsolutePath(), "test");
+
+        Random random = new Random(1);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < 500; i++) {
+            byte[] bytes = new byte[random.nextInt(5000) + 1];
+            random.nextBytes(bytes);
+            output.write(bytes);
+            if (!outputStore.write(bytes, 0, bytes.length, null))
+                outputStore.waitForPendingFileWrites();
+        }
+        outputStore.close();
+
+        assertTrue(outputStore.isTruncated());
+        assertEquals(output.size(), outputStore.getLength());
+        String spillFilePath = outputStore.getSpillFilePath();
+        assertNotNull(spillFilePath);
+        assertTrue(spillFilePath.startsWith(spillDirectory.getAbsolutePath()));
+        assertArrayEquals(output.toByteArray(), Files.readAllBytes(new File(spillFilePath).toPath()));
+    }
+
+    @Test
+    public void testOutputIsStreamedToFile() throws Exception {
+        File streamFile = mTemporaryFolder.newFile();
+        OutputStore outputStore = new OutputStore(10, mTemporaryFolder.getRoot().getAbsolutePath(), "test");
+        assertNull(outputStore.streamToFile("stdout", streamFile.getAbsolutePath()));
+
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "line " + i + "\n";
+            output.append(line);
+            write(outputStore, line);
+        }
+        outputStore.close();
+
+        assertTrue(outputStore.isStreamedToFile());
+        // The streamed output is not spilled as well
+        assertNull(outputStore.getSpillFilePath());
+        assertEquals(output.toString(), new String(Files.readAllBytes(streamFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStoreWithoutLimitKeepsAllOutput() throws Exception {
+        // Like the stores of commands streaming result files without a memory limit
+        File streamFile = mTemporaryFolder.newFile();
+        OutputStore outputStore = new OutputStore(Integer.MAX_VALUE, null, "test");
+        assertNull(outputStore.streamToFile("stdout", streamFile.getAbsolutePath()));
+
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            String line = "line " + i + "\n";
+            output.append(line);
+            write(outputStore, line);
+        }
+        outputStore.close();
+
+        assertFalse(outputStore.isTruncated());
+        assertEquals(output.toString(), outputStore.toString());
+        assertEquals(output.toString(), new String(Files.readAllBytes(streamFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamingAfterOutputIsWrittenFails() throws Exception {
+        OutputStore outputStore = new OutputStore(10, null, "test");
+        write(outputStore, "a");
+        assertNotNull(outputStore.streamToFile("stdout", mTemporaryFolder.newFile().getAbsolutePath()));
+        assertFalse(outputStore.isStreamedToFile());
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.termux.shared.termux.shell;
+
+import androidx.annotation.NonNull;
+
+import com.termux.shared.shell.command.ExecutionCommand;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TermuxTaskSchedulerTest {
+
+    /** The ids of the commands started, in order. */
+    private final List<Integer> mStarted = new ArrayList<>();
+    /** The ids of the commands that the starter fails to start. */
+    private final Set<Integer> mFailing = new HashSet<>();
+    /** The caller package of each command id, if not the default one. */
+    private final Map<Integer, String> mCallerPackages = new HashMap<>();
+
+    private TermuxTaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = newScheduler(2, 3);
+    }
+
+    private TermuxTaskScheduler newScheduler(int maxRunningTasks, int maxQueuedTasks) {
+        return new TermuxTaskScheduler(executionCommand -> {
+            if (mFailing.contains(executionCommand.id)) return false;
+            mStarted.add(executionCommand.id);
+            return true;
+        }, maxRunningTasks, maxQueuedTasks) {
+            @NonNull
+            @Override
+            protected String getCallerPackage(@NonNull ExecutionCommand executionCommand) {
+                String callerPackage = mCallerPackages.get(executionCommand.id);
+                return callerPackage != null ? callerPackage : "";
+            }
+        };
+    }
+
+    private static ExecutionCommand command(int id) {
+        return new ExecutionCommand(id);
+    }
+
+    @Test
+    public void testStartsUpToMaxRunningAndQueuesTheRest() {
+        ExecutionCommand first = command(1);
+        assertTrue(mScheduler.submit(first));
+        assertTrue(mScheduler.submit(command(2)));
+        assertTrue(mScheduler.submit(command(3)));
+        assertEquals(Arrays.asList(1, 2), mStarted);
+        assertEquals(2, mScheduler.getRunningTaskCount());
+        assertEquals(1, mScheduler.getQueuedTaskCount());
+
+        mScheduler.onTaskExited(first);
+        assertEquals(Arrays.asList(1, 2, 3), mStarted);
+        assertEquals(2, mScheduler.getRunningTaskCount());
+        assertEquals(0, mScheduler.getQueuedTaskCount());
+    }
+
+    @Test
+    public void testRejectsOnceQueueIsFull() {
+        for (int i = 1; i <= 5; i++)
+            assertTrue(mScheduler.submit(command(i)));
+        assertFalse(mScheduler.submit(command(6)));
+        assertEquals(3, mScheduler.getQueuedTaskCount());
+        assertEquals(3, mScheduler.getPeakQueuedTaskCount());
+        assertEquals(1, mScheduler.getRejectedTaskCount());
+        assertEquals(Arrays.asList(1, 2), mStarted);
+    }
+
+    @Test
+    public void testQueuesAreServedRoundRobin() {
+        mScheduler = newScheduler(1, 10);
+        List<ExecutionCommand> commands = new ArrayList<>();
+        for (int i = 0; i <= 5; i++)
+            commands.add(command(i));
+        mScheduler.submit(commands.get(0));
+        for (int i = 1; i <= 3; i++) {
+            mCallerPackages.put(i, "flooding");
+            mScheduler.submit(commands.get(i));
+        }
+        mCallerPackages.put(4, "other");
+        mScheduler.submit(commands.get(4));
+        mScheduler.submit(commands.get(5));
+
+        while (mScheduler.getRunningTaskCount() > 0)
+            mScheduler.onTaskExited(commands.get(mStarted.get(mStarted.size() - 1)));
+        assertEquals(Arrays.asList(0, 1, 4, 5, 2, 3), mStarted);
+    }
+
+    @Test
+    public void testQueuedTasksAreClearedWithoutStarting() {
+        ExecutionCommand first = command(1);
+        mScheduler.submit(first);
+        mScheduler.submit(command(2));
+        ExecutionCommand third = command(3);
+        ExecutionCommand fourth = command(4);
+        mScheduler.submit(third);
+        mScheduler.submit(fourth);
+
+        assertEquals(Arrays.asList(third, fourth), mScheduler.clearQueuedTasks());
+        assertEquals(0, mScheduler.getQueuedTaskCount());
+        mScheduler.onTaskExited(first);
+        assertEquals(Arrays.asList(1, 2), mStarted);
+        assertEquals(1, mScheduler.getRunningTaskCount());
+    }
+
+    @Test
+    public void testTaskNotStartedFromQueueDoesNotTakeASlot() {
+        ExecutionCommand first = command(1);
+        mScheduler.submit(first);
+        mScheduler.submit(command(2));
+        mFailing.add(3);
+        mScheduler.submit(command(3));
+        mScheduler.submit(command(4));
+
+        // The starter declines the third task, like for a shell name already running, so the
+        // fourth is started in its place
+        mScheduler.onTaskExited(first);
+        assertEquals(Arrays.asList(1, 2, 4), mStarted);
+        assertEquals(2, mScheduler.getRunningTaskCount());
+        assertEquals(0, mScheduler.getQueuedTaskCount());
+    }
+
+    @Test
+    public void testRaisingLimitsStartsQueuedTasks() {
+        for (int i = 1; i <= 4; i++)
+            mScheduler.submit(command(i));
+        mScheduler.setLimits(3, 3);
+        assertEquals(Arrays.asList(1, 2, 3), mStarted);
+        assertEquals(1, mScheduler.getQueuedTaskCount());
+    }
+
+}